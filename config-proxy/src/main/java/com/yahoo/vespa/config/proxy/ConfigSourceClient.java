@@ -1,10 +1,12 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.proxy;
 
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * A client to a config source, which could be an RPC config server or some other backing for
@@ -24,4 +26,7 @@ interface ConfigSourceClient {
 
     List<String> getSourceConnections();
 
+    /** Returns the keys of the configs this is currently keeping up to date from the config source */
+    Set<ConfigCacheKey> activeSubscriptions();
+
 }
@@ -0,0 +1,217 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.log.LogLevel;
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.ConfigKey;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.VespaVersion;
+import com.yahoo.vespa.defaults.Defaults;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * A file holding the configs of a memory cache, such that a restarted proxy can serve configs
+ * before it has fetched them from the config sources again.
+ * The file is written atomically, is checksummed, is limited in size, and is memory mapped when read.
+ *
+ * @author agent
+ */
+class DiskCache {
+
+    private static final Logger log = Logger.getLogger(DiskCache.class.getName());
+
+    static final String DEFAULT_FILE = Defaults.getDefaults().underVespaHome("var/vespa/cache/config/proxy-cache.bin");
+
+    private static final int MAGIC = 0x56434331; // "VCC1"
+    private static final int VERSION = 1;
+
+    /** The default max size of the file: Configs which do not fit are not written, and larger files are not read */
+    static final long DEFAULT_MAX_FILE_SIZE = 256 * 1024 * 1024;
+
+    private final File file;
+    private final long maxFileSize;
+
+    DiskCache(File file) {
+        this(file, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    DiskCache(File file, long maxFileSize) {
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+    }
+
+    File file() { return file; }
+
+    /**
+     * Writes the given configs to this file, replacing any previous content.
+     * Configs which would make the file larger than its max size are skipped.
+     *
+     * @return the number of configs written
+     */
+    int write(Collection<RawConfig> configs) throws IOException {
+        List<byte[]> serialized = new ArrayList<>();
+        long size = 4 + 4 + 4 + 8; // magic, version, count and checksum
+        int skipped = 0;
+        for (RawConfig config : configs) {
+            if (config.isError() || config.getPayload() == null) continue;
+            byte[] bytes = serialize(config);
+            if (size + bytes.length > maxFileSize) {
+                skipped++;
+                continue;
+            }
+            size += bytes.length;
+            serialized.add(bytes);
+        }
+        if (skipped > 0)
+            log.log(LogLevel.WARNING, "Not writing " + skipped + " configs to '" + file + "', as the file would be larger than " +
+                                      maxFileSize + " bytes");
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)),
+                                                                                     crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(serialized.size());
+                for (byte[] config : serialized)
+                    out.write(config);
+                out.writeLong(crc.getValue());
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        return serialized.size();
+    }
+
+    private static byte[] serialize(RawConfig config) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(config.getName(), out);
+        writeString(config.getNamespace(), out);
+        writeString(config.getConfigId(), out);
+        writeString(config.getDefMd5(), out);
+        writeString(config.getConfigMd5(), out);
+        out.writeLong(config.getGeneration());
+        out.writeBoolean(config.isInternalRedeploy());
+        out.writeInt(config.getDefContent().size());
+        for (String line : config.getDefContent())
+            writeString(line, out);
+        writeString(config.getVespaVersion().map(VespaVersion::toString).orElse(""), out);
+
+        Payload payload = config.getPayload();
+        writeString(payload.getCompressionInfo().getCompressionType().name(), out);
+        out.writeInt(payload.getCompressionInfo().getUncompressedSize());
+        byte[] data = payload.getData().getBytes();
+        out.writeInt(data.length);
+        out.write(data);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Returns the configs in this file, or an empty list if the file does not exist or is not valid.
+     * This never throws an exception, as a missing cache should not prevent the proxy from starting.
+     * The returned configs are copied out of the file, so the mapping is released when it is garbage collected.
+     */
+    List<RawConfig> read() {
+        if ( ! file.exists()) return Collections.emptyList();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > maxFileSize)
+                throw new IllegalArgumentException("File size " + channel.size() + " is larger than the max size " + maxFileSize);
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not read config cache from '" + file + "', ignoring it: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<RawConfig> read(ByteBuffer buffer) {
+        if (buffer.remaining() < 20) throw new IllegalArgumentException("File is truncated");
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.limit() - 8);
+        crc.update(content);
+        if (crc.getValue() != buffer.getLong(buffer.limit() - 8))
+            throw new IllegalArgumentException("Checksum mismatch");
+
+        if (buffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a config cache file");
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IllegalArgumentException("Unknown version " + version);
+        try {
+            int count = buffer.getInt();
+            List<RawConfig> configs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++)
+                configs.add(readConfig(buffer));
+            return configs;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("File is truncated");
+        }
+    }
+
+    private static RawConfig readConfig(ByteBuffer buffer) {
+        String name = readString(buffer);
+        String namespace = readString(buffer);
+        String configId = readString(buffer);
+        String defMd5 = readString(buffer);
+        String configMd5 = readString(buffer);
+        long generation = buffer.getLong();
+        boolean internalRedeploy = buffer.get() != 0;
+        int defLines = buffer.getInt();
+        List<String> defContent = new ArrayList<>(defLines);
+        for (int i = 0; i < defLines; i++)
+            defContent.add(readString(buffer));
+        String vespaVersion = readString(buffer);
+
+        CompressionType compression = CompressionType.valueOf(readString(buffer));
+        int uncompressedSize = buffer.getInt();
+        byte[] data = new byte[buffer.getInt()];
+        buffer.get(data);
+        Payload payload = Payload.from(new Utf8Array(data), CompressionInfo.create(compression, uncompressedSize));
+
+        return new RawConfig(new ConfigKey<>(name, configId, namespace), defMd5, payload, configMd5, generation,
+                             internalRedeploy, 0, defContent,
+                             vespaVersion.isEmpty() ? Optional.empty() : Optional.of(VespaVersion.fromString(vespaVersion)));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] utf8 = new byte[buffer.getInt()];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+}
@@ -14,7 +14,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -30,6 +32,12 @@ public class MemoryCache {
 
     private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
 
+    /** The keys of configs which are read from disk and not yet replaced by a config from upstream */
+    private final Set<ConfigCacheKey> readFromDisk = ConcurrentHashMap.newKeySet();
+
+    /** Incremented on each change to the content of this */
+    private final AtomicLong changes = new AtomicLong();
+
     public RawConfig get(ConfigCacheKey key) {
         return cache.get(key);
     }
@@ -43,7 +51,57 @@ public class MemoryCache {
         if (config.isError()) return;
 
         log.log(LogLevel.DEBUG, () -> "Putting '" + config + "' into memory cache");
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+        cache.put(key, config);
+        readFromDisk.remove(key);
+        changes.incrementAndGet();
+    }
+
+    /**
+     * Puts all the configs in the given disk cache into this, unless this already has them.
+     * These configs are served until they are replaced by configs from upstream, but not trusted to be current.
+     *
+     * @return the number of configs added
+     */
+    int putAll(DiskCache diskCache) {
+        int added = 0;
+        for (RawConfig config : diskCache.read()) {
+            ConfigCacheKey key = new ConfigCacheKey(config.getKey(), config.getDefMd5());
+            if (cache.putIfAbsent(key, config) == null) {
+                readFromDisk.add(key);
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Removes all configs which do not have one of the given keys, such that configs which are no longer
+     * subscribed to are not kept, and persisted, forever.
+     *
+     * @return the number of configs removed
+     */
+    int retainAll(Set<ConfigCacheKey> keys) {
+        int removed = 0;
+        for (ConfigCacheKey key : cache.keySet()) {
+            if ( ! keys.contains(key) && cache.remove(key) != null) {
+                readFromDisk.remove(key);
+                removed++;
+            }
+        }
+        if (removed > 0)
+            changes.incrementAndGet();
+        return removed;
+    }
+
+    /** Returns whether the config with the given key is read from disk and not yet fetched from upstream */
+    boolean isReadFromDisk(ConfigCacheKey key) {
+        return readFromDisk.contains(key);
+    }
+
+    /** Returns a number which changes each time the content of this changes */
+    long changes() {
+        return changes.get();
     }
 
     boolean containsKey(ConfigCacheKey key) {
@@ -60,6 +118,8 @@ public class MemoryCache {
 
     public void clear() {
         cache.clear();
+        readFromDisk.clear();
+        changes.incrementAndGet();
     }
 
     @Override
@@ -7,6 +7,7 @@ import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -60,4 +61,9 @@ class MemoryCacheConfigClient implements ConfigSourceClient {
         return Collections.singletonList("N/A");
     }
 
+    @Override
+    public Set<ConfigCacheKey> activeSubscriptions() {
+        return Collections.emptySet();
+    }
+
 }
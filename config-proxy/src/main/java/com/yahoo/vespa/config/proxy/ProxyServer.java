@@ -16,6 +16,8 @@ import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 import com.yahoo.vespa.filedistribution.FileDistributionRpcServer;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -61,6 +63,10 @@ public class ProxyServer implements Runnable {
     private final boolean delayedResponseHandling;
     private final FileDownloader fileDownloader;
 
+    /** The file the memory cache is persisted to, or null if it is not persisted */
+    private final DiskCache diskCache;
+    private long persistedCacheChanges = -1;
+
     private volatile Mode mode = new Mode(DEFAULT);
 
     static {
@@ -76,7 +82,7 @@ public class ProxyServer implements Runnable {
     private ProxyServer(Spec spec, DelayedResponses delayedResponses, ConfigSourceSet source,
                         ConfigProxyStatistics statistics, TimingValues timingValues,
                         boolean delayedResponseHandling, MemoryCache memoryCache,
-                        ConfigSourceClient configClient) {
+                        ConfigSourceClient configClient, DiskCache diskCache) {
         this.delayedResponses = delayedResponses;
         this.configSource = source;
         log.log(LogLevel.DEBUG, "Using config source '" + source);
@@ -84,11 +90,20 @@ public class ProxyServer implements Runnable {
         this.timingValues = timingValues;
         this.delayedResponseHandling = delayedResponseHandling;
         this.memoryCache = memoryCache;
+        this.diskCache = diskCache;
+        if (diskCache != null) {
+            int configCount = memoryCache.putAll(diskCache);
+            log.log(LogLevel.INFO, "Read " + configCount + " configs from '" + diskCache.file() +
+                                   "', which will be served until they are fetched from upstream");
+        }
         this.rpcServer = createRpcServer(spec);
         clientUpdater = new ClientUpdater(rpcServer, statistics, delayedResponses);
         this.configClient = createClient(clientUpdater, delayedResponses, source, timingValues, memoryCache, configClient);
         this.fileDownloader = new FileDownloader(new JRTConnectionPool(source));
-        new FileDistributionRpcServer(supervisor, fileDownloader);
+        if (spec == null)
+            new FileDistributionRpcServer(supervisor, fileDownloader);
+        else
+            new FileDistributionRpcServer(supervisor, fileDownloader, spec.port());
     }
 
     static ProxyServer createTestServer(ConfigSourceSet source) {
@@ -102,7 +117,17 @@ public class ProxyServer implements Runnable {
         final boolean delayedResponseHandling = false;
         return new ProxyServer(null, new DelayedResponses(statistics),
                                source, statistics, defaultTimingValues(), delayedResponseHandling,
-                               memoryCache, configSourceClient);
+                               memoryCache, configSourceClient, null);
+    }
+
+    static ProxyServer createTestServer(ConfigSourceSet source,
+                                        ConfigSourceClient configSourceClient,
+                                        MemoryCache memoryCache,
+                                        ConfigProxyStatistics statistics,
+                                        DiskCache diskCache) {
+        return new ProxyServer(null, new DelayedResponses(statistics),
+                               source, statistics, defaultTimingValues(), false,
+                               memoryCache, configSourceClient, diskCache);
     }
 
     public void run() {
@@ -120,6 +145,30 @@ public class ProxyServer implements Runnable {
         } else {
             log.log(LogLevel.INFO, "Running without delayed response handling");
         }
+        if (diskCache != null) {
+            scheduler.scheduleWithFixedDelay(this::persistCache, 60, 60, SECONDS);
+        }
+    }
+
+    /**
+     * Writes the memory cache to disk if it has changed since it was last written.
+     * When in default mode, configs which are no longer subscribed to are evicted first.
+     */
+    synchronized void persistCache() {
+        if (diskCache == null) return;
+        if (mode.isDefault()) {
+            int evicted = memoryCache.retainAll(configClient.activeSubscriptions());
+            if (evicted > 0)
+                log.log(LogLevel.DEBUG, () -> "Evicted " + evicted + " configs which are no longer subscribed to from the memory cache");
+        }
+        long changes = memoryCache.changes();
+        if (changes == persistedCacheChanges) return;
+        try {
+            diskCache.write(memoryCache.values());
+            persistedCacheChanges = changes;
+        } catch (IOException | RuntimeException e) {
+            log.log(LogLevel.WARNING, "Could not write config cache to '" + diskCache.file() + "': " + e.getMessage());
+        }
     }
 
     RawConfig resolveConfig(JRTServerConfigRequest req) {
@@ -213,7 +262,8 @@ public class ProxyServer implements Runnable {
         ConfigSourceSet configSources = new ConfigSourceSet(properties.configSources);
         DelayedResponses delayedResponses = new DelayedResponses(statistics);
         ProxyServer proxyServer = new ProxyServer(new Spec(null, port), delayedResponses, configSources, statistics,
-                                                  defaultTimingValues(), true, new MemoryCache(), null);
+                                                  defaultTimingValues(), true, new MemoryCache(), null,
+                                                  new DiskCache(new File(properties.cacheFile)));
         // catch termination signal
         proxyServer.setupSigTermHandler();
         Thread proxyserverThread = new Thread(proxyServer);
@@ -226,16 +276,19 @@ public class ProxyServer implements Runnable {
         // Read system properties
         long eventInterval = Long.getLong("eventinterval", ConfigProxyStatistics.defaultEventInterval);
         final String[] inputConfigSources = System.getProperty("proxyconfigsources", DEFAULT_PROXY_CONFIG_SOURCES).split(",");
-        return new Properties(eventInterval, inputConfigSources);
+        String cacheFile = System.getProperty("proxycachefile", DiskCache.DEFAULT_FILE);
+        return new Properties(eventInterval, inputConfigSources, cacheFile);
     }
 
     static class Properties {
         final long eventInterval;
         final String[] configSources;
+        final String cacheFile;
 
-        Properties(long eventInterval, String[] configSources) {
+        Properties(long eventInterval, String[] configSources, String cacheFile) {
             this.eventInterval = eventInterval;
             this.configSources = configSources;
+            this.cacheFile = cacheFile;
         }
     }
 
@@ -262,6 +315,7 @@ public class ProxyServer implements Runnable {
         Event.stopping("configproxy", "shutdown");
         if (rpcServer != null) rpcServer.shutdown();
         if (delayedResponseScheduler != null) delayedResponseScheduler.cancel(true);
+        persistCache();
         flush();
         if (statistics != null) {
             statistics.stop();
@@ -125,14 +125,17 @@ class RpcConfigSourceClient implements ConfigSourceClient {
             log.log(LogLevel.DEBUG, () -> "Found config " + configCacheKey + " in cache, generation=" + cachedConfig.getGeneration() +
                     ",configmd5=" + cachedConfig.getConfigMd5());
             log.log(LogLevel.SPAM, () -> "input config=" + input + ",cached config=" + cachedConfig);
-            if (ProxyServer.configOrGenerationHasChanged(cachedConfig, request)) {
+            boolean readFromDisk = memoryCache.isReadFromDisk(configCacheKey);
+            // Configs read from disk may be older than what the client already has
+            if (ProxyServer.configOrGenerationHasChanged(cachedConfig, request) &&
+                ( ! readFromDisk || cachedConfig.getGeneration() >= request.getRequestGeneration())) {
                 log.log(LogLevel.SPAM, () -> "Cached config is not equal to requested, will return it");
                 if (delayedResponses.remove(delayedResponse)) {
                     // unless another thread already did it
                     ret = cachedConfig;
                 }
             }
-            if (!cachedConfig.isError()) {
+            if (!cachedConfig.isError() && ! readFromDisk) {
                 needToGetConfig = false;
             }
         }
@@ -202,4 +205,12 @@ class RpcConfigSourceClient implements ConfigSourceClient {
         }
         return ret;
     }
+
+    @Override
+    public Set<ConfigCacheKey> activeSubscriptions() {
+        synchronized (activeSubscribersLock) {
+            return new HashSet<>(activeSubscribers.keySet());
+        }
+    }
+
 }
@@ -0,0 +1,144 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.vespa.config.ConfigCacheKey;
+import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class DiskCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        RawConfig compressedConfig = new RawConfig(ConfigTester.barConfig.getKey(),
+                                                   ConfigTester.barConfig.getDefMd5(),
+                                                   ConfigTester.barConfig.getPayload().withCompression(CompressionType.LZ4),
+                                                   ConfigTester.barConfig.getConfigMd5(),
+                                                   ConfigTester.barConfig.getGeneration(),
+                                                   true,
+                                                   ConfigTester.barConfig.getDefContent(),
+                                                   ConfigTester.barConfig.getVespaVersion());
+        DiskCache diskCache = new DiskCache(new File(temporaryFolder.getRoot(), "sub/cache.bin"));
+        diskCache.write(Arrays.asList(ConfigTester.fooConfig, compressedConfig, ProxyServerTest.errorConfig));
+
+        List<RawConfig> configs = diskCache.read();
+        assertEquals("Error configs are not written", 2, configs.size());
+        assertEqual(ConfigTester.fooConfig, configs.get(0));
+        assertEqual(compressedConfig, configs.get(1));
+        assertEquals(ConfigTester.barConfig.getPayload().toString(),
+                     configs.get(1).getPayload().withCompression(CompressionType.UNCOMPRESSED).toString());
+    }
+
+    @Test
+    public void testInvalidFilesAreIgnored() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "cache.bin");
+        DiskCache diskCache = new DiskCache(file);
+        assertTrue(diskCache.read().isEmpty());
+
+        diskCache.write(Arrays.asList(ConfigTester.fooConfig));
+        assertEquals(1, diskCache.read().size());
+        try (RandomAccessFile corrupter = new RandomAccessFile(file, "rw")) {
+            corrupter.seek(20);
+            corrupter.write(corrupter.read() + 1);
+        }
+        assertTrue(diskCache.read().isEmpty());
+    }
+
+    @Test
+    public void testFileSizeIsLimited() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "cache.bin");
+        new DiskCache(file).write(Arrays.asList(ConfigTester.fooConfig, ConfigTester.barConfig));
+        long fullSize = file.length();
+
+        DiskCache smallCache = new DiskCache(file, fullSize - 1);
+        assertTrue("Files larger than the max size are not read", smallCache.read().isEmpty());
+        assertEquals("Configs which do not fit are not written",
+                     1, smallCache.write(Arrays.asList(ConfigTester.fooConfig, ConfigTester.barConfig)));
+        assertTrue(file.length() < fullSize);
+        List<RawConfig> configs = smallCache.read();
+        assertEquals(1, configs.size());
+        assertEqual(ConfigTester.fooConfig, configs.get(0));
+    }
+
+    @Test
+    public void testFileCanBeReplacedAfterReading() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "cache.bin");
+        DiskCache diskCache = new DiskCache(file);
+        diskCache.write(Arrays.asList(ConfigTester.fooConfig, ConfigTester.barConfig));
+        List<RawConfig> configs = diskCache.read();
+        assertTrue(file.delete());
+        diskCache.write(Arrays.asList(ConfigTester.barConfig));
+        assertEquals("Configs read are copied out of the file", 2, configs.size());
+        assertEqual(ConfigTester.fooConfig, configs.get(0));
+        assertEquals(1, diskCache.read().size());
+    }
+
+    @Test
+    public void testRetainingSubscribedConfigs() throws IOException {
+        DiskCache diskCache = new DiskCache(new File(temporaryFolder.getRoot(), "cache.bin"));
+        diskCache.write(Arrays.asList(ConfigTester.fooConfig, ConfigTester.barConfig));
+        MemoryCache memoryCache = new MemoryCache();
+        memoryCache.putAll(diskCache);
+        ConfigCacheKey fooKey = new ConfigCacheKey(ConfigTester.fooConfig.getKey(), ConfigTester.fooConfig.getDefMd5());
+        ConfigCacheKey barKey = new ConfigCacheKey(ConfigTester.barConfig.getKey(), ConfigTester.barConfig.getDefMd5());
+
+        long changes = memoryCache.changes();
+        assertEquals(1, memoryCache.retainAll(Collections.singleton(fooKey)));
+        assertTrue(memoryCache.containsKey(fooKey));
+        assertFalse(memoryCache.containsKey(barKey));
+        assertFalse(memoryCache.isReadFromDisk(barKey));
+        assertTrue(changes != memoryCache.changes());
+
+        changes = memoryCache.changes();
+        assertEquals(0, memoryCache.retainAll(Collections.singleton(fooKey)));
+        assertEquals(changes, memoryCache.changes());
+    }
+
+    @Test
+    public void testLoadingIntoMemoryCache() throws IOException {
+        DiskCache diskCache = new DiskCache(new File(temporaryFolder.getRoot(), "cache.bin"));
+        diskCache.write(Arrays.asList(ConfigTester.fooConfig, ConfigTester.barConfig));
+
+        MemoryCache memoryCache = new MemoryCache();
+        memoryCache.put(ConfigTester.barConfig);
+        assertEquals("Only configs not already present are added", 1, memoryCache.putAll(diskCache));
+        ConfigCacheKey fooKey = new ConfigCacheKey(ConfigTester.fooConfig.getKey(), ConfigTester.fooConfig.getDefMd5());
+        ConfigCacheKey barKey = new ConfigCacheKey(ConfigTester.barConfig.getKey(), ConfigTester.barConfig.getDefMd5());
+        assertTrue(memoryCache.isReadFromDisk(fooKey));
+        assertFalse(memoryCache.isReadFromDisk(barKey));
+
+        memoryCache.put(ConfigTester.fooConfig);
+        assertFalse("Replaced from upstream", memoryCache.isReadFromDisk(fooKey));
+    }
+
+    private void assertEqual(RawConfig expected, RawConfig actual) {
+        assertEquals(expected.getKey(), actual.getKey());
+        assertEquals(expected.getDefMd5(), actual.getDefMd5());
+        assertEquals(expected.getConfigMd5(), actual.getConfigMd5());
+        assertEquals(expected.getGeneration(), actual.getGeneration());
+        assertEquals(expected.isInternalRedeploy(), actual.isInternalRedeploy());
+        assertEquals(expected.getDefContent(), actual.getDefContent());
+        assertEquals(expected.getVespaVersion(), actual.getVespaVersion());
+        assertEquals(expected.getPayload(), actual.getPayload());
+    }
+
+}
@@ -1,12 +1,15 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.proxy;
 
+import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequest;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Mock client that always returns with config immediately
@@ -16,6 +19,7 @@ import java.util.List;
 public class MockConfigSourceClient implements ConfigSourceClient{
     private final MockConfigSource configSource;
     private final MemoryCache memoryCache;
+    private final Set<ConfigCacheKey> activeSubscriptions = ConcurrentHashMap.newKeySet();
 
     MockConfigSourceClient(MockConfigSource configSource, MemoryCache memoryCache) {
         this.configSource = configSource;
@@ -26,6 +30,7 @@ public class MockConfigSourceClient implements ConfigSourceClient{
     public RawConfig getConfig(RawConfig input, JRTServerConfigRequest request) {
         final RawConfig config = getConfig(input.getKey());
         memoryCache.put(config);
+        activeSubscriptions.add(new ConfigCacheKey(input.getKey(), input.getDefMd5()));
         return config;
     }
 
@@ -36,6 +41,7 @@ public class MockConfigSourceClient implements ConfigSourceClient{
     @Override
     public void cancel() {
         configSource.clear();
+        activeSubscriptions.clear();
     }
 
     @Override
@@ -51,4 +57,9 @@ public class MockConfigSourceClient implements ConfigSourceClient{
     public List<String> getSourceConnections() {
         return Collections.singletonList("N/A");
     }
+
+    @Override
+    public Set<ConfigCacheKey> activeSubscriptions() {
+        return Collections.unmodifiableSet(activeSubscriptions);
+    }
 }
@@ -11,6 +11,10 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -207,6 +211,27 @@ public class ProxyServerTest {
         assertFalse(clientUpdater.getLastConfig().equals(fooConfig));
     }
 
+    @Test
+    public void testPersistingCacheEvictsConfigsWhichAreNotSubscribedTo() throws IOException {
+        DiskCache diskCache = new DiskCache(new File(temporaryFolder.getRoot(), "cache.bin"));
+        diskCache.write(Arrays.asList(fooConfig, ConfigTester.barConfig));
+        MemoryCache memoryCache = new MemoryCache();
+        ProxyServer proxy = ProxyServer.createTestServer(source, new MockConfigSourceClient(source, memoryCache),
+                                                         memoryCache, statistics, diskCache);
+        try {
+            assertEquals(2, memoryCache.size());
+            assertNotNull(proxy.resolveConfig(new ConfigTester().createRequest(fooConfig)));
+
+            proxy.persistCache();
+            assertEquals(1, memoryCache.size());
+            List<RawConfig> persisted = diskCache.read();
+            assertEquals(1, persisted.size());
+            assertEquals(fooConfig.getKey(), persisted.get(0).getKey());
+        } finally {
+            proxy.stop();
+        }
+    }
+
     @Test
     public void testReadingSystemProperties() {
         ProxyServer.Properties properties = ProxyServer.getSystemProperties();
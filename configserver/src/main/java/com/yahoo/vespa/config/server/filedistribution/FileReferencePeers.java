@@ -0,0 +1,103 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of which nodes have which file references, such that nodes can download file references
+ * from each other, with the config servers as the source of last resort.
+ * Nodes announce the file references they have, with the hash of the content they have for each, and are forgotten
+ * for a reference when they have not announced it for a while. Directories are compressed differently by each
+ * config server, so only peers having the content with the hash the asking node will verify it by are returned.
+ *
+ * This is thread safe.
+ *
+ * @author agent
+ */
+public class FileReferencePeers {
+
+    /** The max number of peers kept for each file reference. The least recently announced are dropped first */
+    static final int maxPeersPerFileReference = 100;
+
+    /** The max number of peers returned for a request */
+    static final int maxPeersReturned = 5;
+
+    static final Duration expiry = Duration.ofDays(1);
+
+    private final Clock clock;
+
+    /** The rpc spec and last announcement of the peers having each file reference, least recently announced first */
+    private final Map<FileReference, LinkedHashMap<String, Announcement>> peers = new HashMap<>();
+
+    public FileReferencePeers(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Registers that the peer at the given rpc spec has the given file references,
+     * where the content of each has the xxhash at the same index in the given hashes
+     */
+    public synchronized void announce(String peerSpec, List<FileReference> fileReferences, long[] xxhashes) {
+        if (fileReferences.size() != xxhashes.length)
+            throw new IllegalArgumentException("Got " + fileReferences.size() + " file references but " + xxhashes.length + " hashes");
+
+        Instant now = clock.instant();
+        for (int i = 0; i < fileReferences.size(); i++) {
+            LinkedHashMap<String, Announcement> peersOfReference = peers.computeIfAbsent(fileReferences.get(i), __ -> new LinkedHashMap<>());
+            peersOfReference.remove(peerSpec); // to move it last
+            peersOfReference.put(peerSpec, new Announcement(now, xxhashes[i]));
+            if (peersOfReference.size() > maxPeersPerFileReference)
+                peersOfReference.remove(peersOfReference.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Returns the rpc specs of some peers having content with the given xxhash for the given file reference,
+     * in random order, or an empty list if no peers are known to have it.
+     */
+    public synchronized List<String> peersOf(FileReference fileReference, long xxhash) {
+        LinkedHashMap<String, Announcement> peersOfReference = peers.get(fileReference);
+        if (peersOfReference == null) return Collections.emptyList();
+
+        Instant oldestValid = clock.instant().minus(expiry);
+        for (Iterator<Announcement> i = peersOfReference.values().iterator(); i.hasNext(); ) {
+            if ( ! i.next().time.isBefore(oldestValid)) break; // the rest are newer
+            i.remove();
+        }
+        if (peersOfReference.isEmpty()) {
+            peers.remove(fileReference);
+            return Collections.emptyList();
+        }
+
+        List<String> specs = new ArrayList<>();
+        for (Map.Entry<String, Announcement> peer : peersOfReference.entrySet())
+            if (peer.getValue().xxhash == xxhash)
+                specs.add(peer.getKey());
+        Collections.shuffle(specs);
+        return specs.subList(0, Math.min(maxPeersReturned, specs.size()));
+    }
+
+    private static class Announcement {
+
+        final Instant time;
+        final long xxhash;
+
+        Announcement(Instant time, long xxhash) {
+            this.time = time;
+            this.xxhash = xxhash;
+        }
+
+    }
+
+}
@@ -6,7 +6,9 @@ import com.yahoo.cloud.config.ConfigserverConfig;
 import com.yahoo.config.FileReference;
 import com.yahoo.config.subscription.ConfigSourceSet;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
@@ -17,16 +19,17 @@ import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.config.JRTConnectionPool;
 import com.yahoo.vespa.config.server.ConfigServerSpec;
 import com.yahoo.vespa.defaults.Defaults;
-import com.yahoo.vespa.filedistribution.CompressedFileReference;
+import com.yahoo.vespa.filedistribution.CompressedFileReferences;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDataBlob;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
-import com.yahoo.vespa.filedistribution.LazyFileReferenceData;
 import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Clock;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -38,9 +41,11 @@ public class FileServer {
     private static final Logger log = Logger.getLogger(FileServer.class.getName());
 
     private final FileDirectory root;
+    private final CompressedFileReferences compressedFileReferences;
     private final ExecutorService pushExecutor;
     private final ExecutorService pullExecutor;
     private final FileDownloader downloader;
+    private final FileReferencePeers peers = new FileReferencePeers(Clock.systemUTC());
 
     private enum FileApiErrorCodes {
         OK(0, "OK"),
@@ -85,6 +90,7 @@ public class FileServer {
     private FileServer(ConnectionPool connectionPool, File rootDir) {
         this.downloader = new FileDownloader(connectionPool);
         this.root = new FileDirectory(rootDir);
+        this.compressedFileReferences = new CompressedFileReferences(new File(rootDir, ".compressed"));
         this.pushExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         this.pullExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
     }
@@ -136,15 +142,33 @@ public class FileServer {
     }
 
     private FileReferenceData readFileReferenceData(FileReference reference) throws IOException {
-        File file = root.getFile(reference);
-
-        if (file.isDirectory()) {
-            //TODO Here we should compress to file, but then we have to clean up too. Pending.
-            byte [] blob = CompressedFileReference.compress(file.getParentFile());
-            return new FileReferenceDataBlob(reference, file.getName(), FileReferenceData.Type.compressed, blob);
-        } else {
-            return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.file, file);
+        return compressedFileReferences.dataOf(reference, root.getFile(reference));
+    }
+
+    /**
+     * Answers the given request with the peers which have the content this serves for the given file reference,
+     * and the xxhash of that content, or no peers if this does not have the file reference
+     */
+    public void servePeers(String fileReference, Request request) {
+        pullExecutor.execute(() -> servePeersInternal(new FileReference(fileReference), request));
+    }
+
+    private void servePeersInternal(FileReference reference, Request request) {
+        List<String> specs = Collections.emptyList();
+        long xxhash = 0;
+        if (hasFile(reference)) {
+            try {
+                xxhash = compressedFileReferences.xxhashOf(reference, root.getFile(reference));
+                specs = peers.peersOf(reference, xxhash);
+            } catch (IOException | IllegalArgumentException e) {
+                log.log(LogLevel.WARNING, "Failed reading file reference '" + reference.value() + "' to find its peers: " +
+                                          Exceptions.toMessageString(e));
+            }
         }
+        request.returnValues()
+                .add(new StringArray(specs.toArray(new String[0])))
+                .add(new Int64Value(xxhash));
+        request.returnRequest();
     }
 
     public void serveFile(String fileReference, boolean downloadFromOtherSourceIfNotFound, Request request, Receiver receiver) {
@@ -191,6 +215,11 @@ public class FileServer {
         return downloader;
     }
 
+    /** Returns the nodes known to have each file reference, which nodes may download file references from */
+    public FileReferencePeers peers() {
+        return peers;
+    }
+
     // Connection pool with all config servers except this one (might be an empty pool if there is only one config server)
     private static ConnectionPool createConnectionPool(ConfigserverConfig configserverConfig) {
         List<String> configServers = ConfigServerSpec.fromConfig(configserverConfig)
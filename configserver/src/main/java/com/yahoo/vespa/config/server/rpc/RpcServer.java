@@ -10,9 +10,7 @@ import com.yahoo.config.provision.HostLivenessTracker;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.config.provision.Version;
 import com.yahoo.jrt.Acceptor;
-import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
-import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.ListenFailedException;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
@@ -41,12 +39,12 @@ import com.yahoo.vespa.config.server.monitoring.MetricUpdaterFactory;
 import com.yahoo.vespa.config.server.tenant.TenantHandlerProvider;
 import com.yahoo.vespa.config.server.tenant.TenantListener;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
+import com.yahoo.vespa.filedistribution.ChunkedFileSender;
 import com.yahoo.vespa.filedistribution.FileDownloader;
-import com.yahoo.vespa.filedistribution.FileReceiver;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceDownloader;
 
-import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -62,6 +60,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -212,6 +211,19 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                                      .methodDesc("set which file references to download")
                                      .paramDesc(0, "file references", "file reference to download")
                                      .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        getSupervisor().addMethod(new Method(FileReferenceDownloader.ANNOUNCE_METHOD, "sSL", "i",
+                                        this, "announceFileReferences")
+                                     .methodDesc("announce that a node has file references which it can serve to other nodes")
+                                     .paramDesc(0, "spec", "rpc spec of the node serving the file references")
+                                     .paramDesc(1, "file references", "file references the node has")
+                                     .paramDesc(2, "xxhashes", "xxhash of the content the node has for each file reference")
+                                     .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        getSupervisor().addMethod(new Method(FileReferenceDownloader.GET_PEERS_METHOD, "s", "Sl",
+                                        this, "getFileReferencePeers")
+                                     .methodDesc("get nodes which have announced that they have the content this has for a file reference")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .returnDesc(0, "specs", "rpc specs of nodes having the file reference, in random order")
+                                     .returnDesc(1, "xxhash", "xxhash of the content, which nodes must verify content from peers by"));
     }
 
     /**
@@ -434,93 +446,19 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
     }
 
     class ChunkedFileReceiver implements FileServer.Receiver {
-        Target target;
+        private final ChunkedFileSender sender;
         ChunkedFileReceiver(Target target) {
-            this.target = target;
+            this.sender = new ChunkedFileSender(target);
         }
 
         @Override
         public String toString() {
-            return target.toString();
+            return sender.toString();
         }
 
         @Override
         public void receive(FileReferenceData fileData, FileServer.ReplayStatus status) {
-            int session = sendMeta(fileData);
-            sendParts(session, fileData);
-            sendEof(session, fileData, status);
-        }
-        private void sendParts(int session, FileReferenceData fileData) {
-            ByteBuffer bb = ByteBuffer.allocate(0x100000);
-            for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
-                byte [] buf = bb.array();
-                if (buf.length != bb.position()) {
-                    buf = new byte [bb.position()];
-                    bb.flip();
-                    bb.get(buf);
-                }
-                sendPart(session, fileData.fileReference(), partId, buf);
-                bb.clear();
-            }
-        }
-        private int sendMeta(FileReferenceData fileData) {
-            Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new StringValue(fileData.filename()));
-            request.parameters().add(new StringValue(fileData.type().name()));
-            request.parameters().add(new Int64Value(fileData.size()));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                log.warning("Failed delivering meta for reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
-                        target.toString() + " with error: '" + request.errorMessage() + "'.");
-                return 1;
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-                return request.returnValues().get(1).asInt32();
-            }
-        }
-        private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
-            Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
-            request.parameters().add(new StringValue(ref.value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int32Value(partId));
-            request.parameters().add(new DataValue(buf));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering reference '" + ref.value() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
-        }
-        private void sendEof(int session, FileReferenceData fileData, FileServer.ReplayStatus status) {
-            Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int64Value(fileData.xxhash()));
-            request.parameters().add(new Int32Value(status.getCode()));
-            request.parameters().add(new StringValue(status.getDescription()));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
-        }
-
-        private void invokeRpcIfValidConnection(Request request) {
-            if (target.isValid()) {
-                target.invokeSync(request, 600);
-            } else {
-                throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
-            }
+            sender.send(fileData, status.getCode(), status.getDescription());
         }
     }
 
@@ -540,4 +478,24 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                         new FileReferenceDownload(fileReference, false /* downloadFromOtherSourceIfNotFound */)));
         req.returnValues().add(new Int32Value(0));
     }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void announceFileReferences(Request req) {
+        String peerSpec = req.parameters().get(0).asString();
+        List<FileReference> fileReferences = Stream.of(req.parameters().get(1).asStringArray())
+                .map(FileReference::new)
+                .collect(Collectors.toList());
+        try {
+            fileServer.peers().announce(peerSpec, fileReferences, req.parameters().get(2).asInt64Array());
+            req.returnValues().add(new Int32Value(0));
+        } catch (IllegalArgumentException e) {
+            req.returnValues().add(new Int32Value(1));
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void getFileReferencePeers(Request req) {
+        req.detach();
+        fileServer.servePeers(req.parameters().get(0).asString(), req);
+    }
 }
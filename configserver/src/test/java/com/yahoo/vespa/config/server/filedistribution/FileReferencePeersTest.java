@@ -0,0 +1,79 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class FileReferencePeersTest {
+
+    private final FileReference foo = new FileReference("foo");
+    private final FileReference bar = new FileReference("bar");
+
+    @Test
+    public void requireThatAnnouncedPeersAreReturned() {
+        FileReferencePeers peers = new FileReferencePeers(new ManualClock());
+        assertTrue(peers.peersOf(foo, 1).isEmpty());
+
+        peers.announce("tcp/host1:19090", Arrays.asList(foo, bar), new long[] { 1, 2 });
+        peers.announce("tcp/host2:19090", Collections.singletonList(foo), new long[] { 1 });
+        peers.announce("tcp/host2:19090", Collections.singletonList(foo), new long[] { 1 });
+        assertEquals(new HashSet<>(Arrays.asList("tcp/host1:19090", "tcp/host2:19090")), new HashSet<>(peers.peersOf(foo, 1)));
+        assertEquals(Collections.singletonList("tcp/host1:19090"), peers.peersOf(bar, 2));
+    }
+
+    @Test
+    public void requireThatOnlyPeersWithTheGivenContentAreReturned() {
+        FileReferencePeers peers = new FileReferencePeers(new ManualClock());
+        peers.announce("tcp/host1:19090", Collections.singletonList(foo), new long[] { 1 });
+        peers.announce("tcp/host2:19090", Collections.singletonList(foo), new long[] { 2 });
+        assertEquals(Collections.singletonList("tcp/host1:19090"), peers.peersOf(foo, 1));
+        assertEquals(Collections.singletonList("tcp/host2:19090"), peers.peersOf(foo, 2));
+        assertTrue(peers.peersOf(foo, 3).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatEachFileReferenceHasAHash() {
+        new FileReferencePeers(new ManualClock()).announce("tcp/host1:19090", Arrays.asList(foo, bar), new long[] { 1 });
+    }
+
+    @Test
+    public void requireThatPeersExpireUnlessAnnouncedAgain() {
+        ManualClock clock = new ManualClock();
+        FileReferencePeers peers = new FileReferencePeers(clock);
+        peers.announce("tcp/host1:19090", Collections.singletonList(foo), new long[] { 1 });
+        peers.announce("tcp/host2:19090", Collections.singletonList(foo), new long[] { 1 });
+
+        clock.advance(FileReferencePeers.expiry.minus(Duration.ofMinutes(1)));
+        peers.announce("tcp/host1:19090", Collections.singletonList(foo), new long[] { 1 });
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(Collections.singletonList("tcp/host1:19090"), peers.peersOf(foo, 1));
+
+        clock.advance(FileReferencePeers.expiry);
+        assertTrue(peers.peersOf(foo, 1).isEmpty());
+    }
+
+    @Test
+    public void requireThatPeersAreBounded() {
+        FileReferencePeers peers = new FileReferencePeers(new ManualClock());
+        for (int i = 0; i < FileReferencePeers.maxPeersPerFileReference + 10; i++)
+            peers.announce("tcp/host" + i + ":19090", Collections.singletonList(foo), new long[] { 1 });
+        assertEquals(FileReferencePeers.maxPeersReturned, peers.peersOf(foo, 1).size());
+
+        // Only the most recently announced are kept
+        for (int i = 0; i < 100; i++)
+            assertTrue(peers.peersOf(foo, 1).stream().noneMatch(spec -> spec.matches("tcp/host[0-9]:19090")));
+    }
+
+}
@@ -103,7 +103,7 @@ public final class GaugeMetric extends MetricValue {
         return count;
     }
 
-    /** Returns the 95th percentile value for this time interval */
+    /** Returns the percentiles of this in the time interval, as (percentile name, value) pairs, if recorded */
     public Optional<List<Tuple2<String, Double>>> getPercentiles() {
         return percentiles;
     }
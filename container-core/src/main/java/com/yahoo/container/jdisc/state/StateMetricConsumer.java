@@ -7,14 +7,22 @@ import com.yahoo.jdisc.application.MetricConsumer;
 import java.util.Map;
 
 /**
+ * A consumer of the metrics of a single thread: jDisc hands out one instance per thread,
+ * so the lock here is only contended by taking a snapshot, which merges the consumers.
+ *
  * @author Simon Thoresen Hult
  */
 final class StateMetricConsumer implements MetricConsumer {
 
     final static Metric.Context NULL_CONTEXT = StateMetricContext.newInstance(null);
     private final Object lock = new Object();
+    private final StateMetricContext.Interner contexts;
     private MetricSnapshot metricSnapshot = new MetricSnapshot();
 
+    StateMetricConsumer(StateMetricContext.Interner contexts) {
+        this.contexts = contexts;
+    }
+
     @Override
     public void set(String key, Number val, Metric.Context ctx) {
         synchronized (lock) {
@@ -35,7 +43,7 @@ final class StateMetricConsumer implements MetricConsumer {
 
     @Override
     public Metric.Context createContext(Map<String, ?> properties) {
-        return StateMetricContext.newInstance(properties);
+        return contexts.intern(properties);
     }
 
     MetricSnapshot createSnapshot() {
@@ -7,6 +7,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A context implementation whose identity is the key and values such that this can be used as
@@ -54,4 +56,38 @@ public final class StateMetricContext implements MetricDimensions, Metric.Contex
         return new StateMetricContext(data);
     }
 
+    /**
+     * Returns the same context instance for equal properties, such that contexts are not recreated
+     * for each metric update, and snapshot lookups mostly hit on identity. The properties are looked up as given,
+     * so their values are only converted to strings when a new context is created.
+     * Each state monitor owns an instance of this, which only keeps the contexts in use in its last snapshot.
+     */
+    static final class Interner {
+
+        /** The max number of distinct instances to intern, to bound memory if dimension values are unbounded */
+        static final int MAX_INTERNED_INSTANCES = 10000;
+
+        private final Map<Map<String, ?>, StateMetricContext> instances = new ConcurrentHashMap<>();
+
+        StateMetricContext intern(Map<String, ?> properties) {
+            if (properties == null)
+                properties = Collections.emptyMap();
+            StateMetricContext instance = instances.get(properties);
+            if (instance != null) return instance;
+
+            instance = newInstance(properties);
+            if (instances.size() >= MAX_INTERNED_INSTANCES) return instance;
+            StateMetricContext existing = instances.putIfAbsent(new HashMap<>(properties), instance);
+            return existing != null ? existing : instance;
+        }
+
+        /** Removes all the contexts which are not among the given dimensions */
+        void retainAll(Set<MetricDimensions> dimensions) {
+            instances.values().removeIf(context -> ! dimensions.contains(context));
+        }
+
+        int size() { return instances.size(); }
+
+    }
+
 }
@@ -8,7 +8,9 @@ import com.yahoo.jdisc.Timer;
 import com.yahoo.jdisc.application.MetricConsumer;
 import com.yahoo.log.LogLevel;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadFactory;
@@ -29,6 +31,7 @@ public class StateMonitor extends AbstractComponent {
     public enum Status {up, down, initializing};
 
     private final CopyOnWriteArrayList<StateMetricConsumer> consumers = new CopyOnWriteArrayList<>();
+    private final StateMetricContext.Interner contexts = new StateMetricContext.Interner();
     private final Thread thread;
     private final Timer timer;
     private final long snapshotIntervalMs;
@@ -57,7 +60,7 @@ public class StateMonitor extends AbstractComponent {
 
     /** Returns a metric consumer for jDisc which will write metrics back to this */
     public MetricConsumer newMetricConsumer() {
-        StateMetricConsumer consumer = new StateMetricConsumer();
+        StateMetricConsumer consumer = new StateMetricConsumer(contexts);
         consumers.add(consumer);
         return consumer;
     }
@@ -107,9 +110,23 @@ public class StateMonitor extends AbstractComponent {
             snapshot.add(consumer.createSnapshot());
         }
         updateNames(snapshot);
+        contexts.retainAll(dimensionsOf(snapshot));
         return snapshot;
     }
 
+    private static Set<MetricDimensions> dimensionsOf(MetricSnapshot snapshot) {
+        Set<MetricDimensions> dimensions = new HashSet<>();
+        for (Map.Entry<MetricDimensions, MetricSet> dimensionAndMetric : snapshot) {
+            dimensions.add(dimensionAndMetric.getKey());
+        }
+        return dimensions;
+    }
+
+    /** NOTE: For unit testing only */
+    int internedContexts() {
+        return contexts.size();
+    }
+
     private void updateNames(MetricSnapshot current) {
         TreeSet<String> seen = new TreeSet<>();
         for (Map.Entry<MetricDimensions, MetricSet> dimensionAndMetric : current) {
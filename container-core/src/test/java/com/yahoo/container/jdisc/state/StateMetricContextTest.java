@@ -0,0 +1,104 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.jdisc.state;
+
+import com.yahoo.container.jdisc.config.HealthMonitorConfig;
+import com.yahoo.jdisc.Metric;
+import com.yahoo.jdisc.application.MetricConsumer;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+/**
+ * @author agent
+ */
+public class StateMetricContextTest {
+
+    @Test
+    public void testInterning() {
+        StateMetricContext.Interner contexts = new StateMetricContext.Interner();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("chain", "default");
+        properties.put("count", 3);
+        StateMetricContext context = contexts.intern(properties);
+
+        Map<String, Object> equalProperties = new HashMap<>();
+        equalProperties.put("count", 3);
+        equalProperties.put("chain", "default");
+        assertSame(context, contexts.intern(equalProperties));
+
+        properties.put("chain", "other");
+        StateMetricContext otherContext = contexts.intern(properties);
+        assertNotEquals(context, otherContext);
+        assertEquals("default", dimension("chain", context));
+        assertEquals("other", dimension("chain", otherContext));
+        assertSame("Changing the properties does not change the interned ones", context, contexts.intern(equalProperties));
+
+        assertSame(contexts.intern(null), contexts.intern(Collections.emptyMap()));
+        assertNotEquals(contexts.intern(Collections.singletonMap("chain", null)),
+                        contexts.intern(Collections.singletonMap("other", null)));
+    }
+
+    @Test
+    public void testPropertiesWithEqualStringValuesCreateEqualContexts() {
+        StateMetricContext.Interner contexts = new StateMetricContext.Interner();
+        StateMetricContext number = contexts.intern(Collections.singletonMap("count", 3));
+        StateMetricContext string = contexts.intern(Collections.singletonMap("count", "3"));
+        assertEquals(number, string);
+        assertEquals(number.hashCode(), string.hashCode());
+    }
+
+    @Test
+    public void testInternersAreIndependent() {
+        Map<String, String> properties = Collections.singletonMap("chain", "default");
+        assertNotSame(new StateMetricContext.Interner().intern(properties),
+                      new StateMetricContext.Interner().intern(properties));
+    }
+
+    @Test
+    public void testInterningIsBounded() {
+        StateMetricContext.Interner contexts = new StateMetricContext.Interner();
+        for (int i = 0; i < StateMetricContext.Interner.MAX_INTERNED_INSTANCES + 10; i++)
+            contexts.intern(Collections.singletonMap("id", i));
+        assertEquals(StateMetricContext.Interner.MAX_INTERNED_INSTANCES, contexts.size());
+        assertEquals(StateMetricContext.newInstance(Collections.singletonMap("id", "-1")),
+                     contexts.intern(Collections.singletonMap("id", -1)));
+    }
+
+    @Test
+    public void testSnapshotsRemoveUnusedContexts() {
+        AtomicLong currentTimeMillis = new AtomicLong(0);
+        StateMonitor monitor = new StateMonitor(new HealthMonitorConfig(new HealthMonitorConfig.Builder().snapshot_interval(1)),
+                                                currentTimeMillis::get,
+                                                ignored -> mock(Thread.class));
+        MetricConsumer consumer = monitor.newMetricConsumer();
+        Metric.Context used = consumer.createContext(Collections.singletonMap("chain", "used"));
+        consumer.createContext(Collections.singletonMap("chain", "unused"));
+        consumer.add("count", 1, used);
+        assertEquals(2, monitor.internedContexts());
+
+        currentTimeMillis.addAndGet(1000);
+        monitor.checkTime();
+        assertEquals(1, monitor.internedContexts());
+        assertSame(used, consumer.createContext(Collections.singletonMap("chain", "used")));
+
+        currentTimeMillis.addAndGet(1000);
+        monitor.checkTime();
+        assertEquals(0, monitor.internedContexts());
+    }
+
+    private String dimension(String name, StateMetricContext context) {
+        for (Map.Entry<String, String> dimension : context)
+            if (dimension.getKey().equals(name)) return dimension.getValue();
+        return null;
+    }
+
+}
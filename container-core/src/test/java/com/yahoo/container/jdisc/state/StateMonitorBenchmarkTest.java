@@ -73,6 +73,7 @@ public class StateMonitorBenchmarkTest {
             Metric.Context ctx = metric.createContext(Collections.<String, Object>emptyMap());
             for (int i = 0; i < NUM_UPDATES; ++i) {
                 metric.add("foo", 69L, ctx);
+                metric.add("bar", 69L, metric.createContext(Collections.singletonMap("chain", "chain" + (i % 10))));
             }
             return true;
         }
@@ -58,8 +58,11 @@ public class FastHit extends Hit {
      * is to reduce garbage collection and decoding cost, with the assumption
      * that most fields passes through the container with no processing most
      * of the time.
+     *
+     * This is the immutable empty list until a summary is added, as most hits
+     * in large result sets are never filled.
      */
-    private List<SummaryData> summaries = new ArrayList<>(1);
+    private List<SummaryData> summaries = Collections.emptyList();
 
     /** Removed field values, which should therefore not be returned if present in summary data */
     private Set<String> removedFields = null;
@@ -165,6 +168,8 @@ public class FastHit extends Hit {
     public void addSummary(DocsumDefinition docsumDef, Inspector value) {
         if (removedFields != null)
             removedFields.removeAll(docsumDef.fieldNames());
+        if (summaries.isEmpty())
+            summaries = new ArrayList<>(1);
         summaries.add(0, new SummaryData(this, docsumDef, value, 1 + summaries.size()));
     }
 
@@ -269,7 +274,7 @@ public class FastHit extends Hit {
     /** Removes all fields of this */
     @Override
     public void clearFields() {
-        summaries.clear();
+        summaries = Collections.emptyList();
         if (removedFields != null)
             removedFields = null;
         super.clearFields();
@@ -19,6 +19,7 @@ import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.dispatch.CloseableChannel;
 import com.yahoo.search.dispatch.Dispatcher;
+import com.yahoo.search.dispatch.FilledHitsListener;
 import com.yahoo.search.dispatch.SearchCluster;
 import com.yahoo.search.grouping.GroupingRequest;
 import com.yahoo.search.grouping.request.GroupingOperation;
@@ -249,7 +250,8 @@ public class FastSearcher extends VespaBackEndSearcher {
 
             CompressionType compression =
                 CompressionType.valueOf(query.properties().getString(dispatchCompression, "LZ4").toUpperCase());
-            dispatcher.fill(result, summaryClass, getDocumentDatabase(query), compression);
+            dispatcher.fill(result, summaryClass, getDocumentDatabase(query), compression,
+                            FilledHitsListener.of(query).orElse(null));
             return;
         }
 
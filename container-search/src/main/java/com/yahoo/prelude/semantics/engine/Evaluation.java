@@ -96,6 +96,9 @@ public class Evaluation {
 
     public Query getQuery() { return query; }
 
+    /** Returns the query items flattened as of the last reset */
+    List<FlattenedItem> items() { return flattenedItems; }
+
     /** Set to true to enable stemmed matches. True by default */
     public void setStemming(boolean stemming) { this.stemming=stemming; }
 
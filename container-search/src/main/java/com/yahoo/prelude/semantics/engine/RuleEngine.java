@@ -7,7 +7,9 @@ import com.yahoo.prelude.semantics.RuleBase;
 import com.yahoo.prelude.semantics.RuleBaseException;
 import com.yahoo.prelude.semantics.rule.ProductionRule;
 
+import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
 
 /**
  * Evaluates the rules of a rule base. This method is thread safe on analyze calls, but
@@ -19,10 +21,21 @@ public class RuleEngine {
 
     private RuleBase rules;
 
+    /** The index of the rules of the rule base by required terms, or null if not initialized */
+    private volatile RuleIndex index=null;
+
     public RuleEngine(RuleBase rules) {
         this.rules=rules;
     }
 
+    /**
+     * Indexes the rules of the rule base such that only rules which may match a query are evaluated.
+     * Call this when the rule base is initialized, before any rule evaluation starts.
+     */
+    public void initialize() {
+        index=new RuleIndex(rules.rules());
+    }
+
     /**
      * Evaluates a rule base over a query
      *
@@ -32,19 +45,31 @@ public class RuleEngine {
      *         If there is an error, this query is destroyed (unusable)
      */
     public String evaluate(Query query,int traceLevel) {
-        // TODO: This is O(query size*rule base size). We'll eventually need to create indices
-        //       on rules to look up rule candidates per term to make it O(query size) instead
-        //       Probably create indices on the first term like Prolog implementations use to
-
         boolean matchedAnything=false;
         Evaluation evaluation=new Evaluation(query,traceLevel);
         evaluation.setStemming(rules.getStemming());
         evaluation.trace(2,"Evaluating query '" + evaluation.getQuery().getModel().getQueryTree().getRoot() + "':");
-        for (ListIterator<ProductionRule> i=rules.ruleIterator(); i.hasNext(); ) {
-            evaluation.reset();
-            ProductionRule rule=i.next();
-            boolean matched=matchRuleAtAllStartPoints(evaluation,rule);
-            matchedAnything|=matched;
+        RuleIndex index=this.index;
+        List<ProductionRule> ruleList=rules.rules();
+        if (index==null || index.ruleCount()!=ruleList.size()) { // Not indexed: Try all the rules
+            for (ListIterator<ProductionRule> i=rules.ruleIterator(); i.hasNext(); ) {
+                evaluation.reset();
+                ProductionRule rule=i.next();
+                boolean matched=matchRuleAtAllStartPoints(evaluation,rule);
+                matchedAnything|=matched;
+            }
+        }
+        else { // Try only the rules which may match the terms currently in the query
+            Set<String> terms=RuleIndex.termsOf(evaluation.items(),evaluation.getStemming());
+            for (int i=index.nextCandidate(-1,terms); i>=0; i=index.nextCandidate(i,terms)) {
+                evaluation.reset();
+                boolean matched=matchRuleAtAllStartPoints(evaluation,ruleList.get(i));
+                if (matched) { // the production may have added terms
+                    evaluation.reset();
+                    terms=RuleIndex.termsOf(evaluation.items(),evaluation.getStemming());
+                }
+                matchedAnything|=matched;
+            }
         }
 
         if (!matchedAnything) return null;
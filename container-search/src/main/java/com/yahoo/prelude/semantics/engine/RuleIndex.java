@@ -0,0 +1,105 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.engine;
+
+import com.yahoo.prelude.semantics.rule.Condition;
+import com.yahoo.prelude.semantics.rule.ProductionRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the rules of a rule base by the terms which must be present in a query for each rule to match.
+ * This is used to evaluate only the rules which may match a query instead of all the rules of the rule base.
+ * Rules which have no known required terms are always candidates. This is immutable.
+ *
+ * @author agent
+ */
+class RuleIndex {
+
+    /** The number of rules indexed */
+    private final int ruleCount;
+
+    /** The ascending positions of the rules which requires each term */
+    private final Map<String, int[]> rulesByTerm;
+
+    /** The ascending positions of the rules which cannot be indexed */
+    private final int[] unindexedRules;
+
+    RuleIndex(List<ProductionRule> rules) {
+        Map<String, List<Integer>> rulesByTermBuilder = new HashMap<>();
+        List<Integer> unindexedRulesBuilder = new ArrayList<>();
+        for (int i = 0; i < rules.size(); i++) {
+            Condition condition = rules.get(i).getCondition();
+            Set<String> requiredTerms = condition == null ? null : condition.requiredTerms();
+            if (requiredTerms == null || requiredTerms.isEmpty()) {
+                unindexedRulesBuilder.add(i);
+                continue;
+            }
+            for (String term : requiredTerms)
+                rulesByTermBuilder.computeIfAbsent(term, __ -> new ArrayList<>()).add(i);
+        }
+
+        this.ruleCount = rules.size();
+        this.rulesByTerm = new HashMap<>(rulesByTermBuilder.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : rulesByTermBuilder.entrySet())
+            rulesByTerm.put(entry.getKey(), toArray(entry.getValue()));
+        this.unindexedRules = toArray(unindexedRulesBuilder);
+    }
+
+    /** Returns the number of rules in this index */
+    int ruleCount() { return ruleCount; }
+
+    /**
+     * Returns the position of the first rule after the given position which may match
+     * a query containing the given terms, or -1 if there are no more such rules.
+     */
+    int nextCandidate(int after, Set<String> terms) {
+        int next = firstAfter(after, unindexedRules);
+        for (String term : terms) {
+            int[] rules = rulesByTerm.get(term);
+            if (rules == null) continue;
+            int candidate = firstAfter(after, rules);
+            if (candidate >= 0 && (next < 0 || candidate < next))
+                next = candidate;
+        }
+        return next;
+    }
+
+    /**
+     * Returns the values of the given query items, including the variants
+     * a term condition will also match if stemming is enabled (see TermCondition)
+     */
+    static Set<String> termsOf(List<FlattenedItem> items, boolean stemming) {
+        Set<String> terms = new HashSet<>();
+        for (FlattenedItem item : items) {
+            String term = item.getItem().stringValue();
+            terms.add(term);
+            if (stemming && term.length() >= 3) {
+                terms.add(term + "s");
+                if (term.endsWith("s"))
+                    terms.add(term.substring(0, term.length() - 1));
+            }
+        }
+        return terms;
+    }
+
+    private static int firstAfter(int after, int[] ascending) {
+        int index = Arrays.binarySearch(ascending, after + 1);
+        if (index < 0)
+            index = -index - 1;
+        return index < ascending.length ? ascending[index] : -1;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+            array[i] = list.get(i);
+        return array;
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.prelude.semantics.rule;
 
 import java.util.Iterator;
+import java.util.Set;
 
 import com.yahoo.prelude.semantics.engine.Choicepoint;
 import com.yahoo.prelude.semantics.engine.RuleEvaluation;
@@ -27,6 +28,11 @@ public class AndCondition extends CompositeCondition {
         return matches;
     }
 
+    @Override
+    public Set<String> requiredTerms() {
+        return requiredTermsOfAnySubcondition();
+    }
+
     protected boolean useParentheses() {
         return (getParent()!=null
                 && ! (getParent() instanceof ChoiceCondition));
@@ -4,6 +4,7 @@ package com.yahoo.prelude.semantics.rule;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import com.yahoo.prelude.semantics.engine.Choicepoint;
 import com.yahoo.prelude.semantics.engine.RuleEvaluation;
@@ -52,6 +53,11 @@ public class ComparisonCondition extends CompositeCondition {
         }
     }
 
+    @Override
+    public Set<String> requiredTerms() {
+        return requiredTermsOfAnySubcondition();
+    }
+
     protected void traceResult(boolean matches,RuleEvaluation e) {
         // Uses our own logging method instead
     }
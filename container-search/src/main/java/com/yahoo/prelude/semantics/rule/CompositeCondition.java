@@ -1,8 +1,10 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.prelude.semantics.rule;
 
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import com.yahoo.prelude.semantics.RuleBase;
 import com.yahoo.prelude.semantics.engine.RuleEvaluation;
@@ -113,6 +115,37 @@ public abstract class CompositeCondition extends Condition {
         return buffer.toString();
     }
 
+    /**
+     * Returns the smallest set of required terms of any of the subconditions of this, or null if none is known.
+     * This is the required terms of a composite which only matches if all its subconditions does.
+     */
+    protected final Set<String> requiredTermsOfAnySubcondition() {
+        if (getNameSpace()!=null) return null;
+        Set<String> smallest=null;
+        for (Iterator<Condition> i=conditionIterator(); i.hasNext(); ) {
+            Set<String> terms=i.next().requiredTerms();
+            if (terms!=null && (smallest==null || terms.size()<smallest.size()))
+                smallest=terms;
+        }
+        return smallest;
+    }
+
+    /**
+     * Returns the union of the required terms of all the subconditions of this, or null if any of them is unknown.
+     * This is the required terms of a composite which matches if any of its subconditions does.
+     */
+    protected final Set<String> requiredTermsOfAllSubconditions() {
+        if (getNameSpace()!=null) return null;
+        if (conditionSize()==0) return null;
+        Set<String> union=new HashSet<>();
+        for (Iterator<Condition> i=conditionIterator(); i.hasNext(); ) {
+            Set<String> terms=i.next().requiredTerms();
+            if (terms==null) return null;
+            union.addAll(terms);
+        }
+        return union;
+    }
+
     /** Returns whether all the conditions of this matches the current evaluation state */
     protected final boolean allSubConditionsMatches(RuleEvaluation e) {
         for (Iterator<Condition> i=conditionIterator(); i.hasNext(); ) {
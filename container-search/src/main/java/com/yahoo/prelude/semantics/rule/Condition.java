@@ -6,6 +6,8 @@ import com.yahoo.prelude.semantics.RuleBase;
 import com.yahoo.prelude.semantics.engine.FlattenedItem;
 import com.yahoo.prelude.semantics.engine.RuleEvaluation;
 
+import java.util.Set;
+
 /**
  * Superclass of all kinds of conditions of production rules
  *
@@ -211,6 +213,15 @@ public abstract class Condition {
     /** Override if references needs to be set in this condition of its children */
     public void makeReferences(RuleBase rules) { }
 
+    /**
+     * Returns a set of query term values of which at least one must be present in the query
+     * for this condition to match, or null if no such set is known for this condition.
+     * This is used to avoid evaluating rules which cannot match a given query.
+     * This default implementation returns null, which is always safe.
+     * Must only be called after references are made.
+     */
+    public Set<String> requiredTerms() { return null; }
+
     protected String getLabelString() {
         if (label==null) return "";
         return label + ":";
@@ -12,6 +12,7 @@ import com.yahoo.prelude.semantics.engine.RuleEvaluation;
 import com.yahoo.protect.Validator;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A reference to a named condition
@@ -35,6 +36,9 @@ public class ConditionReference extends Condition {
      */
     private boolean automataLookup=false;
 
+    /** True while the required terms of this are being resolved, to stop recursive references */
+    private boolean resolvingRequiredTerms=false;
+
     public ConditionReference(String conditionName) {
         this(null,conditionName);
     }
@@ -114,6 +118,18 @@ public class ConditionReference extends Condition {
         return namedCondition.getCondition().hasOpenChoicepoint(e);
     }
 
+    @Override
+    public Set<String> requiredTerms() {
+        if (namedCondition==null || resolvingRequiredTerms) return null; // Automata lookup or recursive reference
+        try {
+            resolvingRequiredTerms=true;
+            return namedCondition.getCondition().requiredTerms();
+        }
+        finally {
+            resolvingRequiredTerms=false;
+        }
+    }
+
     protected boolean isDefaultContextName() {
         return getContextName()==null || getContextName().equals(conditionName);
     }
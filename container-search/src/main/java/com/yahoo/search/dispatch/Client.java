@@ -27,17 +27,22 @@ interface Client {
         private Optional<GetDocsumsResponse> response;
         private Optional<String> error;
 
+        /** The hits of the request this is a response to */
+        private final List<FastHit> hitsContext;
+
         public static GetDocsumsResponseOrError fromResponse(GetDocsumsResponse response) {
-            return new GetDocsumsResponseOrError(Optional.of(response), Optional.empty());
+            return new GetDocsumsResponseOrError(Optional.of(response), Optional.empty(), response.hitsContext());
         }
 
-        public static GetDocsumsResponseOrError fromError(String error) {
-            return new GetDocsumsResponseOrError(Optional.empty(), Optional.of(error));
+        public static GetDocsumsResponseOrError fromError(String error, List<FastHit> hitsContext) {
+            return new GetDocsumsResponseOrError(Optional.empty(), Optional.of(error), hitsContext);
         }
 
-        private GetDocsumsResponseOrError(Optional<GetDocsumsResponse> response, Optional<String> error) {
+        private GetDocsumsResponseOrError(Optional<GetDocsumsResponse> response, Optional<String> error,
+                                          List<FastHit> hitsContext) {
             this.response = response;
             this.error = error;
+            this.hitsContext = hitsContext;
         }
 
         /** Returns the response, or empty if there is an error */
@@ -46,6 +51,9 @@ interface Client {
         /** Returns the error or empty if there is a response */
         public Optional<String> error() { return error; }
 
+        /** Returns the hits of the request this is a response to */
+        public List<FastHit> hitsContext() { return hitsContext; }
+
     }
 
     class GetDocsumsResponse {
@@ -27,11 +27,15 @@ import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Slime;
 import com.yahoo.vespa.config.search.DispatchConfig;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -93,13 +97,26 @@ public class Dispatcher extends AbstractComponent {
 
     /** Fills the given summary class by sending RPC requests to the right search nodes */
     public void fill(Result result, String summaryClass, DocumentDatabase documentDb, CompressionType compression) {
+        fill(result, summaryClass, documentDb, compression, null);
+    }
+
+    /**
+     * Fills the given summary class by sending RPC requests to the right search nodes,
+     * and passes each hit to the given listener as soon as it and all the hits ranked before it are filled.
+     * This allows the first hits to be rendered without waiting for the slowest node.
+     *
+     * @param listener receives the hits of the result in ranked order as they are filled, or null to not do this
+     */
+    public void fill(Result result, String summaryClass, DocumentDatabase documentDb, CompressionType compression,
+                     FilledHitsListener listener) {
+        GetDocsumsResponseReceiver responseReceiver = null;
         try {
             ListMap<Integer, FastHit> hitsByNode = hitsByNode(result);
 
             if (result.getQuery().getTraceLevel() >=3)
                 result.getQuery().trace("Sending " + hitsByNode.size() + " summary fetch RPC requests", 3);
 
-            GetDocsumsResponseReceiver responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result);
+            responseReceiver = new GetDocsumsResponseReceiver(hitsByNode.size(), compressor, result, listener);
             for (Map.Entry<Integer, List<FastHit>> nodeHits : hitsByNode.entrySet()) {
                 sendGetDocsumsRequest(nodeHits.getKey(), nodeHits.getValue(), summaryClass, compression, result, responseReceiver);
             }
@@ -110,6 +127,10 @@ public class Dispatcher extends AbstractComponent {
         catch (TimeoutException e) {
             result.hits().addError(ErrorMessage.createTimeout("Summary data is incomplete: " + e.getMessage()));
         }
+        finally {
+            if (responseReceiver != null)
+                responseReceiver.passRemainingHits();
+        }
     }
 
     /** Return a map of hits by their search node (partition) id */
@@ -187,11 +208,40 @@ public class Dispatcher extends AbstractComponent {
         /** The number of responses we should receive (and process) before this is complete */
         private int outstandingResponses;
 
+        /** Receives hits in ranked order as they are filled, or null if not requested */
+        private final FilledHitsListener listener;
+
+        /** The fast hits of the result in ranked order, or empty if there is no listener */
+        private final List<FastHit> rankedHits;
+
+        /** The hits for which a response is processed but which are not yet passed to the listener */
+        private final Set<FastHit> processedHits;
+
+        /** The number of hits, from the start of rankedHits, which are passed to the listener */
+        private int passedHits = 0;
+
         public GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result) {
+            this(requestCount, compressor, result, null);
+        }
+
+        public GetDocsumsResponseReceiver(int requestCount, Compressor compressor, Result result, FilledHitsListener listener) {
             this.compressor = compressor;
             responses = new LinkedBlockingQueue<>(requestCount);
             outstandingResponses = requestCount;
             this.result = result;
+            this.listener = listener;
+            this.rankedHits = listener == null ? Collections.emptyList() : rankedFastHits(result);
+            this.processedHits = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        private static List<FastHit> rankedFastHits(Result result) {
+            List<FastHit> hits = new ArrayList<>();
+            for (Iterator<Hit> i = result.hits().deepIterator(); i.hasNext(); ) {
+                Hit hit = i.next();
+                if (hit instanceof FastHit)
+                    hits.add((FastHit)hit);
+            }
+            return hits;
         }
 
         /** Called by a thread belonging to the client when a valid response becomes available */
@@ -234,19 +284,45 @@ public class Dispatcher extends AbstractComponent {
         private int processResponse(Client.GetDocsumsResponseOrError responseOrError,
                                     String summaryClass,
                                     DocumentDatabase documentDb) {
+            int skippedHits = 0;
             if (responseOrError.error().isPresent()) {
-                if (hasReportedError) return 0;
-                String error = responseOrError.error().get();
-                result.hits().addError(ErrorMessage.createBackendCommunicationError(error));
-                log.log(Level.WARNING, "Error fetching summary data: "+ error);
+                if ( ! hasReportedError) {
+                    String error = responseOrError.error().get();
+                    result.hits().addError(ErrorMessage.createBackendCommunicationError(error));
+                    log.log(Level.WARNING, "Error fetching summary data: "+ error);
+                }
             }
             else {
                 Client.GetDocsumsResponse response = responseOrError.response().get();
                 CompressionType compression = CompressionType.valueOf(response.compression());
                 byte[] slimeBytes = compressor.decompress(response.compressedSlimeBytes(), compression, response.uncompressedSize());
-                return fill(response.hitsContext(), summaryClass, documentDb, slimeBytes);
+                skippedHits = fill(response.hitsContext(), summaryClass, documentDb, slimeBytes);
             }
-            return 0;
+            passProcessedHits(responseOrError.hitsContext());
+            return skippedHits;
+        }
+
+        /**
+         * Passes the longest sequence of processed hits following those already passed to the listener.
+         * Hits of failed requests count as processed, such that a single failing node does not hold back the rest.
+         */
+        private void passProcessedHits(List<FastHit> processed) {
+            if (listener == null) return;
+            processedHits.addAll(processed);
+            List<FastHit> filled = new ArrayList<>();
+            while (passedHits < rankedHits.size() && processedHits.remove(rankedHits.get(passedHits)))
+                filled.add(rankedHits.get(passedHits++));
+            if ( ! filled.isEmpty())
+                listener.filled(filled);
+        }
+
+        /** Passes all the hits not yet passed to the listener, filled or not */
+        void passRemainingHits() {
+            if (listener == null) return;
+            if (passedHits < rankedHits.size())
+                listener.filled(new ArrayList<>(rankedHits.subList(passedHits, rankedHits.size())));
+            passedHits = rankedHits.size();
+            processedHits.clear();
         }
 
         private void addErrors(com.yahoo.slime.Inspector errors) {
@@ -0,0 +1,37 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Receives hits from the dispatcher as soon as they are filled, such that they can be rendered
+ * while the remaining hits of the result are still being filled.
+ * Set an instance of this as the {@link #property} of a query to receive the hits filled for it.
+ *
+ * @author agent
+ */
+public interface FilledHitsListener {
+
+    /** The name of the query property holding the listener of the filled hits of the query, if any */
+    CompoundName property = new CompoundName("dispatch.filledHitsListener");
+
+    /**
+     * Called with each hit of a fill request once, in ranked order, as soon as it and all the hits
+     * ranked before it in the request are filled. Hits which could not be filled are also passed,
+     * once their response is processed, or when the request ends.
+     */
+    void filled(List<FastHit> hits);
+
+    /** Returns the listener set in the given query, or empty if none */
+    static Optional<FilledHitsListener> of(Query query) {
+        Object listener = query.properties().get(property);
+        if ( ! (listener instanceof FilledHitsListener)) return Optional.empty();
+        return Optional.of((FilledHitsListener)listener);
+    }
+
+}
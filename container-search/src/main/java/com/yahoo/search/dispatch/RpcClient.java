@@ -98,9 +98,10 @@ class RpcClient implements Client {
 
         @Override
         public void handleRequestDone(Request requestWithResponse) {
+            List<FastHit> hits = (List<FastHit>) requestWithResponse.getContext();
             if (requestWithResponse.isError()) {
                 handler.receive(GetDocsumsResponseOrError.fromError("Error response from " + node + ": " +
-                                                                    requestWithResponse.errorMessage()));
+                                                                    requestWithResponse.errorMessage(), hits));
                 return;
             }
 
@@ -108,14 +109,13 @@ class RpcClient implements Client {
             if (returnValues.size() < 3) {
                 handler.receive(GetDocsumsResponseOrError.fromError("Invalid getDocsums response from " + node +
                                                                     ": Expected 3 return arguments, got " +
-                                                                    returnValues.size()));
+                                                                    returnValues.size(), hits));
                 return;
             }
 
             byte compression = returnValues.get(0).asInt8();
             int uncompressedSize = returnValues.get(1).asInt32();
             byte[] compressedSlimeBytes = returnValues.get(2).asData();
-            List<FastHit> hits = (List<FastHit>) requestWithResponse.getContext();
             handler.receive(GetDocsumsResponseOrError.fromResponse(new GetDocsumsResponse(compression,
                                                                                           uncompressedSize,
                                                                                           compressedSlimeBytes,
@@ -81,6 +81,9 @@ public class SearchHandler extends LoggingRequestHandler {
     // max number of threads for the executor for this handler
     private final int maxThreads;
 
+    /** The executor of this handler, also used to fill results which are rendered while they are filled */
+    private final Executor executor;
+
     private static final CompoundName DETAILED_TIMING_LOGGING = new CompoundName("trace.timingDetails");
 
     /** Event name for number of connections to the search subsystem */
@@ -104,6 +107,9 @@ public class SearchHandler extends LoggingRequestHandler {
     private static final String fallbackSearchChain = "vespa";
     private static final CompoundName FORCE_TIMESTAMPS = new CompoundName("trace.timestamps");;
 
+    /** Whether to start rendering hits as soon as they are filled, see {@link StreamedFill} */
+    private static final CompoundName STREAM_FILL = new CompoundName("dispatch.streamFill");
+
     private final Linguistics linguistics;
 
     private final CompiledQueryProfileRegistry queryProfileRegistry;
@@ -154,6 +160,7 @@ public class SearchHandler extends LoggingRequestHandler {
 
         this.linguistics = linguistics;
         this.maxThreads = examineExecutor(executor);
+        this.executor = executor;
 
         searchConnections = new Value(SEARCH_CONNECTIONS, statistics,
                                       new Value.Parameters().setLogRaw(true).setLogMax(true)
@@ -395,7 +402,11 @@ public class SearchHandler extends LoggingRequestHandler {
             result.getTemplating().setRenderer(renderer);
 
         ensureQuerySet(result, query);
-        execution.fill(result, result.getQuery().getPresentation().getSummary());
+        String summaryClass = result.getQuery().getPresentation().getSummary();
+        if (query.properties().getBoolean(STREAM_FILL, false) && StreamedFill.canStream(result, renderer))
+            new StreamedFill(result, execution, summaryClass).start(executor);
+        else
+            execution.fill(result, summaryClass);
 
         traceExecutionTimes(query, result);
         traceVespaVersion(query);
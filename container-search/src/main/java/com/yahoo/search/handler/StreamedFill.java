@@ -0,0 +1,188 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.handler;
+
+import com.yahoo.log.LogLevel;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.processing.rendering.AsynchronousSectionedRenderer;
+import com.yahoo.processing.rendering.Renderer;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.dispatch.FilledHitsListener;
+import com.yahoo.search.result.DefaultErrorHit;
+import com.yahoo.search.result.ErrorHit;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.result.HitGroup;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.yolean.Exceptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Fills the hits of a result in the background while the result is rendered.
+ * <p>
+ * The hits are moved out of the result before filling starts, and the result is given an asynchronous hit group
+ * instead. Each hit is moved into that group as soon as the dispatcher has filled it and all the hits ranked before it,
+ * and the rest are moved when filling is done. A hit is therefore always in exactly one of the result being filled
+ * and the result being rendered, and searchers which process hits after filling them only see the hits
+ * which are not rendered yet. Hits which could not be filled are only moved if no hits are moved before them,
+ * and errors from filling after hits are moved are added last, in a hit group of their own.
+ *
+ * @author agent
+ */
+class StreamedFill implements FilledHitsListener {
+
+    private static final Logger log = Logger.getLogger(StreamedFill.class.getName());
+
+    private final Execution execution;
+    private final String summaryClass;
+
+    /** The result being filled, holding the hits which are not moved to the rendered hits yet */
+    private final Result filling;
+
+    /** The hits of the result being filled, which are not moved to the rendered hits yet */
+    private final Set<Hit> unmoved = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /** The hits of the result being rendered */
+    private final HitGroup rendered;
+
+    private final boolean removeRankFeatures;
+
+    /** Whether any hits are moved to the rendered hits yet */
+    private boolean hasMovedHits = false;
+
+    /**
+     * Returns whether the given result can be rendered while it is filled. This requires an asynchronous
+     * renderer and a flat list of hits, and is not done when tracing, as the trace is rendered while filling.
+     */
+    static boolean canStream(Result result, Renderer<Result> renderer) {
+        if ( ! (renderer instanceof AsynchronousSectionedRenderer)) return false;
+        if (result.getQuery().getTraceLevel() > 0) return false;
+        for (Hit hit : result.hits().asUnorderedHits()) {
+            if ( ! (hit instanceof FastHit) && ! (hit instanceof ErrorHit)) return false;
+        }
+        return true;
+    }
+
+    /** Moves the hits of the given result to a result to be filled, and makes the given result receive them as they are filled */
+    StreamedFill(Result result, Execution execution, String summaryClass) {
+        this.execution = execution;
+        this.summaryClass = summaryClass;
+
+        SearchResponse.trimHits(result);
+        Query query = result.getQuery();
+        HitGroup hits = result.hits();
+        rendered = HitGroup.createAsync(hits.getId().toString());
+        rendered.setQuery(query);
+        rendered.setOrderer(hits.getOrderer());
+        DefaultErrorHit errors = hits.removeErrorHit();
+        if (errors != null)
+            rendered.add(errors);
+        rendered.setOrdered(true); // Hits are moved in order, and errors found later are added last
+        result.setHits(rendered);
+        unmoved.addAll(hits.asUnorderedHits());
+
+        filling = new Result(query, hits);
+        removeRankFeatures = ! query.getRanking().getListFeatures();
+        query.properties().set(FilledHitsListener.property, this);
+    }
+
+    /** Starts filling in the given executor, or in this thread if the executor does not accept it */
+    void start(Executor executor) {
+        try {
+            executor.execute(this::fill);
+        }
+        catch (RejectedExecutionException e) {
+            fill();
+        }
+    }
+
+    private void fill() {
+        try {
+            execution.fill(filling, summaryClass);
+        }
+        catch (RuntimeException e) {
+            log.log(LogLevel.WARNING, "Failed filling " + filling.getQuery(), e);
+            filling.hits().addError(ErrorMessage.createUnspecifiedError("Failed filling: " + Exceptions.toMessageString(e), e));
+        }
+        finally {
+            complete();
+        }
+    }
+
+    /** Moves the given hits which are filled to the rendered hits, unless they are already moved */
+    @Override
+    public synchronized void filled(List<FastHit> hits) {
+        Set<Hit> moved = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Hit> prepared = new ArrayList<>(hits.size());
+        for (FastHit hit : hits) {
+            if (hit.isFilled(summaryClass) && unmoved.remove(hit)) {
+                moved.add(hit);
+                prepared.add(prepareForRendering(hit));
+            }
+        }
+        if (moved.isEmpty()) return;
+
+        removeFromFilling(moved);
+        rendered.incoming().add(prepared);
+        hasMovedHits = true;
+    }
+
+    /**
+     * Moves all remaining hits and errors to the rendered hits, and marks them complete.
+     * If no hits are moved yet, the errors and all the remaining hits are moved, as when the result is not streamed.
+     * Otherwise the remaining hits which are not filled are left out, and the errors are added last,
+     * in a group of their own, as the error hit of the rendered hits is ordered first and may already be rendered.
+     */
+    private synchronized void complete() {
+        HitGroup remaining = filling.hits();
+        DefaultErrorHit errors = remaining.removeErrorHit();
+        List<Hit> moved = new ArrayList<>(remaining.size() + 1);
+        if (errors != null && ! hasMovedHits)
+            moved.add(errors);
+        for (Hit hit : remaining.asList()) {
+            if (errors == null || ! hasMovedHits || hit.isFilled(summaryClass))
+                moved.add(prepareForRendering(hit));
+        }
+        if (errors != null && hasMovedHits) {
+            HitGroup errorGroup = new HitGroup("error:fill");
+            errorGroup.add(errors);
+            moved.add(errorGroup);
+        }
+        while (remaining.size() > 0)
+            remaining.remove(remaining.size() - 1);
+        unmoved.clear();
+        if ( ! moved.isEmpty())
+            rendered.incoming().add(moved);
+        rendered.incoming().markComplete();
+    }
+
+    /** Removes the given hits from the result being filled, in a single pass over its hits */
+    private void removeFromFilling(Set<Hit> hits) {
+        HitGroup remaining = filling.hits();
+        int toRemove = hits.size();
+        for (int i = 0; i < remaining.size() && toRemove > 0; ) {
+            if (hits.contains(remaining.asUnorderedHits().get(i))) {
+                remaining.remove(i);
+                toRemove--;
+            }
+            else {
+                i++;
+            }
+        }
+    }
+
+    private Hit prepareForRendering(Hit hit) {
+        if (removeRankFeatures)
+            hit.removeField(Hit.RANKFEATURES_FIELD);
+        return hit;
+    }
+
+}
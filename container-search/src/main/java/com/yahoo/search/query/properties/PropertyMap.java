@@ -4,13 +4,13 @@ import com.yahoo.processing.request.*;
 import com.yahoo.search.query.Properties;
 import java.util.Map;
 import java.util.LinkedHashMap;
-import java.util.HashMap;
 
 /**
  * A Map backing of Properties.
  * <p>
  * When this is cloned it will deep copy not only the model object map, but also each
- * clonable member inside the map.
+ * clonable member inside the map. If the map contains no clonable members, the clone will instead
+ * share the map with this until either of them is written to, at which point the writer makes its own copy.
  * <p>
  * Subclassing is supported, a hook can be implemented to provide conditional inclusion in the map.
  * By default - all properties are accepted, so set is never propagated.
@@ -26,9 +26,17 @@ public class PropertyMap extends Properties {
     /** The properties of this */
     private Map<CompoundName, Object> properties = new LinkedHashMap<>();
 
+    /** True if the properties map may be shared with clones of this, and must be copied before it is written */
+    private boolean shared = false;
+
+    /** True if a reference to the properties map has been handed out, such that it can never be shared */
+    private boolean exposed = false;
+
     public void set(CompoundName name, Object value, Map<String,String> context) {
-        if (shouldSet(name, value))
+        if (shouldSet(name, value)) {
+            makeWritable();
             properties.put(name, value);
+        }
         else
             super.set(name, value, context);
     }
@@ -48,24 +56,47 @@ public class PropertyMap extends Properties {
 
     /**
      * Returns a direct reference to the map containing the properties set in this instance.
+     * The returned map is owned by this alone, also after this is cloned.
      */
     public Map<CompoundName, Object> propertyMap() {
+        makeWritable();
+        exposed = true;
         return properties;
     }
 
+    private void makeWritable() {
+        if ( ! shared) return;
+        properties = new LinkedHashMap<>(properties);
+        shared = false;
+    }
+
     @Override
     public PropertyMap clone() {
         PropertyMap clone = (PropertyMap)super.clone();
-        clone.properties = new HashMap<>();
-        for (Map.Entry<CompoundName, Object> entry : this.properties.entrySet()) {
-            Object cloneValue = cloneHelper.clone(entry.getValue());
-            if (cloneValue == null)
-                cloneValue = entry.getValue(); // Shallow copy objects which does not support cloning
-            clone.properties.put(entry.getKey(), cloneValue);
+        clone.exposed = false;
+        if (exposed || hasClonableValues()) {
+            clone.properties = new LinkedHashMap<>();
+            clone.shared = false;
+            for (Map.Entry<CompoundName, Object> entry : this.properties.entrySet()) {
+                Object cloneValue = cloneHelper.clone(entry.getValue());
+                if (cloneValue == null)
+                    cloneValue = entry.getValue(); // Shallow copy objects which does not support cloning
+                clone.properties.put(entry.getKey(), cloneValue);
+            }
+        }
+        else { // Nothing to deep copy: Share the map until either is written to
+            this.shared = true;
+            clone.shared = true;
         }
         return clone;
     }
 
+    private boolean hasClonableValues() {
+        for (Object value : properties.values())
+            if (value instanceof Cloneable) return true;
+        return false;
+    }
+
     @Override
     public Map<String, Object> listProperties(CompoundName path, Map<String, String> context, com.yahoo.processing.request.Properties substitution) {
         Map<String, Object> map = super.listProperties(path, context, substitution);
@@ -14,12 +14,19 @@ import java.util.Optional;
 
 /**
  * Contains the rank features of a query.
+ * Clones share the features with this until either of them is modified.
  *
  * @author bratseth
  */
 public class RankFeatures implements Cloneable {
 
-    private final Map<String, Object> features;
+    private Map<String, Object> features;
+
+    /** True if the features may be shared with clones of this, and must be copied before they are written */
+    private boolean shared = false;
+
+    /** True if the features map has been handed out by {@link #asMap}, such that it can never be shared */
+    private boolean exposed = false;
 
     public RankFeatures() {
         this(new LinkedHashMap<>());
@@ -31,11 +38,13 @@ public class RankFeatures implements Cloneable {
 
     /** Sets a rank feature by full name to a value */
     public void put(String name, String value) {
+        makeWritable();
         features.put(name, value);
     }
 
     /** Sets a tensor rank feature */
     public void put(String name, Tensor value) {
+        makeWritable();
         features.put(name, value);
     }
 
@@ -67,7 +76,17 @@ public class RankFeatures implements Cloneable {
      * Returns the map holding the features of this.
      * This map may be modified to change the rank features of the query.
      */
-    public Map<String, Object> asMap() { return features; }
+    public Map<String, Object> asMap() {
+        makeWritable();
+        exposed = true;
+        return features;
+    }
+
+    private void makeWritable() {
+        if ( ! shared) return;
+        features = new LinkedHashMap<>(features);
+        shared = false;
+    }
 
     public boolean isEmpty() {
         return features.isEmpty();
@@ -84,6 +103,7 @@ public class RankFeatures implements Cloneable {
     public void prepare(RankProperties rankProperties) {
         if (isEmpty()) return;
 
+        makeWritable();
         List<String> featuresToRemove = new ArrayList<>();
         List<String> propertiesToInsert = new ArrayList<>();
         for (String key : features.keySet()) {
@@ -119,7 +139,12 @@ public class RankFeatures implements Cloneable {
 
     @Override
     public RankFeatures clone() {
-        return new RankFeatures(new LinkedHashMap<>(features));
+        if (exposed) return new RankFeatures(new LinkedHashMap<>(features));
+
+        RankFeatures clone = new RankFeatures(features);
+        this.shared = true;
+        clone.shared = true;
+        return clone;
     }
 
     @Override
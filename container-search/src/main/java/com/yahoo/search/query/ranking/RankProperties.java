@@ -15,12 +15,20 @@ import java.util.Map;
 /**
  * Contains the properties properties of a query.
  * This is a multimap: Multiple properties may be set for the same key.
+ * <p>
+ * Clones share the properties with this until either of them is modified.
  *
  * @author bratseth
  */
 public class RankProperties implements Cloneable {
 
-    private Map<String, List<Object>> properties = new LinkedHashMap<>();
+    private Map<String, List<Object>> properties;
+
+    /** True if the properties may be shared with clones of this, and must be copied before they are written */
+    private boolean shared = false;
+
+    /** True if the properties map has been handed out by {@link #asMap}, such that it can never be shared */
+    private boolean exposed = false;
 
     public RankProperties() {
         this(new LinkedHashMap<>());
@@ -36,6 +44,7 @@ public class RankProperties implements Cloneable {
 
     /** Adds a property by full name to a value */
     public void put(String name, Object value) {
+        makeWritable();
         List<Object> list = properties.get(name);
         if (list == null) {
             list = new ArrayList<>();
@@ -63,6 +72,7 @@ public class RankProperties implements Cloneable {
 
     /** Removes all properties properties for a given name */
     public void remove(String name) {
+        makeWritable();
         properties.remove(name);
     }
 
@@ -71,7 +81,24 @@ public class RankProperties implements Cloneable {
     }
 
     /** Returns a modifiable map of the properties of this */
-    public Map<String, List<Object>> asMap() { return properties; }
+    public Map<String, List<Object>> asMap() {
+        makeWritable();
+        exposed = true;
+        return properties;
+    }
+
+    private void makeWritable() {
+        if ( ! shared) return;
+        properties = copy(properties);
+        shared = false;
+    }
+
+    private static Map<String, List<Object>> copy(Map<String, List<Object>> properties) {
+        Map<String, List<Object>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Object>> entry : properties.entrySet())
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        return copy;
+    }
 
     /** Encodes this in a binary internal representation and returns the number of property maps encoded (0 or 1) */
     public int encode(ByteBuffer buffer, boolean encodeQueryData) {
@@ -100,10 +127,12 @@ public class RankProperties implements Cloneable {
 
     @Override
     public RankProperties clone() {
-        Map<String, List<Object>> clone = new LinkedHashMap<>();
-        for (Map.Entry<String, List<Object>> entry : properties.entrySet())
-            clone.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-        return new RankProperties(clone);
+        if (exposed) return new RankProperties(copy(properties));
+
+        RankProperties clone = new RankProperties(properties);
+        this.shared = true;
+        clone.shared = true;
+        return clone;
     }
 
     @Override
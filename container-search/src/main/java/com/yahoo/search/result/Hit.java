@@ -64,8 +64,8 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     /** The id of this hit */
     private URI id;
 
-    /** The types of this hit */
-    private Set<String> types = new ArraySet<>(1);
+    /** The types of this hit, or null if none are set. Lazily created */
+    private Set<String> types = null;
 
     /** The relevance of this hit */
     private Relevance relevance;
@@ -552,7 +552,11 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
     }
 
     /** Returns the types of this as a modifiable set. Modifications to this set are directly reflected in this hit */
-    public Set<String> types() { return types; }
+    public Set<String> types() {
+        if (types == null)
+            types = new ArraySet<>(1);
+        return types;
+    }
 
     /** @deprecated do not use */
     @Deprecated
@@ -799,7 +803,7 @@ public class Hit extends ListenableFreezableClass implements Data, Comparable<Hi
 
         hit.fields = fields != null ? new LinkedHashMap<>(fields) : null;
         hit.unmodifiableFieldMap = null;
-        hit.types = new LinkedHashSet<>(types);
+        hit.types = types != null ? new LinkedHashSet<>(types) : null;
         if (filled != null) {
             hit.setFilledInternal(new HashSet<>(filled));
         }
@@ -0,0 +1,148 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.fastsearch.test;
+
+import com.google.common.collect.ImmutableList;
+import com.yahoo.data.access.Inspector;
+import com.yahoo.data.access.slime.SlimeAdapter;
+import com.yahoo.prelude.fastsearch.DocsumDefinition;
+import com.yahoo.prelude.fastsearch.DocsumField;
+import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.StringField;
+import com.yahoo.search.result.Hit;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Slime;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the lazily created type and summary storage of hits
+ *
+ * @author agent
+ */
+public class FastHitTestCase {
+
+    private static final DocsumDefinition titles = new DocsumDefinition("titles",
+            ImmutableList.<DocsumField>of(new StringField("title")));
+    private static final DocsumDefinition all = new DocsumDefinition("all",
+            ImmutableList.<DocsumField>of(new StringField("title"), new StringField("body")));
+
+    @Test
+    public void testTypesAreCreatedOnAccess() {
+        Hit hit = new Hit("hit:1");
+        assertTrue(hit.types().isEmpty());
+        assertEquals("", hit.getTypeString());
+
+        hit.types().add("news");
+        hit.types().add("sports");
+        assertEquals(new HashSet<>(Arrays.asList("news", "sports")), hit.types());
+        assertEquals("news sports", hit.getTypeString());
+    }
+
+    @Test
+    public void testClonesHaveSeparateTypes() {
+        Hit untyped = new Hit("hit:1");
+        Hit untypedClone = untyped.clone();
+        untypedClone.types().add("news");
+        assertTrue(untyped.types().isEmpty());
+        assertEquals(1, untypedClone.types().size());
+
+        Hit typed = new Hit("hit:2");
+        typed.types().add("news");
+        Hit typedClone = typed.clone();
+        typedClone.types().add("sports");
+        assertEquals(1, typed.types().size());
+        assertEquals(2, typedClone.types().size());
+    }
+
+    @Test
+    public void testUnfilledHitHasNoSummaryFields() {
+        FastHit hit = createHit();
+        assertNull(hit.getField("title"));
+        assertFalse(hit.fieldIterator().hasNext());
+        assertTrue(hit.fieldKeys().isEmpty());
+        assertTrue(hit.fields().isEmpty());
+    }
+
+    @Test
+    public void testFillingAddsSummaryFields() {
+        FastHit hit = createHit();
+        hit.addSummary(titles, summary("title", "first title"));
+        assertEquals("first title", hit.getField("title"));
+        assertEquals(1, hit.fields().size());
+
+        hit.addSummary(all, summary("title", "second title", "body", "second body"));
+        assertEquals("second body", hit.getField("body"));
+        assertEquals(2, hit.fieldKeys().size());
+    }
+
+    @Test
+    public void testLaterSummariesOverwriteEarlierOnes() {
+        FastHit hit = createHit();
+        hit.addSummary(all, summary("title", "first title", "body", "first body"));
+        hit.addSummary(titles, summary("title", "second title"));
+        assertEquals("second title", hit.getField("title"));
+        assertEquals("first body", hit.getField("body"));
+        assertEquals("second title", hit.fields().get("title"));
+    }
+
+    @Test
+    public void testSetFieldOverwritesSummaryValues() {
+        FastHit hit = createHit();
+        hit.addSummary(all, summary("title", "summary title", "body", "summary body"));
+        assertEquals("summary title", hit.setField("title", "new title"));
+        assertEquals("new title", hit.getField("title"));
+        assertEquals("new title", hit.fields().get("title"));
+        assertEquals(2, hit.fields().size());
+
+        assertEquals("summary body", hit.removeField("body"));
+        assertNull(hit.getField("body"));
+        hit.addSummary(titles, summary("title", "refilled title"));
+        assertNull(hit.getField("body"));
+        assertEquals("new title", hit.getField("title"));
+    }
+
+    @Test
+    public void testClearingAndRefilling() {
+        FastHit hit = createHit();
+        hit.addSummary(all, summary("title", "first title", "body", "first body"));
+        hit.clearFields();
+        assertNull(hit.getField("title"));
+        assertTrue(hit.fields().isEmpty());
+
+        hit.addSummary(titles, summary("title", "second title"));
+        assertEquals("second title", hit.getField("title"));
+        assertNull(hit.getField("body"));
+    }
+
+    @Test
+    public void testFillingCloneOfUnfilledHitDoesNotFillOriginal() {
+        FastHit hit = createHit();
+        FastHit clone = (FastHit)hit.clone();
+        clone.addSummary(titles, summary("title", "title"));
+        assertEquals("title", clone.getField("title"));
+        assertNull(hit.getField("title"));
+    }
+
+    /** Creates a hit the way the backend searchers do, with no fields until it is filled */
+    private static FastHit createHit() {
+        FastHit hit = new FastHit();
+        hit.setRelevance(1.0);
+        return hit;
+    }
+
+    private static Inspector summary(String ... keysAndValues) {
+        Slime slime = new Slime();
+        Cursor docsum = slime.setObject();
+        for (int i = 0; i < keysAndValues.length; i += 2)
+            docsum.setString(keysAndValues[i], keysAndValues[i + 1]);
+        return new SlimeAdapter(slime.get());
+    }
+
+}
@@ -12,9 +12,16 @@ import com.yahoo.prelude.semantics.rule.ProductionRule;
 import com.yahoo.prelude.semantics.rule.ReplacingProductionRule;
 import com.yahoo.prelude.semantics.rule.SequenceCondition;
 import com.yahoo.prelude.semantics.rule.TermCondition;
+import com.yahoo.prelude.semantics.rule.EllipsisCondition;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -44,6 +51,22 @@ public class ConditionTestCase {
         assertFalse(query3 + " does not match " + sequence,sequence.matches(new Evaluation(query3).freshRuleEvaluation()));
     }
 
+    @Test
+    public void testRequiredTerms() {
+        SequenceCondition sequence = new SequenceCondition();
+        sequence.addCondition(new EllipsisCondition());
+        sequence.addCondition(new TermCondition("foo"));
+        assertEquals(Collections.singleton("foo"), sequence.requiredTerms());
+
+        ChoiceCondition choice = new ChoiceCondition();
+        choice.addCondition(new TermCondition("foo"));
+        choice.addCondition(new TermCondition("bar"));
+        assertEquals(new HashSet<>(Arrays.asList("foo", "bar")), choice.requiredTerms());
+
+        choice.addCondition(new EllipsisCondition());
+        assertNull(choice.requiredTerms());
+    }
+
     @Test
     public void testChoiceCondition() {
         TermCondition term1 = new TermCondition("foo");
@@ -2,16 +2,26 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.compress.CompressionType;
+import com.yahoo.prelude.fastsearch.CacheParams;
+import com.yahoo.prelude.fastsearch.ClusterParams;
 import com.yahoo.prelude.fastsearch.DocsumDefinition;
 import com.yahoo.prelude.fastsearch.DocsumDefinitionSet;
 import com.yahoo.prelude.fastsearch.DocsumField;
 import com.yahoo.prelude.fastsearch.DocumentDatabase;
+import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
+import com.yahoo.prelude.fastsearch.FS4ResourcePool;
 import com.yahoo.prelude.fastsearch.FastHit;
+import com.yahoo.prelude.fastsearch.FastSearcher;
+import com.yahoo.prelude.fastsearch.SummaryParameters;
+import com.yahoo.prelude.fastsearch.test.fs4mock.MockBackend;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 import java.util.ArrayList;
@@ -19,6 +29,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 
 /**
@@ -66,6 +77,105 @@ public class FillTestCase {
         assertEquals(4L, result.hits().get("hit:4").getField("field2"));
     }
 
+    @Test
+    public void testIncrementalFilling() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        nodes.put(2, client.createConnection("host2", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client);
+
+        Query query = new Query();
+        Result result = new Result(query);
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(2, 1));
+        result.hits().add(createHit(1, 2));
+        result.hits().add(createHit(2, 3));
+        result.hits().add(createHit(0, 4));
+
+        client.setDocsumReponse("host0", 0, "summaryClass1", map("field1", "s.0.0", "field2", 0));
+        client.setDocsumReponse("host2", 1, "summaryClass1", map("field1", "s.2.1", "field2", 1));
+        client.setDocsumReponse("host1", 2, "summaryClass1", map("field1", "s.1.2", "field2", 2));
+        client.setDocsumReponse("host2", 3, "summaryClass1", map("field1", "s.2.3", "field2", 3));
+        client.setDocsumReponse("host0", 4, "summaryClass1", map("field1", "s.0.4", "field2", 4));
+
+        List<String> passed = new ArrayList<>();
+        dispatcher.fill(result, "summaryClass1", db(), CompressionType.valueOf("LZ4"), hits -> passed.add(toString(hits)));
+
+        // Responses are processed in node order: Node 0 fills hit 0 and 4, node 1 hit 2, and node 2 hit 1 and 3
+        assertEquals("[[hit:0], [hit:1, hit:2, hit:3, hit:4]]", passed.toString());
+        assertEquals("s.0.4", result.hits().get("hit:4").getField("field1").toString());
+    }
+
+    @Test
+    public void testIncrementalFillingWithFailingNode() {
+        client.setMalfunctioning("host0");
+
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        nodes.put(2, client.createConnection("host2", 123));
+        Dispatcher dispatcher = new Dispatcher(nodes, client);
+
+        Query query = new Query();
+        Result result = new Result(query);
+        result.hits().add(createHit(0, 0));
+        result.hits().add(createHit(2, 1));
+        result.hits().add(createHit(1, 2));
+        result.hits().add(createHit(2, 3));
+        result.hits().add(createHit(0, 4));
+
+        client.setDocsumReponse("host2", 1, "summaryClass1", map("field1", "s.2.1", "field2", 1));
+        client.setDocsumReponse("host1", 2, "summaryClass1", map("field1", "s.1.2", "field2", 2));
+        client.setDocsumReponse("host2", 3, "summaryClass1", map("field1", "s.2.3", "field2", 3));
+
+        List<String> passed = new ArrayList<>();
+        dispatcher.fill(result, "summaryClass1", db(), CompressionType.valueOf("LZ4"), hits -> passed.add(toString(hits)));
+
+        // The hits of the failing node are passed when its response is processed, without holding back the others
+        assertEquals("[[hit:0], [hit:1, hit:2, hit:3, hit:4]]", passed.toString());
+        assertEquals("Malfunctioning", result.hits().getError().getDetailedMessage());
+        assertNull(result.hits().get("hit:0").getField("field1"));
+        assertEquals("s.2.1", result.hits().get("hit:1").getField("field1").toString());
+        assertEquals("s.1.2", result.hits().get("hit:2").getField("field1").toString());
+    }
+
+    @Test
+    public void testIncrementalFillingThroughFastSearcher() {
+        Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
+        nodes.put(0, client.createConnection("host0", 123));
+        nodes.put(1, client.createConnection("host1", 123));
+        FastSearcher searcher = new FastSearcher(new MockBackend(),
+                                                 new FS4ResourcePool(1),
+                                                 new Dispatcher(nodes, client),
+                                                 new SummaryParameters(null),
+                                                 new ClusterParams("testhittype"),
+                                                 new CacheParams(0, 0),
+                                                 documentdbInfoConfig());
+
+        Query query = new Query("?query=ignored&summary=summaryClass1&ranking=simple");
+        Result result = new Result(query);
+        result.hits().add(createHit(1, 0));
+        result.hits().add(createHit(0, 1));
+        result.hits().add(createHit(1, 2));
+        for (Hit hit : result.hits())
+            hit.setFillable();
+
+        client.setDocsumReponse("host1", 0, "summaryClass1", map("field1", "s.1.0", "field2", 0));
+        client.setDocsumReponse("host0", 1, "summaryClass1", map("field1", "s.0.1", "field2", 1));
+        client.setDocsumReponse("host1", 2, "summaryClass1", map("field1", "s.1.2", "field2", 2));
+
+        List<String> passed = new ArrayList<>();
+        FilledHitsListener listener = hits -> passed.add(toString(hits) + " " + hits.get(0).getField("field1"));
+        query.properties().set(FilledHitsListener.property, listener);
+        new Execution(searcher, Execution.Context.createContextStub()).fill(result, "summaryClass1");
+
+        // Node 0 fills hit 1, which waits for hit 0, which is filled by node 1 together with hit 2
+        assertEquals("[[hit:0, hit:1, hit:2] s.1.0]", passed.toString());
+        assertTrue(result.isFilled("summaryClass1"));
+        assertNull(result.hits().getError());
+    }
+
     @Test
     public void testEmptyHits() {
         Map<Integer, Client.NodeConnection> nodes = new HashMap<>();
@@ -130,6 +240,16 @@ public class FillTestCase {
         return new DocumentDatabase("default", docsums, Collections.emptySet());
     }
 
+    private DocumentdbInfoConfig documentdbInfoConfig() {
+        return new DocumentdbInfoConfig(new DocumentdbInfoConfig.Builder().documentdb(new DocumentdbInfoConfig.Documentdb.Builder()
+                .name("default")
+                .summaryclass(new DocumentdbInfoConfig.Documentdb.Summaryclass.Builder().name("summaryClass1").id(1)
+                        .fields(new DocumentdbInfoConfig.Documentdb.Summaryclass.Fields.Builder().name("field1").type("string"))
+                        .fields(new DocumentdbInfoConfig.Documentdb.Summaryclass.Fields.Builder().name("field2").type("int64")))
+                .rankprofile(new DocumentdbInfoConfig.Documentdb.Rankprofile.Builder()
+                        .name("simple").hasRankFeatures(false).hasSummaryFeatures(false))));
+    }
+
     private FastHit createHit(int sourceNodeId, int hitId) {
         FastHit hit = new FastHit("hit:" + hitId, 1.0);
         hit.setPartId(sourceNodeId);
@@ -138,6 +258,10 @@ public class FillTestCase {
         return hit;
     }
 
+    private String toString(List<? extends Hit> hits) {
+        return hits.stream().map(hit -> hit.getId().toString()).collect(Collectors.toList()).toString();
+    }
+
     private Map<String, Object> map(String stringKey, String stringValue, String intKey, int intValue) {
         Map<String, Object> map = new HashMap<>();
         map.put(stringKey, stringValue);
@@ -14,8 +14,10 @@ import com.yahoo.slime.Slime;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * @author bratseth
@@ -24,11 +26,15 @@ public class MockClient implements Client {
 
     private final Map<DocsumKey, Map<String, Object>> docsums = new HashMap<>();
     private final Compressor compressor = new Compressor();
+    private final Set<String> malfunctioningHosts = new HashSet<>();
     private boolean malfunctioning = false;
 
     /** Set to true to cause this to produce an error instead of a regular response */
     public void setMalfunctioning(boolean malfunctioning) { this.malfunctioning = malfunctioning; }
 
+    /** Causes this to produce an error instead of a regular response for requests to the given host */
+    public void setMalfunctioning(String hostname) { malfunctioningHosts.add(hostname); }
+
     @Override
     public NodeConnection createConnection(String hostname, int port) {
         return new MockNodeConnection(hostname, port);
@@ -38,8 +44,8 @@ public class MockClient implements Client {
     public void getDocsums(List<FastHit> hitsContext, NodeConnection node, CompressionType compression,
                            int uncompressedSize, byte[] compressedSlime, Dispatcher.GetDocsumsResponseReceiver responseReceiver,
                            double timeoutSeconds) {
-        if (malfunctioning) {
-            responseReceiver.receive(GetDocsumsResponseOrError.fromError("Malfunctioning"));
+        if (malfunctioning || malfunctioningHosts.contains(node.toString())) {
+            responseReceiver.receive(GetDocsumsResponseOrError.fromError("Malfunctioning", hitsContext));
             return;
         }
 
@@ -10,9 +10,11 @@ import com.yahoo.container.jdisc.ThreadedHttpRequestHandler;
 import com.yahoo.io.IOUtils;
 import com.yahoo.jdisc.handler.RequestHandler;
 import com.yahoo.net.HostName;
+import com.yahoo.prelude.fastsearch.FastHit;
 import com.yahoo.search.Query;
 import com.yahoo.search.Result;
 import com.yahoo.search.Searcher;
+import com.yahoo.search.dispatch.FilledHitsListener;
 import com.yahoo.search.handler.HttpSearchResponse;
 import com.yahoo.search.handler.SearchHandler;
 import com.yahoo.search.rendering.DefaultRenderer;
@@ -30,10 +32,14 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -312,6 +318,28 @@ public class SearchHandlerTestCase {
         assertEquals(selfHostname, response.getResponse().headers().get(myHostnameHeader).get(0));
     }
 
+    @Test
+    public void testStreamedFill() {
+        String request = "http://localhost/search/?query=abc&searchChain=streamFill&format=json";
+        String filledInHandlerThread = driver.sendRequest(request).readAll();
+        String streamed = driver.sendRequest(request + "&dispatch.streamFill=true").readAll();
+        assertEquals(filledInHandlerThread, streamed);
+        assertThat(streamed, containsString("\"title\":\"Title of hit:0\""));
+        assertThat(streamed, containsString("\"title\":\"Title of hit:2\""));
+    }
+
+    @Test
+    public void testStreamedFillFailingAfterFirstHit() {
+        String streamed = driver.sendRequest("http://localhost/search/?query=fail&searchChain=streamFill&format=json" +
+                                             "&dispatch.streamFill=true").readAll();
+        assertThat(streamed, containsString("\"title\":\"Title of hit:0\""));
+        assertEquals("Each filled hit is rendered once", 1, streamed.split("\"id\":\"hit:0\"").length - 1);
+        assertThat("Hits which are not filled are not rendered", streamed, not(containsString("\"id\":\"hit:1\"")));
+        assertThat("Hits which are not filled are not rendered", streamed, not(containsString("\"id\":\"hit:2\"")));
+        assertThat(streamed, containsString("\"message\":\"Failed filling: Failing after filling hit:0\""));
+        assertTrue("The error is rendered after the hits", streamed.indexOf("\"errors\"") > streamed.indexOf("\"id\":\"hit:0\""));
+    }
+
     @Test
     public void testFaultyHandlers() throws Exception {
         assertHandlerResponse(500, null, "NullReturning");
@@ -370,6 +398,34 @@ public class SearchHandlerTestCase {
         }
     }
 
+    /** Referenced from config */
+    public static class StreamFillSearcher extends Searcher {
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            Result result = new Result(query);
+            for (int i = 0; i < 3; i++) {
+                FastHit hit = new FastHit("hit:" + i, 1.0 - i * 0.1);
+                hit.setFillable();
+                result.hits().add(hit);
+            }
+            return result;
+        }
+
+        /** Fills one hit at the time, and passes each one to the listener of the query as it is filled */
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            Optional<FilledHitsListener> listener = FilledHitsListener.of(result.getQuery());
+            for (Hit hit : new ArrayList<>(result.hits().asList())) {
+                hit.setField("title", "Title of " + hit.getId());
+                hit.setFilled(summaryClass);
+                listener.ifPresent(l -> l.filled(Collections.singletonList((FastHit)hit)));
+                if (result.getQuery().getModel().getQueryString().contains("fail"))
+                    throw new RuntimeException("Failing after filling " + hit.getId());
+            }
+        }
+    }
+
     /** Referenced from config */
     public static class ClassLoadingErrorSearcher extends Searcher {
 
@@ -1,12 +1,18 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.query.properties.test;
 
-import com.yahoo.processing.request.properties.PropertyMap;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.properties.PropertyMap;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -36,6 +42,79 @@ public class PropertyMapTestCase {
         assertTrue(first(map.get("nonclonableArray")) == first(mapClone.get("nonclonableArray")));
     }
 
+    @Test
+    public void testCopyOnWriteCloning() {
+        PropertyMap map = new PropertyMap();
+        map.set("a", "a1");
+        map.set("b", 1);
+
+        PropertyMap mapClone = map.clone();
+        assertEquals("a1", mapClone.get("a"));
+        assertEquals(1, mapClone.get("b"));
+
+        mapClone.set("a", "a2");
+        map.set("c", "c1");
+        assertEquals("a1", map.get("a"));
+        assertEquals("a2", mapClone.get("a"));
+        assertEquals("c1", map.get("c"));
+        assertEquals(null, mapClone.get("c"));
+
+        map.set("clonable", new ClonableObject());
+        PropertyMap secondClone = map.clone();
+        assertTrue(map.get("clonable") != secondClone.get("clonable"));
+        assertEquals("a1", secondClone.get("a"));
+    }
+
+    @Test
+    public void testCloningKeepsInsertionOrder() {
+        PropertyMap map = new PropertyMap();
+        for (int i = 20; i > 0; i--)
+            map.set("p" + i, i);
+        List<CompoundName> order = new ArrayList<>(map.propertyMap().keySet());
+
+        PropertyMap mapClone = map.clone();
+        assertEquals(order, new ArrayList<>(map.propertyMap().keySet()));
+        assertEquals(order, new ArrayList<>(mapClone.propertyMap().keySet()));
+
+        PropertyMap unexposed = new PropertyMap();
+        for (int i = 20; i > 0; i--)
+            unexposed.set("p" + i, i);
+        PropertyMap unexposedClone = unexposed.clone();
+        unexposedClone.set("p0", 0);
+        assertEquals(order, new ArrayList<>(unexposed.propertyMap().keySet()));
+        order.add(new CompoundName("p0"));
+        assertEquals(order, new ArrayList<>(unexposedClone.propertyMap().keySet()));
+    }
+
+    @Test
+    public void testPropertyMapIsNeverSharedWithClones() {
+        PropertyMap map = new PropertyMap();
+        map.set("a", "a1");
+        map.set("b", "b1");
+        PropertyMap mapClone = map.clone();
+        PropertyMap siblingClone = map.clone();
+
+        Iterator<Map.Entry<CompoundName, Object>> entries = mapClone.propertyMap().entrySet().iterator();
+        entries.next();
+        entries.remove();
+        assertEquals(null, mapClone.get("a"));
+        assertEquals("a1", map.get("a"));
+        assertEquals("a1", siblingClone.get("a"));
+
+        siblingClone.propertyMap().entrySet().clear();
+        assertEquals(null, siblingClone.get("b"));
+        assertEquals("b1", map.get("b"));
+        assertEquals("b1", mapClone.get("b"));
+
+        // A handed out map stays owned by the map which handed it out
+        Map<CompoundName, Object> exposed = map.propertyMap();
+        PropertyMap thirdClone = map.clone();
+        exposed.put(new CompoundName("c"), "c1");
+        assertEquals("c1", map.get("c"));
+        assertEquals(null, thirdClone.get("c"));
+        assertFalse(thirdClone.propertyMap() == exposed);
+    }
+
     private Object first(Object object) {
         if (object instanceof Object[])
             return ((Object[])object)[0];
@@ -25,6 +25,8 @@ public class QueryCloneMicroBenchmark {
     private Query createQuery() {
         Query query = new Query();
         query.getModel().getQueryTree().setRoot(createWeightedSet());
+        for (int i = 0; i<20; i++)
+            query.properties().set("property" + i, "value" + i);
         return query;
     }
 
@@ -43,6 +43,30 @@ public class RankingTestCase {
         assertEquals("0.3", query.getRanking().getFeatures().get("fieldMatch(foo)"));
     }
 
+    @Test
+    public void testRankPropertiesAndFeaturesAreCopiedWhenWritten() {
+        Query query = new Query("?query=test&ranking.properties.foo=bar1&ranking.features.query(name)=0.1");
+        Query clone = query.clone();
+
+        clone.getRanking().getProperties().put("foo", "bar2");
+        clone.getRanking().getFeatures().put("query(name)", "0.2");
+        assertEquals(1, query.getRanking().getProperties().get("foo").size());
+        assertEquals(2, clone.getRanking().getProperties().get("foo").size());
+        assertEquals("0.1", query.getRanking().getFeatures().get("query(name)"));
+        assertEquals("0.2", clone.getRanking().getFeatures().get("query(name)"));
+
+        query.getRanking().getProperties().remove("foo");
+        assertEquals(null, query.getRanking().getProperties().get("foo"));
+        assertEquals("bar1", clone.getRanking().getProperties().get("foo").get(0));
+
+        Query secondClone = clone.clone();
+        secondClone.getRanking().getFeatures().asMap().clear();
+        secondClone.getRanking().getProperties().asMap().get("foo").add("bar3");
+        assertEquals("0.2", clone.getRanking().getFeatures().get("query(name)"));
+        assertEquals(2, clone.getRanking().getProperties().get("foo").size());
+        assertEquals(3, secondClone.getRanking().getProperties().get("foo").size());
+    }
+
     //This test is order dependent. Fix this!!
     @Test
     public void test_setting_rank_feature_values() {
@@ -83,8 +83,8 @@ public class ScriptManager {
             List<StatementExpression> expressions = new ArrayList<>(ilscript.content().size());
             Map<String, DocumentScript> fieldScripts = new HashMap<>(ilscript.content().size());
             for (String content : ilscript.content()) {
-                expressions.add(parse(ilscript.doctype(), parserContext, content));
                 StatementExpression statement = parse(ilscript.doctype(), parserContext, content);
+                expressions.add(statement);
                 InputExpression.InputFieldNameExtractor inputFieldNameExtractor = new InputExpression.InputFieldNameExtractor();
                 statement.select(inputFieldNameExtractor, inputFieldNameExtractor);
                 statement.select(fieldPathOptimizer, fieldPathOptimizer);
@@ -110,8 +110,11 @@ public class ScriptManager {
             }
 
             ScriptExpression script = new ScriptExpression(expressions);
-            script.select(fieldPathOptimizer, fieldPathOptimizer);
             fieldScripts.put(FULL, new DocumentScript(ilscript.doctype(), ilscript.docfield(),script));
+            // Statements are shared between the field scripts and the full script, so compile them all once complete
+            for (DocumentScript documentScript : fieldScripts.values()) {
+                documentScript.getExpression().compile();
+            }
             documentFieldScripts.put(ilscript.doctype(), Collections.unmodifiableMap(fieldScripts));
         }
         return Collections.unmodifiableMap(documentFieldScripts);
@@ -0,0 +1,172 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.datatypes.StringFieldValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact encoding of a span tree consisting of a root span list of spans, where each span has zero or more
+ * annotations of a single type, each with an optional string value. This is the shape of the linguistics span tree
+ * created when tokenizing, and keeping it in packed arrays of span offsets and annotation term references rather
+ * than as {@link Span} and {@link Annotation} objects saves several objects per token.
+ * <p>
+ * A compact span tree is set on a {@link StringFieldValue}, which turns it into a regular {@link SpanTree} the first
+ * time its span trees are accessed, while serializers write it directly in the span tree wire format.
+ * A compact span tree must not be modified once it is set on a string.
+ *
+ * @author agent
+ */
+public final class CompactSpanTree {
+
+    private final String name;
+    private final AnnotationType type;
+
+    /** The from and length of each span, in characters */
+    private int[] spans = new int[32];
+    private int spanCount = 0;
+
+    /** The span and term of each annotation, where the term is -1 if the annotation has no value */
+    private int[] annotations = new int[32];
+    private int annotationCount = 0;
+
+    private final List<String> terms = new ArrayList<>();
+
+    /**
+     * Creates a new empty compact span tree
+     *
+     * @param name the name of the span tree
+     * @param type the type of all annotations in the span tree, whose data type must be string
+     *             if any annotations have values
+     */
+    public CompactSpanTree(String name, AnnotationType type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    public String getName() { return name; }
+
+    public AnnotationType getAnnotationType() { return type; }
+
+    /**
+     * Adds a span as the last child of the root span list
+     *
+     * @return the index of the new span
+     */
+    public int addSpan(int from, int length) {
+        if (spanCount * 2 == spans.length) {
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+        spans[spanCount * 2] = from;
+        spans[spanCount * 2 + 1] = length;
+        return spanCount++;
+    }
+
+    /**
+     * Adds a term which may be used as the value of any number of annotations.
+     * Terms are not deduplicated, so callers should keep track of the terms they have added.
+     *
+     * @return the id of the new term
+     */
+    public int addTerm(String term) {
+        terms.add(term);
+        return terms.size() - 1;
+    }
+
+    /**
+     * Adds an annotation of the type of this to a span
+     *
+     * @param span the index of the span to annotate
+     * @param term the id of the term which is the value of the annotation, or -1 for no value
+     */
+    public void annotate(int span, int term) {
+        if (annotationCount * 2 == annotations.length) {
+            annotations = Arrays.copyOf(annotations, annotations.length * 2);
+        }
+        annotations[annotationCount * 2] = span;
+        annotations[annotationCount * 2 + 1] = term;
+        annotationCount++;
+    }
+
+    public int numSpans() { return spanCount; }
+
+    public int spanFrom(int span) { return spans[span * 2]; }
+
+    public int spanLength(int span) { return spans[span * 2 + 1]; }
+
+    public int numAnnotations() { return annotationCount; }
+
+    public int annotationSpan(int annotation) { return annotations[annotation * 2]; }
+
+    /** Returns the term id of the value of the given annotation, or -1 if it has no value */
+    public int annotationTerm(int annotation) { return annotations[annotation * 2 + 1]; }
+
+    public int numTerms() { return terms.size(); }
+
+    public String getTerm(int term) { return terms.get(term); }
+
+    /**
+     * Returns the indexes of the annotations of this in the order a {@link SpanTree} with the same content is
+     * serialized, which is the order of {@link Annotation#compareTo}, with insertion order between equal annotations.
+     */
+    public int[] annotationsInSerializationOrder() {
+        int[] order = new int[annotationCount];
+        boolean sorted = true;
+        for (int i = 0; i < annotationCount; i++) {
+            order[i] = i;
+            if (i > 0 && compareAnnotations(i - 1, i) > 0) {
+                sorted = false;
+            }
+        }
+        if (sorted) return order; // the common case, as tokens are usually added in order
+
+        Integer[] boxed = new Integer[annotationCount];
+        for (int i = 0; i < annotationCount; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, this::compareAnnotations); // stable
+        for (int i = 0; i < annotationCount; i++) {
+            order[i] = boxed[i];
+        }
+        return order;
+    }
+
+    private int compareAnnotations(int a, int b) {
+        int spanA = annotationSpan(a);
+        int spanB = annotationSpan(b);
+        int comparison = Integer.compare(spanFrom(spanA), spanFrom(spanB));
+        if (comparison != 0) return comparison;
+        comparison = Integer.compare(spanFrom(spanA) + spanLength(spanA), spanFrom(spanB) + spanLength(spanB));
+        if (comparison != 0) return comparison;
+
+        int termA = annotationTerm(a);
+        int termB = annotationTerm(b);
+        if (termA < 0) return termB < 0 ? 0 : -1;
+        if (termB < 0) return 1;
+        return getTerm(termA).compareTo(getTerm(termB));
+    }
+
+    /** Returns this as a regular span tree */
+    public SpanTree toSpanTree() {
+        SpanTree tree = new SpanTree(name);
+        SpanList root = (SpanList)tree.getRoot();
+        Span[] createdSpans = new Span[spanCount];
+        for (int span = 0; span < spanCount; span++) {
+            createdSpans[span] = root.span(spanFrom(span), spanLength(span));
+        }
+        for (int annotation = 0; annotation < annotationCount; annotation++) {
+            int term = annotationTerm(annotation);
+            createdSpans[annotationSpan(annotation)].annotate(term < 0 ? new Annotation(type)
+                                                                       : new Annotation(type, new StringFieldValue(getTerm(term))));
+        }
+        return tree;
+    }
+
+    @Override
+    public String toString() {
+        return "compact span tree '" + name + "' with " + spanCount + " spans and " + annotationCount + " annotations";
+    }
+
+}
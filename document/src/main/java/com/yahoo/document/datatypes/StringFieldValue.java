@@ -6,6 +6,7 @@ import com.yahoo.collections.CollectionComparator;
 import com.yahoo.document.DataType;
 import com.yahoo.document.Field;
 import com.yahoo.document.PrimitiveDataType;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.SpanTree;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
@@ -17,6 +18,7 @@ import com.yahoo.vespa.objects.Ids;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.OptionalInt;
 
 /**
@@ -38,6 +40,8 @@ public class StringFieldValue extends FieldValue {
     public static final int classId = registerClass(Ids.document + 15, StringFieldValue.class);
     private String value;
     private Map<String, SpanTree> spanTrees = null;
+    /** A span tree which is not in spanTrees, kept in compact form until the span trees are accessed */
+    private CompactSpanTree compactSpanTree = null;
 
     /** Creates a new StringFieldValue holding an empty String. */
     public StringFieldValue() {
@@ -87,7 +91,7 @@ public class StringFieldValue extends FieldValue {
      */
     @Override
     public StringFieldValue clone() {
-        StringFieldValue strfval = (StringFieldValue) super.clone();
+        StringFieldValue strfval = (StringFieldValue) super.clone(); // compactSpanTree is immutable and may be shared
         if (spanTrees != null) {
             strfval.spanTrees = new HashMap<String, SpanTree>(spanTrees.size());
             for (Map.Entry<String, SpanTree> entry : spanTrees.entrySet()) {
@@ -105,6 +109,7 @@ public class StringFieldValue extends FieldValue {
             spanTrees.clear();
             spanTrees = null;
         }
+        compactSpanTree = null;
     }
 
     /**
@@ -121,12 +126,14 @@ public class StringFieldValue extends FieldValue {
             spanTrees.clear();
             spanTrees = null;
         }
+        compactSpanTree = null;
 
         if (!checkAssign(o)) {
             return;
         }
         if (o instanceof StringFieldValue) {
             spanTrees=((StringFieldValue)o).spanTrees;
+            compactSpanTree = ((StringFieldValue)o).compactSpanTree;
         }
         if (o instanceof String) {
             setValue((String) o);
@@ -143,6 +150,7 @@ public class StringFieldValue extends FieldValue {
      * @return an unmodifiable Collection of the span trees with annotations over this String, or an empty Collection
      */
     public Collection<SpanTree> getSpanTrees() {
+        expandCompactSpanTree();
         if (spanTrees == null) {
             return ImmutableList.of();
         }
@@ -154,6 +162,7 @@ public class StringFieldValue extends FieldValue {
      * @return The map of spantrees. Might be null.
      */
     public final Map<String, SpanTree> getSpanTreeMap() {
+        expandCompactSpanTree();
         return spanTrees;
     }
 
@@ -164,6 +173,9 @@ public class StringFieldValue extends FieldValue {
      * @return the span tree associated with the given name, or null if this does not exist.
      */
     public SpanTree getSpanTree(String name) {
+        if (compactSpanTree != null && compactSpanTree.getName().equals(name)) {
+            expandCompactSpanTree();
+        }
         if (spanTrees == null) {
             return null;
         }
@@ -178,6 +190,7 @@ public class StringFieldValue extends FieldValue {
      * @throws IllegalArgumentException if a span tree with the given name already exists.
      */
     public SpanTree setSpanTree(SpanTree spanTree) {
+        expandCompactSpanTree();
         if (spanTrees == null) {
             spanTrees = new HashMap<>(1);
         }
@@ -196,6 +209,7 @@ public class StringFieldValue extends FieldValue {
      * @return the span tree previously associated with the given name, or null if it did not exist.
      */
     public SpanTree removeSpanTree(String name) {
+        expandCompactSpanTree();
         if (spanTrees == null) {
             return null;
         }
@@ -206,6 +220,76 @@ public class StringFieldValue extends FieldValue {
         return tree;
     }
 
+    /**
+     * Sets a span tree with annotations over this String in compact form. It is kept in this form until
+     * it is returned, or span trees are set or removed, and is then expanded once into a span tree of this.
+     * Until then, serializers write it directly, and it is compared without being expanded.
+     *
+     * @param spanTree the compact span tree, which must not be modified after this
+     * @throws IllegalArgumentException if a span tree with the given name already exists.
+     */
+    public void setCompactSpanTree(CompactSpanTree spanTree) {
+        if (hasSpanTree(spanTree.getName())) {
+            throw new IllegalArgumentException("Span tree " + spanTree.getName() + " already exists.");
+        }
+        expandCompactSpanTree();
+        compactSpanTree = spanTree;
+    }
+
+    /** Returns the span tree of this which is still in compact form, if any. This is for serializers. */
+    public CompactSpanTree getCompactSpanTree() {
+        return compactSpanTree;
+    }
+
+    /**
+     * Returns the span trees of this except the one still in compact form, if any. Might be null.
+     * This is for serializers, which write the compact span tree separately.
+     */
+    public final Map<String, SpanTree> getNonCompactSpanTreeMap() {
+        return spanTrees;
+    }
+
+    /** Returns whether this has a span tree with the given name, without expanding any compact span tree */
+    public boolean hasSpanTree(String name) {
+        if (compactSpanTree != null && compactSpanTree.getName().equals(name)) return true;
+        return spanTrees != null && spanTrees.containsKey(name);
+    }
+
+    /** Moves any span tree in compact form to the other span trees of this, before these are returned or modified */
+    private void expandCompactSpanTree() {
+        if (compactSpanTree == null) return;
+        SpanTree tree = compactSpanTree.toSpanTree();
+        compactSpanTree = null;
+        setSpanTree(tree);
+    }
+
+    /** Returns the given compact span tree of this expanded into a new span tree, without changing this */
+    private SpanTree expand(CompactSpanTree compact) {
+        SpanTree tree = compact.toSpanTree();
+        tree.setStringFieldValue(this);
+        return tree;
+    }
+
+    /**
+     * Returns all the span trees of this, with any span tree in compact form expanded in a new map,
+     * without changing this. Might be null.
+     */
+    private Map<String, SpanTree> allSpanTrees() {
+        CompactSpanTree compact = compactSpanTree;
+        if (compact == null) return spanTrees;
+
+        Map<String, SpanTree> trees = (spanTrees == null) ? new HashMap<>(1) : new HashMap<>(spanTrees);
+        trees.put(compact.getName(), expand(compact));
+        return trees;
+    }
+
+    /** Returns whether the span trees of this and the given value are equal, without changing either */
+    private boolean spanTreesEqual(StringFieldValue other) {
+        if (compactSpanTree == other.compactSpanTree) // the same or no compact span tree
+            return Objects.equals(spanTrees, other.spanTrees);
+        return Objects.equals(allSpanTrees(), other.allSpanTrees());
+    }
+
     /**
      * Returns the String value wrapped by this StringFieldValue.
      *
@@ -252,9 +336,8 @@ public class StringFieldValue extends FieldValue {
         if (!(o instanceof StringFieldValue)) return false;
         if (!super.equals(o)) return false;
         StringFieldValue that = (StringFieldValue) o;
-        if ((spanTrees != null) ? !spanTrees.equals(that.spanTrees) : that.spanTrees != null) return false;
         if ((value != null) ? !value.equals(that.value) : that.value != null) return false;
-        return true;
+        return spanTreesEqual(that);
     }
 
     @Override
@@ -288,17 +371,19 @@ public class StringFieldValue extends FieldValue {
             return comp;
         }
 
-        if (spanTrees == null) {
-            comp = (otherValue.spanTrees == null) ? 0 : -1;
+        Map<String, SpanTree> trees = allSpanTrees();
+        Map<String, SpanTree> otherTrees = otherValue.allSpanTrees();
+        if (trees == null) {
+            comp = (otherTrees == null) ? 0 : -1;
         } else {
-            if (otherValue.spanTrees == null) {
+            if (otherTrees == null) {
                 comp = 1;
             } else {
-                comp = CollectionComparator.compare(spanTrees.keySet(), otherValue.spanTrees.keySet());
+                comp = CollectionComparator.compare(trees.keySet(), otherTrees.keySet());
                 if (comp != 0) {
                     return comp;
                 }
-                comp = CollectionComparator.compare(spanTrees.values(), otherValue.spanTrees.values());
+                comp = CollectionComparator.compare(trees.values(), otherTrees.values());
             }
         }
         return comp;
@@ -7,6 +7,7 @@ import com.yahoo.document.select.parser.SelectInput;
 import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
 import com.yahoo.document.select.rule.ExpressionNode;
+import com.yahoo.document.select.rule.LogicNode;
 
 /**
  * <p>A document selector is a filter which accepts or rejects documents
@@ -32,6 +33,7 @@ public class DocumentSelector {
         try {
             SelectParser parser = new SelectParser(input);
             expression = parser.expression();
+            LogicNode.enableShortCircuit(expression);
         } catch (TokenMgrException e) {
             ParseException t = new ParseException("Tokenization error parsing document selector '" + selector + "'");
             throw (ParseException)t.initCause(e);
@@ -18,6 +18,9 @@ public class AttributeNode implements ExpressionNode {
     private ExpressionNode value;
     private final List<Item> items = new ArrayList<Item>();
 
+    // The last field path resolved by this, which is reused for documents of the same type.
+    private volatile ResolvedFieldPath lastFieldPath = null;
+
     public AttributeNode(ExpressionNode value, List items) {
         this.value = value;
         for (Object obj : items) {
@@ -50,12 +53,16 @@ public class AttributeNode implements ExpressionNode {
 
     // Inherit doc from ExpressionNode.
     public Object evaluate(Context context) {
-        String pos = value.toString();
         Object obj = value.evaluate(context);
 
         StringBuilder builder = new StringBuilder();
-        for (Item item : items) {
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
             if (obj == null) {
+                StringBuilder pos = new StringBuilder(value.toString());
+                for (Item previous : items.subList(0, i)) {
+                    pos.append(".").append(previous);
+                }
                 throw new IllegalStateException("Can not invoke '" + item + "' on '" + pos + "' because that term " +
                                                 "evaluated to null.");
             }
@@ -73,8 +80,6 @@ public class AttributeNode implements ExpressionNode {
 
                 obj = evaluateFunction(item.getName(), obj);
             }
-
-            pos = pos + "." + item;
         }
 
         if (builder.length() > 0) {
@@ -121,10 +126,34 @@ public class AttributeNode implements ExpressionNode {
         throw new IllegalStateException("Function '" + function + "' is not supported.");
     }
 
-    private static Object evaluateFieldPath(String fieldPth, Object value) {
+    /** Returns the given field path resolved in the given document type, reusing the last one resolved if possible */
+    private FieldPath fieldPathOf(String fieldPath, DocumentType type) {
+        ResolvedFieldPath resolved = lastFieldPath;
+        if (resolved == null || resolved.type != type || ! resolved.path.equals(fieldPath)) {
+            resolved = new ResolvedFieldPath(fieldPath, type, type.buildFieldPath(fieldPath));
+            lastFieldPath = resolved;
+        }
+        return resolved.fieldPath;
+    }
+
+    private static final class ResolvedFieldPath {
+
+        private final String path;
+        private final DocumentType type;
+        private final FieldPath fieldPath;
+
+        ResolvedFieldPath(String path, DocumentType type, FieldPath fieldPath) {
+            this.path = path;
+            this.type = type;
+            this.fieldPath = fieldPath;
+        }
+
+    }
+
+    private Object evaluateFieldPath(String fieldPth, Object value) {
         if (value instanceof DocumentPut) {
             final Document doc = ((DocumentPut) value).getDocument();
-            FieldPath fieldPath = doc.getDataType().buildFieldPath(fieldPth);
+            FieldPath fieldPath = fieldPathOf(fieldPth, doc.getDataType());
             IteratorHandler handler = new IteratorHandler();
             doc.iterateNested(fieldPath, 0, handler);
             if (handler.values.isEmpty()) {
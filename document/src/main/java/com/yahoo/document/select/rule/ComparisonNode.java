@@ -23,6 +23,9 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The last pattern compiled by this, which is reused as long as the right-hand-side and operator evaluate to the same.
+    private volatile CompiledPattern lastPattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -386,11 +389,32 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
+        return Result.toResult(patternOf(right).matcher(left).find());
+    }
+
+    /** Returns the compiled pattern of the given regex or glob, which is usually a literal and therefore the same each time */
+    private Pattern patternOf(String source) {
+        boolean isGlob = ! operator.equals("=~");
+        CompiledPattern pattern = lastPattern;
+        if (pattern == null || pattern.isGlob != isGlob || ! pattern.source.equals(source)) {
+            pattern = new CompiledPattern(source, isGlob, Pattern.compile(isGlob ? globToRegex(source) : source));
+            lastPattern = pattern;
+        }
+        return pattern.pattern;
+    }
+
+    private static final class CompiledPattern {
+
+        private final String source;
+        private final boolean isGlob;
+        private final Pattern pattern;
+
+        CompiledPattern(String source, boolean isGlob, Pattern pattern) {
+            this.source = source;
+            this.isGlob = isGlob;
+            this.pattern = pattern;
         }
+
     }
 
     /**
@@ -5,6 +5,7 @@ import com.yahoo.document.BucketIdFactory;
 import com.yahoo.document.select.BucketSet;
 import com.yahoo.document.select.Context;
 import com.yahoo.document.select.OrderingSpecification;
+import com.yahoo.document.select.Result;
 import com.yahoo.document.select.ResultList;
 import com.yahoo.document.select.Visitor;
 
@@ -32,6 +33,9 @@ public class LogicNode implements ExpressionNode {
     // The items contained in this.
     private final List<NodeItem> items = new ArrayList<NodeItem>();
 
+    // Whether operands accessing document fields may be skipped when another operand is false, see enableShortCircuit.
+    private boolean shortCircuit = false;
+
     /**
      * Construct an empty logic expression.
      */
@@ -162,41 +166,112 @@ public class LogicNode implements ExpressionNode {
     // Inherit doc from ExpressionNode.
     @Override
     public Object evaluate(Context context) {
-        Stack<ValueItem> buf = new Stack<>();
-        for (NodeItem item : items) {
-            if ( ! buf.isEmpty()) {
-                while (buf.peek().operator > item.operator) {
-                    combineValues(buf);
+        // As "and" has precedence over "or", this is an "or" of runs of "and"-ed nodes. Both are combined from the right.
+        List<ResultList> runs = new ArrayList<>();
+        for (int start = 0; start < items.size(); ) {
+            int end = start + 1;
+            while (end < items.size() && items.get(end).operator == AND) {
+                ++end;
+            }
+            runs.add(evaluateAndRun(context, start, end));
+            start = end;
+        }
+        ResultList value = runs.get(runs.size() - 1);
+        for (int i = runs.size() - 2; i >= 0; --i) {
+            value = runs.get(i).combineOR(value);
+        }
+        return value;
+    }
+
+    /**
+     * Evaluates the items from start to end, which are combined by "and". If short-circuiting is enabled,
+     * items which do not access document fields are evaluated first, and if one of them is false,
+     * the rest are not evaluated.
+     */
+    private ResultList evaluateAndRun(Context context, int start, int end) {
+        if (end - start == 1) {
+            return ResultList.toResultList(items.get(start).node.evaluate(context));
+        }
+
+        ResultList[] values = new ResultList[end - start];
+        for (int i = start; i < end && shortCircuit; ++i) {
+            if ( ! accessesFields(items.get(i).node)) {
+                values[i - start] = ResultList.toResultList(items.get(i).node.evaluate(context));
+                if (isFalse(values[i - start])) {
+                    return new ResultList(Result.FALSE);
                 }
             }
-            
-            buf.push(new ValueItem(item.operator, ResultList.toResultList(item.node.evaluate(context))));
         }
-        while (buf.size() > 1) {
-            combineValues(buf);
+        for (int i = start; i < end; ++i) {
+            if (values[i - start] == null) {
+                values[i - start] = ResultList.toResultList(items.get(i).node.evaluate(context));
+            }
         }
-        return buf.pop().value;
+        ResultList value = values[values.length - 1];
+        for (int i = values.length - 2; i >= 0; --i) {
+            value = values[i].combineAND(value);
+        }
+        return value;
     }
 
     /**
-     * Combines the top two items of the given stack using the operator of the second.
+     * Enables short-circuiting of the conjunctions in the given expression, which must be the whole expression
+     * of a selection, where their value only decides whether the selection is true. This excludes conjunctions
+     * combined by "or", as the value of these may change when operands are skipped: If a skipped field operand
+     * gives an empty result list, which happens when a variable is bound to values which do not match,
+     * the value of the conjunction is an empty result list, which stays empty when combined by "or".
      *
-     * @param buf The stack of values.
+     * @param expression the expression of a selection
      */
-    private void combineValues(Stack<ValueItem> buf) {
-        ValueItem rhs = buf.pop();
-        ValueItem lhs = buf.pop();
+    public static void enableShortCircuit(ExpressionNode expression) {
+        if (expression instanceof EmbracedNode) {
+            enableShortCircuit(((EmbracedNode)expression).getNode());
+        } else if (expression instanceof NegationNode) { // negation only depends on whether the operand is true
+            enableShortCircuit(((NegationNode)expression).getNode());
+        } else if (expression instanceof LogicNode) {
+            LogicNode conjunction = (LogicNode)expression;
+            for (int i = 1; i < conjunction.items.size(); ++i) {
+                if (conjunction.items.get(i).operator != AND) return;
+            }
+            conjunction.shortCircuit = true;
+            for (NodeItem item : conjunction.items) {
+                enableShortCircuit(item.node);
+            }
+        }
+    }
 
-        switch (rhs.operator) {
-            case AND:
-                buf.push(new ValueItem(lhs.operator, lhs.value.combineAND(rhs.value)));
-                break;
-            case OR:
-                buf.push(new ValueItem(lhs.operator, lhs.value.combineOR(rhs.value)));
-                break;
-            default:
-                throw new IllegalStateException("Arithmetic operator " + rhs.operator + " not supported.");
+    private static boolean isFalse(ResultList value) {
+        if (value.getResults().isEmpty()) {
+            return false;
         }
+        for (ResultList.ResultPair pair : value.getResults()) {
+            if (pair.getResult() != Result.FALSE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether evaluating the given node may access document fields, as opposed to only
+     * the document id, the document type, and constants, which are cheap.
+     */
+    private static boolean accessesFields(ExpressionNode node) {
+        if (node instanceof IdNode || node instanceof DocumentNode || node instanceof LiteralNode || node instanceof NowNode) {
+            return false;
+        } else if (node instanceof ComparisonNode) {
+            return accessesFields(((ComparisonNode)node).getLHS()) || accessesFields(((ComparisonNode)node).getRHS());
+        } else if (node instanceof NegationNode) {
+            return accessesFields(((NegationNode)node).getNode());
+        } else if (node instanceof EmbracedNode) {
+            return accessesFields(((EmbracedNode)node).getNode());
+        } else if (node instanceof AttributeNode) {
+            for (AttributeNode.Item item : ((AttributeNode)node).getItems()) {
+                if (item.getType() != AttributeNode.Item.FUNCTION) return true;
+            }
+            return accessesFields(((AttributeNode)node).getValue());
+        }
+        return true;
     }
 
     public void accept(Visitor visitor) {
@@ -254,19 +329,6 @@ public class LogicNode implements ExpressionNode {
         }
     }
 
-    /**
-     * Private class to store results in a stack.
-     */
-    private final class ValueItem {
-        private int operator;
-        private ResultList value;
-
-        public ValueItem(int operator, ResultList value) {
-            this.operator = operator;
-            this.value = value;
-        }
-    }
-
     /**
      * Private class to store bucket sets in a stack.
      */
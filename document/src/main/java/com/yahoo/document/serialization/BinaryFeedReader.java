@@ -0,0 +1,66 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.vespaxmlparser.FeedReader;
+import com.yahoo.vespaxmlparser.VespaXMLFeedReader.Operation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Facade between {@link BinaryFeedFormat} and the FeedReader API. The stream must contain
+ * a single operation in the binary feed format.
+ *
+ * <p>
+ * The feed reader will take ownership of the input stream and close it when the
+ * operation has been read.
+ *
+ * @author agent
+ */
+public class BinaryFeedReader implements FeedReader {
+
+    private final InputStream stream;
+    private final DocumentTypeManager manager;
+    private boolean read = false;
+
+    public BinaryFeedReader(InputStream stream, DocumentTypeManager manager) {
+        this.stream = stream;
+        this.manager = manager;
+    }
+
+    @Override
+    public void read(Operation operation) throws Exception {
+        if (read) {
+            operation.setInvalid();
+            return;
+        }
+        read = true;
+
+        DocumentOperation documentOperation = BinaryFeedFormat.deserialize(readAll(), manager);
+        if (documentOperation instanceof DocumentUpdate) {
+            operation.setDocumentUpdate((DocumentUpdate) documentOperation);
+        } else if (documentOperation instanceof DocumentRemove) {
+            operation.setRemove(documentOperation.getId());
+        } else if (documentOperation instanceof DocumentPut) {
+            operation.setDocument(((DocumentPut) documentOperation).getDocument());
+        }
+        operation.setCondition(documentOperation.getCondition());
+    }
+
+    private byte[] readAll() throws IOException {
+        try (InputStream in = stream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        }
+    }
+
+}
@@ -226,9 +226,14 @@ public class VespaDocumentSerializer42 extends BufferSerializer implements Docum
     public void write(FieldBase field, StringFieldValue value) {
         byte[] stringBytes = createUTF8CharArray(value.getString());
 
+        //the compact span tree, if any, is written directly rather than expanded into a SpanTree:
+        CompactSpanTree compactTree = value.getCompactSpanTree();
+        Map<String, SpanTree> trees = value.getNonCompactSpanTreeMap();
+        int treeCount = (trees == null ? 0 : trees.size()) + (compactTree == null ? 0 : 1);
+
         byte coding = 0;
         //Use bit 6 of "coding" to say whether span tree is available or not
-        if (!value.getSpanTrees().isEmpty()) {
+        if (treeCount > 0) {
             coding |= 64;
         }
         buf.put(coding);
@@ -237,24 +242,33 @@ public class VespaDocumentSerializer42 extends BufferSerializer implements Docum
         buf.put(stringBytes);
         buf.put(((byte) 0));
 
-        Map<String, SpanTree> trees = value.getSpanTreeMap();
-        if ((trees != null) && !trees.isEmpty()) {
+        if (treeCount > 0) {
             try {
                 //we don't support serialization of nested span trees, so this is safe:
                 bytePositions = calculateBytePositions(value.getString());
                 //total length. record position and go back here if necessary:
                 int posBeforeSize = buf.position();
                 buf.putInt(0);
-                buf.putInt1_2_4Bytes(trees.size());
-
-                for (SpanTree tree : trees.values()) {
+                buf.putInt1_2_4Bytes(treeCount);
+
+                if (trees != null) {
+                    for (SpanTree tree : trees.values()) {
+                        try {
+                            write(tree);
+                        } catch (SerializationException e) {
+                            throw e;
+                        } catch (RuntimeException e) {
+                            throw new SerializationException("Exception thrown while serializing span tree '" +
+                                                             tree.getName() + "'; string='" + value.getString() + "'", e);
+                        }
+                    }
+                }
+                if (compactTree != null) {
                     try {
-                        write(tree);
-                    } catch (SerializationException e) {
-                        throw e;
+                        write(compactTree);
                     } catch (RuntimeException e) {
                         throw new SerializationException("Exception thrown while serializing span tree '" +
-                                                         tree.getName() + "'; string='" + value.getString() + "'", e);
+                                                         compactTree.getName() + "'; string='" + value.getString() + "'", e);
                     }
                 }
                 int endPos = buf.position();
@@ -503,6 +517,57 @@ public class VespaDocumentSerializer42 extends BufferSerializer implements Docum
         }
     }
 
+    /**
+     * Writes a compact span tree in the same format as {@link #write(SpanTree)} writes the span tree
+     * it represents, without creating the span nodes and annotations
+     */
+    public void write(CompactSpanTree tree) {
+        if (bytePositions == null) {
+            throw new SerializationException("Cannot serialize " + tree + ", no access to parent StringFieldValue.");
+        }
+        new StringFieldValue(tree.getName()).serialize(this);
+
+        //the root span list has node id 0, and its spans have ids from 1 in order:
+        buf.put(SpanList.ID);
+        buf.putInt1_2_4Bytes(tree.numSpans());
+        for (int span = 0; span < tree.numSpans(); span++) {
+            int byteFrom = bytePositions[tree.spanFrom(span)];
+            int byteLength = bytePositions[tree.spanFrom(span) + tree.spanLength(span)] - byteFrom;
+            buf.put(Span.ID);
+            buf.putInt1_2_4Bytes(byteFrom);
+            buf.putInt1_2_4Bytes(byteLength);
+        }
+
+        AnnotationType type = tree.getAnnotationType();
+        byte[][] termBytes = new byte[tree.numTerms()][];
+        int[] annotations = tree.annotationsInSerializationOrder();
+        buf.putInt1_2_4Bytes(annotations.length);
+        for (int annotation : annotations) {
+            int term = tree.annotationTerm(annotation);
+            buf.putInt(type.getId());
+            buf.put(term < 0 ? (byte) 1 : (byte) 3); //span node, and value if there is a term
+
+            int posBeforeSize = buf.position();
+            buf.putInt1_2_4BytesAs4(0);
+            buf.putInt1_2_4Bytes(tree.annotationSpan(annotation) + 1);
+            if (term >= 0) {
+                buf.putInt(type.getDataType().getId());
+                if (termBytes[term] == null) {
+                    termBytes[term] = createUTF8CharArray(tree.getTerm(term));
+                }
+                //a string without span trees, as written by write(FieldBase, StringFieldValue):
+                buf.put((byte) 0);
+                buf.putInt1_4Bytes(termBytes[term].length + 1);
+                buf.put(termBytes[term]);
+                buf.put((byte) 0);
+            }
+            int end = buf.position();
+            buf.position(posBeforeSize);
+            buf.putInt1_2_4BytesAs4(end - posBeforeSize - 4);
+            buf.position(end);
+        }
+    }
+
     public void write(SpanNode spanNode) {
         if (spanNodeCounter >= 0) {
             spanNode.setScratchId(spanNodeCounter++);
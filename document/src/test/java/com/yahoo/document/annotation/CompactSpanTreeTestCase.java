@@ -0,0 +1,184 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.annotation;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.serialization.DocumentDeserializer;
+import com.yahoo.document.serialization.DocumentDeserializerFactory;
+import com.yahoo.document.serialization.DocumentSerializer;
+import com.yahoo.document.serialization.DocumentSerializerFactory;
+import com.yahoo.io.GrowableByteBuffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class CompactSpanTreeTestCase {
+
+    private static final Field field = new Field("text", DataType.STRING);
+
+    @Test
+    public void requireThatCompactTreeIsSerializedLikeTheEquivalentSpanTree() {
+        String text = "Blåbær i Æøå, blåbær";
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        int blabaer = tree.addTerm("blåbær");
+        int aeoa = tree.addTerm("æøå");
+        int first = tree.addSpan(0, 6);
+        tree.annotate(first, blabaer);
+        tree.annotate(tree.addSpan(7, 1), -1);
+        int third = tree.addSpan(9, 3);
+        tree.annotate(third, aeoa);
+        tree.annotate(third, -1);
+        tree.annotate(tree.addSpan(14, 6), -1);
+
+        assertSameSerialization(text, tree);
+    }
+
+    @Test
+    public void requireThatAnnotationsAreSerializedInSpanTreeOrder() {
+        String text = "one two three";
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        int two = tree.addTerm("zwei");
+        int alsoTwo = tree.addTerm("deux");
+        int three = tree.addSpan(8, 5);
+        int first = tree.addSpan(0, 3);
+        int second = tree.addSpan(4, 3);
+        int overlapping = tree.addSpan(0, 7);
+        tree.annotate(three, -1);
+        tree.annotate(second, two);
+        tree.annotate(second, alsoTwo);
+        tree.annotate(overlapping, -1);
+        tree.annotate(second, -1);
+        tree.annotate(first, -1);
+        tree.annotate(second, two);
+
+        assertFalse(Arrays.equals(new int[] { 0, 1, 2, 3, 4, 5, 6 }, tree.annotationsInSerializationOrder()));
+        assertSameSerialization(text, tree);
+    }
+
+    @Test
+    public void requireThatCompactTreeIsExpandedOnceWhenRead() {
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        tree.annotate(tree.addSpan(0, 3), tree.addTerm("foo"));
+        StringFieldValue value = new StringFieldValue("Foo");
+        value.setCompactSpanTree(tree);
+        assertTrue(value.hasSpanTree(SpanTrees.LINGUISTICS));
+        assertSame(tree, value.getCompactSpanTree());
+        assertNull(value.getNonCompactSpanTreeMap());
+        assertNull(value.getSpanTree("other"));
+        assertSame("Reading another span tree does not expand it", tree, value.getCompactSpanTree());
+
+        SpanTree expanded = value.getSpanTree(SpanTrees.LINGUISTICS);
+        assertNotNull(expanded);
+        assertEquals(tree.toSpanTree(), expanded);
+        assertEquals(1, expanded.numAnnotations());
+        assertEquals(new StringFieldValue("foo"), expanded.iterator().next().getFieldValue());
+        assertSame(value, expanded.getStringFieldValue());
+        assertNull(value.getCompactSpanTree());
+        assertSame(expanded, value.getNonCompactSpanTreeMap().get(SpanTrees.LINGUISTICS));
+        assertSame(expanded, value.getSpanTree(SpanTrees.LINGUISTICS));
+        assertSame(expanded, value.getSpanTreeMap().get(SpanTrees.LINGUISTICS));
+        assertEquals(Collections.singletonList(expanded), new ArrayList<>(value.getSpanTrees()));
+
+        expanded.annotate(new Annotation(AnnotationTypes.TERM, new StringFieldValue("bar")));
+        assertEquals("Changes to the returned span tree are kept",
+                     2, value.getSpanTree(SpanTrees.LINGUISTICS).numAnnotations());
+    }
+
+    @Test
+    public void requireThatCompactTreeIsExpandedWhenSpanTreesAreModified() {
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        tree.annotate(tree.addSpan(0, 3), tree.addTerm("foo"));
+        StringFieldValue value = new StringFieldValue("Foo");
+        value.setCompactSpanTree(tree);
+
+        value.setSpanTree(new SpanTree("other"));
+        assertNull(value.getCompactSpanTree());
+        assertEquals(tree.toSpanTree(), value.getNonCompactSpanTreeMap().get(SpanTrees.LINGUISTICS));
+
+        SpanTree removed = value.removeSpanTree(SpanTrees.LINGUISTICS);
+        assertEquals(tree.toSpanTree(), removed);
+        assertFalse(value.hasSpanTree(SpanTrees.LINGUISTICS));
+    }
+
+    @Test
+    public void requireThatCompactAndExpandedValuesAreEqual() {
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        tree.annotate(tree.addSpan(0, 3), tree.addTerm("foo"));
+        StringFieldValue compact = new StringFieldValue("Foo");
+        compact.setCompactSpanTree(tree);
+        StringFieldValue expanded = new StringFieldValue("Foo");
+        expanded.setSpanTree(tree.toSpanTree());
+
+        assertEquals(expanded, compact);
+        assertEquals(compact, expanded);
+        assertEquals(0, expanded.compareTo(compact));
+        assertEquals(0, compact.compareTo(expanded));
+        assertSame("Comparing does not expand the tree", tree, compact.getCompactSpanTree());
+
+        StringFieldValue otherCompact = new StringFieldValue("Foo");
+        CompactSpanTree otherTree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        otherTree.annotate(otherTree.addSpan(0, 3), otherTree.addTerm("bar"));
+        otherCompact.setCompactSpanTree(otherTree);
+        assertNotEquals(compact, otherCompact);
+        compact.compareTo(otherCompact);
+        assertSame(tree, compact.getCompactSpanTree());
+        assertSame(otherTree, otherCompact.getCompactSpanTree());
+    }
+
+    @Test
+    public void requireThatCompactTreeNameMustBeUnique() {
+        StringFieldValue value = new StringFieldValue("foo");
+        value.setSpanTree(new SpanTree(SpanTrees.LINGUISTICS));
+        try {
+            value.setCompactSpanTree(new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static void assertSameSerialization(String text, CompactSpanTree tree) {
+        StringFieldValue compact = new StringFieldValue(text);
+        compact.setCompactSpanTree(tree);
+        StringFieldValue expanded = new StringFieldValue(text);
+        expanded.setSpanTree(tree.toSpanTree());
+
+        byte[] compactBytes = serialize(compact);
+        assertNotNull("serializing does not expand the tree", compact.getCompactSpanTree());
+        assertArrayEquals(serialize(expanded), compactBytes);
+
+        DocumentDeserializer deserializer = DocumentDeserializerFactory.create42(new DocumentTypeManager(),
+                                                                                GrowableByteBuffer.wrap(compactBytes));
+        StringFieldValue deserialized = new StringFieldValue();
+        deserializer.read(field, deserialized);
+        assertEquals(expanded, deserialized);
+    }
+
+    private static byte[] serialize(StringFieldValue value) {
+        GrowableByteBuffer buffer = new GrowableByteBuffer(1024);
+        DocumentSerializer serializer = DocumentSerializerFactory.create42(buffer);
+        serializer.write(field, value);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
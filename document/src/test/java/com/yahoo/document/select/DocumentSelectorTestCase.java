@@ -708,6 +708,43 @@ public class DocumentSelectorTestCase {
                          "Lexical error at line -1, column 17.  Encountered: <EOF> after : \"\\\"junk\"");
     }
 
+    @Test
+    public void testIdPredicatesAreEvaluatedBeforeFieldAccess() throws ParseException {
+        DocumentPut put = createDocument("id:myspace:test::anything", 24, 2.0f, "foo", "bar");
+        assertEquals(Result.FALSE, evaluate("test.hint.foo() == 1 and id.namespace == \"other\"", put));
+        assertEquals(Result.FALSE, evaluate("test and test.hint.foo() == 1 and id.namespace == \"other\"", put));
+        assertError("test.hint.foo() == 1 and id.namespace == \"myspace\"", put, "Function 'foo' is not supported.");
+        assertError("test.hint.foo() == 1 and id.namespace == \"other\" or test.hint == 24", put, "Function 'foo' is not supported.");
+        assertEquals(Result.TRUE, evaluate("not (test.hint.foo() == 1 and id.namespace == \"other\")", put));
+        assertEquals(Result.FALSE, evaluate("(test.hint.foo() == 1 and id.namespace == \"other\") and test.hint == 24", put));
+    }
+
+    @Test
+    public void testConjunctionsAreOnlyShortCircuitedWhenThisDoesNotChangeTheResult() throws ParseException {
+        DocumentPut put = createDocs().get(1);
+        // The variable is bound to array indices by one operand and to keys by the other, which gives an empty result list,
+        // and this stays empty, which is false, when combined by "or"
+        String empty = "test.structarray[$x].key == 15 and test.stringweightedset{$x}";
+        String otherNamespace = "id.namespace == \"other\"";
+        assertEquals(Result.FALSE, evaluate(empty + " or test.hint == 13", put));
+        assertEquals(Result.FALSE, evaluate(otherNamespace + " and " + empty + " or test.hint == 13", put));
+        assertEquals(Result.TRUE, evaluate("not (" + empty + ")", put));
+        assertEquals(Result.TRUE, evaluate("not (" + otherNamespace + " and " + empty + ")", put));
+        assertEquals(Result.FALSE, evaluate(otherNamespace + " and " + empty, put));
+        assertEquals(Result.FALSE, evaluate("(" + otherNamespace + " and " + empty + ") and test.hint == 13", put));
+    }
+
+    @Test
+    public void testReusedSelectorGivesSameResults() throws ParseException {
+        DocumentSelector selector = new DocumentSelector("test.hstring = \"fo*\" and test.content =~ \"^b.r$\"");
+        DocumentPut matching = createDocument("id:myspace:test::1", 24, 2.0f, "foo", "bar");
+        DocumentPut nonMatching = createDocument("id:myspace:test::2", 24, 2.0f, "bar", "bar");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Result.TRUE, selector.accepts(matching));
+            assertEquals(Result.FALSE, selector.accepts(nonMatching));
+        }
+    }
+
     @Test
     public void testThatVisitingReportsCorrectResult() throws ParseException {
         assertVisitWithValidNowWorks("music.expire > now()");
@@ -0,0 +1,98 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.serialization;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.TestAndSetCondition;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.update.FieldUpdate;
+import com.yahoo.vespaxmlparser.VespaXMLFeedReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class BinaryFeedReaderTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("music");
+
+    public BinaryFeedReaderTestCase() {
+        type.addField("title", DataType.STRING);
+        type.addField("year", DataType.INT);
+        manager.registerDocumentType(type);
+    }
+
+    private VespaXMLFeedReader.Operation read(DocumentOperation operation) throws Exception {
+        BinaryFeedReader reader = new BinaryFeedReader(new ByteArrayInputStream(BinaryFeedFormat.serialize(operation)), manager);
+        VespaXMLFeedReader.Operation read = new VespaXMLFeedReader.Operation();
+        reader.read(read);
+
+        VespaXMLFeedReader.Operation next = new VespaXMLFeedReader.Operation();
+        reader.read(next);
+        assertEquals(VespaXMLFeedReader.OperationType.INVALID, next.getType());
+        return read;
+    }
+
+    @Test
+    public void putIsRead() throws Exception {
+        Document document = new Document(type, "id:ns:music::1");
+        document.setFieldValue("title", new StringFieldValue("Blåmann"));
+        document.setFieldValue("year", new IntegerFieldValue(1969));
+
+        VespaXMLFeedReader.Operation operation = read(new DocumentPut(document));
+        assertEquals(VespaXMLFeedReader.OperationType.DOCUMENT, operation.getType());
+        assertEquals(document, operation.getDocument());
+        assertFalse(operation.getCondition().isPresent());
+    }
+
+    @Test
+    public void updateIsReadWithCondition() throws Exception {
+        DocumentUpdate update = new DocumentUpdate(type, "id:ns:music::1");
+        update.addFieldUpdate(FieldUpdate.createAssign(type.getField("year"), new IntegerFieldValue(1970)));
+        update.setCondition(new TestAndSetCondition("music.year==1969"));
+
+        VespaXMLFeedReader.Operation operation = read(update);
+        assertEquals(VespaXMLFeedReader.OperationType.UPDATE, operation.getType());
+        assertEquals(update, operation.getDocumentUpdate());
+        assertEquals("music.year==1969", operation.getCondition().getSelection());
+    }
+
+    @Test
+    public void removeIsRead() throws Exception {
+        VespaXMLFeedReader.Operation operation = read(new DocumentRemove(new DocumentId("id:ns:music::1")));
+        assertEquals(VespaXMLFeedReader.OperationType.REMOVE, operation.getType());
+        assertEquals(new DocumentId("id:ns:music::1"), operation.getRemove());
+    }
+
+    @Test
+    public void invalidInputIsRejected() {
+        try {
+            BinaryFeedFormat.deserialize(new byte[] { BinaryFeedFormat.VERSION, 1, 0 }, manager);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Could not deserialize binary feed operation", e.getMessage());
+        }
+        try {
+            BinaryFeedFormat.deserialize(new byte[] { 7 }, manager);
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Unsupported binary feed format version 7", e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.messagebus.Message;
+import com.yahoo.vdslib.DocumentList;
+import com.yahoo.vdslib.Entry;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A visitor data handler which queues up received document operations, like {@link VisitorDataQueue},
+ * but which reports that it has no capacity once the queued operations exceed a given number of bytes.
+ * The visitor session then stops starting new visitors until the client has caught up, and since the
+ * operations are not acked until consumed, running visitors stop sending once they run out of pending replies.
+ * This bounds the memory used when the client consumes documents more slowly than they are visited.
+ * <p>
+ * Operations may be polled for with the <code>getNext</code> methods, in which case the returned responses
+ * must be acked by the caller, or consumed through {@link #iterator()}, which acks each operation when the
+ * next one is requested. The class is thread safe, but an iterator must only be used by one thread.
+ *
+ * @author agent
+ */
+public class BoundedVisitorDataQueue extends VisitorDataHandler {
+
+    private static final QueuedOperation endOfVisiting = new QueuedOperation(null, null, 0);
+
+    private final long maxQueuedBytes;
+    private final BlockingQueue<QueuedOperation> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    /**
+     * Creates a new bounded visitor data queue
+     *
+     * @param maxQueuedBytes the approximate number of bytes of queued operations above which
+     *                       no new visitors are started
+     */
+    public BoundedVisitorDataQueue(long maxQueuedBytes) {
+        if (maxQueuedBytes <= 0)
+            throw new IllegalArgumentException("Max queued bytes must be positive, was " + maxQueuedBytes);
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    // Inherit doc from VisitorDataHandler
+    @Override
+    public void reset() {
+        super.reset();
+        queue.clear();
+        queuedBytes.set(0);
+    }
+
+    @Override
+    public void onMessage(Message m, AckToken token) {
+        if (m instanceof PutDocumentMessage) {
+            PutDocumentMessage put = (PutDocumentMessage)m;
+            int size = put.getApproxSize(); // before the document is deserialized
+            enqueue(new QueuedOperation(put.getDocumentPut(), token, size));
+        } else if (m instanceof RemoveDocumentMessage) {
+            RemoveDocumentMessage remove = (RemoveDocumentMessage)m;
+            enqueue(new QueuedOperation(remove.getDocumentRemove(), token, remove.getApproxSize()));
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Expected put/remove message, got '%s' of type %s",
+                                  m.toString(), m.getClass().toString()));
+        }
+    }
+
+    private void enqueue(QueuedOperation operation) {
+        queuedBytes.addAndGet(operation.size);
+        queue.add(operation);
+    }
+
+    /** Returns the given operation taken from the queue, or null if it is null or marks the end of visiting */
+    private QueuedOperation dequeued(QueuedOperation operation) {
+        if (operation == null) return null;
+        if (operation == endOfVisiting) {
+            queue.add(endOfVisiting); // for other consumers
+            return null;
+        }
+        queuedBytes.addAndGet(-operation.size);
+        return operation;
+    }
+
+    private static VisitorResponse toResponse(QueuedOperation operation) {
+        if (operation == null) return null;
+        return new DocumentListVisitorResponse(DocumentList.create(Entry.create(operation.operation)), operation.token);
+    }
+
+    /** Returns whether the operations in this queue are currently below the byte limit */
+    @Override
+    public boolean hasCapacity() {
+        return queuedBytes.get() < maxQueuedBytes;
+    }
+
+    /** Returns the approximate number of bytes of operations in this queue */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    @Override
+    public void onDone() {
+        queue.add(endOfVisiting);
+        super.onDone();
+    }
+
+    // Inherit doc from VisitorDataHandler
+    @Override
+    public VisitorResponse getNext() {
+        return toResponse(dequeued(queue.poll()));
+    }
+
+    // Inherit doc from VisitorDataHandler
+    @Override
+    public VisitorResponse getNext(int timeoutMilliseconds) throws InterruptedException {
+        return toResponse(dequeued(queue.poll(timeoutMilliseconds, TimeUnit.MILLISECONDS)));
+    }
+
+    /**
+     * Returns an iterator of the document operations of this queue, which blocks in <code>hasNext</code>
+     * until an operation is received or visiting is done. Each operation is acked when the next one is
+     * requested, so that visiting only progresses as fast as the operations are consumed.
+     *
+     * @throws IllegalStateException from hasNext if the thread is interrupted while waiting
+     */
+    public Iterator<DocumentOperation> iterator() {
+        return new Iterator<DocumentOperation>() {
+
+            private QueuedOperation next = null;
+            private AckToken unacked = null;
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) return true;
+                if (done) return false;
+
+                if (unacked != null) {
+                    ack(unacked);
+                    unacked = null;
+                }
+                try {
+                    next = dequeued(queue.take());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for visitor data", e);
+                }
+                done = next == null;
+                return ! done;
+            }
+
+            @Override
+            public DocumentOperation next() {
+                if ( ! hasNext()) throw new NoSuchElementException("Visiting is done");
+                unacked = next.token;
+                DocumentOperation operation = next.operation;
+                next = null;
+                return operation;
+            }
+
+        };
+    }
+
+    private static class QueuedOperation {
+
+        final DocumentOperation operation;
+        final AckToken token;
+        final int size;
+
+        QueuedOperation(DocumentOperation operation, AckToken token, int size) {
+            this.operation = operation;
+            this.token = token;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -0,0 +1,194 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import java.util.Arrays;
+
+/**
+ * The superbuckets tracked by a {@link ProgressToken}, each with its sub-bucket progress and state,
+ * ordered by unsigned bucket key. Entries are kept in parallel primitive arrays, using 17 bytes per
+ * bucket, since visiting an explicit bucket set or resuming a large visit may track millions of buckets.
+ * <p>
+ * Entries are accessed by slot, where slots are in key order. Removing an entry only marks its slot as
+ * removed, and removed slots are compacted away once they outnumber the live entries, so that finishing
+ * buckets in any order is cheap. Adding buckets in key order is amortized constant time, while adding
+ * a bucket in the middle is linear time unless it can reuse an adjacent removed slot.
+ * <p>
+ * This is not thread safe. Slots are only valid until the next modification.
+ *
+ * @author agent
+ */
+final class BucketProgressMap {
+
+    private static final byte REMOVED = 0;
+    private static final byte PENDING = 1;
+    private static final byte ACTIVE = 2;
+
+    /** Compaction is not worth it below this number of slots */
+    private static final int MIN_COMPACTION_SLOTS = 64;
+
+    private long[] keys = new long[16];
+    private long[] progress = new long[16];
+    private byte[] states = new byte[16];
+
+    /** The number of slots in use, including removed ones */
+    private int slots = 0;
+
+    /** The number of slots which are not removed */
+    private int size = 0;
+
+    /** No slot below this is pending */
+    private int firstPendingCandidate = 0;
+
+    int size() { return size; }
+
+    boolean isEmpty() { return size == 0; }
+
+    /** Returns the number of slots, which may be iterated over in key order, skipping removed slots */
+    int slots() { return slots; }
+
+    boolean isRemoved(int slot) { return states[slot] == REMOVED; }
+
+    long keyAt(int slot) { return keys[slot]; }
+
+    long progressAt(int slot) { return progress[slot]; }
+
+    ProgressToken.BucketState stateAt(int slot) {
+        return states[slot] == ACTIVE ? ProgressToken.BucketState.BUCKET_ACTIVE : ProgressToken.BucketState.BUCKET_PENDING;
+    }
+
+    /** Returns the slot of the entry with the given key, or -1 if there is none */
+    int indexOf(long key) {
+        int slot = search(key);
+        return slot >= 0 && states[slot] != REMOVED ? slot : -1;
+    }
+
+    /** Sets the progress and state of the entry in the given slot, which must not be removed */
+    void set(int slot, long progress, ProgressToken.BucketState state) {
+        this.progress[slot] = progress;
+        setState(slot, state);
+    }
+
+    void setState(int slot, ProgressToken.BucketState state) {
+        states[slot] = toByte(state);
+        if (states[slot] == PENDING && slot < firstPendingCandidate)
+            firstPendingCandidate = slot;
+    }
+
+    /** Sets all entries to the given state */
+    void setAllStates(ProgressToken.BucketState state) {
+        byte value = toByte(state);
+        for (int slot = 0; slot < slots; slot++) {
+            if (states[slot] != REMOVED)
+                states[slot] = value;
+        }
+        firstPendingCandidate = 0;
+    }
+
+    /**
+     * Adds a new entry
+     *
+     * @return false if there already is an entry with this key, in which case nothing is changed
+     */
+    boolean add(long key, long progress, ProgressToken.BucketState state) {
+        int slot;
+        if (slots == 0 || Long.compareUnsigned(key, keys[slots - 1]) > 0) {
+            slot = slots;
+            makeRoom(slot);
+        } else {
+            slot = search(key);
+            if (slot >= 0) {
+                if (states[slot] != REMOVED) return false;
+            } else {
+                slot = -slot - 1;
+                if (slot > 0 && states[slot - 1] == REMOVED)
+                    slot--; // reuse the removed slot before, keeping key order
+                else if (states[slot] != REMOVED)
+                    makeRoom(slot);
+            }
+        }
+        keys[slot] = key;
+        this.progress[slot] = progress;
+        size++;
+        setState(slot, state);
+        return true;
+    }
+
+    /** Removes the entry in the given slot, which must not already be removed */
+    void remove(int slot) {
+        states[slot] = REMOVED;
+        size--;
+        if (slots > MIN_COMPACTION_SLOTS && slots - size > size)
+            compact();
+    }
+
+    /** Returns the slot of the pending entry with the lowest key, or -1 if there are none */
+    int firstPending() {
+        for (int slot = firstPendingCandidate; slot < slots; slot++) {
+            if (states[slot] == PENDING) {
+                firstPendingCandidate = slot;
+                return slot;
+            }
+        }
+        firstPendingCandidate = slots;
+        return -1;
+    }
+
+    void clear() {
+        slots = 0;
+        size = 0;
+        firstPendingCandidate = 0;
+    }
+
+    /** Returns the slot of the given key if present (even if removed), or -(insertion point) - 1 if not */
+    private int search(long key) {
+        int low = 0;
+        int high = slots - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = Long.compareUnsigned(keys[middle], key);
+            if (comparison < 0)
+                low = middle + 1;
+            else if (comparison > 0)
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -(low + 1);
+    }
+
+    /** Makes the given slot available by moving all slots from it and upwards one step up */
+    private void makeRoom(int slot) {
+        if (slots == keys.length) {
+            int capacity = keys.length * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            progress = Arrays.copyOf(progress, capacity);
+            states = Arrays.copyOf(states, capacity);
+        }
+        System.arraycopy(keys, slot, keys, slot + 1, slots - slot);
+        System.arraycopy(progress, slot, progress, slot + 1, slots - slot);
+        System.arraycopy(states, slot, states, slot + 1, slots - slot);
+        states[slot] = REMOVED;
+        slots++;
+    }
+
+    private void compact() {
+        int to = 0;
+        int newFirstPendingCandidate = -1;
+        for (int from = 0; from < slots; from++) {
+            if (states[from] == REMOVED) continue;
+            if (states[from] == PENDING && newFirstPendingCandidate < 0)
+                newFirstPendingCandidate = to;
+            keys[to] = keys[from];
+            progress[to] = progress[from];
+            states[to] = states[from];
+            to++;
+        }
+        slots = to;
+        firstPendingCandidate = newFirstPendingCandidate < 0 ? slots : newFirstPendingCandidate;
+    }
+
+    private static byte toByte(ProgressToken.BucketState state) {
+        return state == ProgressToken.BucketState.BUCKET_ACTIVE ? ACTIVE : PENDING;
+    }
+
+}
@@ -45,7 +45,9 @@ public class ProgressToken {
      * discern between active buckets (i.e. those that have been returned by
      * {@link com.yahoo.documentapi.VisitorIterator#getNext()} but have not
      * yet been update()'d) and pending buckets (i.e. those that have been
-     * update()'d and may be returned by getNext() at some point)
+     * update()'d and may be returned by getNext() at some point).
+     * Entries returned by {@link #getBuckets()} are copies, so setting
+     * their progress or state does not change the token.
      */
     public static class BucketEntry {
         private BucketId progress;
@@ -135,7 +137,7 @@ public class ProgressToken {
      */
     private int distributionBits = 16;
 
-    private TreeMap<BucketKeyWrapper, BucketEntry> buckets = new TreeMap<BucketKeyWrapper, BucketEntry>();
+    private final BucketProgressMap buckets = new BucketProgressMap();
     private long activeBucketCount = 0;
     private long pendingBucketCount = 0;
     private long finishedBucketCount = 0;
@@ -227,7 +229,7 @@ public class ProgressToken {
     }
 
     public byte[] serialize() {
-        DocumentSerializer out = DocumentSerializerFactory.create42(new GrowableByteBuffer());
+        DocumentSerializer out = DocumentSerializerFactory.create42(new GrowableByteBuffer(32 + 16 * buckets.size()));
         out.putInt(null, distributionBits);
         out.putLong(null, bucketCursor);
         out.putLong(null, finishedBucketCount);
@@ -236,9 +238,10 @@ public class ProgressToken {
         out.putInt(null, buckets.size());
 
         // Append individual bucket progress
-        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
-            out.putLong(null, keyToBucketId(entry.getKey().getKey()));
-            out.putLong(null, entry.getValue().getProgress().getRawId());
+        for (int slot = 0; slot < buckets.slots(); slot++) {
+            if (buckets.isRemoved(slot)) continue;
+            out.putLong(null, keyToBucketId(buckets.keyAt(slot)));
+            out.putLong(null, buckets.progressAt(slot));
         }
 
         byte[] ret = new byte[out.getBuf().position()];
@@ -293,9 +296,8 @@ public class ProgressToken {
                 }
         }
 
-        BucketKeyWrapper superKey = bucketToKeyWrapper(superbucket);
-        BucketEntry entry = buckets.get(superKey);
-        if (entry == null) {
+        int slot = buckets.indexOf(bucketToKey(superbucket.getId()));
+        if (slot < 0) {
             throw new IllegalArgumentException(
                     "updateProgress with unknown superbucket "
                     + superbucket + ":" + progress);
@@ -303,7 +305,7 @@ public class ProgressToken {
 
         // If progress == Integer.MAX_VALUE, we're done. Otherwise, we're not
         if (!progress.equals(FINISHED_BUCKET)) {
-            if (entry.getState() != BucketState.BUCKET_ACTIVE) {
+            if (buckets.stateAt(slot) != BucketState.BUCKET_ACTIVE) {
                 if (log.isLoggable(LogLevel.DEBUG)) {
                     log.log(LogLevel.DEBUG, "updateProgress called with sub-bucket that was "
                        + "not marked as active " + superbucket + ":" + progress);
@@ -315,20 +317,19 @@ public class ProgressToken {
             }
             // Mark bucket as pending instead of active, allowing it to be
             // reused by the iterator
-            entry.setState(BucketState.BUCKET_PENDING);
-            entry.setProgress(progress);
+            buckets.set(slot, progress.getRawId(), BucketState.BUCKET_PENDING);
         }
         else {
             // Superbucket is finished, alongside its sub-bucket tree
             ++finishedBucketCount;
-            if (entry.getState() == BucketState.BUCKET_PENDING) {
+            if (buckets.stateAt(slot) == BucketState.BUCKET_PENDING) {
                 assert(pendingBucketCount > 0);
                 --pendingBucketCount;
             } else {
                 assert(activeBucketCount > 0);
                 --activeBucketCount;
             }
-            buckets.remove(superKey);
+            buckets.remove(slot);
         }
     }
 
@@ -354,9 +355,7 @@ public class ProgressToken {
                     + ":" + progress + " with state " + state);
         }
 
-        BucketEntry entry = new BucketEntry(progress, state);
-        BucketEntry existing = buckets.put(bucketToKeyWrapper(superbucket), entry);
-        if (existing != null) {
+        if ( ! buckets.add(bucketToKey(superbucket.getId()), progress.getRawId(), state)) {
             throw new IllegalStateException(
                     "Attempting to add a superbucket that has already been added: "
                     + superbucket + ":" + progress);
@@ -368,6 +367,24 @@ public class ProgressToken {
         }
     }
 
+    /**
+     * Sets the pending bucket with the lowest key to active. <em>For use by
+     * the VisitorIterator only.</em>
+     *
+     * @return The activated superbucket and its progress, or null if there
+     * are no pending buckets
+     */
+    protected VisitorIterator.BucketProgress activateFirstPendingBucket() {
+        int slot = buckets.firstPending();
+        if (slot < 0) return null;
+
+        buckets.setState(slot, BucketState.BUCKET_ACTIVE);
+        ++activeBucketCount;
+        --pendingBucketCount;
+        return new VisitorIterator.BucketProgress(new BucketId(keyToBucketId(buckets.keyAt(slot))),
+                                                  new BucketId(buckets.progressAt(slot)));
+    }
+
     /**
      * Directly generate a bucket Id key for the <code>n</code>th bucket in
      * reverse sorted order.
@@ -477,11 +494,20 @@ public class ProgressToken {
     }
 
     /**
-     * Get internal progress token bucket state map. <em>For internal use only!</em>
+     * Get a copy of the internal progress token bucket state. <em>For internal use only!</em>
+     * This is linear in the number of buckets, and changing the returned map or its entries
+     * does not change this token.
+     *
      * @return Map of superbuckets → sub buckets
      */
     protected TreeMap<BucketKeyWrapper, BucketEntry> getBuckets() {
-        return buckets;
+        TreeMap<BucketKeyWrapper, BucketEntry> copy = new TreeMap<BucketKeyWrapper, BucketEntry>();
+        for (int slot = 0; slot < buckets.slots(); slot++) {
+            if (buckets.isRemoved(slot)) continue;
+            copy.put(new BucketKeyWrapper(buckets.keyAt(slot)),
+                     new BucketEntry(new BucketId(buckets.progressAt(slot)), buckets.stateAt(slot)));
+        }
+        return copy;
     }
 
     protected void setActiveBucketCount(long activeBucketCount) {
@@ -523,10 +549,11 @@ public class ProgressToken {
         sb.append(totalBucketCount);
         sb.append('\n');
         // Append individual bucket progress
-        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
-            sb.append(Long.toHexString(keyToBucketId(entry.getKey().getKey())));
+        for (int slot = 0; slot < buckets.slots(); slot++) {
+            if (buckets.isRemoved(slot)) continue;
+            sb.append(Long.toHexString(keyToBucketId(buckets.keyAt(slot))));
             sb.append(':');
-            sb.append(Long.toHexString(entry.getValue().getProgress().getRawId()));
+            sb.append(Long.toHexString(buckets.progressAt(slot)));
             sb.append('\n');
         }
         for (Map.Entry<BucketId, BucketId> entry : failedBuckets.entrySet()) {
@@ -563,9 +590,10 @@ public class ProgressToken {
         // bucket has yet to see any progress
         // There are numerical precision issues here, but this hardly requires
         // aerospace engineering result-accuracy
-        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
-            BucketId superbucket = new BucketId(keyToBucketId(entry.getKey().getKey()));
-            BucketId progress = entry.getValue().getProgress();
+        for (int slot = 0; slot < buckets.slots(); slot++) {
+            if (buckets.isRemoved(slot)) continue;
+            BucketId superbucket = new BucketId(keyToBucketId(buckets.keyAt(slot)));
+            BucketId progress = new BucketId(buckets.progressAt(slot));
             // Prevent calculation of bucket progress on inconsistent buckets
             if (progress.getId() != 0 && superbucket.contains(progress)) {
                 cumulativeSubProgress += superDelta * progressFraction(superbucket, progress);
@@ -605,9 +633,6 @@ public class ProgressToken {
         return retVal;
     }
 
-    private static BucketKeyWrapper bucketToKeyWrapper(BucketId bucket) {
-        return new BucketKeyWrapper(bucketToKey(bucket.getId()));
-    }
     /*
      * BucketId::Type
      * BucketId::keyToBucketId(Type key)
@@ -705,13 +730,13 @@ public class ProgressToken {
         }
         // Bucket has been generated, and it must have been finished if it's
         // not listed as active/pending since we always remove finished buckets
-        BucketEntry entry = buckets.get(bucketToKeyWrapper(superbucket));
-        if (entry == null) {
+        int slot = buckets.indexOf(bucketToKey(superbucket.getId()));
+        if (slot < 0) {
             return true;
         }
         // If key of bucket progress > key of bucket id, we've finished it
         long bucketKey = bucketToKey(bucket.getId());
-        long progressKey = bucketToKey(entry.getProgress().getId());
+        long progressKey = bucketToKey(new BucketId(buckets.progressAt(slot)).getId());
         // TODO: verify correctness for all bucket orderings!
         return progressKey > bucketKey;
     }
@@ -724,13 +749,12 @@ public class ProgressToken {
      * token into a consistent state eventually.
      */
     protected void splitPendingBucket(BucketId bucket) {
-        BucketKeyWrapper bucketKey = bucketToKeyWrapper(bucket);
-        BucketEntry entry = buckets.get(bucketKey);
-        if (entry == null) {
+        int slot = buckets.indexOf(bucketToKey(bucket.getId()));
+        if (slot < 0) {
             throw new IllegalArgumentException(
                     "Attempting to split unknown bucket: " + bucket);
         }
-        if (entry.getState() != BucketState.BUCKET_PENDING) {
+        if (buckets.stateAt(slot) != BucketState.BUCKET_PENDING) {
             throw new IllegalArgumentException(
                     "Attempting to split non-pending bucket: " + bucket);
         }
@@ -743,22 +767,23 @@ public class ProgressToken {
         BucketId splitRight = new BucketId(splitDistBits, bucket.getId()
                 | (1L << bucket.getUsedBits()));
 
-        addBucket(splitLeft, entry.getProgress(), BucketState.BUCKET_PENDING);
-        addBucket(splitRight, entry.getProgress(), BucketState.BUCKET_PENDING);
-
+        BucketId progress = new BucketId(buckets.progressAt(slot));
         // Remove old bucket
-        buckets.remove(bucketKey);
+        buckets.remove(slot);
         --pendingBucketCount;
+
+        addBucket(splitLeft, progress, BucketState.BUCKET_PENDING);
+        addBucket(splitRight, progress, BucketState.BUCKET_PENDING);
     }
 
     protected void mergePendingBucket(BucketId bucket) {
-        BucketKeyWrapper bucketKey = bucketToKeyWrapper(bucket);
-        BucketEntry entry = buckets.get(bucketKey);
-        if (entry == null) {
+        long bucketKey = bucketToKey(bucket.getId());
+        int slot = buckets.indexOf(bucketKey);
+        if (slot < 0) {
             throw new IllegalArgumentException(
                     "Attempting to join unknown bucket: " + bucket);
         }
-        if (entry.getState() != BucketState.BUCKET_PENDING) {
+        if (buckets.stateAt(slot) != BucketState.BUCKET_PENDING) {
             throw new IllegalArgumentException(
                     "Attempting to join non-pending bucket: " + bucket);
         }
@@ -770,42 +795,41 @@ public class ProgressToken {
         // right sibling in the pending mapping
         if ((bucket.getId() & (1L << (usedBits - 1))) == 0) {
             BucketId rightCheck = new BucketId(usedBits, bucket.getId() | (1L << (usedBits - 1)));
-            BucketEntry rightSibling = buckets.get(bucketToKeyWrapper(rightCheck));
+            int rightSibling = buckets.indexOf(bucketToKey(rightCheck.getId()));
             // Must not merge if sibling isn't pending
-            if (rightSibling != null) {
-                assert(rightSibling.getState() == BucketState.BUCKET_PENDING);
+            if (rightSibling >= 0) {
+                assert(buckets.stateAt(rightSibling) == BucketState.BUCKET_PENDING);
                 if (log.isLoggable(LogLevel.SPAM)) {
                     log.log(LogLevel.SPAM, "Merging " + bucket + " with rhs " + rightCheck);
                 }
                 // If right sibling has progress, it will unfortunately have to
                 // be discarded
-                if (rightSibling.getProgress().getUsedBits() != 0
+                if (new BucketId(buckets.progressAt(rightSibling)).getUsedBits() != 0
                         && log.isLoggable(LogLevel.DEBUG)) {
                     log.log(LogLevel.DEBUG, "Bucket progress for " + rightCheck +
                             " will be lost due to merging; potential for duplicates in result-set");
                 }
-                buckets.remove(bucketToKeyWrapper(rightCheck));
+                buckets.remove(rightSibling);
                 --pendingBucketCount;
             }
         } else {
             BucketId leftSanityCheck = new BucketId(usedBits, bucket.getId() & ~(1L << (usedBits - 1)));
-            BucketEntry leftSibling = buckets.get(bucketToKeyWrapper(leftSanityCheck));
-            assert(leftSibling == null) : "bucket merge sanity checking failed";
+            assert(buckets.indexOf(bucketToKey(leftSanityCheck.getId())) < 0) : "bucket merge sanity checking failed";
         }
 
-        BucketId newMerged = new BucketId(usedBits - 1, bucket.getId());
-        addBucket(newMerged, entry.getProgress(), BucketState.BUCKET_PENDING);
         // Remove original bucket, leaving only the merged bucket
-        buckets.remove(bucketKey);
+        slot = buckets.indexOf(bucketKey); // removing the sibling may have moved it
+        BucketId progress = new BucketId(buckets.progressAt(slot));
+        buckets.remove(slot);
         --pendingBucketCount;
+
+        BucketId newMerged = new BucketId(usedBits - 1, bucket.getId());
+        addBucket(newMerged, progress, BucketState.BUCKET_PENDING);
         assert(pendingBucketCount > 0);
     }
 
     protected void setAllBucketsToState(BucketState state) {
-        for (Map.Entry<BucketKeyWrapper, ProgressToken.BucketEntry> entry
-                : buckets.entrySet()) {
-            entry.getValue().setState(state);
-        }
+        buckets.setAllStates(state);
     }
 
     protected void clearAllBuckets() {
@@ -78,6 +78,18 @@ public abstract class VisitorDataHandler {
         throw new UnsupportedOperationException("This datahandler doesn't support polling");
     }
 
+    /**
+     * Returns whether this data handler can take more data at this time. The visitor session
+     * does not start new visitors while this is false, which, together with holding back acks,
+     * bounds the amount of data a slow client must buffer. This default implementation always
+     * returns true.
+     *
+     * @return false if no new visitors should be started at this time
+     */
+    public boolean hasCapacity() {
+        return true;
+    }
+
     /**
      * Called when visiting is done, to notify clients waiting on getNext().
      */
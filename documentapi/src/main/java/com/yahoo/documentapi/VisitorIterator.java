@@ -7,6 +7,8 @@ import com.yahoo.document.select.BucketSelector;
 import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.log.LogLevel;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -73,28 +75,84 @@ public class VisitorIterator {
                            ProgressToken token);
     }
 
+    /**
+     * The number of distinct slices the bucket space can be divided into. A bucket
+     * belongs to a slice by the first {@link #SLICE_BITS} bits of its bucket key,
+     * i.e. its lowest bucket id bits, which do not change when buckets are split
+     * or merged as long as they use at least this many bits
+     */
+    public static final int MAX_SLICES = 256;
+    private static final int SLICE_BITS = 8;
+
+    /** Returns the first unit (of {@link #MAX_SLICES} units) of the bucket space owned by the given slice */
+    private static long firstSliceUnit(int sliceId, int slices) {
+        return (long)sliceId * MAX_SLICES / slices;
+    }
+
+    /**
+     * Returns the range bucket cursor position of the first bucket in the given slice,
+     * or the total bucket count if <code>sliceId == slices</code>. Below {@link #SLICE_BITS}
+     * distribution bits, a bucket belongs to the slice owning the first part of it.
+     */
+    static long sliceStart(int sliceId, int slices, int distributionBitCount) {
+        long unit = firstSliceUnit(sliceId, slices);
+        if (distributionBitCount >= SLICE_BITS) {
+            return unit << (distributionBitCount - SLICE_BITS);
+        }
+        int shift = SLICE_BITS - distributionBitCount;
+        return (unit + (1L << shift) - 1) >>> shift;
+    }
+
+    /** Returns whether the given bucket belongs to the given slice of the bucket space */
+    static boolean isInSlice(BucketId bucket, int sliceId, int slices) {
+        long unit = ProgressToken.bucketToKey(bucket.getId()) >>> (64 - SLICE_BITS);
+        return unit >= firstSliceUnit(sliceId, slices) && unit < firstSliceUnit(sliceId + 1, slices);
+    }
+
+    static void validateSlice(int slices, int sliceId) {
+        if (slices < 1 || slices > MAX_SLICES) {
+            throw new IllegalArgumentException("Slice count must be in [1, " + MAX_SLICES + "], was " + slices);
+        }
+        if (sliceId < 0 || sliceId >= slices) {
+            throw new IllegalArgumentException("Slice id must be in [0, " + slices + "), was " + sliceId);
+        }
+    }
+
     /**
      * Provides a bucket source that encompasses the entire range available
-     * through a given value of distribution bits
+     * through a given value of distribution bits, or one slice of it.
+     * The bucket cursor of a slice starts at the slice's first bucket
+     * rather than at 0.
      */
     protected static class DistributionRangeBucketSource implements BucketSource {
         private boolean flushActive = false;
         private int distributionBitCount;
+        private final int slices;
+        private final int sliceId;
         // Wouldn't need this if this were a non-static class, but do it for
         // the sake of keeping things identical in Java and C++
         private ProgressToken progressToken;
 
         public DistributionRangeBucketSource(int distributionBitCount,
                                              ProgressToken progress) {
+            this(distributionBitCount, progress, 1, 0);
+        }
+
+        public DistributionRangeBucketSource(int distributionBitCount,
+                                             ProgressToken progress,
+                                             int slices, int sliceId) {
+            validateSlice(slices, sliceId);
             progressToken = progress;
+            this.slices = slices;
+            this.sliceId = sliceId;
 
             // New progress token (could also be empty, in which this is a
             // no-op anyway)
             if (progressToken.getTotalBucketCount() == 0) {
                 assert(progressToken.isEmpty()) : "inconsistent progress state";
-                progressToken.setTotalBucketCount(1L << distributionBitCount);
+                progressToken.setTotalBucketCount(sliceEnd(distributionBitCount) - sliceStart(distributionBitCount));
                 progressToken.setDistributionBitCount(distributionBitCount);
-                progressToken.setBucketCursor(0);
+                progressToken.setBucketCursor(sliceStart(distributionBitCount));
                 progressToken.setFinishedBucketCount(0);
                 this.distributionBitCount = distributionBitCount;
             }
@@ -102,10 +160,16 @@ public class VisitorIterator {
                 this.distributionBitCount = progressToken.getDistributionBitCount();
                 // Quick consistency check to ensure the user isn't trying to eg.
                 // pass a progress token for an explicit document selection
-                if (progressToken.getTotalBucketCount() != (1L << progressToken.getDistributionBitCount())) {
+                if (progressToken.getTotalBucketCount() != sliceEnd(this.distributionBitCount)
+                                                           - sliceStart(this.distributionBitCount)) {
                     throw new IllegalArgumentException("Total bucket count in existing progress is not "
                             + "consistent with that of the current document selection");
                 }
+                // Slices of the same size have the same bucket count, so also check the progress is of this slice
+                if (!isProgressInSlice()) {
+                    throw new IllegalArgumentException("Existing progress is not within slice " + sliceId
+                            + " of " + slices + " of the bucket space");
+                }
             }
 
             if (!progress.isFinished()) {
@@ -141,18 +205,45 @@ public class VisitorIterator {
                     }
                 }
                 progressToken.setFinishedBucketCount(progressToken.getBucketCursor() -
+                        sliceStart(progressToken.getDistributionBitCount()) -
                         progressToken.getPendingBucketCount());
             } else {
-                assert(progressToken.getBucketCursor() == progressToken.getTotalBucketCount());
+                assert(progressToken.getBucketCursor() == sliceEnd(progressToken.getDistributionBitCount()));
             }
             // Should be all fixed up and good to go
             progressToken.setInconsistentState(false);
         }
 
+        /** Returns whether the bucket cursor and all buckets of the progress token are within the slice of this */
+        private boolean isProgressInSlice() {
+            if (slices == 1) return true;
+
+            int distributionBitCount = progressToken.getDistributionBitCount();
+            if (progressToken.getBucketCursor() < sliceStart(distributionBitCount)
+                    || progressToken.getBucketCursor() > sliceEnd(distributionBitCount)) {
+                return false;
+            }
+            for (ProgressToken.BucketKeyWrapper key : progressToken.getBuckets().keySet()) {
+                if (!isInSlice(key.toBucketId(), sliceId, slices)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long sliceStart(int distributionBitCount) {
+            return VisitorIterator.sliceStart(sliceId, slices, distributionBitCount);
+        }
+
+        private long sliceEnd(int distributionBitCount) {
+            return VisitorIterator.sliceStart(sliceId + 1, slices, distributionBitCount);
+        }
+
         protected boolean isLosslessResetPossible() {
-            // #pending must be equal to cursor, i.e. all buckets ever fetched
-            // must be located in the set of pending
-            if (progressToken.getPendingBucketCount() != progressToken.getBucketCursor()) {
+            // #pending must be equal to the number of buckets passed by the cursor,
+            // i.e. all buckets ever fetched must be located in the set of pending
+            if (progressToken.getPendingBucketCount()
+                    != progressToken.getBucketCursor() - sliceStart(progressToken.getDistributionBitCount())) {
                 return false;
             }
             // Check if all pending buckets have a progress of 0
@@ -201,23 +292,22 @@ public class VisitorIterator {
                 }
                 assert(p.getActiveBucketCount() == 0);
                 p.clearAllBuckets();
-                p.setBucketCursor(0);
+                // At the slice start of the current bit count, which is scaled to the new one by the caller
+                p.setBucketCursor(sliceStart(p.getDistributionBitCount()));
                 return;
             }
 
             while (maybeInconsistent) {
                 BucketId lastMergedBucket = null;
                 maybeInconsistent = false;
-                // Make a shallow working copy of the bucket map. BucketKeyWrapper
-                // keys are considered immutable, and should thus not be at risk
-                // for being changed during the inner loop
+                // Work on a copy of the bucket map, so that it is not changed
+                // during the inner loop
                 // Do separate passes for splitting and merging just to make
                 // absolutely sure that the two ops won't step on each others'
                 // toes. This isn't wildly efficient, but the data sets in question
                 // are presumed to be low in size and this is presumed to be a very
                 // infrequent operation
-                TreeMap<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> buckets
-                        = new TreeMap<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry>(p.getBuckets());
+                TreeMap<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> buckets = p.getBuckets();
                 for (Map.Entry<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> entry
                         : buckets.entrySet()) {
                     assert(entry.getValue().getState() == ProgressToken.BucketState.BUCKET_PENDING);
@@ -232,7 +322,7 @@ public class VisitorIterator {
                 }
 
                 // Make new map copy with potentially split buckets
-                buckets = new TreeMap<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry>(p.getBuckets());
+                buckets = p.getBuckets();
                 for (Map.Entry<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> entry
                         : buckets.entrySet()) {
                     assert(entry.getValue().getState() == ProgressToken.BucketState.BUCKET_PENDING);
@@ -291,7 +381,7 @@ public class VisitorIterator {
         }
 
         public boolean hasNext() {
-            return progressToken.getBucketCursor() < (1L << distributionBitCount);
+            return progressToken.getBucketCursor() < sliceEnd(distributionBitCount);
         }
 
         public boolean shouldYield() {
@@ -305,7 +395,7 @@ public class VisitorIterator {
         }
 
         public long getTotalBucketCount() {
-            return 1L << distributionBitCount;
+            return sliceEnd(distributionBitCount) - sliceStart(distributionBitCount);
         }
 
         public BucketProgress getNext() {
@@ -343,6 +433,7 @@ public class VisitorIterator {
                 // Only perform the actual distribution bit bucket ops if we've
                 // got no pending buckets
                 int delta = distributionBitCount - progressToken.getDistributionBitCount();
+                long oldSliceStart = sliceStart(progressToken.getDistributionBitCount());
 
                 // Must do this before setting the bucket cursor to allow
                 // reset-checking to be performed
@@ -355,8 +446,11 @@ public class VisitorIterator {
                     }
                     progressToken.setFinishedBucketCount(progressToken.getFinishedBucketCount() << delta);
                     // By n-doubling the position, the bucket key ordering ensures
-                    // we go from eg. 3:0x02 to 4:0x02 to 5:02 etc.
-                    progressToken.setBucketCursor(progressToken.getBucketCursor() << delta);
+                    // we go from eg. 3:0x02 to 4:0x02 to 5:02 etc. The position
+                    // is scaled relative to the start of the slice, which is the
+                    // same as scaling it directly from 8 distribution bits and up
+                    progressToken.setBucketCursor(sliceStart(distributionBitCount) +
+                            ((progressToken.getBucketCursor() - oldSliceStart) << delta));
                 } else if (delta < 0) {
                     if (log.isLoggable(LogLevel.DEBUG)) {
                         log.log(LogLevel.DEBUG, "Decreasing distribution bits for full bucket " +
@@ -364,11 +458,12 @@ public class VisitorIterator {
                                 " to " + distributionBitCount + " bits");
                     }
                     // Scale down bucket space and cursor
-                    progressToken.setBucketCursor(progressToken.getBucketCursor() >>> -delta);
+                    progressToken.setBucketCursor(Math.min(sliceEnd(distributionBitCount), sliceStart(distributionBitCount) +
+                            ((progressToken.getBucketCursor() - oldSliceStart) >>> -delta)));
                     progressToken.setFinishedBucketCount(progressToken.getFinishedBucketCount() >>> -delta);
                 }
 
-                progressToken.setTotalBucketCount(1L << distributionBitCount);
+                progressToken.setTotalBucketCount(sliceEnd(distributionBitCount) - sliceStart(distributionBitCount));
                 progressToken.setDistributionBitCount(distributionBitCount);
 
                 correctTruncatedBucketCursor();
@@ -418,9 +513,9 @@ public class VisitorIterator {
                 // at the same, correct dist bit count, so we can safely compute
                 // a new count
                 // TODO: ensure this is consistent
-                if (progressToken.getPendingBucketCount() <= progressToken.getBucketCursor()) {
-                    progressToken.setFinishedBucketCount(progressToken.getBucketCursor() -
-                            progressToken.getPendingBucketCount());
+                long passedBuckets = progressToken.getBucketCursor() - sliceStart(distributionBitCount);
+                if (progressToken.getPendingBucketCount() <= passedBuckets) {
+                    progressToken.setFinishedBucketCount(passedBuckets - progressToken.getPendingBucketCount());
                 }
             }
         }
@@ -468,9 +563,17 @@ public class VisitorIterator {
 
             if (progress.isFinished() || !progress.isEmpty()) return;
 
+            // Add all superbuckets with zero sub-bucket progress and pending. Adding
+            // them in key order lets the token append them rather than insert them
+            long[] keys = new long[superbuckets.size()];
+            int i = 0;
             for (BucketId id : superbuckets) {
-                // Add all superbuckets with zero sub-bucket progress and pending
-                progress.addBucket(id, new BucketId(), ProgressToken.BucketState.BUCKET_PENDING);
+                keys[i++] = ProgressToken.bucketToKey(id.getId()) ^ Long.MIN_VALUE; // signed order of this is unsigned key order
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                progress.addBucket(new BucketId(ProgressToken.keyToBucketId(key ^ Long.MIN_VALUE)), new BucketId(),
+                                   ProgressToken.BucketState.BUCKET_PENDING);
             }
         }
 
@@ -555,26 +658,10 @@ public class VisitorIterator {
         // that may be in the bucket source, since we want to avoid growing
         // the map too much
         if (progressToken.hasPending()) {
-            // Find first pending bucket in token
-            TreeMap<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> buckets = progressToken.getBuckets();
-            ProgressToken.BucketEntry pending = null;
-            BucketId superbucket = null;
-            for (Map.Entry<ProgressToken.BucketKeyWrapper, ProgressToken.BucketEntry> entry : buckets.entrySet()) {
-                if (entry.getValue().getState() == ProgressToken.BucketState.BUCKET_PENDING) {
-                    pending = entry.getValue();
-                    superbucket = new BucketId(ProgressToken.keyToBucketId(entry.getKey().getKey()));
-                    break;
-                }
-            }
+            // Set first pending bucket in token to active, since it's not awaiting an update
+            BucketProgress pending = progressToken.activateFirstPendingBucket();
             assert(pending != null) : "getNext() called with inconsistent state";
-
-            // Set bucket to active, since it's not awaiting an update
-            pending.setState(ProgressToken.BucketState.BUCKET_ACTIVE);
-
-            progressToken.setActiveBucketCount(progressToken.getActiveBucketCount() + 1);
-            progressToken.setPendingBucketCount(progressToken.getPendingBucketCount() - 1);
-
-            return new BucketProgress(superbucket, pending.getProgress());
+            return pending;
         } else {
             BucketProgress ret = bucketSource.getNext();
             progressToken.addBucket(ret.getSuperbucket(), ret.getProgress(),
@@ -753,6 +840,30 @@ public class VisitorIterator {
             BucketIdFactory idFactory,
             int distributionBitCount,
             ProgressToken progress) throws ParseException {
+        return createFromDocumentSelection(documentSelection, idFactory, distributionBitCount, progress, 1, 0);
+    }
+
+    /**
+     * Create a new <code>VisitorIterator</code> instance which iterates over one slice of the
+     * buckets matched by the given document selection string. The slices of a bucket space are
+     * disjoint, and together they cover all of it, so visiting every slice of a selection, in
+     * any order and with any degree of parallelism, visits the same buckets as visiting the
+     * selection without slicing. Each slice has its own progress.
+     *
+     * @param slices The number of slices the bucket space is divided into, in [1, {@link #MAX_SLICES}]
+     * @param sliceId The slice to iterate over, in [0, slices)
+     * @see #createFromDocumentSelection(String, BucketIdFactory, int, ProgressToken)
+     * @throws ParseException if <code>documentSelection</code> fails to properly parse
+     * @throws IllegalArgumentException if the slice is not valid
+     */
+    public static VisitorIterator createFromDocumentSelection(
+            String documentSelection,
+            BucketIdFactory idFactory,
+            int distributionBitCount,
+            ProgressToken progress,
+            int slices,
+            int sliceId) throws ParseException {
+        validateSlice(slices, sliceId);
         BucketSelector bucketSel = new BucketSelector(idFactory);
         Set<BucketId> rawBuckets = bucketSel.getBucketList(documentSelection);
         BucketSource src;
@@ -762,10 +873,10 @@ public class VisitorIterator {
         // bit-based range source
         if (rawBuckets == null) {
             // Range source
-            src = new DistributionRangeBucketSource(distributionBitCount, progress);
+            src = new DistributionRangeBucketSource(distributionBitCount, progress, slices, sliceId);
         } else {
             // Explicit source
-            src = new ExplicitBucketSource(rawBuckets, distributionBitCount, progress);
+            src = new ExplicitBucketSource(bucketsInSlice(rawBuckets, slices, sliceId), distributionBitCount, progress);
         }
 
         return new VisitorIterator(progress, src);
@@ -794,4 +905,34 @@ public class VisitorIterator {
                 distributionBitCount, progress);
         return new VisitorIterator(progress, src);
     }
+
+    /**
+     * Create a new <code>VisitorIterator</code> instance based on the buckets of the given
+     * set which belong to the given slice of the bucket space.
+     *
+     * @param slices The number of slices the bucket space is divided into, in [1, {@link #MAX_SLICES}]
+     * @param sliceId The slice to iterate over, in [0, slices)
+     * @see #createFromExplicitBucketSet(Set, int, ProgressToken)
+     * @throws IllegalArgumentException if the slice is not valid
+     */
+    public static VisitorIterator createFromExplicitBucketSet(
+            Set<BucketId> bucketsToVisit,
+            int distributionBitCount,
+            ProgressToken progress,
+            int slices,
+            int sliceId) {
+        validateSlice(slices, sliceId);
+        return createFromExplicitBucketSet(bucketsInSlice(bucketsToVisit, slices, sliceId), distributionBitCount, progress);
+    }
+
+    private static Set<BucketId> bucketsInSlice(Set<BucketId> buckets, int slices, int sliceId) {
+        if (slices == 1) return buckets;
+        Set<BucketId> sliceBuckets = new HashSet<>();
+        for (BucketId bucket : buckets) {
+            if (isInSlice(bucket, sliceId, slices)) {
+                sliceBuckets.add(bucket);
+            }
+        }
+        return sliceBuckets;
+    }
 }
@@ -50,6 +50,8 @@ public class VisitorParameters extends Parameters {
     private int traceLevel = 0;
     private ThrottlePolicy throttlePolicy = null;
     private boolean skipBucketsOnFatalErrors = false;
+    private int slices = 1;
+    private int sliceId = 0;
 
     // Advanced parameter, only for internal use.
     Set<BucketId> bucketsToVisit = null;
@@ -102,6 +104,7 @@ public class VisitorParameters extends Parameters {
                 params.getDynamicMaxBucketsIncreaseFactor());
         setTraceLevel(params.getTraceLevel());
         skipBucketsOnFatalErrors(params.skipBucketsOnFatalErrors());
+        setSlice(params.getSlices(), params.getSliceId());
     }
 
     // Get functions
@@ -333,6 +336,28 @@ public class VisitorParameters extends Parameters {
 
     public void skipBucketsOnFatalErrors(boolean skipBucketsOnFatalErrors) { this.skipBucketsOnFatalErrors = skipBucketsOnFatalErrors; }
 
+    /**
+     * Restricts visiting to one of a number of disjoint slices of the bucket space, which together
+     * cover all of it. Sessions visiting different slices of the same selection may run concurrently,
+     * e.g., to spread the work of a large visit over several threads or processes. Each slice has its
+     * own progress, so a resume token is only valid for the slice it was created for.
+     *
+     * @param slices the number of slices to divide the bucket space into, in [1, {@link VisitorIterator#MAX_SLICES}]
+     * @param sliceId the slice to visit, in [0, slices)
+     * @throws IllegalArgumentException if the slice is not valid
+     */
+    public void setSlice(int slices, int sliceId) {
+        VisitorIterator.validateSlice(slices, sliceId);
+        this.slices = slices;
+        this.sliceId = sliceId;
+    }
+
+    /** Returns the number of slices the bucket space is divided into. Default is 1. */
+    public int getSlices() { return slices; }
+
+    /** Returns the slice of the bucket space to visit. Default is 0. */
+    public int getSliceId() { return sliceId; }
+
     /**
      * Set whether or not max buckets per visitor value should be dynamically
      * increased when using orderdoc and visitors do not return at least half
@@ -382,6 +407,9 @@ public class VisitorParameters extends Parameters {
         sb.append("  Visitor ordering:   ").append(visitorOrdering).append('\n');
         sb.append("  Max buckets:        ").append(maxBucketsPerVisitor).append('\n');
         sb.append("  Priority:           ").append(getPriority().toString()).append('\n');
+        if (slices > 1) {
+            sb.append("  Slice:              ").append(sliceId).append(" of ").append(slices).append('\n');
+        }
         if (dynamicallyIncreaseMaxBucketsPerVisitor) {
             sb.append("  Dynamically increasing max buckets per visitor\n");
             sb.append("  Increase factor:    ")
@@ -543,12 +543,16 @@ public class MessageBusVisitorSession implements VisitorSession {
             // return with a OK result in such a case, we recognize this as a special
             // case in the iterator and simply reset its entire internal state using
             // the new db count rather than doing any splitting.
+            // A sliced visit starts at 8 bits instead, as slices are made up of
+            // 8 bit buckets and most slices would be empty at fewer bits.
             BucketIdFactory bucketIdFactory = new BucketIdFactory();
             visitorIterator = VisitorIterator.createFromDocumentSelection(
                     params.getDocumentSelection(),
                     bucketIdFactory,
-                    1,
-                    progressToken);
+                    params.getSlices() > 1 ? 8 : 1,
+                    progressToken,
+                    params.getSlices(),
+                    params.getSliceId());
         } else {
             if (log.isLoggable(LogLevel.DEBUG)) {
                 log.log(LogLevel.DEBUG, "parameters specify explicit bucket set " +
@@ -562,7 +566,9 @@ public class MessageBusVisitorSession implements VisitorSession {
             visitorIterator = VisitorIterator.createFromExplicitBucketSet(
                     params.getBucketsToVisit(),
                     1,
-                    progressToken);
+                    progressToken,
+                    params.getSlices(),
+                    params.getSliceId());
         }
         return new VisitingProgress(visitorIterator, progressToken);
     }
@@ -621,6 +627,13 @@ public class MessageBusVisitorSession implements VisitorSession {
                 try {
                     scheduledSendCreateVisitors = false;
                     while (progress.getIterator().hasNext()) {
+                        if ( ! localDataHandlerHasCapacity()) {
+                            // Check again later, since no replies may arrive to trigger sending
+                            log.log(LogLevel.DEBUG, sessionName + ": local data handler is full; " +
+                                    "holding off sending more CreateVisitors");
+                            scheduleSendCreateVisitorsIfApplicable(100, TimeUnit.MILLISECONDS);
+                            break;
+                        }
                         VisitorIterator.BucketProgress bucket = progress.getIterator().getNext();
                         Result result = sender.send(createMessage(bucket));
                         if (result.isAccepted()) {
@@ -653,6 +666,10 @@ public class MessageBusVisitorSession implements VisitorSession {
         }
     }
 
+    private boolean localDataHandlerHasCapacity() {
+        return params.getLocalDataHandler() == null || params.getLocalDataHandler().hasCapacity();
+    }
+
     private void continueVisiting() {
         if (visitingCompleted()) {
             markSessionCompleted();
@@ -13,6 +13,7 @@ import com.yahoo.messagebus.Error;
 import com.yahoo.messagebus.metrics.MetricSet;
 import com.yahoo.messagebus.routing.*;
 import com.yahoo.vdslib.distribution.Distribution;
+import com.yahoo.vdslib.distribution.IdealDistributorCache;
 import com.yahoo.vdslib.state.ClusterState;
 import com.yahoo.vdslib.state.Node;
 import com.yahoo.vdslib.state.NodeType;
@@ -309,6 +310,8 @@ public class StoragePolicy extends ExternalSlobrokPolicy {
         private final Distribution distribution;
         private final InstabilityChecker persistentFailureChecker;
         private ClusterState cachedClusterState = null;
+        /** The ideal distributors of buckets in the cached cluster state, replaced when that changes */
+        private IdealDistributorCache idealDistributorCache = null;
         private int oldClusterVersionGottenCount = 0;
         private final int maxOldClusterVersionBeforeSendingRandom; // Reset cluster version protection
 
@@ -325,13 +328,23 @@ public class StoragePolicy extends ExternalSlobrokPolicy {
             distribution.close();
         }
 
+        private int getIdealDistributorNode(ClusterState state, BucketId bucketId) throws Distribution.TooFewBucketBitsInUseException,
+                                                                                          Distribution.NoDistributorsAvailableException {
+            IdealDistributorCache cache = idealDistributorCache;
+            if (cache == null || cache.getClusterState() != state) {
+                cache = new IdealDistributorCache(distribution, state, owningBucketStates);
+                idealDistributorCache = cache;
+            }
+            return cache.getIdealDistributorNode(bucketId);
+        }
+
         public String getTargetSpec(RoutingContext context, BucketId bucketId) {
             String sendRandomReason = null;
             MessageContext messageContext = new MessageContext(cachedClusterState);
             context.setContext(messageContext);
             if (cachedClusterState != null) { // If we have a cached cluster state (regular case), we use that to calculate correct node.
                 try{
-                    Integer target = distribution.getIdealDistributorNode(cachedClusterState, bucketId, owningBucketStates);
+                    Integer target = getIdealDistributorNode(cachedClusterState, bucketId);
                     // If we have had too many failures towards existing node, reset failure count and send to random
                     if (persistentFailureChecker.tooManyFailures(target)) {
                         sendRandomReason = "Too many failures detected versus distributor " + target + ". Sending to random instead of using cached state.";
@@ -0,0 +1,161 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.DocumentTypeManagerConfigurer;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsInstanceOf.instanceOf;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class BoundedVisitorDataQueueTest {
+
+    private final DocumentTypeManager docMan = new DocumentTypeManager();
+
+    @Before
+    public void setUp() {
+        DocumentTypeManagerConfigurer.configure(docMan, "file:./test/cfg/testdoc.cfg");
+    }
+
+    private PutDocumentMessage createPutMessage(final String docId) {
+        return new PutDocumentMessage(new DocumentPut(new Document(docMan.getDocumentType("testdoc"), docId)));
+    }
+
+    private static RemoveDocumentMessage createRemoveMessage(final String docId) {
+        return new RemoveDocumentMessage(new DocumentId(docId));
+    }
+
+    private static BoundedVisitorDataQueue createQueue(long maxQueuedBytes, List<AckToken> acks) {
+        final BoundedVisitorDataQueue queue = new BoundedVisitorDataQueue(maxQueuedBytes);
+        queue.setSession(new AckRecordingSession(acks));
+        return queue;
+    }
+
+    @Test
+    public void capacity_is_exhausted_by_queued_bytes_and_restored_by_polling() {
+        final PutDocumentMessage put = createPutMessage("id:foo:testdoc::foo");
+        final BoundedVisitorDataQueue queue = createQueue(put.getApproxSize() + 1, new ArrayList<>());
+        assertThat(queue.hasCapacity(), is(true));
+
+        queue.onMessage(put, new AckToken(new Object()));
+        assertThat(queue.hasCapacity(), is(true));
+        queue.onMessage(createRemoveMessage("id:foo:testdoc::bar"), new AckToken(new Object()));
+        assertThat(queue.hasCapacity(), is(false));
+
+        final VisitorResponse response = queue.getNext();
+        assertThat(response, instanceOf(DocumentListVisitorResponse.class));
+        assertThat(((DocumentListVisitorResponse)response).getDocumentList().get(0).getDocumentOperation(),
+                   is((DocumentOperation)put.getDocumentPut()));
+        assertThat(queue.hasCapacity(), is(true));
+
+        queue.getNext();
+        assertThat(queue.getQueuedBytes(), equalTo(0L));
+        assertThat(queue.getNext(), nullValue());
+    }
+
+    @Test
+    public void iterator_acks_each_operation_when_the_next_is_requested() {
+        final List<AckToken> acks = new ArrayList<>();
+        final BoundedVisitorDataQueue queue = createQueue(1000, acks);
+        final AckToken putToken = new AckToken(new Object());
+        final AckToken removeToken = new AckToken(new Object());
+        queue.onMessage(createPutMessage("id:foo:testdoc::foo"), putToken);
+        queue.onMessage(createRemoveMessage("id:foo:testdoc::bar"), removeToken);
+        queue.onDone();
+
+        final Iterator<DocumentOperation> operations = queue.iterator();
+        assertThat(operations.next().getId(), equalTo(new DocumentId("id:foo:testdoc::foo")));
+        assertThat(acks.size(), equalTo(0));
+
+        final DocumentOperation remove = operations.next();
+        assertThat(remove, instanceOf(DocumentRemove.class));
+        assertThat(acks, equalTo(Arrays.asList(putToken)));
+
+        assertThat(operations.hasNext(), is(false));
+        assertThat(acks, equalTo(Arrays.asList(putToken, removeToken)));
+        assertThat(queue.getNext(), nullValue());
+    }
+
+    /** A producer which respects hasCapacity should never let a slow consumer fall more than a message behind the limit */
+    @Test
+    public void queued_bytes_stay_bounded_with_a_slow_consumer() throws InterruptedException {
+        final int messageSize = createPutMessage("id:foo:testdoc::0").getApproxSize();
+        final long maxQueuedBytes = 10 * messageSize;
+        final BoundedVisitorDataQueue queue = createQueue(maxQueuedBytes, new ArrayList<>());
+        final AtomicLong maxObservedBytes = new AtomicLong();
+
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                while ( ! queue.hasCapacity())
+                    Thread.yield();
+                queue.onMessage(createPutMessage("id:foo:testdoc::" + i), new AckToken(new Object()));
+                maxObservedBytes.accumulateAndGet(queue.getQueuedBytes(), Math::max);
+            }
+            queue.onDone();
+        });
+        producer.start();
+
+        int consumed = 0;
+        for (Iterator<DocumentOperation> operations = queue.iterator(); operations.hasNext(); consumed++) {
+            assertThat(operations.next().getId(), equalTo(new DocumentId("id:foo:testdoc::" + consumed)));
+            if (consumed % 100 == 0)
+                Thread.sleep(1);
+        }
+        producer.join();
+
+        assertThat(consumed, equalTo(1000));
+        assertTrue(maxObservedBytes.get() + " bytes queued", maxObservedBytes.get() < maxQueuedBytes + 2 * messageSize);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void max_queued_bytes_must_be_positive() {
+        new BoundedVisitorDataQueue(0);
+    }
+
+    private static class AckRecordingSession implements VisitorControlSession {
+
+        private final List<AckToken> acks;
+
+        AckRecordingSession(List<AckToken> acks) {
+            this.acks = acks;
+        }
+
+        @Override
+        public void ack(AckToken token) { acks.add(token); }
+
+        @Override
+        public void abort() { }
+
+        @Override
+        public VisitorResponse getNext() { return null; }
+
+        @Override
+        public VisitorResponse getNext(int timeoutMilliseconds) { return null; }
+
+        @Override
+        public void destroy() { }
+
+    }
+
+}
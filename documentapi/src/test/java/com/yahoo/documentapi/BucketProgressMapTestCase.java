@@ -0,0 +1,135 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.documentapi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class BucketProgressMapTestCase {
+
+    private static final ProgressToken.BucketState PENDING = ProgressToken.BucketState.BUCKET_PENDING;
+    private static final ProgressToken.BucketState ACTIVE = ProgressToken.BucketState.BUCKET_ACTIVE;
+
+    @Test
+    public void testKeysAreOrderedUnsigned() {
+        BucketProgressMap map = new BucketProgressMap();
+        assertTrue(map.add(0x8000000000000000L, 1, PENDING));
+        assertTrue(map.add(0x7FFFFFFFFFFFFFFFL, 2, PENDING));
+        assertTrue(map.add(0xFFFFFFFFFFFFFFFFL, 3, ACTIVE));
+        assertTrue(map.add(1, 4, PENDING));
+        assertFalse(map.add(0x7FFFFFFFFFFFFFFFL, 5, ACTIVE));
+
+        assertEquals(4, map.size());
+        assertEquals(1, map.keyAt(0));
+        assertEquals(0x7FFFFFFFFFFFFFFFL, map.keyAt(1));
+        assertEquals(2, map.progressAt(1));
+        assertEquals(0x8000000000000000L, map.keyAt(2));
+        assertEquals(0xFFFFFFFFFFFFFFFFL, map.keyAt(3));
+        assertEquals(ACTIVE, map.stateAt(3));
+    }
+
+    @Test
+    public void testFirstPendingFollowsStateChanges() {
+        BucketProgressMap map = new BucketProgressMap();
+        for (long key = 1; key <= 4; key++)
+            map.add(key, 0, PENDING);
+
+        map.setState(map.firstPending(), ACTIVE);
+        map.setState(map.firstPending(), ACTIVE);
+        assertEquals(3, map.keyAt(map.firstPending()));
+
+        map.set(map.indexOf(2), 7, PENDING);
+        assertEquals(2, map.keyAt(map.firstPending()));
+        assertEquals(7, map.progressAt(map.firstPending()));
+
+        map.setAllStates(ACTIVE);
+        assertEquals(-1, map.firstPending());
+        map.setAllStates(PENDING);
+        assertEquals(1, map.keyAt(map.firstPending()));
+    }
+
+    @Test
+    public void testRandomOperationsMatchTreeMap() {
+        Random random = new Random(1234);
+        BucketProgressMap map = new BucketProgressMap();
+        TreeMap<ProgressToken.BucketKeyWrapper, Entry> expected = new TreeMap<>();
+        List<Long> keys = new ArrayList<>();
+        long nextKey = 0;
+        for (int i = 0; i < 100000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || keys.isEmpty()) { // add, mostly in key order
+                long key = random.nextInt(4) == 0 ? random.nextLong() : (nextKey += 1 + random.nextInt(1 << 20) * 0x10000000L);
+                ProgressToken.BucketState state = random.nextBoolean() ? PENDING : ACTIVE;
+                boolean added = expected.putIfAbsent(new ProgressToken.BucketKeyWrapper(key), new Entry(i, state)) == null;
+                assertEquals(added, map.add(key, i, state));
+                if (added) keys.add(key);
+            }
+            else if (operation < 6) { // remove
+                long key = keys.remove(random.nextInt(keys.size()));
+                expected.remove(new ProgressToken.BucketKeyWrapper(key));
+                map.remove(map.indexOf(key));
+                assertEquals(-1, map.indexOf(key));
+            }
+            else if (operation < 8) { // update
+                long key = keys.get(random.nextInt(keys.size()));
+                ProgressToken.BucketState state = random.nextBoolean() ? PENDING : ACTIVE;
+                expected.put(new ProgressToken.BucketKeyWrapper(key), new Entry(i, state));
+                map.set(map.indexOf(key), i, state);
+            }
+            else { // activate first pending
+                Map.Entry<ProgressToken.BucketKeyWrapper, Entry> first = expected.entrySet().stream()
+                        .filter(entry -> entry.getValue().state == PENDING).findFirst().orElse(null);
+                int slot = map.firstPending();
+                if (first == null) {
+                    assertEquals(-1, slot);
+                } else {
+                    assertEquals(first.getKey().getKey(), map.keyAt(slot));
+                    first.getValue().state = ACTIVE;
+                    map.setState(slot, ACTIVE);
+                }
+            }
+            if (i % 1000 == 0)
+                assertSameContent(expected, map);
+        }
+        assertSameContent(expected, map);
+    }
+
+    private static void assertSameContent(TreeMap<ProgressToken.BucketKeyWrapper, Entry> expected, BucketProgressMap map) {
+        assertEquals(expected.size(), map.size());
+        List<Long> actualKeys = new ArrayList<>();
+        for (int slot = 0; slot < map.slots(); slot++) {
+            if (map.isRemoved(slot)) continue;
+            actualKeys.add(map.keyAt(slot));
+            Entry entry = expected.get(new ProgressToken.BucketKeyWrapper(map.keyAt(slot)));
+            assertEquals(entry.progress, map.progressAt(slot));
+            assertEquals(entry.state, map.stateAt(slot));
+        }
+        List<Long> expectedKeys = new ArrayList<>();
+        expected.keySet().forEach(key -> expectedKeys.add(key.getKey()));
+        assertEquals(expectedKeys, actualKeys);
+    }
+
+    private static class Entry {
+
+        final long progress;
+        ProgressToken.BucketState state;
+
+        Entry(long progress, ProgressToken.BucketState state) {
+            this.progress = progress;
+            this.state = state;
+        }
+
+    }
+
+}
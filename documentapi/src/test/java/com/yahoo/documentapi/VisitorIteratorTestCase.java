@@ -9,12 +9,14 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Vector;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for VisitorIterator and ProgressToken (kept in one test case because their
@@ -1410,6 +1412,142 @@ public class VisitorIteratorTestCase {
         assertTrue(buckets.isEmpty());
     }
 
+    @Test
+    public void testSlicesCoverBucketSpaceOnceAcrossDistributionBitChanges() throws ParseException {
+        int slices = 3;
+        BucketIdFactory idFactory = new BucketIdFactory();
+        Map<BucketId, Integer> visits = new TreeMap<BucketId, Integer>();
+        long totalBucketCount = 0;
+
+        for (int sliceId = 0; sliceId < slices; ++sliceId) {
+            ProgressToken p = new ProgressToken();
+            VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 8, p, slices, sliceId);
+
+            // Leave a couple of buckets with partial progress before changing bits
+            VisitorIterator.BucketProgress[] bpp = { iter.getNext(), iter.getNext() };
+            for (VisitorIterator.BucketProgress bp : bpp) {
+                assertTrue(VisitorIterator.isInSlice(bp.getSuperbucket(), sliceId, slices));
+                iter.update(bp.getSuperbucket(), new BucketId(9, bp.getSuperbucket().getId()));
+            }
+            iter.setDistributionBitCount(11);
+            assertEquals(0, p.getFinishedBucketCount());
+            assertEquals(2 << 3, p.getPendingBucketCount());
+
+            // Resuming must use the same slice
+            ProgressToken resumed = new ProgressToken(p.serialize());
+            iter = VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 11, resumed, slices, sliceId);
+
+            while (iter.hasNext()) {
+                VisitorIterator.BucketProgress bp = iter.getNext();
+                assertEquals(11, bp.getSuperbucket().getUsedBits());
+                assertTrue(VisitorIterator.isInSlice(bp.getSuperbucket(), sliceId, slices));
+                visits.merge(bp.getSuperbucket(), 1, Integer::sum);
+                iter.update(bp.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+            }
+            assertTrue(iter.isDone());
+            assertTrue(resumed.isFinished());
+            assertEquals(100, resumed.percentFinished(), 0);
+            totalBucketCount += resumed.getTotalBucketCount();
+
+            if (sliceId == 1) {
+                try {
+                    VisitorIterator.createFromDocumentSelection(
+                            "id.group != \"yahoo.com\"", idFactory, 11, new ProgressToken(p.serialize()));
+                    assertTrue("Expected exception when resuming a slice without slicing", false);
+                } catch (IllegalArgumentException e) {
+                    // Expected
+                }
+            }
+        }
+
+        assertEquals(1 << 11, totalBucketCount);
+        assertEquals(1 << 11, visits.size());
+        for (int count : visits.values()) {
+            assertEquals(1, count);
+        }
+    }
+
+    @Test
+    public void testLosslessResetRestartsAtSliceStart() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        ProgressToken p = new ProgressToken();
+        VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", idFactory, 8, p, 2, 1);
+        assertEquals(128, p.getBucketCursor());
+        assertEquals(128, p.getTotalBucketCount());
+
+        VisitorIterator.BucketProgress bp = iter.getNext();
+        iter.update(bp.getSuperbucket(), new BucketId());
+        iter.setDistributionBitCount(16);
+
+        assertEquals(0, p.getPendingBucketCount());
+        assertEquals(128 << 8, p.getBucketCursor());
+        assertEquals(1 << 15, p.getTotalBucketCount());
+        assertEquals(bp.getSuperbucket().getId() & 0xff, iter.getNext().getSuperbucket().getId() & 0xff);
+    }
+
+    @Test
+    public void testExplicitBucketSetIsDividedBetweenSlices() {
+        Set<BucketId> buckets = new TreeSet<BucketId>();
+        for (int i = 0; i < 1000; ++i) {
+            buckets.add(new BucketId(32, i * 7919L));
+        }
+        int slices = 4;
+        Set<BucketId> visited = new TreeSet<BucketId>();
+        long totalBucketCount = 0;
+        for (int sliceId = 0; sliceId < slices; ++sliceId) {
+            ProgressToken p = new ProgressToken();
+            VisitorIterator iter = VisitorIterator.createFromExplicitBucketSet(buckets, 16, p, slices, sliceId);
+            assertTrue(p.getTotalBucketCount() > 0);
+            totalBucketCount += p.getTotalBucketCount();
+            while (iter.hasNext()) {
+                BucketId superbucket = iter.getNext().getSuperbucket();
+                assertTrue(VisitorIterator.isInSlice(superbucket, sliceId, slices));
+                assertTrue(visited.add(superbucket));
+            }
+        }
+        assertEquals(buckets.size(), totalBucketCount);
+        assertEquals(buckets, visited);
+    }
+
+    @Test
+    public void testProgressCanOnlyBeResumedInItsOwnSlice() throws ParseException {
+        BucketIdFactory idFactory = new BucketIdFactory();
+        for (int sliceId = 0; sliceId < 2; ++sliceId) {
+            ProgressToken p = new ProgressToken();
+            VisitorIterator iter = VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 8, p, 2, sliceId);
+            VisitorIterator.BucketProgress partial = iter.getNext();
+            VisitorIterator.BucketProgress finished = iter.getNext();
+            iter.update(partial.getSuperbucket(), new BucketId(9, partial.getSuperbucket().getId()));
+            iter.update(finished.getSuperbucket(), ProgressToken.FINISHED_BUCKET);
+
+            // The other slice has the same bucket count, but the progress is not within it
+            try {
+                VisitorIterator.createFromDocumentSelection(
+                        "id.group != \"yahoo.com\"", idFactory, 8, new ProgressToken(p.serialize()), 2, 1 - sliceId);
+                fail("Expected exception when resuming progress in another slice");
+            } catch (IllegalArgumentException e) {
+                assertEquals("Existing progress is not within slice " + (1 - sliceId) + " of 2 of the bucket space",
+                             e.getMessage());
+            }
+
+            ProgressToken resumed = new ProgressToken(p.serialize());
+            VisitorIterator.createFromDocumentSelection(
+                    "id.group != \"yahoo.com\"", idFactory, 8, resumed, 2, sliceId);
+            assertEquals(1, resumed.getPendingBucketCount());
+            assertEquals(1, resumed.getFinishedBucketCount());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSliceIdMustBeLessThanSliceCount() throws ParseException {
+        VisitorIterator.createFromDocumentSelection(
+                "id.group != \"yahoo.com\"", new BucketIdFactory(), 8, new ProgressToken(), 4, 4);
+    }
+
     @Test
     public void testExceptionOnWrongDocumentSelection() throws ParseException {
         BucketIdFactory idFactory = new BucketIdFactory();
@@ -818,6 +818,28 @@ public class MessageBusVisitorSessionTestCase {
                 replyToCreateVisitor(sender, ProgressToken.FINISHED_BUCKET));
     }
 
+    @Test
+    public void testSlicedVisitingStartsAtFirstBucketOfSlice() {
+        MockSender sender = new MockSender();
+        MockReceiver receiver = new MockReceiver();
+        sender.setMaxPending(1);
+        MockAsyncTaskExecutor executor = new MockAsyncTaskExecutor();
+        // A sliced visit starts with 8 distribution bits, where slice 1 of 4
+        // begins at the 64th bucket in key order
+        VisitorParameters params = createVisitorParameters("");
+        params.setSlice(4, 1);
+        MessageBusVisitorSession visitorSession = createVisitorSession(
+                sender, receiver, executor, params);
+
+        visitorSession.start();
+        executor.expectAndProcessTasks(1);
+        assertEquals("CreateVisitorMessage(buckets=[\n" +
+                new BucketId(8, 2) + "\n" +
+                "BucketId(0x0000000000000000)\n" +
+                "]\n)",
+                replyToCreateVisitor(sender, ProgressToken.FINISHED_BUCKET));
+    }
+
     @Test
     public void testVisitAll() {
         MockSender sender = new MockSender();
@@ -1021,11 +1043,21 @@ public class MessageBusVisitorSessionTestCase {
         private ArrayList<MessageWrapper> messages = new ArrayList<MessageWrapper>();
         private StringBuilder builder = new StringBuilder();
         private RuntimeException exceptionOnMessage = null;
+        private boolean hasCapacity = true;
 
         public void setExceptionOnMessage(RuntimeException exceptionOnMessage) {
             this.exceptionOnMessage = exceptionOnMessage;
         }
 
+        public void setHasCapacity(boolean hasCapacity) {
+            this.hasCapacity = hasCapacity;
+        }
+
+        @Override
+        public boolean hasCapacity() {
+            return hasCapacity;
+        }
+
         @Override
         public void setSession(VisitorControlSession session) {
             builder.append("setSession\n");
@@ -1132,6 +1164,24 @@ public class MessageBusVisitorSessionTestCase {
         assertTrue(mc.visitorSession.isDone());
     }
 
+    @Test
+    public void testNoVisitorsAreSentWhileLocalDataHandlerHasNoCapacity() {
+        MockComponents mc = createDefaultMock();
+        mc.dataHandler.setHasCapacity(false);
+
+        mc.visitorSession.start();
+        mc.executor.expectAndProcessTasks(1);
+        assertEquals(0, mc.sender.getMessageCount());
+        mc.executor.expectAndProcessTasks(1, new long[] { 100 }); // check again later
+        assertEquals(0, mc.sender.getMessageCount());
+        assertFalse(mc.visitorSession.isDone());
+
+        mc.dataHandler.setHasCapacity(true);
+        mc.executor.expectAndProcessTasks(1, new long[] { 100 });
+        assertEquals(2, mc.sender.getMessageCount());
+        mc.executor.expectNoTasks();
+    }
+
     @Test
     public void testCreateDefaultVisitorControlHandlerIfNoneGiven() {
         MockSender sender = new MockSender();
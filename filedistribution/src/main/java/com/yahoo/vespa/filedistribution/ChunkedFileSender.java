@@ -0,0 +1,141 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Sends file reference data to a target which has asked for it, by calling the receiveFile* methods of
+ * {@link FileReceiver} on the target's connection. Used both by config servers and by nodes serving their peers.
+ *
+ * @author agent
+ */
+public class ChunkedFileSender {
+
+    private final static Logger log = Logger.getLogger(ChunkedFileSender.class.getName());
+
+    private final Target target;
+
+    /** The number of bytes the target already has from an earlier transfer of the same file */
+    private long resumeOffset = 0;
+
+    public ChunkedFileSender(Target target) {
+        this.target = target;
+    }
+
+    @Override
+    public String toString() {
+        return target.toString();
+    }
+
+    /**
+     * Sends the given file reference data to the target
+     *
+     * @param fileData the data to send
+     * @param errorCode 0 if the data was read successfully, otherwise the error to report to the target
+     * @param errorDescription a description of the error, or "OK"
+     * @throws IllegalArgumentException if the target could not receive the data
+     */
+    public void send(FileReferenceData fileData, int errorCode, String errorDescription) {
+        int session = sendMeta(fileData);
+        sendParts(session, fileData);
+        sendEof(session, fileData, errorCode, errorDescription);
+    }
+    private void sendParts(int session, FileReferenceData fileData) {
+        ByteBuffer bb = ByteBuffer.allocate(0x100000);
+        skip(resumeOffset, fileData, bb);
+        for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
+            byte [] buf = bb.array();
+            if (buf.length != bb.position()) {
+                buf = new byte [bb.position()];
+                bb.flip();
+                bb.get(buf);
+            }
+            sendPart(session, fileData.fileReference(), partId, buf);
+            bb.clear();
+        }
+    }
+    /** Reads past content the target already has, such that it is still included in the hash of the content */
+    private void skip(long bytes, FileReferenceData fileData, ByteBuffer bb) {
+        while (bytes > 0) {
+            bb.clear();
+            bb.limit((int)Math.min(bb.capacity(), bytes));
+            int read = fileData.nextContent(bb);
+            if (read < 0)
+                throw new IllegalArgumentException("Target '" + target.toString() + "' asked to resume reference '" +
+                                                   fileData.fileReference().value() + "' beyond its end");
+            bytes -= read;
+        }
+        bb.clear();
+    }
+    private int sendMeta(FileReferenceData fileData) {
+        Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new StringValue(fileData.filename()));
+        request.parameters().add(new StringValue(fileData.type().name()));
+        request.parameters().add(new Int64Value(fileData.size()));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            log.warning("Failed delivering meta for reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
+                    target.toString() + " with error: '" + request.errorMessage() + "'.");
+            return 1;
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+            if (request.returnValues().size() > 2) // Older targets do not resume
+                resumeOffset = request.returnValues().get(2).asInt64();
+            return request.returnValues().get(1).asInt32();
+        }
+    }
+    private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
+        Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
+        request.parameters().add(new StringValue(ref.value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int32Value(partId));
+        request.parameters().add(new DataValue(buf));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            throw new IllegalArgumentException("Failed delivering reference '" + ref.value() + "' to " +
+                                                       target.toString() + " with error: '" + request.errorMessage() + "'.");
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+        }
+    }
+    private void sendEof(int session, FileReferenceData fileData, int errorCode, String errorDescription) {
+        Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int64Value(fileData.xxhash()));
+        request.parameters().add(new Int32Value(errorCode));
+        request.parameters().add(new StringValue(errorDescription));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            throw new IllegalArgumentException("Failed delivering reference '" + fileData.fileReference().value() + "' with file '" + fileData.filename() + "' to " +
+                                                       target.toString() + " with error: '" + request.errorMessage() + "'.");
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+        }
+    }
+
+    private void invokeRpcIfValidConnection(Request request) {
+        if (target.isValid()) {
+            target.invokeSync(request, 600);
+        } else {
+            throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ import com.yahoo.log.LogLevel;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 
@@ -14,17 +15,25 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
- * Utility class for compressing and decompressing files used in a file reference
+ * Utility class for compressing and decompressing files used in a file reference.
+ * <p>
+ * Archives are deterministic: Entries are written in path order without modification times, such that
+ * all config servers produce identical bytes for the same content and a transfer can be resumed from another
+ * server. Compression favors speed over size, as the content is typically already compressed model data.
  *
  * @author hmusum
  */
@@ -34,7 +43,7 @@ public class CompressedFileReference {
     private static final int recurseDepth = 100;
 
     public static File compress(File baseDir, List<File> inputFiles, File outputFile) throws IOException {
-        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(outputFile)));
+        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new FastGZIPOutputStream(new FileOutputStream(outputFile)));
         archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
         createArchiveFile(archiveOutputStream, baseDir, inputFiles);
         return outputFile;
@@ -56,7 +65,7 @@ public class CompressedFileReference {
 
     public static byte[] compress(File baseDir, List<File> inputFiles) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new GZIPOutputStream(out));
+        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new FastGZIPOutputStream(out));
         archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
         createArchiveFile(archiveOutputStream, baseDir, inputFiles);
         return out.toByteArray();
@@ -103,7 +112,7 @@ public class CompressedFileReference {
     }
 
     private static void createArchiveFile(ArchiveOutputStream archiveOutputStream, File baseDir, List<File> inputFiles) throws IOException {
-        inputFiles.forEach(file -> {
+        inputFiles.stream().sorted(Comparator.comparing(File::getPath)).forEach(file -> {
             try {
                 writeFileToTar(archiveOutputStream, baseDir, file);
             } catch (IOException e) {
@@ -115,9 +124,24 @@ public class CompressedFileReference {
 
     private static void writeFileToTar(ArchiveOutputStream taos, File baseDir, File file) throws IOException {
         log.log(LogLevel.DEBUG, () -> "Adding file to tar: " + baseDir.toPath().relativize(file.toPath()).toString());
-        taos.putArchiveEntry(taos.createArchiveEntry(file, baseDir.toPath().relativize(file.toPath()).toString()));
-        ByteStreams.copy(new FileInputStream(file), taos);
+        ArchiveEntry entry = taos.createArchiveEntry(file, baseDir.toPath().relativize(file.toPath()).toString());
+        ((TarArchiveEntry)entry).setModTime(0);
+        taos.putArchiveEntry(entry);
+        try (InputStream in = new FileInputStream(file)) {
+            ByteStreams.copy(in, taos);
+        }
         taos.closeArchiveEntry();
     }
+
+    /** A gzip stream using the fastest compression level, and a larger buffer than the default */
+    private static class FastGZIPOutputStream extends GZIPOutputStream {
+
+        FastGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, 1 << 16);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+    }
+
 }
 
@@ -0,0 +1,95 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The content served for file references. Directories are compressed once, to a file kept in a cache directory,
+ * instead of each time they are served, such that the content served for a file reference, and its hash, stays the same.
+ * Nodes keep the compressed content they receive here too, such that they serve their peers exactly
+ * the content they received, which the config servers know the hash of.
+ *
+ * @author agent
+ */
+public class CompressedFileReferences {
+
+    private final File directory;
+
+    /** The xxhash of the content served for each file reference, computed when first asked for */
+    private final Map<FileReference, Long> hashes = new ConcurrentHashMap<>();
+
+    /** Creates this keeping compressed file references in the given directory, which is created when needed */
+    public CompressedFileReferences(File directory) {
+        this.directory = directory;
+    }
+
+    /** Returns data reading the content to serve for the given file of a file reference */
+    public FileReferenceData dataOf(FileReference fileReference, File file) throws IOException {
+        if ( ! file.isDirectory())
+            return new LazyFileReferenceData(fileReference, file.getName(), FileReferenceData.Type.file, file);
+        return new LazyFileReferenceData(fileReference, file.getName(), FileReferenceData.Type.compressed,
+                                         compressed(fileReference, file));
+    }
+
+    /** Returns the xxhash of the content served for the given file of a file reference */
+    public long xxhashOf(FileReference fileReference, File file) throws IOException {
+        Long hash = hashes.get(fileReference);
+        if (hash == null) {
+            hash = xxhash(file.isDirectory() ? compressed(fileReference, file) : file);
+            hashes.put(fileReference, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Keeps the given compressed content of a file reference, received from elsewhere, as the content to serve for it.
+     * The given file is moved, and should be on the same file system as the directory of this.
+     */
+    void keep(FileReference fileReference, File compressed, long xxhash) throws IOException {
+        Files.createDirectories(directory.toPath());
+        Files.move(compressed.toPath(), fileOf(fileReference).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        hashes.put(fileReference, xxhash);
+    }
+
+    /** Returns the compressed content of the given directory of a file reference, compressing it if this has not already */
+    private synchronized File compressed(FileReference fileReference, File fileReferenceDirectory) throws IOException {
+        File compressed = fileOf(fileReference);
+        if (compressed.exists()) return compressed;
+
+        Files.createDirectories(directory.toPath());
+        File tempFile = Files.createTempFile(directory.toPath(), fileReference.value(), ".tmp").toFile();
+        try {
+            CompressedFileReference.compress(fileReferenceDirectory.getParentFile(), tempFile);
+            Files.move(tempFile.toPath(), compressed.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+        return compressed;
+    }
+
+    private File fileOf(FileReference fileReference) {
+        return new File(directory, fileReference.value() + ".tar.gz");
+    }
+
+    private static long xxhash(File file) throws IOException {
+        StreamingXXHash64 hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
+        byte[] buffer = new byte[0x100000];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                hasher.update(buffer, 0, read);
+        }
+        return hasher.getValue();
+    }
+
+}
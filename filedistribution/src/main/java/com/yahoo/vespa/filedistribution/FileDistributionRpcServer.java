@@ -10,7 +10,10 @@ import com.yahoo.jrt.Request;
 import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
 import com.yahoo.log.LogLevel;
+import com.yahoo.net.HostName;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
 import java.util.Arrays;
@@ -18,11 +21,14 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
  * An RPC server that handles file distribution requests.
+ * This also serves file references which are completely downloaded to peers asking for them,
+ * and, when created with the port it listens on, makes the downloader download from and announce to peers.
  *
  * @author hmusum
  */
@@ -35,12 +41,29 @@ public class FileDistributionRpcServer {
     private final ExecutorService rpcDownloadExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
                                                                                      new DaemonThreadFactory("Rpc executor"));
 
+    /** The max number of file references served to peers at the same time, other requests are answered as not found */
+    private static final int maxConcurrentUploads = 2;
+    private final Semaphore uploadPermits = new Semaphore(maxConcurrentUploads);
+    private final ExecutorService uploadExecutor = Executors.newFixedThreadPool(maxConcurrentUploads,
+                                                                                new DaemonThreadFactory("Upload executor"));
+
     public FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
         this.downloader = downloader;
         declareFileDistributionMethods();
     }
 
+    /**
+     * Creates a server which also makes the given downloader download file references from peers,
+     * and announce the file references it downloads, such that peers can download them from this
+     *
+     * @param port the port the given supervisor listens on
+     */
+    public FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader, int port) {
+        this(supervisor, downloader);
+        downloader.fileReferenceDownloader().servePeers("tcp/" + HostName.getLocalhost() + ":" + port);
+    }
+
     private void declareFileDistributionMethods() {
         // Legacy method, needs to be the same name as used in filedistributor
         supervisor.addMethod(new Method("waitFor", "s", "s",
@@ -63,6 +86,13 @@ public class FileDistributionRpcServer {
                                      .methodDesc("set which file references to download")
                                      .paramDesc(0, "file references", "file reference to download")
                                      .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        supervisor.addMethod(new Method(FileReferenceDownloader.SERVE_METHOD, "si", "is",
+                                        this, "serveFile")
+                                     .methodDesc("serve a downloaded file reference to a peer")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .paramDesc(1, "downloadFromOtherSourceIfNotFound", "ignored, peers never download from other sources")
+                                     .returnDesc(0, "ret", "0 if the file reference will be served, 1 otherwise")
+                                     .returnDesc(1, "description", "description of the return code"));
     }
 
 
@@ -110,6 +140,45 @@ public class FileDistributionRpcServer {
         req.returnValues().add(new Int32Value(0));
     }
 
+    @SuppressWarnings({"UnusedDeclaration"})
+    public final void serveFile(Request req) {
+        FileReference fileReference = new FileReference(req.parameters().get(0).asString());
+        Optional<File> file = downloader.downloadedFile(fileReference);
+        if ( ! file.isPresent() || ! uploadPermits.tryAcquire()) {
+            req.returnValues().add(new Int32Value(1)).add(new StringValue("Filereference not found"));
+            return;
+        }
+        req.detach();
+        try {
+            uploadExecutor.execute(() -> upload(fileReference, file.get(), req));
+        } catch (RuntimeException e) {
+            uploadPermits.release();
+            throw e;
+        }
+    }
+
+    private void upload(FileReference fileReference, File file, Request req) {
+        Target target = req.target();
+        // Answer before sending, such that the answer is not lost when the connection is closed below
+        req.returnValues().add(new Int32Value(0)).add(new StringValue("OK"));
+        req.returnRequest();
+        try {
+            FileReferenceData fileData = downloader.compressedFileReferences().dataOf(fileReference, file);
+            try {
+                new ChunkedFileSender(target).send(fileData, 0, "OK");
+                log.log(LogLevel.DEBUG, () -> "Served file reference '" + fileReference.value() + "' to " + target);
+            } finally {
+                fileData.close();
+            }
+        } catch (Exception e) {
+            log.log(LogLevel.INFO, "Failed serving file reference '" + fileReference.value() + "' to " + target + ": " +
+                                   Exceptions.toMessageString(e));
+        } finally {
+            uploadPermits.release();
+            target.close(); // The peer uses a connection for each download
+        }
+    }
+
     private void downloadFile(Request req) {
         FileReference fileReference = new FileReference(req.parameters().get(0).asString());
         log.log(LogLevel.DEBUG, () -> "getFile() called for file reference '" + fileReference.value() + "'");
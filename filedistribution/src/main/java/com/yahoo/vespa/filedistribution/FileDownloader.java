@@ -41,9 +41,21 @@ public class FileDownloader {
     }
 
     FileDownloader(ConnectionPool connectionPool, File downloadDirectory, File tmpDirectory, Duration timeout, Duration sleepBetweenRetries) {
+        this(connectionPool, downloadDirectory, tmpDirectory, timeout, sleepBetweenRetries, Duration.ofSeconds(30));
+    }
+
+    /**
+     * Creates a file downloader
+     *
+     * @param peerTimeout how long a download from a peer may go without receiving anything before
+     *                    the config servers are used instead
+     */
+    FileDownloader(ConnectionPool connectionPool, File downloadDirectory, File tmpDirectory, Duration timeout,
+                   Duration sleepBetweenRetries, Duration peerTimeout) {
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
-        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool, timeout, sleepBetweenRetries);
+        this.fileReferenceDownloader = new FileReferenceDownloader(downloadDirectory, tmpDirectory, connectionPool,
+                                                                   timeout, sleepBetweenRetries, peerTimeout);
     }
 
     public Optional<File> getFile(FileReference fileReference) {
@@ -107,10 +119,15 @@ public class FileDownloader {
     }
 
     private boolean alreadyDownloaded(FileReference fileReference) {
+        return downloadedFile(fileReference).isPresent();
+    }
+
+    /** Returns the file of the given file reference if it is completely downloaded, without downloading it */
+    Optional<File> downloadedFile(FileReference fileReference) {
         try {
-            return (getFileFromFileSystem(fileReference, downloadDirectory).isPresent());
+            return getFileFromFileSystem(fileReference, downloadDirectory);
         } catch (RuntimeException e) {
-            return false;
+            return Optional.empty();
         }
     }
 
@@ -142,6 +159,11 @@ public class FileDownloader {
         return fileReferenceDownload.future();
     }
 
+    /** Returns the content this serves to peers for the file references it has downloaded */
+    CompressedFileReferences compressedFileReferences() {
+        return fileReferenceDownloader.compressedFileReferences();
+    }
+
     public FileReferenceDownloader fileReferenceDownloader() {
         return fileReferenceDownloader;
     }
@@ -5,6 +5,7 @@ package com.yahoo.vespa.filedistribution;
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Supervisor;
@@ -13,14 +14,18 @@ import net.jpountz.xxhash.StreamingXXHash64;
 import net.jpountz.xxhash.XXHashFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -28,6 +33,11 @@ import java.util.logging.Logger;
  * When asking for a file reference, this handles RPC callbacks from config server with file data and metadata.
  * Uses the same Supervisor as the original caller that requests files, so communication uses the same
  * connection in both directions.
+ * <p>
+ * Partially received files are kept, such that a later transfer of the same file, from any config server,
+ * continues where the previous one stopped: The offset to continue from is returned from the meta call,
+ * and the whole content is verified by its hash when the transfer completes.
+ * Content from peers is verified by the hash the config server has for it, not the hash the peer reports.
  *
  * @author baldersheim
  */
@@ -47,6 +57,9 @@ public class FileReceiver {
     private final AtomicInteger nextSessionId = new AtomicInteger(1);
     private final Map<Integer, Session> sessions = new HashMap<>();
 
+    /** Partial files older than this are not resumed but deleted */
+    private final static Duration maxPartialFileAge = Duration.ofDays(1);
+
     final static class Session {
         private final StreamingXXHash64 hasher;
         private final int sessionId;
@@ -56,14 +69,32 @@ public class FileReceiver {
         private final long fileSize;
         private long currentFileSize;
         private long currentPartId;
-        private long currentHash;
         private final File fileReferenceDir;
         private final File tmpDir;
         private final File inprogressFile;
+        private final long resumeOffset;
+        private final Optional<Long> expectedXxhash;
+        private final Optional<CompressedFileReferences> compressedFileReferences;
 
         Session(File downloadDirectory, File tmpDirectory, int sessionId, FileReference reference,
                 FileReferenceData.Type fileType, String fileName, long fileSize)
         {
+            this(downloadDirectory, tmpDirectory, sessionId, reference, fileType, fileName, fileSize,
+                 Optional.empty(), Optional.empty());
+        }
+
+        /**
+         * Creates a session
+         *
+         * @param expectedXxhash the hash the content must have, or empty to trust the hash sent with the content
+         * @param compressedFileReferences where to keep received compressed content, such that it can be served as received
+         */
+        Session(File downloadDirectory, File tmpDirectory, int sessionId, FileReference reference,
+                FileReferenceData.Type fileType, String fileName, long fileSize,
+                Optional<Long> expectedXxhash, Optional<CompressedFileReferences> compressedFileReferences)
+        {
+            this.expectedXxhash = expectedXxhash;
+            this.compressedFileReferences = compressedFileReferences;
             this.hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
             this.sessionId = sessionId;
             this.reference = reference;
@@ -72,19 +103,37 @@ public class FileReceiver {
             this.fileSize = fileSize;
             currentFileSize = 0;
             currentPartId = 0;
-            currentHash = 0;
             fileReferenceDir = new File(downloadDirectory, reference.value());
             this.tmpDir = tmpDirectory;
 
+            inprogressFile = new File(tmpDirectory, inprogressFileName(reference, fileName, fileSize));
             try {
-                inprogressFile = Files.createTempFile(tmpDirectory.toPath(), fileName, ".inprogress").toFile();
+                resumeOffset = resume();
             } catch (IOException e) {
-                String msg = "Failed creating temp file for inprogress file for " + fileName + " in '" + tmpDirectory.toPath() + "': ";
+                String msg = "Failed creating inprogress file for " + fileName + " in '" + tmpDirectory.toPath() + "': ";
                 log.log(LogLevel.ERROR, msg + e.getMessage(), e);
                 throw new RuntimeException(msg, e);
             }
         }
 
+        /** Continues from any partial content left by an earlier session, and returns the number of bytes already received */
+        private long resume() throws IOException {
+            long partialSize = inprogressFile.exists() ? inprogressFile.length() : 0;
+            if (partialSize == 0 || partialSize > fileSize || isStale(inprogressFile)) {
+                Files.write(inprogressFile.toPath(), new byte[0]);
+                return 0;
+            }
+
+            byte[] buffer = new byte[0x100000];
+            try (InputStream in = new FileInputStream(inprogressFile)) {
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer))
+                    hasher.update(buffer, 0, read);
+            }
+            currentFileSize = partialSize;
+            log.log(LogLevel.DEBUG, () -> "Resuming download of '" + reference.value() + "' after " + partialSize + " bytes");
+            return partialSize;
+        }
+
         void addPart(int partId, byte [] part) {
             if (partId != currentPartId) {
                 throw new IllegalStateException("Received partid " + partId + " while expecting " + currentPartId);
@@ -105,9 +154,19 @@ public class FileReceiver {
             hasher.update(part, 0, part.length);
         }
 
+        /** Returns the number of bytes which were already received when this session started */
+        long resumeOffset() { return resumeOffset; }
+
+        /** Returns the xxhash of the content received so far */
+        long xxhash() { return hasher.getValue(); }
+
         File close(long hash) {
-            if (hasher.getValue() != hash) {
-                throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
+            long expected = expectedXxhash.orElse(hash);
+            if (hasher.getValue() != expected) {
+                inprogressFile.delete(); // Do not resume from content which cannot be trusted
+                throw new RuntimeException("xxhash from content (" + hasher.getValue() + ") is not equal to " +
+                                           (expectedXxhash.isPresent() ? "xxhash from config server (" : "xxhash in request (") +
+                                           expected + ")");
             }
             File file = new File(fileReferenceDir, fileName);
             try {
@@ -117,6 +176,7 @@ public class FileReceiver {
                     log.log(LogLevel.DEBUG, () -> "Archived file, unpacking " + inprogressFile + " to " + decompressedDir);
                     CompressedFileReference.decompress(inprogressFile, decompressedDir);
                     moveFileToDestination(decompressedDir, fileReferenceDir);
+                    keepCompressed();
                 } else {
                     try {
                         Files.createDirectories(fileReferenceDir.toPath());
@@ -142,6 +202,16 @@ public class FileReceiver {
             return file;
         }
 
+        private void keepCompressed() {
+            if ( ! compressedFileReferences.isPresent()) return;
+            try {
+                compressedFileReferences.get().keep(reference, inprogressFile, hasher.getValue());
+            } catch (IOException e) {
+                log.log(LogLevel.WARNING, "Failed keeping compressed content of '" + reference.value() +
+                                          "', it will be compressed again if served: " + e.getMessage());
+            }
+        }
+
         double percentageReceived() {
             return (double)currentFileSize/(double)fileSize;
         }
@@ -152,9 +222,27 @@ public class FileReceiver {
         this.downloader = downloader;
         this.downloadDirectory = downloadDirectory;
         this.tmpDirectory = tmpDirectory;
+        deleteStalePartialFiles(tmpDirectory);
         registerMethods();
     }
 
+    static String inprogressFileName(FileReference reference, String fileName, long fileSize) {
+        return reference.value() + "-" + fileSize + "-" + fileName + ".inprogress";
+    }
+
+    private static boolean isStale(File partialFile) {
+        return partialFile.lastModified() < System.currentTimeMillis() - maxPartialFileAge.toMillis();
+    }
+
+    private static void deleteStalePartialFiles(File directory) {
+        File[] partialFiles = directory.listFiles((dir, name) -> name.endsWith(".inprogress"));
+        if (partialFiles == null) return;
+        for (File partialFile : partialFiles) {
+            if (isStale(partialFile) && ! partialFile.delete())
+                log.log(LogLevel.WARNING, "Failed deleting stale partial file " + partialFile);
+        }
+    }
+
     private void registerMethods() {
         receiveFileMethod(this).forEach(supervisor::addMethod);
     }
@@ -163,13 +251,14 @@ public class FileReceiver {
     // receiveFile after getting a serveFile method call). handler needs to implement receiveFile* methods
     private List<Method> receiveFileMethod(Object handler) {
         List<Method> methods = new ArrayList<>();
-        methods.add(new Method(RECEIVE_META_METHOD, "sssl", "ii", handler,"receiveFileMeta")
+        methods.add(new Method(RECEIVE_META_METHOD, "sssl", "iil", handler,"receiveFileMeta")
                 .paramDesc(0, "filereference", "file reference to download")
                 .paramDesc(1, "filename", "filename")
                 .paramDesc(2, "type", "'file' or 'compressed'")
                 .paramDesc(3, "filelength", "length in bytes of file")
                 .returnDesc(0, "ret", "0 if success, 1 otherwise")
-                .returnDesc(1, "session-id", "Session id to be used for this transfer"));
+                .returnDesc(1, "session-id", "Session id to be used for this transfer")
+                .returnDesc(2, "offset", "Bytes already received from an earlier transfer. Parts should be sent from this offset"));
         methods.add(new Method(RECEIVE_PART_METHOD, "siix", "i", handler,"receiveFilePart")
                 .paramDesc(0, "filereference", "file reference to download")
                 .paramDesc(1, "session-id", "Session id to be used for this transfer")
@@ -218,14 +307,21 @@ public class FileReceiver {
         long fileSize = req.parameters().get(3).asInt64();
         int sessionId = nextSessionId.getAndIncrement();
         int retval = 0;
+        long offset = 0;
         synchronized (sessions) {
             if (sessions.containsKey(sessionId)) {
                 retval = 1;
                 log.severe("Session id " + sessionId + " already exist, impossible. Request from(" + req.target() + ")");
             } else {
+                // A new transfer of the same file takes over its partial content from any earlier, unfinished session
+                sessions.values().removeIf(session -> session.reference.equals(reference) && session.fileName.equals(fileName));
                 try {
-                    sessions.put(sessionId, new Session(downloadDirectory, tmpDirectory, sessionId, reference,
-                                                        FileReferenceData.Type.valueOf(type),fileName, fileSize));
+                    Session session = new Session(downloadDirectory, tmpDirectory, sessionId, reference,
+                                                  FileReferenceData.Type.valueOf(type),fileName, fileSize,
+                                                  downloader.expectedXxhash(req.target()),
+                                                  Optional.of(downloader.compressedFileReferences()));
+                    sessions.put(sessionId, session);
+                    offset = session.resumeOffset();
                 } catch (Exception e) {
                     retval = 1;
                 }
@@ -233,6 +329,7 @@ public class FileReceiver {
         }
         req.returnValues().add(new Int32Value(retval));
         req.returnValues().add(new Int32Value(sessionId));
+        req.returnValues().add(new Int64Value(offset));
     }
 
     @SuppressWarnings({"UnusedDeclaration"})
@@ -245,6 +342,10 @@ public class FileReceiver {
         byte [] part = req.parameters().get(3).asData();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
         try {
             session.addPart(partId, part);
         } catch (Exception e) {
@@ -265,8 +366,12 @@ public class FileReceiver {
         long xxhash = req.parameters().get(2).asInt64();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
+        if (retval != 0) {
+            req.returnValues().add(new Int32Value(retval));
+            return;
+        }
         File file = session.close(xxhash);
-        downloader.completedDownloading(reference, file);
+        downloader.completedDownloading(reference, file, session.xxhash());
         synchronized (sessions) {
             sessions.remove(sessionId);
         }
@@ -6,8 +6,12 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Array;
 import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
 import com.yahoo.log.LogLevel;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
@@ -18,14 +22,23 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Downloads file reference using rpc requests to config server and keeps track of files being downloaded
  * <p>
+ * If this serves file references to peers (see {@link FileDistributionRpcServer}), it first tries to download
+ * from peers which the config server knows have the same content as it has for the file reference, and verifies the
+ * content by the hash from the config server. It announces the file references it completes, with their hashes.
+ * The config servers are used when no peer can serve a file reference, and when a peer stops sending for a while.
+ * <p>
  * Some methods are synchronized to make sure access to downloads is atomic
  *
  * @author hmusum
@@ -36,6 +49,10 @@ public class FileReferenceDownloader {
     private final static Logger log = Logger.getLogger(FileReferenceDownloader.class.getName());
     private final static Duration rpcTimeout = Duration.ofSeconds(10);
 
+    public final static String SERVE_METHOD = "filedistribution.serveFile";
+    public final static String ANNOUNCE_METHOD = "filedistribution.announceFileReferences";
+    public final static String GET_PEERS_METHOD = "filedistribution.getPeers";
+
     private final ExecutorService downloadExecutor =
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("filereference downloader"));
     private final ConnectionPool connectionPool;
@@ -43,11 +60,22 @@ public class FileReferenceDownloader {
     private final Map<FileReference, Double> downloadStatus = new HashMap<>();  // between 0 and 1
     private final Duration downloadTimeout;
     private final Duration sleepBetweenRetries;
+    private final Duration peerTimeout;
+    private final CompressedFileReferences compressedFileReferences;
+
+    /** The rpc spec where this serves file references to peers, if it does */
+    private volatile Optional<String> peerSpec = Optional.empty();
 
-    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Duration timeout, Duration sleepBetweenRetries) {
+    /** The hash from the config server of the content each connection to a peer is downloading */
+    private final Map<Target, Long> peerXxhashes = new ConcurrentHashMap<>();
+
+    FileReferenceDownloader(File downloadDirectory, File tmpDirectory, ConnectionPool connectionPool, Duration timeout,
+                            Duration sleepBetweenRetries, Duration peerTimeout) {
         this.connectionPool = connectionPool;
         this.downloadTimeout = timeout;
         this.sleepBetweenRetries = sleepBetweenRetries;
+        this.peerTimeout = peerTimeout;
+        this.compressedFileReferences = new CompressedFileReferences(new File(downloadDirectory, ".compressed"));
         // Needed to receive RPC calls receiveFile* from server after asking for files
         new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory);
     }
@@ -87,13 +115,14 @@ public class FileReferenceDownloader {
         downloadExecutor.submit(() -> startDownload(downloadTimeout, fileReferenceDownload));
     }
 
-    void completedDownloading(FileReference fileReference, File file) {
+    void completedDownloading(FileReference fileReference, File file, long xxhash) {
         synchronized (downloads) {
             FileReferenceDownload download = downloads.get(fileReference);
             if (download != null) {
                 downloadStatus.put(fileReference, 1.0);
                 downloads.remove(fileReference);
                 download.future().set(Optional.of(file));
+                announce(fileReference, xxhash);
             } else {
                 log.log(LogLevel.DEBUG, () -> "Received '" + fileReference + "', which was not requested. Can be ignored if happening during upgrades/restarts");
             }
@@ -108,8 +137,11 @@ public class FileReferenceDownloader {
     }
 
     private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount) {
+        if (peerSpec.isPresent() && fileReferenceDownload.downloadFromOtherSourceIfNotFound() && downloadFromPeer(fileReferenceDownload))
+            return true;
+
         Connection connection = connectionPool.getCurrent();
-        Request request = new Request("filedistribution.serveFile");
+        Request request = new Request(SERVE_METHOD);
         String fileReference = fileReferenceDownload.fileReference().value();
         request.parameters().add(new StringValue(fileReference));
         request.parameters().add(new Int32Value(fileReferenceDownload.downloadFromOtherSourceIfNotFound() ? 0 : 1));
@@ -134,6 +166,120 @@ public class FileReferenceDownloader {
         }
     }
 
+    /**
+     * Asks the config server for peers having the same content as it has for the file reference, and downloads from
+     * the first which agrees to serve it. Returns whether the download completed, which it does not if no peer agrees
+     * to serve it, or if the peer which does stops sending for longer than the peer timeout.
+     */
+    private boolean downloadFromPeer(FileReferenceDownload fileReferenceDownload) {
+        String fileReference = fileReferenceDownload.fileReference().value();
+        Request request = new Request(GET_PEERS_METHOD);
+        request.parameters().add(new StringValue(fileReference));
+        execute(request, connectionPool.getCurrent());
+        if (request.isError() || ! request.checkReturnTypes("Sl")) return false; // Not supported by older config servers
+
+        long xxhash = request.returnValues().get(1).asInt64();
+        for (String spec : request.returnValues().get(0).asStringArray()) {
+            if (spec.equals(peerSpec.get())) continue;
+            Optional<Target> target = startDownloadFromPeer(fileReference, spec, xxhash);
+            if (target.isPresent())
+                return awaitDownloadFromPeer(fileReferenceDownload, target.get(), spec);
+        }
+        return false;
+    }
+
+    /** Asks the peer at the given spec to serve the given file reference, and returns the connection it is sent on if it agrees */
+    private Optional<Target> startDownloadFromPeer(String fileReference, String spec, long xxhash) {
+        // Connect using the supervisor of the config server connections, on which FileReceiver receives file data
+        Target target = connectionPool.getSupervisor().connect(new Spec(spec));
+        peerXxhashes.put(target, xxhash); // Before asking, as the peer may start sending before it answers
+        Request request = new Request(SERVE_METHOD);
+        request.parameters().add(new StringValue(fileReference));
+        request.parameters().add(new Int32Value(1)); // Peers do not download from other sources
+        target.invokeSync(request, (double) rpcTimeout.getSeconds());
+        if (validateResponse(request) && request.returnValues().get(0).asInt32() == 0) {
+            log.log(LogLevel.DEBUG, () -> "Downloading file reference '" + fileReference + "' from peer " + spec);
+            return Optional.of(target); // The peer closes the connection when it is done
+        }
+        log.log(LogLevel.DEBUG, () -> "Could not download file reference '" + fileReference + "' from peer " + spec);
+        closePeerConnection(target);
+        return Optional.empty();
+    }
+
+    /** Waits for a download from a peer to complete, and returns whether it did before the peer stopped sending */
+    private boolean awaitDownloadFromPeer(FileReferenceDownload fileReferenceDownload, Target target, String spec) {
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        long pollMillis = Math.max(1, Math.min(1000, peerTimeout.toMillis() / 10));
+        double lastStatus = -1;
+        long lastProgressMillis = System.currentTimeMillis();
+        try {
+            while (true) {
+                try {
+                    fileReferenceDownload.future().get(pollMillis, TimeUnit.MILLISECONDS);
+                    return true;
+                }
+                catch (TimeoutException e) { /* check progress below */ }
+
+                double status = downloadStatus(fileReference.value());
+                if (status > lastStatus) {
+                    lastStatus = status;
+                    lastProgressMillis = System.currentTimeMillis();
+                }
+                else if ( ! target.isValid() || System.currentTimeMillis() - lastProgressMillis > peerTimeout.toMillis()) {
+                    if (fileReferenceDownload.future().isDone()) return true;
+                    log.log(LogLevel.INFO, "Download of file reference '" + fileReference.value() + "' from peer " + spec +
+                                           " stopped, downloading from config servers");
+                    return false;
+                }
+            }
+        }
+        catch (InterruptedException | ExecutionException e) {
+            return fileReferenceDownload.future().isDone();
+        }
+        finally {
+            closePeerConnection(target);
+        }
+    }
+
+    private void closePeerConnection(Target target) {
+        peerXxhashes.remove(target);
+        target.close();
+    }
+
+    /** Returns the hash from the config server of the content arriving on the given connection, if it is from a peer */
+    Optional<Long> expectedXxhash(Target target) {
+        return Optional.ofNullable(peerXxhashes.get(target));
+    }
+
+    /** Tells the config server that this can serve the given file reference, with the given content hash, to peers */
+    private void announce(FileReference fileReference, long xxhash) {
+        if ( ! peerSpec.isPresent()) return;
+
+        downloadExecutor.submit(() -> {
+            Connection connection = connectionPool.getCurrent();
+            Request request = new Request(ANNOUNCE_METHOD);
+            request.parameters().add(new StringValue(peerSpec.get()));
+            request.parameters().add(new StringArray(new String[] { fileReference.value() }));
+            request.parameters().add(new Int64Array(new long[] { xxhash }));
+            execute(request, connection);
+            if (request.isError())
+                log.log(LogLevel.DEBUG, () -> "Failed announcing file reference '" + fileReference.value() + "' to " +
+                                              connection.getAddress() + ": " + request.errorMessage());
+        });
+    }
+
+    /**
+     * Makes this download file references from peers, and announce the file references it downloads,
+     * which it serves to peers at the given rpc spec
+     */
+    void servePeers(String spec) {
+        peerSpec = Optional.of(spec);
+    }
+
+    CompressedFileReferences compressedFileReferences() {
+        return compressedFileReferences;
+    }
+
     boolean isDownloading(FileReference fileReference) {
         synchronized (downloads) {
             return downloads.containsKey(fileReference);
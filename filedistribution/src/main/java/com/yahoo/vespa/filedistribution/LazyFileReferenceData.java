@@ -15,9 +15,17 @@ public class LazyFileReferenceData extends FileReferenceData {
     private final File file;
     private final ReadableByteChannel channel;
     private final StreamingXXHash64 hasher;
+    private final boolean deleteOnClose;
+
     public LazyFileReferenceData(FileReference fileReference, String filename, Type type, File file) throws IOException {
+        this(fileReference, filename, type, file, false);
+    }
+
+    /** Creates file reference data reading from the given file, which is deleted on close if deleteOnClose is true */
+    public LazyFileReferenceData(FileReference fileReference, String filename, Type type, File file, boolean deleteOnClose) throws IOException {
         super(fileReference, filename, type);
         this.file = file;
+        this.deleteOnClose = deleteOnClose;
         channel = Files.newByteChannel(file.toPath());
         this.hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
     }
@@ -54,6 +62,8 @@ public class LazyFileReferenceData extends FileReferenceData {
     public void close() {
         try {
             channel.close();
+            if (deleteOnClose)
+                Files.deleteIfExists(file.toPath());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,68 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import net.jpountz.xxhash.XXHashFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author agent
+ */
+public class CompressedFileReferencesTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDataOfFile() throws IOException {
+        File file = new File(temporaryFolder.newFolder("ref"), "file");
+        IOUtils.writeFile(file, "content", false);
+        CompressedFileReferences compressed = new CompressedFileReferences(temporaryFolder.newFolder("compressed"));
+
+        byte[] content = readAndClose(compressed.dataOf(new FileReference("ref"), file), FileReferenceData.Type.file, "file");
+        assertEquals("content", new String(content));
+        assertEquals(xxhash(content), compressed.xxhashOf(new FileReference("ref"), file));
+    }
+
+    @Test
+    public void testDirectoriesAreCompressedOnce() throws IOException {
+        File directory = temporaryFolder.newFolder("ref", "dir");
+        IOUtils.writeFile(new File(directory, "a"), "1", false);
+        FileReference reference = new FileReference("ref");
+        CompressedFileReferences compressed = new CompressedFileReferences(new File(temporaryFolder.getRoot(), "compressed"));
+
+        byte[] content = readAndClose(compressed.dataOf(reference, directory), FileReferenceData.Type.compressed, "dir");
+        assertArrayEquals(CompressedFileReference.compress(directory.getParentFile()), content);
+        assertEquals(xxhash(content), compressed.xxhashOf(reference, directory));
+
+        IOUtils.writeFile(new File(directory, "b"), "2", false);
+        assertArrayEquals("The compressed content is reused",
+                          content, readAndClose(compressed.dataOf(reference, directory), FileReferenceData.Type.compressed, "dir"));
+        assertEquals(xxhash(content), compressed.xxhashOf(reference, directory));
+    }
+
+    private static byte[] readAndClose(FileReferenceData data, FileReferenceData.Type expectedType, String expectedName) {
+        try {
+            assertEquals(expectedType, data.type());
+            assertEquals(expectedName, data.filename());
+            return data.content().array();
+        } finally {
+            data.close();
+        }
+    }
+
+    private static long xxhash(byte[] content) {
+        return XXHashFactory.fastestInstance().hash64().hash(ByteBuffer.wrap(content), 0);
+    }
+
+}
@@ -4,9 +4,15 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Acceptor;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.ListenFailedException;
+import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.RequestWaiter;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
@@ -26,6 +32,8 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.yahoo.jrt.ErrorCode.CONNECTION;
 import static org.junit.Assert.assertEquals;
@@ -198,6 +206,39 @@ public class FileDownloaderTest {
         assertFalse(fileDownloader.downloadIfNeeded(new FileReferenceDownload(foo)));
     }
 
+    @Test
+    public void downloadFallsBackToConfigServersWhenPeerStopsSending() throws ListenFailedException, InterruptedException {
+        Supervisor peer = new Supervisor(new Transport());
+        try {
+            peer.addMethod(new Method(FileReferenceDownloader.SERVE_METHOD, "si", "is", new StalledPeer(), "serveFile"));
+            Acceptor acceptor = peer.listen(new Spec(0));
+            String peerSpec = "tcp/localhost:" + acceptor.port();
+
+            CountDownLatch servedByConfigServer = new CountDownLatch(1);
+            connection.setResponseHandler(request -> {
+                if (request.methodName().equals(FileReferenceDownloader.GET_PEERS_METHOD)) {
+                    request.returnValues().add(new StringArray(new String[] { peerSpec }));
+                    request.returnValues().add(new Int64Value(17));
+                }
+                else if (request.methodName().equals(FileReferenceDownloader.SERVE_METHOD)) {
+                    request.returnValues().add(new Int32Value(0));
+                    request.returnValues().add(new StringValue("OK"));
+                    servedByConfigServer.countDown();
+                }
+            });
+            FileDownloader fileDownloader = new FileDownloader(connection, downloadDir, tempDir, Duration.ofMinutes(1),
+                                                               Duration.ofMillis(100), Duration.ofMillis(200));
+            fileDownloader.fileReferenceDownloader().servePeers("tcp/localhost:1");
+
+            assertTrue(fileDownloader.downloadIfNeeded(new FileReferenceDownload(new FileReference("foo"))));
+            assertTrue("Config servers are asked when the peer stops sending, long before the download times out",
+                       servedByConfigServer.await(30, TimeUnit.SECONDS));
+        }
+        finally {
+            peer.transport().shutdown().join();
+        }
+    }
+
     @Test
     public void receiveFile() throws IOException {
         FileReference foo = new FileReference("foo");
@@ -235,6 +276,17 @@ public class FileDownloaderTest {
         session.close(hasher.hash(ByteBuffer.wrap(content), 0));
     }
 
+    /** A peer which agrees to serve file references, but never sends them */
+    public static class StalledPeer {
+
+        @SuppressWarnings({"UnusedDeclaration"})
+        public final void serveFile(Request request) {
+            request.returnValues().add(new Int32Value(0));
+            request.returnValues().add(new StringValue("OK"));
+        }
+
+    }
+
     private static class MockConnection implements ConnectionPool, com.yahoo.vespa.config.Connection {
 
         private ResponseHandler responseHandler;
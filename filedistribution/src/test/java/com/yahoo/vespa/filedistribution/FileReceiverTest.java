@@ -11,13 +11,18 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.util.Optional;
 
 public class FileReceiverTest {
     private File root;
@@ -66,6 +71,85 @@ public class FileReceiverTest {
         assertEquals("2", IOUtils.readFile(new File(downloadDir, "b")));
     }
 
+    @Test
+    public void receiveResumedFile() throws IOException {
+        FileReference ref = new FileReference("ref-b");
+        byte[] content = Utf8.toBytes("first part\nsecond part\n");
+        byte[] first = Utf8.toBytes("first part\n");
+
+        FileReceiver.Session interrupted = new FileReceiver.Session(root, tempDir, 1, ref, FileReferenceData.Type.file, "myfile", content.length);
+        assertEquals(0, interrupted.resumeOffset());
+        interrupted.addPart(0, first);
+
+        FileReceiver.Session resumed = new FileReceiver.Session(root, tempDir, 2, ref, FileReferenceData.Type.file, "myfile", content.length);
+        assertEquals(first.length, resumed.resumeOffset());
+        resumed.addPart(0, Utf8.toBytes("second part\n"));
+        assertEquals(1.0, resumed.percentageReceived(), 0.0001);
+        File file = resumed.close(hasher.hash(ByteBuffer.wrap(content), 0));
+        assertEquals("first part\nsecond part\n", IOUtils.readFile(file));
+
+        FileReceiver.Session next = new FileReceiver.Session(root, tempDir, 3, ref, FileReferenceData.Type.file, "myfile", content.length);
+        assertEquals("Partial content is removed when completed", 0, next.resumeOffset());
+    }
+
+    @Test
+    public void contentFromPeersIsVerifiedByTheHashFromTheConfigServer() throws IOException {
+        FileReference ref = new FileReference("ref-c");
+        byte[] content = Utf8.toBytes("content");
+        byte[] corrupt = Utf8.toBytes("corrupt");
+        long expected = hasher.hash(ByteBuffer.wrap(content), 0);
+
+        FileReceiver.Session fromBadPeer = new FileReceiver.Session(root, tempDir, 1, ref, FileReferenceData.Type.file, "myfile",
+                                                                    corrupt.length, Optional.of(expected), Optional.empty());
+        fromBadPeer.addPart(0, corrupt);
+        try {
+            fromBadPeer.close(hasher.hash(ByteBuffer.wrap(corrupt), 0));
+            fail("Content not matching the hash from the config server should be rejected");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("xxhash from config server"));
+        }
+        assertFalse(new File(new File(root, ref.value()), "myfile").exists());
+
+        FileReceiver.Session fromPeer = new FileReceiver.Session(root, tempDir, 2, ref, FileReferenceData.Type.file, "myfile",
+                                                                 content.length, Optional.of(expected), Optional.empty());
+        assertEquals("Rejected content is not resumed", 0, fromPeer.resumeOffset());
+        fromPeer.addPart(0, content);
+        assertEquals("content", IOUtils.readFile(fromPeer.close(0)));
+    }
+
+    @Test
+    public void receivedCompressedContentIsKeptForServing() throws IOException {
+        File dirWithFiles = temporaryFolder.newFolder("files", "dir");
+        IOUtils.writeFile(new File(dirWithFiles, "a"), "1", false);
+        byte[] data = CompressedFileReference.compress(dirWithFiles.getParentFile());
+        long xxhash = hasher.hash(ByteBuffer.wrap(data), 0);
+        FileReference ref = new FileReference("ref");
+        CompressedFileReferences compressed = new CompressedFileReferences(new File(root, ".compressed"));
+
+        FileReceiver.Session session = new FileReceiver.Session(root, tempDir, 1, ref, FileReferenceData.Type.compressed, "dir",
+                                                                data.length, Optional.empty(), Optional.of(compressed));
+        session.addPart(0, data);
+        File file = session.close(xxhash);
+        assertTrue(file.isDirectory());
+        assertEquals("1", IOUtils.readFile(new File(file, "a")));
+
+        assertEquals(xxhash, compressed.xxhashOf(ref, file));
+        FileReferenceData served = compressed.dataOf(ref, file);
+        assertArrayEquals(data, served.content().array());
+        served.close();
+    }
+
+    @Test
+    public void compressionIsDeterministic() throws IOException {
+        File dirWithFiles = temporaryFolder.newFolder("files");
+        IOUtils.writeFile(new File(dirWithFiles, "a"), "1", false);
+        IOUtils.writeFile(new File(dirWithFiles, "b"), "2", false);
+        byte[] data = CompressedFileReference.compress(dirWithFiles);
+
+        assertTrue(new File(dirWithFiles, "a").setLastModified(0));
+        assertArrayEquals(data, CompressedFileReference.compress(dirWithFiles));
+    }
+
     private void transferPartsAndAssert(FileReference ref, String fileName, String all, int numParts) throws IOException {
         byte [] allContent = Utf8.toBytes(all);
 
@@ -8,9 +8,9 @@ import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 
 
@@ -62,6 +62,10 @@ public class FSA {
         }
 
         public void delta(char chr){
+            if (fsa.isUtf8()) {
+                deltaCodePoint(Character.isSurrogate(chr) ? '?' : chr);
+                return;
+            }
             CharBuffer chrbuf = CharBuffer.allocate(1);
             chrbuf.put(0,chr);
             ByteBuffer buf = fsa.encode(chrbuf);
@@ -72,21 +76,88 @@ public class FSA {
 
         /** Jumps ahead by string */
         public void delta(String string){
-            ByteBuffer buf = fsa.encode(string);
-            while(state >0 && buf.position()<buf.limit()){
-                delta(buf.get());
+            delta(string, 0, string.length());
+        }
+
+        /** Jumps ahead by a character sequence */
+        public void delta(CharSequence chars){
+            delta(chars, 0, chars.length());
+        }
+
+        /**
+         * Jumps ahead by the characters in the given range of a character sequence.
+         * This does not allocate when the automaton is utf-8 encoded, which makes it suitable for
+         * traversing windows of a longer input, such as n-grams of a query, without creating substrings.
+         *
+         * @param chars the characters to traverse by
+         * @param start the index of the first character to traverse by
+         * @param end the index after the last character to traverse by
+         */
+        public void delta(CharSequence chars, int start, int end){
+            if ( ! fsa.isUtf8()) {
+                ByteBuffer buf = fsa.encode(CharBuffer.wrap(chars, start, end));
+                while(state >0 && buf.position()<buf.limit()){
+                    delta(buf.get());
+                }
+                return;
+            }
+
+            for (int i = start; i < end && state > 0; i++) {
+                char chr = chars.charAt(i);
+                if (Character.isHighSurrogate(chr) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1)))
+                    deltaCodePoint(Character.toCodePoint(chr, chars.charAt(++i)));
+                else if (Character.isSurrogate(chr))
+                    deltaCodePoint('?'); // unpaired surrogates are encoded as the replacement byte by the utf-8 encoder
+                else
+                    deltaCodePoint(chr);
             }
         }
 
+        /** Jumps ahead by the utf-8 bytes of a code point, stopping if we reach an invalid state */
+        private void deltaCodePoint(int codePoint) {
+            if (codePoint < 0x80) {
+                delta((byte)codePoint);
+            }
+            else if (codePoint < 0x800) {
+                delta((byte)(0xC0 | (codePoint >> 6)));
+                deltaIfValid((byte)(0x80 | (codePoint & 0x3F)));
+            }
+            else if (codePoint < 0x10000) {
+                delta((byte)(0xE0 | (codePoint >> 12)));
+                deltaIfValid((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+                deltaIfValid((byte)(0x80 | (codePoint & 0x3F)));
+            }
+            else {
+                delta((byte)(0xF0 | (codePoint >> 18)));
+                deltaIfValid((byte)(0x80 | ((codePoint >> 12) & 0x3F)));
+                deltaIfValid((byte)(0x80 | ((codePoint >> 6) & 0x3F)));
+                deltaIfValid((byte)(0x80 | (codePoint & 0x3F)));
+            }
+        }
+
+        private void deltaIfValid(byte symbol) {
+            if (state > 0)
+                delta(symbol);
+        }
+
         /**
          * Jumps ahead by string if that puts us into a valid state, does nothing otherwise
          *
          * @return whether we jumped to a valid state (true) or di nothing (false)
          */
         public boolean tryDelta(String string){
+            return tryDelta((CharSequence)string);
+        }
+
+        /**
+         * Jumps ahead by a character sequence if that puts us into a valid state, does nothing otherwise
+         *
+         * @return whether we jumped to a valid state (true) or di nothing (false)
+         */
+        public boolean tryDelta(CharSequence chars){
             int lastHash=hash;
             int lastState=state;
-            delta(string);
+            delta(chars);
             if (isValid()) return true;
 
             hash=lastHash;
@@ -96,20 +167,32 @@ public class FSA {
 
         /** Jumps ahead by a word -  if this is not the first word, it must be preceeded by space. */
         public void deltaWord(String string){
+            deltaWord((CharSequence)string);
+        }
+
+        /** Jumps ahead by a word -  if this is not the first word, it must be preceeded by space. */
+        public void deltaWord(CharSequence chars){
             if (state!=fsa.start()) {
                 delta((byte)' ');
             }
-            delta(string);
+            delta(chars);
         }
 
         /**
          * Tries to jump ahead by one word. If the given string is not the next complete valid word, nothing is done.
          */
         public boolean tryDeltaWord(String string){
+            return tryDeltaWord((CharSequence)string);
+        }
+
+        /**
+         * Tries to jump ahead by one word. If the given characters are not the next complete valid word, nothing is done.
+         */
+        public boolean tryDeltaWord(CharSequence chars){
             int lastHash=hash;
             int lastState=state;
             tryDelta((byte)' ');
-            delta(string);
+            delta(chars);
             if (isValid() && peekDelta((byte)' ')) return true;
             if (isFinal()) return true;
 
@@ -313,12 +396,13 @@ public class FSA {
     }
 
     private boolean _ok = false;
-    private MappedByteBuffer _header;
-    private MappedByteBuffer _symbol_tab;
-    private MappedByteBuffer _state_tab;
-    private MappedByteBuffer _data;
-    private MappedByteBuffer _phash;
+    private ByteBuffer _header;
+    private ByteBuffer _symbol_tab;
+    private ByteBuffer _state_tab;
+    private ByteBuffer _data;
+    private ByteBuffer _phash;
     private Charset _charset;
+    private boolean _utf8;
 
     /**
      * Loads an FSA from a resource file name, which is resolved from the class path of the
@@ -370,6 +454,17 @@ public class FSA {
         init(filename,charsetname);
     }
 
+    /**
+     * Creates an FSA from a buffer holding the content of an fsa file, using utf-8 encoding.
+     * This is useful with automata created by {@link FSABuilder}, or read by other means than from a file.
+     * The buffer is not copied and must not be modified while this is in use.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain an FSA
+     */
+    public FSA(ByteBuffer buffer) {
+        init(buffer,"utf-8");
+    }
+
     private void init(String filename, String charsetname){
         try {
             init(new FileInputStream(filename),charsetname);
@@ -382,6 +477,7 @@ public class FSA {
     private void init(FileInputStream file, String charsetname) {
         try {
             _charset = Charset.forName(charsetname);
+            _utf8 = _charset.equals(StandardCharsets.UTF_8);
 
             _header = file.getChannel().map(MapMode.READ_ONLY,0,256);
             _header.order(ByteOrder.LITTLE_ENDIAN);
@@ -410,6 +506,30 @@ public class FSA {
         }
     }
 
+    private void init(ByteBuffer buffer, String charsetname) {
+        _charset = Charset.forName(charsetname);
+        _utf8 = _charset.equals(StandardCharsets.UTF_8);
+
+        _header = slice(buffer,0,256);
+        if (h_magic()!=2038637673)
+            throw new IllegalArgumentException("Buffer does not contain an FSA: Wrong file magic number " + h_magic());
+        _symbol_tab = slice(buffer,256,h_size());
+        _state_tab = slice(buffer,256+h_size(),4*h_size());
+        _data = slice(buffer,256+5*h_size(),h_data_size());
+        if(h_has_phash()>0)
+            _phash = slice(buffer,256+5*h_size()+h_data_size(),4*h_size());
+        _ok=true;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(buffer.position()+offset);
+        slice.limit(buffer.position()+offset+length);
+        slice = slice.slice();
+        slice.order(ByteOrder.LITTLE_ENDIAN);
+        return slice;
+    }
+
     private int h_magic(){
         return _header.getInt(0);
     }
@@ -456,6 +576,11 @@ public class FSA {
         return _charset.encode(chrbuf);
     }
 
+    /** Returns whether this automaton is utf-8 encoded, such that it can be traversed without a charset encoder */
+    private boolean isUtf8(){
+        return _utf8;
+    }
+
     private String decode(ByteBuffer buf){
         return _charset.decode(buf).toString();
     }
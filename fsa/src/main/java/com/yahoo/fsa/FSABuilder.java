@@ -0,0 +1,308 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.fsa;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Builds a utf-8 encoded finite-state automaton in the same binary format as the native makefsa tool,
+ * such that automata can be created (and replaced) from Java without the native tools.
+ * <p>
+ * Inputs may be added in any order. The automaton is minimized by sharing equivalent suffixes
+ * before it is packed, and a perfect hash is included if requested.
+ * <p>
+ * This is not multithread safe.
+ *
+ * @author agent
+ */
+public class FSABuilder {
+
+    private static final int MAGIC = 0x79832469;
+    private static final int VERSION = 2000001;
+    private static final int DATA_VARIABLE = 0;
+    private static final int FINAL_SYMBOL = 255;
+
+    private final Node root = new Node();
+    private boolean perfectHash = false;
+    private int serial = 0;
+
+    /**
+     * Adds an input string with a string as data. The data is stored zero terminated, as by makefsa -t,
+     * such that it is returned unchanged by {@link FSA.State#dataString}.
+     *
+     * @return this for chaining
+     * @throws IllegalArgumentException if the input contains characters which cannot be used in an automaton
+     */
+    public FSABuilder add(String input, String data) {
+        return add(input, (data + "\0").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Adds an input string with binary data. If the input is already added, its data is replaced.
+     *
+     * @return this for chaining
+     * @throws IllegalArgumentException if the input contains characters which cannot be used in an automaton
+     */
+    public FSABuilder add(String input, byte[] data) {
+        Objects.requireNonNull(data, "Data cannot be null");
+        Node node = root;
+        for (byte b : input.getBytes(StandardCharsets.UTF_8)) {
+            int symbol = b & 0xff;
+            if (symbol == 0 || symbol == FINAL_SYMBOL)
+                throw new IllegalArgumentException("Input '" + input + "' contains a character not allowed in an automaton");
+            node = node.children.computeIfAbsent(symbol, __ -> new Node());
+        }
+        node.data = Arrays.copyOf(data, data.length);
+        return this;
+    }
+
+    /** Sets whether the built automaton should contain a perfect hash. Default is false. */
+    public FSABuilder perfectHash(boolean perfectHash) {
+        this.perfectHash = perfectHash;
+        return this;
+    }
+
+    /** Sets the serial number of the built automaton. Default is 0. */
+    public FSABuilder serial(int serial) {
+        this.serial = serial;
+        return this;
+    }
+
+    /** Builds an automaton in memory from the current content of this */
+    public FSA build() {
+        return new FSA(toBuffer());
+    }
+
+    /** Writes an automaton from the current content of this in the fsa file format to the given stream */
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer buffer = toBuffer();
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+    }
+
+    private ByteBuffer toBuffer() {
+        List<Node> nodes = new ArrayList<>();
+        Node minimizedRoot = minimize(root, new HashMap<>(), nodes);
+        return new Packing(nodes, minimizedRoot).toBuffer(perfectHash, serial);
+    }
+
+    /**
+     * Returns a minimized copy of the given subtree, where each subtree equal to an already seen one
+     * is replaced by that. The subtree itself is not modified, such that this can be built again after more adds.
+     *
+     * @param node the subtree to minimize
+     * @param register the canonical node of each distinct subtree
+     * @param nodes receives each canonical node, children before parents
+     * @return the canonical node for the given subtree
+     */
+    private static Node minimize(Node node, Map<Node, Node> register, List<Node> nodes) {
+        Node copy = new Node();
+        copy.data = node.data;
+        for (Map.Entry<Integer, Node> child : node.children.entrySet())
+            copy.children.put(child.getKey(), minimize(child.getValue(), register, nodes));
+
+        Node canonical = register.get(copy);
+        if (canonical != null) return canonical;
+
+        copy.id = nodes.size();
+        nodes.add(copy);
+        register.put(copy, copy);
+        return copy;
+    }
+
+    /** A state in the automaton under construction */
+    private static class Node {
+
+        /** The transitions of this, in symbol order */
+        private final TreeMap<Integer, Node> children = new TreeMap<>();
+
+        /** The data of this if it is final, null otherwise */
+        private byte[] data = null;
+
+        /** The index of this among the canonical nodes, set when minimized */
+        private int id = -1;
+
+        boolean isFinal() { return data != null; }
+
+        /** Nodes are equal if they have equal data and transitions to the same canonical nodes */
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Node)) return false;
+            Node other = (Node)o;
+            if ( ! Arrays.equals(data, other.data)) return false;
+            if (children.size() != other.children.size()) return false;
+            for (Map.Entry<Integer, Node> child : children.entrySet()) {
+                if (other.children.get(child.getKey()) != child.getValue()) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = Arrays.hashCode(data);
+            for (Map.Entry<Integer, Node> child : children.entrySet())
+                hashCode = 31 * hashCode + child.getKey() * 17 + child.getValue().id;
+            return hashCode;
+        }
+
+    }
+
+    /**
+     * Packs the states of a minimized automaton into overlapping cells such that the transition
+     * on a symbol s from a state at cell b is found at cell b+s, which holds s if that transition exists.
+     */
+    private static class Packing {
+
+        private final List<Node> nodes;
+        private final Node root;
+
+        /** The cell where each node starts, by node id */
+        private final int[] bases;
+
+        private byte[] symbols = new byte[1024];
+        private boolean[] usedBases = new boolean[1024];
+        private int firstFreeCell = 1;
+        private int lastBase = 0;
+
+        Packing(List<Node> nodes, Node root) {
+            this.nodes = nodes;
+            this.root = root;
+            this.bases = new int[nodes.size()];
+            for (Node node : nodes)
+                bases[node.id] = place(node);
+        }
+
+        /** Finds and occupies the first base where all the cells of this node are free. Cell 0 is never used. */
+        private int place(Node node) {
+            int base = Math.max(1, firstFreeCell - (node.children.isEmpty() ? FINAL_SYMBOL : node.children.firstKey()));
+            while ( ! fits(node, base))
+                base++;
+
+            ensureCapacity(base + FINAL_SYMBOL + 1);
+            usedBases[base] = true;
+            for (int symbol : node.children.keySet())
+                symbols[base + symbol] = (byte)symbol;
+            if (node.isFinal())
+                symbols[base + FINAL_SYMBOL] = (byte)FINAL_SYMBOL;
+            while (firstFreeCell < symbols.length && symbols[firstFreeCell] != 0)
+                firstFreeCell++;
+            lastBase = Math.max(lastBase, base);
+            return base;
+        }
+
+        private boolean fits(Node node, int base) {
+            ensureCapacity(base + FINAL_SYMBOL + 1);
+            if (usedBases[base]) return false;
+            for (int symbol : node.children.keySet())
+                if (symbols[base + symbol] != 0) return false;
+            return ! node.isFinal() || symbols[base + FINAL_SYMBOL] == 0;
+        }
+
+        private void ensureCapacity(int size) {
+            if (size <= symbols.length) return;
+            int newSize = Math.max(size, symbols.length * 2);
+            symbols = Arrays.copyOf(symbols, newSize);
+            usedBases = Arrays.copyOf(usedBases, newSize);
+        }
+
+        ByteBuffer toBuffer(boolean includePerfectHash, int serial) {
+            int size = lastBase + FINAL_SYMBOL + 1;
+            int[] states = new int[size];
+
+            int dataSize = 0;
+            for (Node node : nodes)
+                if (node.isFinal())
+                    dataSize += 4 + node.data.length;
+            ByteBuffer data = ByteBuffer.allocate(dataSize).order(ByteOrder.LITTLE_ENDIAN);
+
+            for (Node node : nodes) {
+                int base = bases[node.id];
+                for (Map.Entry<Integer, Node> child : node.children.entrySet())
+                    states[base + child.getKey()] = bases[child.getValue().id];
+                if (node.isFinal()) {
+                    states[base + FINAL_SYMBOL] = data.position();
+                    data.putInt(node.data.length);
+                    data.put(node.data);
+                }
+            }
+
+            int[] perfectHash = null;
+            if (includePerfectHash) {
+                perfectHash = new int[size];
+                int[] totals = new int[nodes.size()];
+                Arrays.fill(totals, -1);
+                computePerfectHash(root, perfectHash, totals);
+            }
+
+            int bufferSize = 256 + 5 * size + dataSize + (perfectHash != null ? 4 * size : 0);
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.position(256);
+            buffer.put(symbols, 0, size);
+            for (int state : states)
+                buffer.putInt(state);
+            buffer.put(data.array());
+            if (perfectHash != null)
+                for (int hash : perfectHash)
+                    buffer.putInt(hash);
+
+            int checksum = checksum(buffer, 256, size) + checksum(buffer, 256 + size, 4 * size) +
+                           checksum(buffer, 256 + 5 * size, dataSize);
+            if (perfectHash != null)
+                checksum += checksum(buffer, 256 + 5 * size + dataSize, 4 * size);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, checksum);
+            buffer.putInt(12, size);
+            buffer.putInt(16, bases[root.id]);
+            buffer.putInt(20, dataSize);
+            buffer.putInt(24, DATA_VARIABLE);
+            buffer.putInt(28, 0);
+            buffer.putInt(32, perfectHash != null ? 1 : 0);
+            buffer.putInt(36, serial);
+            buffer.position(0);
+            return buffer;
+        }
+
+        /** Computes the perfect hash increments as the native tools do, returning the number of strings below the node */
+        private int computePerfectHash(Node node, int[] perfectHash, int[] totals) {
+            if (totals[node.id] >= 0) return totals[node.id];
+
+            int count = node.isFinal() ? 1 : 0;
+            int base = bases[node.id];
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                perfectHash[base + child.getKey()] = count;
+                count += computePerfectHash(child.getValue(), perfectHash, totals);
+            }
+            totals[node.id] = count;
+            return count;
+        }
+
+        /** The checksum of the native tools: The sum of the little endian 32-bit words of a section */
+        private static int checksum(ByteBuffer buffer, int offset, int length) {
+            int checksum = 0;
+            int words = length >> 2;
+            for (int i = 0; i < words; i++)
+                checksum += buffer.getInt(offset + 4 * i);
+            if ((length & 1) != 0) { // sic: the native tools only add the rest for odd lengths
+                int rest = 0;
+                for (int i = 0; i < (length & 3); i++)
+                    rest |= (buffer.get(offset + 4 * words + i) & 0xff) << (8 * i);
+                checksum += rest;
+            }
+            return checksum;
+        }
+
+    }
+
+}
@@ -0,0 +1,116 @@
+// Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.fsa.test;
+
+import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSABuilder;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class FSABuilderTestCase {
+
+    @Test
+    public void testBuiltAutomatonEqualsNativeAutomaton() {
+        FSA nativeFsa = new FSA("src/test/fsa/test-iterator.fsa");
+        Map<String, ByteBuffer> content = new LinkedHashMap<>();
+        for (FSA.Iterator i = nativeFsa.iterator(); i.hasNext(); ) {
+            FSA.Iterator.Item item = i.next();
+            content.put(item.getString(), item.getData());
+        }
+        assertFalse(content.isEmpty());
+
+        FSABuilder builder = new FSABuilder().perfectHash(true);
+        content.forEach((input, data) -> builder.add(input, data.array()));
+        FSA fsa = builder.build();
+
+        int index = 0;
+        for (Map.Entry<String, ByteBuffer> entry : content.entrySet()) {
+            assertEquals(nativeFsa.lookup(entry.getKey()), fsa.lookup(entry.getKey()));
+            FSA.State state = fsa.getState();
+            state.delta(entry.getKey());
+            assertTrue(state.isFinal());
+            assertEquals(entry.getValue(), state.data());
+            assertEquals("Perfect hash is the index in iteration order", index++, state.hash());
+        }
+        assertNull(fsa.lookup("abaca"));
+        assertNull(fsa.lookup("not present"));
+    }
+
+    @Test
+    public void testStringData() {
+        FSA fsa = new FSABuilder().add("tudor vidor", "a data")
+                                  .add("this is a test", "b data")
+                                  .add("this is", "c data")
+                                  .build();
+        assertEquals("a data", fsa.lookup("tudor vidor"));
+        assertEquals("b data", fsa.lookup("this is a test"));
+        assertEquals("c data", fsa.lookup("this is"));
+        assertNull(fsa.lookup("this"));
+
+        FSA.State state = fsa.getState();
+        state.deltaWord("this");
+        assertFalse(state.isFinal());
+        assertTrue(state.tryDeltaWord("is"));
+        assertTrue(state.isFinal());
+        assertFalse(state.tryDeltaWord("no"));
+        assertEquals("c data", state.dataString());
+    }
+
+    @Test
+    public void testCharSequenceTraversal() {
+        String word = "hæह😀";
+        FSA fsa = new FSABuilder().add(word, "data").build();
+
+        StringBuilder query = new StringBuilder("the word ").append(word).append(" in a query");
+        FSA.State state = fsa.getState();
+        state.delta(query, 9, 9 + word.length());
+        assertTrue(state.isFinal());
+        assertEquals("data", state.dataString());
+
+        state.start();
+        for (int i = 0; i < word.length(); i++)
+            state.delta(word.charAt(i));
+        assertFalse("Surrogates cannot be traversed by one char at the time", state.isValid());
+
+        state.start();
+        assertTrue(state.tryDelta(query.subSequence(9, 11)));
+        assertFalse(state.tryDelta("x"));
+        assertTrue(state.isValid());
+    }
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        File file = File.createTempFile("builder", ".fsa");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            new FSABuilder().add("aa", "aa data").add("bbbb", "bbbb data").serial(7).write(out);
+        }
+        FSA fsa = new FSA(new FileInputStream(file));
+        assertTrue(fsa.isOk());
+        assertEquals(7, fsa.serial());
+        assertEquals("aa data", fsa.lookup("aa"));
+        assertEquals("bbbb data", fsa.lookup("bbbb"));
+        assertNull(fsa.lookup("bb"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalInput() {
+        new FSABuilder().add("a\u0000b", "data");
+    }
+
+}
@@ -17,6 +17,10 @@ import com.yahoo.vespa.objects.Selectable;
  */
 public abstract class Expression extends Selectable {
 
+    private boolean compiled = false;
+    private DataType compiledInputType;
+    private DataType compiledOutputType;
+
     public final FieldValue execute(FieldValue val) {
         return execute(new ExecutionContext().setValue(val));
     }
@@ -58,7 +62,7 @@ public abstract class Expression extends Selectable {
     }
 
     public final FieldValue execute(ExecutionContext context) {
-        DataType inputType = requiredInputType();
+        DataType inputType = compiled ? compiledInputType : requiredInputType();
         if (inputType != null) {
             FieldValue input = context.getValue();
             if (input == null) {
@@ -70,7 +74,7 @@ public abstract class Expression extends Selectable {
             }
         }
         doExecute(context);
-        DataType outputType = createdOutputType();
+        DataType outputType = compiled ? compiledOutputType : createdOutputType();
         if (outputType != null) {
             FieldValue output = context.getValue();
             if (output != null && !outputType.isValueCompatible(output)) {
@@ -83,6 +87,29 @@ public abstract class Expression extends Selectable {
 
     protected abstract void doExecute(ExecutionContext ctx);
 
+    /**
+     * Prepares this and all its sub-expressions for repeated execution by resolving their required input and
+     * created output types once, rather than on every execution. Resolving these types walks the sub-expressions,
+     * which otherwise happens for every expression executed, and for every element of a for_each.
+     * This must only be called once the expression is complete, as the resolved types are never updated.
+     *
+     * @return this, for chaining
+     */
+    public final Expression compile() {
+        select(obj -> obj instanceof Expression, obj -> ((Expression)obj).compileTypes());
+        return this;
+    }
+
+    private void compileTypes() {
+        try {
+            compiledInputType = requiredInputType();
+            compiledOutputType = createdOutputType();
+            compiled = true;
+        } catch (VerificationException e) {
+            // Conflicting types; leave it to execution to fail as before
+        }
+    }
+
     public final DataType verify() {
         return verify(new VerificationContext());
     }
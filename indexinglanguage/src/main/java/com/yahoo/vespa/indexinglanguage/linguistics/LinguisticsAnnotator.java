@@ -3,9 +3,7 @@ package com.yahoo.vespa.indexinglanguage.linguistics;
 
 import com.yahoo.document.annotation.Annotation;
 import com.yahoo.document.annotation.AnnotationTypes;
-import com.yahoo.document.annotation.Span;
-import com.yahoo.document.annotation.SpanList;
-import com.yahoo.document.annotation.SpanTree;
+import com.yahoo.document.annotation.CompactSpanTree;
 import com.yahoo.document.annotation.SpanTrees;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.language.Linguistics;
@@ -13,6 +11,7 @@ import com.yahoo.language.process.StemMode;
 import com.yahoo.language.process.Token;
 import com.yahoo.language.process.Tokenizer;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,23 +27,36 @@ public class LinguisticsAnnotator {
     private final Linguistics factory;
     private final AnnotatorConfig config;
 
+    /**
+     * Adds each distinct lowercased term once to the compact span tree of a field,
+     * and counts its occurrences by its term id there
+     */
     private static class TermOccurrences {
-        final Map<String, Integer> termOccurrences = new HashMap<>();
+        final CompactSpanTree tree;
+        final Map<String, Integer> termIds = new HashMap<>();
+        int[] termOccurrences = new int[16];
         final int maxOccurrences;
 
-        public TermOccurrences(int maxOccurences) {
+        public TermOccurrences(CompactSpanTree tree, int maxOccurences) {
+            this.tree = tree;
             this.maxOccurrences = maxOccurences;
         }
 
-        boolean termCountBelowLimit(String term) {
-            String lowerCasedTerm = toLowerCase(term);
-            int occurences = termOccurrences.getOrDefault(lowerCasedTerm, 0);
-            if (occurences >= maxOccurrences) {
-                return false;
+        /** Counts an occurrence of the given term and returns its id, or returns -1 if it already occurs too often */
+        int countOccurrence(String lowerCasedTerm) {
+            Integer termId = termIds.get(lowerCasedTerm);
+            if (termId == null) {
+                termId = tree.addTerm(lowerCasedTerm);
+                termIds.put(lowerCasedTerm, termId);
+                if (termId == termOccurrences.length) {
+                    termOccurrences = Arrays.copyOf(termOccurrences, termOccurrences.length * 2);
+                }
             }
-
-            termOccurrences.put(lowerCasedTerm, occurences + 1);
-            return true;
+            if (termOccurrences[termId] >= maxOccurrences) {
+                return -1;
+            }
+            termOccurrences[termId]++;
+            return termId;
         }
     }
 
@@ -66,22 +78,21 @@ public class LinguisticsAnnotator {
      * @return whether or not anything was annotated
      */
     public boolean annotate(StringFieldValue text) {
-        if (text.getSpanTree(SpanTrees.LINGUISTICS) != null) return true;  // Already annotated with LINGUISTICS.
+        if (text.hasSpanTree(SpanTrees.LINGUISTICS)) return true;  // Already annotated with LINGUISTICS.
 
         Tokenizer tokenizer = factory.getTokenizer();
         String input = (text.getString().length() <=  config.getMaxTokenizeLength())
                 ? text.getString()
                 : text.getString().substring(0, config.getMaxTokenizeLength());
-        Iterable<Token> tokens = tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(),
-                                                    config.getRemoveAccents());
-        TermOccurrences termOccurrences = new TermOccurrences(config.getMaxTermOccurrences());
-        SpanTree tree = new SpanTree(SpanTrees.LINGUISTICS);
-        for (Token token : tokens) {
-            addAnnotationSpan(text.getString(), tree.spanList(), tokenizer, token, config.getStemMode(), termOccurrences);
-        }
+        // The span tree is built in compact form, which the document serializer writes directly
+        CompactSpanTree tree = new CompactSpanTree(SpanTrees.LINGUISTICS, AnnotationTypes.TERM);
+        TermOccurrences termOccurrences = new TermOccurrences(tree, config.getMaxTermOccurrences());
+        tokenizer.tokenize(input, config.getLanguage(), config.getStemMode(), config.getRemoveAccents(),
+                           token -> addAnnotationSpan(text.getString(), tree, tokenizer, token, config.getStemMode(),
+                                                      termOccurrences));
 
         if (tree.numAnnotations() == 0) return false;
-        text.setSpanTree(tree);
+        text.setCompactSpanTree(tree);
         return true;
     }
 
@@ -101,17 +112,22 @@ public class LinguisticsAnnotator {
         return new Annotation(AnnotationTypes.TERM, new StringFieldValue(annotationValue));
     }
 
-    private static void addAnnotation(Span here, String term, String orig, TermOccurrences termOccurrences) {
-        if (termOccurrences.termCountBelowLimit(term)) {
-            here.annotate(lowerCaseTermAnnotation(term, orig));
-        }
+    /**
+     * Adds a TERM annotation to the given span, which has the lowercase value as annotation (only) if it is
+     * different from the original, unless the term already occurs too often.
+     */
+    private static void addAnnotation(CompactSpanTree tree, int span, String lowerCasedTerm, String orig,
+                                      TermOccurrences termOccurrences) {
+        int termId = termOccurrences.countOccurrence(lowerCasedTerm);
+        if (termId < 0) return;
+        tree.annotate(span, lowerCasedTerm.equals(orig) ? -1 : termId);
     }
 
-    private static void addAnnotationSpan(String input, SpanList parent, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
+    private static void addAnnotationSpan(String input, CompactSpanTree tree, Tokenizer tokenizer, Token token, StemMode mode, TermOccurrences termOccurrences) {
         if ( ! token.isSpecialToken()) {
             if (token.getNumComponents() > 0) {
                 for (int i = 0; i < token.getNumComponents(); ++i) {
-                    addAnnotationSpan(input, parent, tokenizer, token.getComponent(i), mode, termOccurrences);
+                    addAnnotationSpan(input, tree, tokenizer, token.getComponent(i), mode, termOccurrences);
                 }
                 return;
             }
@@ -131,9 +147,9 @@ public class LinguisticsAnnotator {
                                                "the bounds of the input string; " + input);
         }
         if (mode == StemMode.ALL) {
-            Span where = parent.span(pos, len);
+            int where = tree.addSpan(pos, len);
             String lowercasedOrig = toLowerCase(orig);
-            addAnnotation(where, orig, orig, termOccurrences);
+            addAnnotation(tree, where, lowercasedOrig, orig, termOccurrences);
 
             String lowercasedTerm = lowercasedOrig;
             String term = token.getTokenString();
@@ -144,13 +160,13 @@ public class LinguisticsAnnotator {
                 lowercasedTerm = toLowerCase(term);
             }
             if (! lowercasedOrig.equals(lowercasedTerm)) {
-                addAnnotation(where, term, orig, termOccurrences);
+                addAnnotation(tree, where, lowercasedTerm, orig, termOccurrences);
             }
             for (int i = 0; i < token.getNumStems(); i++) {
                 String stem = token.getStem(i);
                 String lowercasedStem = toLowerCase(stem);
                 if (! (lowercasedOrig.equals(lowercasedStem) || lowercasedTerm.equals(lowercasedStem))) {
-                    addAnnotation(where, stem, orig, termOccurrences);
+                    addAnnotation(tree, where, lowercasedStem, orig, termOccurrences);
                 }
             }
         } else {
@@ -161,8 +177,10 @@ public class LinguisticsAnnotator {
             if (term == null || term.trim().isEmpty()) {
                 return;
             }
-            if (termOccurrences.termCountBelowLimit(term))  {
-                parent.span(pos, len).annotate(lowerCaseTermAnnotation(term, token.getOrig()));
+            String lowerCasedTerm = toLowerCase(term);
+            int termId = termOccurrences.countOccurrence(lowerCasedTerm);
+            if (termId >= 0) {
+                tree.annotate(tree.addSpan(pos, len), lowerCasedTerm.equals(orig) ? -1 : termId);
             }
         }
     }
@@ -52,6 +52,28 @@ public class ExpressionTestCase {
                            "Expected int output, got string.");
     }
 
+    @Test
+    public void requireThatCompiledTypesAreCheckedOnExecute() {
+        SimpleExpression exp = new SimpleExpression().setRequiredInput(DataType.INT);
+        exp.compile();
+        assertExecute(exp, new IntegerFieldValue(69));
+        assertExecuteThrows(exp, new StringFieldValue("foo"),
+                            new IllegalArgumentException("expected int input, got string"));
+
+        // Types are resolved at compile time only
+        exp.setRequiredInput(DataType.STRING);
+        assertExecute(exp, new IntegerFieldValue(69));
+    }
+
+    @Test
+    public void requireThatCompileResolvesSubExpressionTypes() {
+        SimpleExpression inner = new SimpleExpression().setCreatedOutput(DataType.INT)
+                                                       .setExecuteValue(new StringFieldValue("foo"));
+        Expression exp = new StatementExpression(new SimpleExpression(), inner).compile();
+        inner.setCreatedOutput(null);
+        assertExecuteThrows(exp, null, new IllegalStateException("expected int output, got string"));
+    }
+
     @Test
     public void requireThatEqualsMethodWorks() {
         assertTrue(Expression.equals(null, null));
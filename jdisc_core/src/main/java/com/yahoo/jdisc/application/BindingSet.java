@@ -5,8 +5,10 @@ import com.google.common.collect.ImmutableList;
 
 import java.net.URI;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -22,10 +24,15 @@ import java.util.Map;
 public class BindingSet<T> implements Iterable<Map.Entry<UriPattern, T>>  {
 
     public static final String DEFAULT = "default";
-    private final Collection<Map.Entry<UriPattern, T>> bindings;
+    private final List<Map.Entry<UriPattern, T>> bindings;
+    private final PathNode anySchemeIndex = new PathNode();
+    private final Map<String, PathNode> schemeIndex = new HashMap<>();
 
     BindingSet(Collection<Map.Entry<UriPattern, T>> bindings) {
         this.bindings = sort(bindings);
+        for (int i = 0; i < this.bindings.size(); ++i) {
+            index(i, this.bindings.get(i).getKey());
+        }
     }
 
     /**
@@ -37,14 +44,21 @@ public class BindingSet<T> implements Iterable<Map.Entry<UriPattern, T>>  {
      * @return A {@link BindingMatch} object describing the match found, or null if not found.
      */
     public BindingMatch<T> match(URI uri) {
-        for (Map.Entry<UriPattern, T> entry : bindings) {
-            UriPattern pattern = entry.getKey();
-            UriPattern.Match match = pattern.match(uri);
-            if (match != null) {
-                return new BindingMatch<>(match, entry.getValue(), pattern);
+        String path = uri.getPath() != null ? uri.getPath() : "";
+        int pathOffset = path.startsWith("/") ? 1 : 0;
+        Candidate best = new Candidate();
+        if (uri.getScheme() != null) {
+            PathNode root = schemeIndex.get(uri.getScheme());
+            if (root != null) {
+                matchFirst(root, uri, path, pathOffset, best);
             }
         }
-        return null;
+        matchFirst(anySchemeIndex, uri, path, pathOffset, best);
+        if (best.match == null) {
+            return null;
+        }
+        Map.Entry<UriPattern, T> entry = bindings.get(best.index);
+        return new BindingMatch<>(best.match, entry.getValue(), entry.getKey());
     }
 
     /**
@@ -71,7 +85,61 @@ public class BindingSet<T> implements Iterable<Map.Entry<UriPattern, T>>  {
         return bindings.iterator();
     }
 
-    private static <T> Collection<Map.Entry<UriPattern, T>> sort(Collection<Map.Entry<UriPattern, T>> unsorted) {
+    /**
+     * <p>Adds the binding at the given index to the trie of its scheme, at the node of the path segments that any
+     * matching URI must begin with. These are the literal segments of the pattern path up to the first wildcard, as a
+     * wildcard may also match '/'. All other components are checked by {@link UriPattern#match(URI)} on lookup.</p>
+     */
+    private void index(int bindingIndex, UriPattern pattern) {
+        String scheme = pattern.schemePattern();
+        PathNode node = scheme.indexOf('*') < 0 ? schemeIndex.computeIfAbsent(scheme, __ -> new PathNode())
+                                                : anySchemeIndex;
+        String path = pattern.pathPattern();
+        for (int start = 0; start <= path.length(); ) {
+            int end = path.indexOf('/', start);
+            String segment = path.substring(start, end < 0 ? path.length() : end);
+            if (segment.indexOf('*') >= 0) {
+                break;
+            }
+            node = node.child(segment);
+            if (end < 0) {
+                break;
+            }
+            start = end + 1;
+        }
+        node.add(bindingIndex);
+    }
+
+    /**
+     * <p>Walks down the given trie along the path segments of the given URI, and updates the given candidate to the
+     * first binding (in priority order) that matches, if this is before the current candidate.</p>
+     */
+    private void matchFirst(PathNode node, URI uri, String path, int offset, Candidate best) {
+        while (true) {
+            for (int bindingIndex : node.bindings) {
+                if (bindingIndex >= best.index) {
+                    break;
+                }
+                UriPattern.Match match = bindings.get(bindingIndex).getKey().match(uri);
+                if (match != null) {
+                    best.index = bindingIndex;
+                    best.match = match;
+                    break;
+                }
+            }
+            if (node.children.isEmpty() || offset > path.length()) {
+                return;
+            }
+            int end = path.indexOf('/', offset);
+            node = node.children.get(path.substring(offset, end < 0 ? path.length() : end));
+            if (node == null) {
+                return;
+            }
+            offset = end < 0 ? path.length() + 1 : end + 1;
+        }
+    }
+
+    private static <T> List<Map.Entry<UriPattern, T>> sort(Collection<Map.Entry<UriPattern, T>> unsorted) {
         List<Map.Entry<UriPattern, T>> ret = new LinkedList<>(unsorted);
         Collections.sort(ret, new Comparator<Map.Entry<UriPattern, ?>>() {
 
@@ -82,4 +150,32 @@ public class BindingSet<T> implements Iterable<Map.Entry<UriPattern, T>>  {
         });
         return ImmutableList.copyOf(ret);
     }
+
+    /** A node in the trie of path segments which indexes the bindings of this */
+    private static class PathNode {
+
+        private Map<String, PathNode> children = Collections.emptyMap();
+
+        /** The indices of the bindings at this node, in ascending (priority) order */
+        private int[] bindings = new int[0];
+
+        PathNode child(String segment) {
+            if (children.isEmpty()) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(segment, __ -> new PathNode());
+        }
+
+        void add(int bindingIndex) {
+            bindings = Arrays.copyOf(bindings, bindings.length + 1);
+            bindings[bindings.length - 1] = bindingIndex;
+        }
+    }
+
+    /** The best match found so far during a lookup */
+    private static class Candidate {
+
+        int index = Integer.MAX_VALUE;
+        UriPattern.Match match = null;
+    }
 }
@@ -101,6 +101,16 @@ public class UriPattern implements Comparable<UriPattern> {
         return new Match(schemeMatch, hostMatch, port > 0 ? 0 : uri.getPort(), pathMatch);
     }
 
+    /** Returns the scheme part of this pattern, where '*' is a wildcard */
+    String schemePattern() {
+        return scheme.toString();
+    }
+
+    /** Returns the path part of this pattern without the leading '/', where '*' is a wildcard */
+    String pathPattern() {
+        return path.toString();
+    }
+
     @Override
     public int hashCode() {
         return pattern.hashCode();
@@ -3,8 +3,15 @@ package com.yahoo.jdisc.core;
 
 import java.util.Objects;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * A timing wheel of expiry slots. Scheduling and unscheduling entries is lock-free: A scheduled entry is pushed onto
+ * an inbox which is moved into the wheel by the thread calling {@link #drainTo}, and unscheduling just clears the
+ * schedule of the entry, such that it is dropped from the wheel when its slot is next visited. The schedule of an
+ * entry is reused when the entry is scheduled again after its last schedule has left the wheel.
+ *
  * @author <a href="mailto:havardpe@yahoo-inc.com">Haavard Pettersen</a>
  * @author Simon Thoresen Hult
  */
@@ -16,8 +23,9 @@ class ScheduledQueue {
     public static final int SLOT_MASK = 511; // bitmask to modulo NUM_SLOTS
     public static final int ITER_SHIFT = 9; // number of bits to shift off SLOT_MASK
 
-    private final Entry[] slots = new Entry[NUM_SLOTS + 1];
-    private final int[] counts = new int[NUM_SLOTS + 1];
+    private final Schedule[] heads = new Schedule[NUM_SLOTS + 1];
+    private final Schedule[] tails = new Schedule[NUM_SLOTS + 1];
+    private final AtomicReference<Schedule> inbox = new AtomicReference<>();
     private int currIter = 0;
     private int currSlot = 0;
     private long nextTick;
@@ -32,7 +40,8 @@ class ScheduledQueue {
     }
 
     public synchronized void drainTo(long currentTimeMillis, Queue<Object> out) {
-        if (slots[NUM_SLOTS] == null && currentTimeMillis < nextTick) {
+        linkInScheduled();
+        if (heads[NUM_SLOTS] == null && currentTimeMillis < nextTick) {
             return;
         }
         drainTo(NUM_SLOTS, 0, out);
@@ -48,89 +57,135 @@ class ScheduledQueue {
     }
 
     private void drainTo(int slot, int iter, Queue<Object> out) {
-        int cnt = counts[slot];
-        Entry entry = slots[slot];
-        for (int i = 0; i < cnt; i++) {
-            Entry next = entry.next;
-            if (entry.iter == iter) {
-                linkOut(entry);
-                out.add(entry.payload);
+        Schedule prev = null;
+        for (Schedule schedule = heads[slot]; schedule != null; ) {
+            Schedule next = schedule.next;
+            boolean unscheduled = schedule.entry.current.get() != schedule;
+            if (unscheduled || schedule.iter == iter) {
+                linkOut(slot, prev, schedule);
+                boolean expired = !unscheduled && schedule.entry.current.compareAndSet(schedule, null);
+                schedule.queued.set(false);
+                if (expired) {
+                    out.add(schedule.entry.payload);
+                }
+            } else {
+                prev = schedule;
             }
-            entry = next;
+            schedule = next;
         }
     }
 
-    private synchronized void scheduleAt(Entry entry, long expireAtMillis) {
-        if (entry.next != null) {
-            linkOut(entry);
+    /** Moves all schedules pushed since the last drain into the wheel, in the order they were made. */
+    private void linkInScheduled() {
+        Schedule reversed = null;
+        for (Schedule schedule = inbox.getAndSet(null); schedule != null; ) {
+            Schedule next = schedule.next;
+            schedule.next = reversed;
+            reversed = schedule;
+            schedule = next;
+        }
+        for (Schedule schedule = reversed; schedule != null; ) {
+            Schedule next = schedule.next;
+            if (schedule.entry.current.get() == schedule) {
+                linkIn(schedule);
+            } else {
+                schedule.next = null;
+                schedule.queued.set(false);
+            }
+            schedule = next;
         }
-        long delayMillis = expireAtMillis - nextTick;
+    }
+
+    private void linkIn(Schedule schedule) {
+        long delayMillis = schedule.expireAtMillis - nextTick;
+        int slot;
         if (delayMillis < 0) {
-            entry.slot = NUM_SLOTS;
-            entry.iter = 0;
+            slot = NUM_SLOTS;
+            schedule.iter = 0;
         } else {
             long ticks = 1 + (int)((delayMillis + MILLIS_PER_SLOT / 2) / MILLIS_PER_SLOT);
-            entry.slot = (int)((ticks + currSlot) & SLOT_MASK);
-            entry.iter = currIter + (int)((ticks + currSlot) >> ITER_SHIFT);
+            slot = (int)((ticks + currSlot) & SLOT_MASK);
+            schedule.iter = currIter + (int)((ticks + currSlot) >> ITER_SHIFT);
         }
-        linkIn(entry);
-    }
-
-    private synchronized void unschedule(Entry entry) {
-        if (entry.next != null) {
-            linkOut(entry);
+        schedule.next = null;
+        if (tails[slot] == null) {
+            heads[slot] = schedule;
+        } else {
+            tails[slot].next = schedule;
         }
+        tails[slot] = schedule;
     }
 
-    private void linkIn(Entry entry) {
-        Entry head = slots[entry.slot];
-        if (head == null) {
-            entry.next = entry;
-            entry.prev = entry;
-            slots[entry.slot] = entry;
+    private void linkOut(int slot, Schedule prev, Schedule schedule) {
+        if (prev == null) {
+            heads[slot] = schedule.next;
         } else {
-            entry.next = head;
-            entry.prev = head.prev;
-            head.prev.next = entry;
-            head.prev = entry;
+            prev.next = schedule.next;
+        }
+        if (tails[slot] == schedule) {
+            tails[slot] = prev;
         }
-        ++counts[entry.slot];
+        schedule.next = null;
     }
 
-    private void linkOut(Entry entry) {
-        Entry head = slots[entry.slot];
-        if (entry.next == entry) {
-            slots[entry.slot] = null;
-        } else {
-            entry.prev.next = entry.next;
-            entry.next.prev = entry.prev;
-            if (head == entry) {
-                slots[entry.slot] = entry.next;
-            }
-        }
-        entry.next = null;
-        entry.prev = null;
-        --counts[entry.slot];
+    private void push(Schedule schedule) {
+        Schedule head;
+        do {
+            head = inbox.get();
+            schedule.next = head;
+        } while (!inbox.compareAndSet(head, schedule));
     }
 
     public class Entry {
 
         private final Object payload;
-        private int slot;
-        private int iter;
-        private Entry next;
-        private Entry prev;
+        private final AtomicReference<Schedule> current = new AtomicReference<>();
+        private Schedule reusable = null;
 
         private Entry(Object payload) {
             this.payload = payload;
         }
 
-        public void scheduleAt(long expireAtMillis) {
-            ScheduledQueue.this.scheduleAt(this, expireAtMillis);
+        /**
+         * Schedules this entry to expire at the given time, replacing any current schedule.
+         *
+         * @return true if this entry was not already scheduled
+         */
+        public boolean scheduleAt(long expireAtMillis) {
+            Schedule schedule = reusable;
+            if (schedule == null || !schedule.queued.compareAndSet(false, true)) {
+                schedule = new Schedule(this);
+                schedule.queued.set(true);
+                reusable = schedule;
+            }
+            schedule.expireAtMillis = expireAtMillis;
+            boolean wasUnscheduled = current.getAndSet(schedule) == null;
+            push(schedule);
+            return wasUnscheduled;
         }
 
-        public void unschedule() {
-            ScheduledQueue.this.unschedule(this);
+        /**
+         * Unschedules this entry.
+         *
+         * @return true if this entry was scheduled, false if it was not scheduled or has already expired
+         */
+        public boolean unschedule() {
+            return current.getAndSet(null) != null;
+        }
+    }
+
+    /** A scheduling of an entry, which is ignored if it is no longer the current schedule of the entry */
+    private static class Schedule {
+
+        final Entry entry;
+        /** Whether this is in the inbox or the wheel, such that it can not be reused yet */
+        final AtomicBoolean queued = new AtomicBoolean(false);
+        long expireAtMillis;
+        int iter;
+        Schedule next;
+
+        Schedule(Entry entry) {
+            this.entry = entry;
         }
     }
 }
@@ -17,6 +17,8 @@ import java.util.LinkedList;
 import java.util.Queue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,7 +33,7 @@ public class TimeoutManagerImpl {
     private final Thread thread;
     private final Timer timer;
     private volatile int nextScheduler = 0;
-    private volatile int queueSize = 0;
+    private final AtomicInteger queueSize = new AtomicInteger(0);
     private volatile boolean done = false;
 
     @Inject
@@ -59,7 +61,7 @@ public class TimeoutManagerImpl {
     }
 
     int queueSize() {
-        return queueSize; // unstable snapshot, only for test purposes
+        return queueSize.get(); // unstable snapshot, only for test purposes
     }
 
     Timer timer() {
@@ -73,6 +75,7 @@ public class TimeoutManagerImpl {
         }
         while (!queue.isEmpty()) {
             TimeoutHandler timeoutHandler = (TimeoutHandler)queue.poll();
+            queueSize.decrementAndGet();
             invokeTimeout(timeoutHandler.requestHandler, timeoutHandler.request, timeoutHandler);
         }
     }
@@ -95,9 +98,17 @@ public class TimeoutManagerImpl {
 
         @Override
         public void run() {
+            long nextCheckNanos = System.nanoTime();
             while (!done) {
+                // sleep until the next slot rather than a full slot after the last check, so timeouts don't drift late
+                nextCheckNanos += TimeUnit.MILLISECONDS.toNanos(ScheduledQueue.MILLIS_PER_SLOT);
+                long sleepMillis = TimeUnit.NANOSECONDS.toMillis(nextCheckNanos - System.nanoTime());
+                if (sleepMillis < 1) {
+                    sleepMillis = 1;
+                    nextCheckNanos = System.nanoTime();
+                }
                 try {
-                    Thread.sleep(ScheduledQueue.MILLIS_PER_SLOT);
+                    Thread.sleep(sleepMillis);
                 } catch (InterruptedException e) {
                     log.log(Level.WARNING, "Ignoring interrupt signal in timeout manager.", e);
                 }
@@ -159,8 +170,8 @@ public class TimeoutManagerImpl {
         final ResponseHandler responseHandler;
         final RequestHandler requestHandler;
         final Request request;
-        ScheduledQueue.Entry timeoutQueueEntry = null;
-        boolean responded = false;
+        final AtomicBoolean responded = new AtomicBoolean(false);
+        volatile ScheduledQueue.Entry timeoutQueueEntry = null;
 
         TimeoutHandler(Request request, RequestHandler requestHandler, ResponseHandler responseHandler) {
             this.request = request;
@@ -169,25 +180,39 @@ public class TimeoutManagerImpl {
         }
 
         @Override
-        public synchronized void scheduleTimeout(Request request) {
-            if (responded) {
+        public void scheduleTimeout(Request request) {
+            if (responded.get()) {
                 return;
             }
-            if (timeoutQueueEntry == null) {
-                timeoutQueueEntry = schedules[(++nextScheduler & 0xffff) % schedules.length].newEntry(this);
+            long expireAtMillis = request.creationTime(TimeUnit.MILLISECONDS) + request.getTimeout(TimeUnit.MILLISECONDS);
+            if (timeoutQueueEntry().scheduleAt(expireAtMillis)) {
+                queueSize.incrementAndGet();
+            }
+            if (responded.get()) {
+                // the response raced this, and may have been unscheduled before the above
+                unscheduleTimeout();
+            }
+        }
+
+        private ScheduledQueue.Entry timeoutQueueEntry() {
+            ScheduledQueue.Entry entry = timeoutQueueEntry;
+            if (entry == null) {
+                synchronized (this) {
+                    entry = timeoutQueueEntry;
+                    if (entry == null) {
+                        entry = schedules[(++nextScheduler & 0xffff) % schedules.length].newEntry(this);
+                        timeoutQueueEntry = entry;
+                    }
+                }
             }
-            timeoutQueueEntry.scheduleAt(request.creationTime(TimeUnit.MILLISECONDS) + request.getTimeout(TimeUnit.MILLISECONDS));
-            ++queueSize;
+            return entry;
         }
 
-        synchronized void unscheduleTimeout() {
-            if (!responded && timeoutQueueEntry != null) {
-                timeoutQueueEntry.unschedule();
-                //guard against unscheduling from ManagedRequestHandler.handleRequest catch block
-                //followed by unscheduling in another thread from TimeoutHandler.handleResponse
-                timeoutQueueEntry = null;
+        void unscheduleTimeout() {
+            ScheduledQueue.Entry entry = timeoutQueueEntry;
+            if (entry != null && entry.unschedule()) {
+                queueSize.decrementAndGet();
             }
-            --queueSize;
         }
 
         @Override
@@ -197,12 +222,11 @@ public class TimeoutManagerImpl {
 
         @Override
         public ContentChannel handleResponse(Response response) {
-            synchronized (this) {
-                unscheduleTimeout();
-                if (responded) {
-                    return IGNORED_CONTENT;
-                }
-                responded = true;
+            // mark as responded before unscheduling, such that a concurrent scheduleTimeout will undo itself
+            boolean firstResponse = responded.compareAndSet(false, true);
+            unscheduleTimeout();
+            if (!firstResponse) {
+                return IGNORED_CONTENT;
             }
             return responseHandler.handleResponse(response);
         }
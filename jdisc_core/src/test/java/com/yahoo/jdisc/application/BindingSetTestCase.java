@@ -474,6 +474,45 @@ public class BindingSetTestCase {
                     "http://*:4080/*");
     }
 
+    @Test
+    public void requireThatIndexedResolutionEqualsPriorityOrderResolution() {
+        List<String> patterns = Arrays.asList("http://*/*",
+                                              "*://*/*",
+                                              "http://host/",
+                                              "*://*/foo",
+                                              "*://*/foo/",
+                                              "http://*/foo/*",
+                                              "https://*/foo/*",
+                                              "http://*:4080/foo/bar",
+                                              "http://*/foo/bar/*",
+                                              "http://*/foo/*/baz",
+                                              "http://*/foo*",
+                                              "*://host/foo/bar/baz",
+                                              "http://*/*/bar",
+                                              "http://*/a//b",
+                                              "http*://*/foo/bar/*");
+        BindingRepository<String> repo = new BindingRepository<>();
+        for (String pattern : patterns) {
+            repo.bind(pattern, pattern);
+        }
+        BindingSet<String> bindings = repo.activate();
+        for (String uri : Arrays.asList("http://host", "http://host/", "http://host/foo", "http://host/foo/",
+                                        "http://host/foo/bar", "http://host:4080/foo/bar", "http://host/foo/bar/",
+                                        "http://host/foo/bar/baz", "https://host/foo/bar/baz", "ftp://host/foo/bar/baz",
+                                        "http://host/foo/x/baz", "http://host/foobar", "http://host/x/bar",
+                                        "http://host/a//b", "http://host/a/b", "httpx://host/foo/bar/",
+                                        "http://host/foo?query#fragment", "mailto:user@host")) {
+            String expected = null;
+            for (Map.Entry<UriPattern, String> entry : bindings) {
+                if (entry.getKey().match(URI.create(uri)) != null) {
+                    expected = entry.getValue();
+                    break;
+                }
+            }
+            assertEquals(uri, expected, bindings.resolve(URI.create(uri)));
+        }
+    }
+
     private static void assertOrder(String... expected) {
         for (int off = 0; off < expected.length; ++off) {
             List<String> actual = new ArrayList<>();
@@ -3,7 +3,9 @@ package com.yahoo.jdisc.core;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -12,6 +14,7 @@ import static com.yahoo.jdisc.core.ScheduledQueue.MILLIS_PER_SLOT;
 import static com.yahoo.jdisc.core.ScheduledQueue.NUM_SLOTS;
 import static com.yahoo.jdisc.core.ScheduledQueue.NUM_SLOTS_UNDILATED;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -79,6 +82,41 @@ public class ScheduledQueueTestCase {
         assertDrainTo(queue, 150);
     }
 
+    @Test
+    public void requireThatUnscheduleReportsWhetherEntryWasScheduled() {
+        ScheduledQueue queue = new ScheduledQueue(0);
+        Object foo = new Object();
+        ScheduledQueue.Entry entry = queue.newEntry(foo);
+        assertFalse(entry.unschedule());
+        assertTrue(entry.scheduleAt(100));
+        assertFalse(entry.scheduleAt(200));
+        assertTrue(entry.unschedule());
+        assertFalse(entry.unschedule());
+
+        assertTrue(entry.scheduleAt(100));
+        assertDrainTo(queue, 150, foo);
+        assertFalse("Expired entry is not scheduled", entry.unschedule());
+    }
+
+    @Test
+    public void requireThatEntriesCanBeRescheduledAfterExpiry() {
+        ScheduledQueue queue = new ScheduledQueue(0);
+        Object foo = new Object();
+        ScheduledQueue.Entry entry = queue.newEntry(foo);
+        entry.scheduleAt(100);
+        assertDrainTo(queue, 150, foo);
+
+        assertTrue(entry.scheduleAt(300));
+        assertDrainTo(queue, 250);
+        assertDrainTo(queue, 350, foo);
+
+        entry.scheduleAt(400);
+        entry.unschedule();
+        assertDrainTo(queue, 450);
+        assertTrue(entry.scheduleAt(500));
+        assertDrainTo(queue, 550, foo);
+    }
+
     @Test
     public void requireThatDrainToOnlyDrainsExpiredEntries() {
         ScheduledQueue queue = new ScheduledQueue(0);
@@ -134,6 +172,44 @@ public class ScheduledQueueTestCase {
         assertEquals(1, expired.size());
     }
 
+    @Test
+    public void requireThatEntriesCanBeScheduledConcurrently() throws InterruptedException {
+        ScheduledQueue queue = new ScheduledQueue(0);
+        List<Thread> threads = new ArrayList<>();
+        List<Object> scheduled = new ArrayList<>();
+        for (int t = 0; t < 4; ++t) {
+            List<Object> payloads = new ArrayList<>();
+            for (int i = 0; i < 1000; ++i) {
+                payloads.add(new Object());
+            }
+            scheduled.addAll(payloads.subList(0, 500));
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < payloads.size(); ++i) {
+                    ScheduledQueue.Entry entry = queue.newEntry(payloads.get(i));
+                    entry.scheduleAt(200);
+                    if (i >= 500) {
+                        entry.unschedule();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Queue<Object> expired = new LinkedList<>();
+        while (!threads.isEmpty()) {
+            queue.drainTo(0, expired);
+            if (!threads.get(0).isAlive()) {
+                threads.remove(0).join();
+            }
+        }
+        assertEquals(0, expired.size());
+
+        queue.drainTo(250, expired);
+        assertEquals(new HashSet<>(scheduled), new HashSet<>(expired));
+        assertEquals(scheduled.size(), expired.size());
+    }
+
     private static Object scheduleAt(ScheduledQueue queue, long expireAtMillis) {
         Object obj = new Object();
         queue.newEntry(obj).scheduleAt(expireAtMillis);
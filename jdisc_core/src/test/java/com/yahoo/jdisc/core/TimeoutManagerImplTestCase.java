@@ -260,6 +260,21 @@ public class TimeoutManagerImplTestCase {
         assertTrue(ctx.close());
     }
 
+    @Test
+    public void requireThatQueueEntryIsRemovedOnceWhenResponseHandlerIsCalledAfterTimeout() throws InterruptedException {
+        Context ctx = new Context(MyRequestHandler.newInstance());
+        MyResponseHandler responseHandler = MyResponseHandler.newInstance();
+        ctx.dispatchRequest(100L, responseHandler);
+        assertTrue(ctx.awaitQueueSize(1, 600, TimeUnit.SECONDS));
+        ctx.forwardToTime(200);
+        assertTrue(responseHandler.await(600, TimeUnit.SECONDS));
+        assertEquals(Response.Status.GATEWAY_TIMEOUT, responseHandler.response.get().getStatus());
+        assertEquals(0, ctx.timeoutManager.queueSize());
+        ctx.requestHandler.respond();
+        assertEquals(0, ctx.timeoutManager.queueSize());
+        assertTrue(ctx.close());
+    }
+
     @Test
     public void requireThatNoEntryIsMadeIfTimeoutIsNull() {
         Context ctx = new Context(MyRequestHandler.newInstance());
@@ -2,6 +2,7 @@
 package com.yahoo.jdisc.http.server.jetty;
 
 import com.yahoo.jdisc.handler.CompletionHandler;
+import org.eclipse.jetty.server.HttpOutput;
 
 import javax.annotation.concurrent.GuardedBy;
 import javax.servlet.ServletOutputStream;
@@ -218,7 +219,10 @@ public class ServletOutputStreamWriter {
             final int bytesToSend = buffer.remaining();
             try {
                 if (buffer.hasArray()) {
-                    outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+                    outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else if (outputStream instanceof HttpOutput) {
+                    // Jetty writes direct buffers as they are, so avoid copying them to the heap
+                    ((HttpOutput)outputStream).write(buffer);
                 } else {
                     final byte[] array = new byte[buffer.remaining()];
                     buffer.get(array);
@@ -37,6 +37,9 @@ class ServletRequestReader implements ReadListener {
 
     private static final int BUFFER_SIZE_BYTES = 8 * 1024;
 
+    /** Don't read into the rest of the current buffer when there is less than this left of it */
+    private static final int MIN_READ_SIZE_BYTES = 1024;
+
     private final Object monitor = new Object();
 
     private final ServletInputStream servletInputStream;
@@ -47,6 +50,14 @@ class ServletRequestReader implements ReadListener {
 
     private int bytesRead;
 
+    /**
+     * The buffer to read into, starting at bufferOffset. Ownership of each part read is transferred to the request
+     * content channel, so parts are never reused, but the rest of the buffer is used for the next reads.
+     * Only accessed from onDataAvailable, which is never invoked concurrently.
+     */
+    private byte[] buffer = new byte[0];
+    private int bufferOffset = 0;
+
     /**
      * Rules:
      * 1. If state != State.READING,  then numberOfOutstandingUserCalls must not increase
@@ -110,13 +121,18 @@ class ServletRequestReader implements ReadListener {
     @Override
     public void onDataAvailable() throws IOException {
         while (servletInputStream.isReady()) {
-            final byte[] buffer = new byte[BUFFER_SIZE_BYTES];
-            final int numBytesRead = servletInputStream.read(buffer);
+            if (buffer.length - bufferOffset < MIN_READ_SIZE_BYTES) {
+                buffer = new byte[BUFFER_SIZE_BYTES];
+                bufferOffset = 0;
+            }
+            final int numBytesRead = servletInputStream.read(buffer, bufferOffset, buffer.length - bufferOffset);
             if (numBytesRead < 0) {
                 // End of stream; there should be no more data available, ever.
                 return;
             }
-            writeRequestContent(ByteBuffer.wrap(buffer, 0, numBytesRead));
+            ByteBuffer content = ByteBuffer.wrap(buffer, bufferOffset, numBytesRead).slice();
+            bufferOffset += numBytesRead;
+            writeRequestContent(content);
         }
     }
 
@@ -0,0 +1,65 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jdisc.http.server.jetty;
+
+import com.yahoo.jdisc.handler.CompletionHandler;
+import org.eclipse.jetty.server.HttpOutput;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author agent
+ */
+public class ServletOutputStreamWriterTest {
+
+    @Test
+    public void heap_buffer_is_written_from_its_position() throws Exception {
+        ServletOutputStream outputStream = mock(ServletOutputStream.class);
+        ByteBuffer buffer = ByteBuffer.wrap("skipped content".getBytes(StandardCharsets.UTF_8));
+        buffer.position("skipped ".length());
+        write(outputStream, buffer);
+
+        verify(outputStream).write(buffer.array(), "skipped ".length(), "content".length());
+    }
+
+    @Test
+    public void direct_buffer_is_written_to_jetty_without_copying() throws Exception {
+        HttpOutput outputStream = mock(HttpOutput.class);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        write(outputStream, buffer);
+
+        verify(outputStream).write(buffer);
+        verify(outputStream, never()).write(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void direct_buffer_is_copied_for_other_streams() throws Exception {
+        ServletOutputStream outputStream = mock(ServletOutputStream.class);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        write(outputStream, buffer);
+
+        verify(outputStream).write(any(byte[].class));
+    }
+
+    private static void write(ServletOutputStream outputStream, ByteBuffer buffer) throws Exception {
+        when(outputStream.isReady()).thenReturn(true);
+        ServletOutputStreamWriter writer = new ServletOutputStreamWriter(outputStream, Runnable::run, mock(MetricReporter.class));
+        writer.writeBuffer(buffer, mock(CompletionHandler.class));
+
+        ArgumentCaptor<WriteListener> writeListener = ArgumentCaptor.forClass(WriteListener.class);
+        verify(outputStream).setWriteListener(writeListener.capture());
+        writeListener.getValue().onWritePossible();
+    }
+
+}
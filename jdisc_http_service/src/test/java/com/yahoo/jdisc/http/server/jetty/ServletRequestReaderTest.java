@@ -0,0 +1,120 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jdisc.http.server.jetty;
+
+import com.yahoo.jdisc.handler.CompletionHandler;
+import com.yahoo.jdisc.handler.ContentChannel;
+import org.testng.annotations.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+/**
+ * @author agent
+ */
+public class ServletRequestReaderTest {
+
+    @Test
+    public void each_read_is_passed_as_a_separate_buffer() throws Exception {
+        MockInputStream input = new MockInputStream("first", "second", "third");
+        RecordingContentChannel content = new RecordingContentChannel();
+        new ServletRequestReader(input, content, Runnable::run, mock(MetricReporter.class)).onDataAvailable();
+
+        assertEquals(content.strings(), Arrays.asList("first", "second", "third"));
+        for (ByteBuffer buffer : content.buffers) {
+            assertEquals(buffer.position(), 0);
+            assertEquals(buffer.capacity(), buffer.remaining());
+        }
+    }
+
+    @Test
+    public void small_reads_share_the_underlying_array() throws Exception {
+        MockInputStream input = new MockInputStream("first", "second");
+        RecordingContentChannel content = new RecordingContentChannel();
+        new ServletRequestReader(input, content, Runnable::run, mock(MetricReporter.class)).onDataAvailable();
+
+        assertSame(content.buffers.get(0).array(), content.buffers.get(1).array());
+        content.buffers.get(0).put(0, (byte)'F');
+        assertEquals(content.strings(), Arrays.asList("First", "second"));
+    }
+
+    @Test
+    public void new_array_is_used_when_little_is_left_of_the_current() throws Exception {
+        char[] large = new char[7 * 1024 + 512];
+        Arrays.fill(large, 'a');
+        MockInputStream input = new MockInputStream(new String(large), "small");
+        RecordingContentChannel content = new RecordingContentChannel();
+        new ServletRequestReader(input, content, Runnable::run, mock(MetricReporter.class)).onDataAvailable();
+
+        assertNotSame(content.buffers.get(0).array(), content.buffers.get(1).array());
+        assertEquals(content.strings().get(1), "small");
+    }
+
+    private static class MockInputStream extends ServletInputStream {
+
+        private final Deque<byte[]> reads = new ArrayDeque<>();
+
+        MockInputStream(String ... reads) {
+            for (String read : reads)
+                this.reads.add(read.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean isFinished() { return reads.isEmpty(); }
+
+        @Override
+        public boolean isReady() { return ! reads.isEmpty(); }
+
+        @Override
+        public void setReadListener(ReadListener readListener) { }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            byte[] read = reads.poll();
+            if (read == null) return -1;
+            if (read.length > length) throw new IllegalArgumentException("Read does not fit in the given buffer");
+            System.arraycopy(read, 0, buffer, offset, read.length);
+            return read.length;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    private static class RecordingContentChannel implements ContentChannel {
+
+        final List<ByteBuffer> buffers = new ArrayList<>();
+
+        @Override
+        public void write(ByteBuffer buf, CompletionHandler handler) {
+            buffers.add(buf);
+            handler.completed();
+        }
+
+        @Override
+        public void close(CompletionHandler handler) { }
+
+        List<String> strings() {
+            List<String> strings = new ArrayList<>();
+            for (ByteBuffer buffer : buffers)
+                strings.add(StandardCharsets.UTF_8.decode(buffer.duplicate()).toString());
+            return strings;
+        }
+
+    }
+
+}
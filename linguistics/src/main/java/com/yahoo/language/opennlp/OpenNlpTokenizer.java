@@ -10,6 +10,7 @@ import opennlp.tools.stemmer.snowball.SnowballStemmer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class OpenNlpTokenizer implements Tokenizer {
     private final static int SPACE_CODE = 32;
@@ -34,7 +35,22 @@ public class OpenNlpTokenizer implements Tokenizer {
         if (stemmer == null) {
             return simpleTokenizer.tokenize(input, language, stemMode, removeAccents);
         }
+        return tokenize(input, language, stemMode, removeAccents, stemmer);
+    }
+
+    @Override
+    public void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                         Consumer<Token> consumer) {
+        Stemmer stemmer = input.isEmpty() ? null : getStemmerForLanguage(language, stemMode);
+        if (stemmer == null) {
+            simpleTokenizer.tokenize(input, language, stemMode, removeAccents, consumer);
+            return;
+        }
+        tokenize(input, language, stemMode, removeAccents, stemmer).forEach(consumer);
+    }
 
+    private List<Token> tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                                 Stemmer stemmer) {
         List<Token> tokens = new ArrayList<>();
         int nextCode = input.codePointAt(0);
         TokenType prevType = SimpleTokenType.valueOf(nextCode);
@@ -20,9 +20,7 @@ public class StemmerImpl implements Stemmer {
     @Override
     public List<StemList> stem(String input, StemMode stemMode, Language language) {
         List<StemList> stems = new ArrayList<>();
-        for (Token token : tokenizer.tokenize(input, language, stemMode, false)) {
-            findStems(token, stems);
-        }
+        tokenizer.tokenize(input, language, stemMode, false, token -> findStems(token, stems));
         return stems;
     }
 
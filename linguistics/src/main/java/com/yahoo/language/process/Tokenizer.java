@@ -3,6 +3,8 @@ package com.yahoo.language.process;
 
 import com.yahoo.language.Language;
 
+import java.util.function.Consumer;
+
 /**
  * Language-sensitive tokenization of a text string.
  *
@@ -22,6 +24,27 @@ public interface Tokenizer {
      */
     Iterable<Token> tokenize(String input, Language language, StemMode stemMode, boolean removeAccents);
 
+    /**
+     * Passes the tokens produced from an input string to the given consumer, in order, as they are produced.
+     * Unlike the tokens returned from {@link #tokenize(String, Language, StemMode, boolean)}, the token passed
+     * to the consumer may be a view which is changed to the next token when the consumer returns,
+     * so callers must not keep references to it.
+     * <p>
+     * This default implementation passes each of the tokens returned by tokenize.
+     *
+     * @param input the string to tokenize. May be arbitrarily large.
+     * @param language the language of the input string.
+     * @param stemMode the stem mode applied on the tokens
+     * @param removeAccents if true accents and similar are removed from the tokens
+     * @param consumer the consumer of each token, which is only valid during the call to it
+     * @throws ProcessingException If the underlying library throws an Exception.
+     */
+    default void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                          Consumer<Token> consumer) {
+        for (Token token : tokenize(input, language, stemMode, removeAccents))
+            consumer.accept(token);
+    }
+
     /**
      * Return a replacement for an input token string.
      * This accepts strings returned by Token.getTokenString
@@ -0,0 +1,133 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+import com.yahoo.language.detect.Detection;
+import com.yahoo.language.detect.Detector;
+import com.yahoo.language.detect.Hint;
+import com.yahoo.text.Utf8;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * A language detector for short texts such as queries, which scores the character 1, 2 and 3-grams of the
+ * text against compiled {@link NGramProfiles} with naive Bayes. Texts in scripts which identify the language,
+ * such as hangul and kana, are detected from their characters like in {@link SimpleDetector}.
+ * <p>
+ * N-grams are extracted like when the Optimaize profiles were made: All non-letters are spaces, case is kept,
+ * each word is prefixed and suffixed by a space, and words in all capitals are skipped.
+ * <p>
+ * This is multithread safe, and detecting the language of a string allocates nothing but the returned detection.
+ *
+ * @author agent
+ */
+public class NGramDetector implements Detector {
+
+    private final NGramProfiles profiles;
+    private final SimpleDetector characterDetector = new SimpleDetector(false);
+    private final ThreadLocal<float[]> scores;
+
+    /** Creates a detector using the profiles compiled from the built in Optimaize profiles */
+    public NGramDetector() {
+        this(NGramProfiles.builtIn());
+    }
+
+    public NGramDetector(SimpleLinguisticsConfig.Detector config) {
+        this(config.nGramProfiles().isEmpty() ? NGramProfiles.builtIn() : mapProfiles(config.nGramProfiles()));
+    }
+
+    public NGramDetector(NGramProfiles profiles) {
+        this.profiles = profiles;
+        this.scores = ThreadLocal.withInitial(() -> new float[profiles.languageCount()]);
+    }
+
+    @Override
+    public Detection detect(byte[] input, int offset, int length, Hint hint) {
+        return new Detection(guessLanguage(Utf8.toString(input, offset, length)),
+                             characterDetector.guessEncoding(input), false);
+    }
+
+    @Override
+    public Detection detect(ByteBuffer input, Hint hint) {
+        byte[] buf = new byte[input.remaining()];
+        input.get(buf, 0, buf.length);
+        return detect(buf, 0, buf.length, hint);
+    }
+
+    @Override
+    public Detection detect(String input, Hint hint) {
+        return new Detection(guessLanguage(input), Utf8.getCharset().name(), false);
+    }
+
+    public Language guessLanguage(String input) {
+        if (input == null || input.isEmpty()) return Language.UNKNOWN;
+
+        Language language = characterDetector.guessLanguage(input);
+        if (language != Language.UNKNOWN) return language;
+
+        float[] scores = this.scores.get();
+        Arrays.fill(scores, 0);
+        int unigrams = 0, bigrams = 0, trigrams = 0;
+        long window = ' ';
+        int windowLength = 1;
+        boolean capitalWord = false;
+        for (int i = 0; i <= input.length(); i++) {
+            char c = i < input.length() && Character.isLetter(input.charAt(i)) ? input.charAt(i) : ' ';
+            char last = (char)window;
+            if (last == ' ') {
+                window = ' ';
+                windowLength = 1;
+                capitalWord = false;
+                if (c == ' ') continue;
+            }
+            else if (windowLength == NGramProfiles.MAX_GRAM_LENGTH) {
+                windowLength--;
+            }
+            window = (window << 16) | c;
+            windowLength++;
+            capitalWord = Character.isUpperCase(c) && (capitalWord || Character.isUpperCase(last));
+            if (capitalWord) continue;
+
+            for (int n = c == ' ' ? 2 : 1; n <= windowLength; n++) {
+                int entry = profiles.find(NGramProfiles.keyOf(window, n));
+                if (entry < 0) continue;
+                if (n == 1) unigrams++;
+                else if (n == 2) bigrams++;
+                else trigrams++;
+                for (int pair = entry >>> 8, end = pair + (entry & 0xff); pair < end; pair++)
+                    scores[profiles.pairLanguage(pair)] += profiles.pairScore(pair);
+            }
+        }
+
+        if (unigrams + bigrams + trigrams == 0) return Language.UNKNOWN;
+
+        // Each language starts out as if it was missing all the n-grams, and present n-grams scored above that
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < scores.length; i++) {
+            float score = scores[i] / NGramProfiles.SCORE_SCALE +
+                          unigrams * profiles.missingLogProbability(i, 1) +
+                          bigrams * profiles.missingLogProbability(i, 2) +
+                          trigrams * profiles.missingLogProbability(i, 3);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return profiles.language(best);
+    }
+
+    private static NGramProfiles mapProfiles(String file) {
+        try {
+            return NGramProfiles.map(Paths.get(file));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not map n-gram profiles from '" + file + "'", e);
+        }
+    }
+
+}
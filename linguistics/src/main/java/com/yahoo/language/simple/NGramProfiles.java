@@ -0,0 +1,327 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.optimaize.langdetect.profiles.LanguageProfile;
+import com.optimaize.langdetect.profiles.LanguageProfileReader;
+import com.yahoo.io.IOUtils;
+import com.yahoo.language.Language;
+import com.yahoo.text.Utf8;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Character n-gram language profiles compiled into a single hash table in a byte buffer, for use by
+ * {@link NGramDetector}. The table maps each n-gram of 1 to 3 chars to the languages it occurs in,
+ * each with its quantized log probability relative to the probability assigned to n-grams which are
+ * missing from the profile of that language.
+ * <p>
+ * The buffer is never modified and only read with absolute gets, so it may be a memory mapped file,
+ * and this is multithread safe. The format is
+ * <pre>
+ * int magic, int languageCount, int tableSize, int pairCount
+ * float[languageCount * 3] missing n-gram log probability of each language and n-gram length
+ * (short length, utf8 bytes)[languageCount] language tags, padded to a multiple of 8 bytes
+ * long[tableSize] n-gram keys, or 0 for empty slots
+ * int[tableSize] entries, the index of the first pair of the slot times 256 plus the number of pairs
+ * (byte language, byte score)[pairCount] pairs
+ * </pre>
+ * all in big endian byte order.
+ *
+ * @author agent
+ */
+public final class NGramProfiles {
+
+    private static final int MAGIC = 0x4e475031; // NGP1
+
+    static final int MAX_GRAM_LENGTH = 3;
+
+    /** Scores are stored in units of 1/16 of a nat */
+    static final float SCORE_SCALE = 16f;
+
+    /** The resource, relative to this class, with the built in profiles precompiled by {@link #main} when building */
+    static final String BUILT_IN_RESOURCE = "ngram-profiles.bin";
+
+    private static final Object builtInGuard = new Object();
+    private static NGramProfiles builtIn = null;
+
+    private final ByteBuffer buffer;
+    private final Language[] languages;
+    private final String[] languageTags;
+    private final float[] missingLogProbabilities;
+    private final int tableMask;
+    private final int tableBits;
+    private final int keysOffset;
+    private final int entriesOffset;
+    private final int pairsOffset;
+
+    private NGramProfiles(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int start = buffer.position();
+        if (buffer.getInt(start) != MAGIC)
+            throw new IllegalArgumentException("Not an n-gram profiles buffer");
+        int languageCount = buffer.getInt(start + 4);
+        int tableSize = buffer.getInt(start + 8);
+        int pairCount = buffer.getInt(start + 12);
+        if (Integer.bitCount(tableSize) != 1)
+            throw new IllegalArgumentException("Table size must be a power of two, was " + tableSize);
+
+        int offset = start + 16;
+        missingLogProbabilities = new float[languageCount * MAX_GRAM_LENGTH];
+        for (int i = 0; i < missingLogProbabilities.length; i++, offset += 4)
+            missingLogProbabilities[i] = buffer.getFloat(offset);
+        languages = new Language[languageCount];
+        languageTags = new String[languageCount];
+        for (int i = 0; i < languageCount; i++) {
+            byte[] tag = new byte[buffer.getShort(offset)];
+            offset += 2;
+            for (int j = 0; j < tag.length; j++)
+                tag[j] = buffer.get(offset++);
+            languageTags[i] = Utf8.toString(tag);
+            languages[i] = Language.fromLanguageTag(languageTags[i]);
+        }
+        keysOffset = start + align(offset - start);
+        entriesOffset = keysOffset + tableSize * 8;
+        pairsOffset = entriesOffset + tableSize * 4;
+        if (buffer.limit() < pairsOffset + pairCount * 2)
+            throw new IllegalArgumentException("N-gram profiles buffer is truncated");
+        tableMask = tableSize - 1;
+        tableBits = Integer.numberOfTrailingZeros(tableSize);
+    }
+
+    /** Returns the number of languages with a profile in this */
+    public int languageCount() { return languages.length; }
+
+    /** Returns the language of the given profile, which is UNKNOWN if the profile is of a language Vespa does not know */
+    public Language language(int index) { return languages[index]; }
+
+    /** Returns the language tag of the given profile */
+    public String languageTag(int index) { return languageTags[index]; }
+
+    /** Returns the log probability assigned to an n-gram of the given length missing from the profile of a language */
+    float missingLogProbability(int language, int gramLength) {
+        return missingLogProbabilities[language * MAX_GRAM_LENGTH + gramLength - 1];
+    }
+
+    /**
+     * Returns the entry of the given n-gram key, or -1 if it is not in any profile.
+     * The entry is the index of its first pair times 256 plus its number of pairs.
+     */
+    int find(long key) {
+        for (int slot = slotOf(key); ; slot = (slot + 1) & tableMask) {
+            long slotKey = buffer.getLong(keysOffset + slot * 8);
+            if (slotKey == key) return buffer.getInt(entriesOffset + slot * 4);
+            if (slotKey == 0) return -1;
+        }
+    }
+
+    /** Returns the language index of the given pair */
+    int pairLanguage(int pair) { return buffer.get(pairsOffset + pair * 2) & 0xff; }
+
+    /** Returns the score of the given pair, in units of 1/{@link #SCORE_SCALE} nat */
+    int pairScore(int pair) { return buffer.get(pairsOffset + pair * 2 + 1) & 0xff; }
+
+    private int slotOf(long key) {
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - tableBits)) & tableMask;
+    }
+
+    /** Writes these profiles to the given stream, in the format which may be read or memory mapped */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer bytes = buffer.duplicate();
+        byte[] chunk = new byte[8192];
+        while (bytes.hasRemaining()) {
+            int length = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /** Returns the key of an n-gram of the given length, which is the chars of the n-gram packed into a long */
+    static long keyOf(long chars, int gramLength) {
+        return ((long)gramLength << 48) | (chars & ((1L << (16 * gramLength)) - 1));
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    /**
+     * Returns profiles read from the given buffer, from its position to its limit.
+     * The buffer is used directly, so it must not be modified while these profiles are in use.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain n-gram profiles
+     */
+    public static NGramProfiles read(ByteBuffer buffer) {
+        return new NGramProfiles(buffer);
+    }
+
+    /** Returns profiles memory mapped from the given file, which was written by {@link #writeTo} */
+    public static NGramProfiles map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns the profiles compiled from the built in profiles of the Optimaize language detector.
+     * These are loaded once, from the precompiled resource if it is present, and compiled otherwise.
+     * The resource is memory mapped when it is a file, and read when it is in an archive.
+     */
+    public static NGramProfiles builtIn() {
+        synchronized (builtInGuard) {
+            if (builtIn == null) {
+                try {
+                    builtIn = loadBuiltIn();
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException("Could not read the built in n-gram profiles", e);
+                }
+            }
+            return builtIn;
+        }
+    }
+
+    private static NGramProfiles loadBuiltIn() throws IOException {
+        URL resource = NGramProfiles.class.getResource(BUILT_IN_RESOURCE);
+        if (resource == null) return compileBuiltIn();
+
+        if (resource.getProtocol().equals("file")) {
+            try {
+                return map(Paths.get(resource.toURI()));
+            }
+            catch (URISyntaxException e) {
+                throw new IllegalStateException("Could not map the built in n-gram profiles at " + resource, e);
+            }
+        }
+        try (InputStream in = resource.openStream()) {
+            return read(ByteBuffer.wrap(IOUtils.readBytes(in, 1 << 22)));
+        }
+    }
+
+    /** Returns profiles compiled from the built in profiles of the Optimaize language detector */
+    public static NGramProfiles compileBuiltIn() {
+        try {
+            return compile(new LanguageProfileReader().readAllBuiltIn());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not read the built in language profiles", e);
+        }
+    }
+
+    /**
+     * Writes the profiles compiled from the built in profiles of the Optimaize language detector to the given file.
+     * This is run when building this module, to create the precompiled resource loaded by {@link #builtIn}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: NGramProfiles <output file>");
+            System.exit(1);
+        }
+        try (OutputStream out = new FileOutputStream(args[0])) {
+            compileBuiltIn().writeTo(out);
+        }
+    }
+
+    /** Returns the given language profiles compiled into a single table. N-grams longer than 3 chars are ignored. */
+    public static NGramProfiles compile(Collection<LanguageProfile> profiles) {
+        if (profiles.size() > 255)
+            throw new IllegalArgumentException("At most 255 language profiles are supported, got " + profiles.size());
+
+        List<String> tags = new ArrayList<>();
+        float[] missing = new float[profiles.size() * MAX_GRAM_LENGTH];
+        Map<Long, List<Integer>> pairsByKey = new TreeMap<>(); // sorted for a deterministic layout
+        int pairCount = 0;
+        for (LanguageProfile profile : profiles) {
+            int language = tags.size();
+            tags.add(profile.getLocale().toString());
+
+            // Profiles are pruned, so missing n-grams are taken to be a little less likely than the least likely one
+            float lowest = 0;
+            for (int n = 1; n <= MAX_GRAM_LENGTH; n++) {
+                long occurrences = profile.getNumGramOccurrences(n);
+                long minCount = profile.getMinGramCount(n);
+                float missingLogProbability = occurrences > 0 && minCount > 0
+                                              ? (float)(Math.log((double)minCount / occurrences) - 1) : 0;
+                missing[language * MAX_GRAM_LENGTH + n - 1] = missingLogProbability;
+                lowest = Math.min(lowest, missingLogProbability);
+            }
+            for (int n = 1; n <= MAX_GRAM_LENGTH; n++) {
+                if (missing[language * MAX_GRAM_LENGTH + n - 1] == 0)
+                    missing[language * MAX_GRAM_LENGTH + n - 1] = lowest == 0 ? -30 : lowest;
+            }
+
+            for (Map.Entry<String, Integer> gram : profile.iterateGrams()) {
+                int n = gram.getKey().length();
+                if (n < 1 || n > MAX_GRAM_LENGTH || gram.getValue() <= 0) continue;
+
+                long chars = 0;
+                for (int i = 0; i < n; i++)
+                    chars = (chars << 16) | gram.getKey().charAt(i);
+                double logProbability = Math.log((double)gram.getValue() / profile.getNumGramOccurrences(n));
+                int score = (int)Math.round((logProbability - missing[language * MAX_GRAM_LENGTH + n - 1]) * SCORE_SCALE);
+                pairsByKey.computeIfAbsent(keyOf(chars, n), k -> new ArrayList<>())
+                          .add(language << 8 | Math.max(0, Math.min(255, score)));
+                pairCount++;
+            }
+        }
+        return new NGramProfiles(write(tags, missing, pairsByKey, pairCount));
+    }
+
+    private static ByteBuffer write(List<String> tags, float[] missing, Map<Long, List<Integer>> pairsByKey, int pairCount) {
+        int tableSize = Integer.highestOneBit(Math.max(1, pairsByKey.size()) * 2) * 2; // load factor at most 0.5
+        if (pairCount >= 1 << 24)
+            throw new IllegalArgumentException("Too many n-grams in the language profiles: " + pairCount);
+
+        List<byte[]> utf8Tags = new ArrayList<>();
+        int headerSize = 16 + missing.length * 4;
+        for (String tag : tags) {
+            utf8Tags.add(Utf8.toBytes(tag));
+            headerSize += 2 + utf8Tags.get(utf8Tags.size() - 1).length;
+        }
+        headerSize = align(headerSize);
+
+        ByteBuffer buffer = ByteBuffer.allocate(headerSize + tableSize * 12 + pairCount * 2);
+        buffer.putInt(MAGIC).putInt(tags.size()).putInt(tableSize).putInt(pairCount);
+        for (float value : missing)
+            buffer.putFloat(value);
+        for (byte[] tag : utf8Tags)
+            buffer.putShort((short)tag.length).put(tag);
+
+        int keysOffset = headerSize;
+        int entriesOffset = keysOffset + tableSize * 8;
+        int pairsOffset = entriesOffset + tableSize * 4;
+        int tableBits = Integer.numberOfTrailingZeros(tableSize);
+        int pair = 0;
+        for (Map.Entry<Long, List<Integer>> gram : pairsByKey.entrySet()) {
+            long key = gram.getKey();
+            int slot = (int)((key * 0x9E3779B97F4A7C15L) >>> (64 - tableBits)) & (tableSize - 1);
+            while (buffer.getLong(keysOffset + slot * 8) != 0)
+                slot = (slot + 1) & (tableSize - 1);
+            buffer.putLong(keysOffset + slot * 8, key);
+            buffer.putInt(entriesOffset + slot * 4, pair << 8 | gram.getValue().size());
+            for (int languageAndScore : gram.getValue()) {
+                buffer.put(pairsOffset + pair * 2, (byte)(languageAndScore >>> 8));
+                buffer.put(pairsOffset + pair * 2 + 1, (byte)languageAndScore);
+                pair++;
+            }
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+}
@@ -45,7 +45,8 @@ public class SimpleLinguistics implements Linguistics {
         CharacterClasses characterClasses = new CharacterClasses();
         this.normalizer = new SimpleNormalizer();
         this.transformer = new SimpleTransformer();
-        this.detector = new SimpleDetector(config.detector());
+        this.detector = config.detector().enableNGrams() ? new NGramDetector(config.detector())
+                                                         : new SimpleDetector(config.detector());
         this.characterClasses = new CharacterClasses();
         this.gramSplitter = new GramSplitter(characterClasses);
     }
@@ -9,6 +9,7 @@ import com.yahoo.language.simple.kstem.KStemmer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * <p>A tokenizer which splits on whitespace, normalizes and transforms using the given implementations
@@ -26,6 +27,12 @@ public class SimpleTokenizer implements Tokenizer {
     private final Transformer transformer;
     private final KStemmer stemmer = new KStemmer();
 
+    /** Whether ascii only tokens are left unchanged by the normalizer and transformer, so they may be processed as chars */
+    private final boolean asciiIsNormalized;
+
+    /** Buffer for lowercasing ascii only tokens */
+    private char[] buffer = new char[64];
+
     public SimpleTokenizer() {
         this(new SimpleNormalizer(), new SimpleTransformer());
     }
@@ -37,6 +44,8 @@ public class SimpleTokenizer implements Tokenizer {
     public SimpleTokenizer(Normalizer normalizer, Transformer transformer) {
         this.normalizer = normalizer;
         this.transformer = transformer;
+        this.asciiIsNormalized = normalizer.getClass() == SimpleNormalizer.class &&
+                                 transformer.getClass() == SimpleTransformer.class;
     }
 
     @Override
@@ -44,23 +53,71 @@ public class SimpleTokenizer implements Tokenizer {
         if (input.isEmpty()) return Collections.emptyList();
 
         List<Token> tokens = new ArrayList<>();
+        tokenize(input, language, stemMode, removeAccents,
+                 token -> tokens.add(new SimpleToken(token.getOrig()).setOffset(token.getOffset())
+                                                                     .setType(token.getType())
+                                                                     .setTokenString(token.getTokenString())));
+        return tokens;
+    }
+
+    /**
+     * Passes each token to the consumer as a view over the input, which creates the original and token strings
+     * only when they are asked for. Tokens consisting only of ascii characters are lowercased and stemmed
+     * in a reused char buffer.
+     */
+    @Override
+    public void tokenize(String input, Language language, StemMode stemMode, boolean removeAccents,
+                         Consumer<Token> consumer) {
+        if (input.isEmpty()) return;
+
+        TokenView token = new TokenView(input);
         int nextCode = input.codePointAt(0);
         TokenType prevType = SimpleTokenType.valueOf(nextCode);
         for (int prev = 0, next = Character.charCount(nextCode); next <= input.length(); ) {
             nextCode = next < input.length() ? input.codePointAt(next) : SPACE_CODE;
             TokenType nextType = SimpleTokenType.valueOf(nextCode);
             if (!prevType.isIndexable() || !nextType.isIndexable()) {
-                String original = input.substring(prev, next);
-                String token = processToken(original, language, stemMode, removeAccents);
-                tokens.add(new SimpleToken(original).setOffset(prev)
-                                                .setType(prevType)
-                                                .setTokenString(token));
+                token.set(prev, next, prevType);
+                processToken(token, language, stemMode, removeAccents);
+                consumer.accept(token);
                 prev = next;
                 prevType = nextType;
             }
             next += Character.charCount(nextCode);
         }
-        return tokens;
+    }
+
+    private void processToken(TokenView token, Language language, StemMode stemMode, boolean removeAccents) {
+        if ( ! asciiIsNormalized || ! isAscii(token.input, token.from, token.to)) {
+            token.tokenString = processToken(token.getOrig(), language, stemMode, removeAccents);
+            return;
+        }
+
+        int length = token.to - token.from;
+        if (buffer.length < length)
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        boolean lowercased = false;
+        for (int i = 0; i < length; i++) {
+            char c = token.input.charAt(token.from + i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+                lowercased = true;
+            }
+            buffer[i] = c;
+        }
+        if (stemMode != StemMode.NONE && stemmer.stem(buffer, length))
+            token.tokenString = stemmer.asCharSequence().toString();
+        else if (lowercased)
+            token.tokenString = new String(buffer, 0, length);
+        else
+            token.tokenString = null; // same as the original
+    }
+
+    private static boolean isAscii(String input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (input.charAt(i) >= 0x80) return false;
+        }
+        return true;
     }
 
     private String processToken(String token, Language language, StemMode stemMode, boolean removeAccents) {
@@ -73,4 +130,70 @@ public class SimpleTokenizer implements Tokenizer {
         return token;
     }
 
+    /** A token which is a view over a range of the input, changed to each new token */
+    private static final class TokenView implements Token {
+
+        private final String input;
+        private int from;
+        private int to;
+        private TokenType type;
+        private String orig;
+
+        /** The token string, or null if it is the same as the original */
+        private String tokenString;
+
+        TokenView(String input) {
+            this.input = input;
+        }
+
+        void set(int from, int to, TokenType type) {
+            this.from = from;
+            this.to = to;
+            this.type = type;
+            this.orig = null;
+            this.tokenString = null;
+        }
+
+        @Override
+        public TokenType getType() { return type; }
+
+        @Override
+        public String getOrig() {
+            if (orig == null)
+                orig = input.substring(from, to);
+            return orig;
+        }
+
+        @Override
+        public int getNumStems() { return 1; }
+
+        @Override
+        public String getStem(int i) { return getTokenString(); }
+
+        @Override
+        public int getNumComponents() { return 0; }
+
+        @Override
+        public Token getComponent(int i) { throw new IndexOutOfBoundsException("A simple token has no components"); }
+
+        @Override
+        public long getOffset() { return from; }
+
+        @Override
+        public TokenScript getScript() { return TokenScript.UNKNOWN; }
+
+        @Override
+        public String getTokenString() { return tokenString != null ? tokenString : getOrig(); }
+
+        @Override
+        public boolean isSpecialToken() { return false; }
+
+        @Override
+        public boolean isIndexable() { return type.isIndexable() && to > from; }
+
+        @Override
+        public String toString() { return "token '" + getOrig() + "' at " + from; }
+
+    }
+
 }
@@ -1289,7 +1289,11 @@ public class KStemmer {
     return word.toString();
   }
   
-  CharSequence asCharSequence() {
+  /**
+   * Returns the result of the stem (assuming the word was changed) without creating a String.
+   * The returned sequence is only valid until the next call to stem.
+   */
+  public CharSequence asCharSequence() {
     return result != null ? result : word;
   }
 
@@ -1318,9 +1322,10 @@ public class KStemmer {
   }
   
   /**
-   * Stems the text in the token. Returns true if changed.
+   * Stems the first len chars of the given lowercased term. Returns true if changed,
+   * in which case the stem is available from {@link #asCharSequence()}.
    */
-  boolean stem(char[] term, int len) {
+  public boolean stem(char[] term, int len) {
     
     result = null;
     
@@ -0,0 +1,165 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+import com.yahoo.text.Utf8;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class NGramDetectorTestCase {
+
+    private static final Object[][] queries = {
+            { Language.ENGLISH, "how to cook rice in the oven" },
+            { Language.ENGLISH, "the weather tomorrow in new york" },
+            { Language.ENGLISH, "cheap flights to london" },
+            { Language.ENGLISH, "why is the sky blue" },
+            { Language.GERMAN, "wie wird das wetter morgen" },
+            { Language.GERMAN, "günstige flüge nach berlin" },
+            { Language.GERMAN, "wo ist der nächste bahnhof" },
+            { Language.FRENCH, "comment faire une tarte aux pommes" },
+            { Language.FRENCH, "les meilleurs restaurants à paris" },
+            { Language.FRENCH, "où est la gare la plus proche" },
+            { Language.SPANISH, "cómo hacer una tortilla de patatas" },
+            { Language.SPANISH, "vuelos baratos a madrid" },
+            { Language.SPANISH, "qué tiempo hará mañana" },
+            { Language.ITALIAN, "come cucinare la pasta alla carbonara" },
+            { Language.ITALIAN, "dove si trova la stazione" },
+            { Language.PORTUGUESE, "como fazer bolo de chocolate" },
+            { Language.PORTUGUESE, "previsão do tempo para amanhã" },
+            { Language.DUTCH, "hoe laat gaat de trein naar amsterdam" },
+            { Language.DUTCH, "het weer voor morgen" },
+            { Language.SWEDISH, "hur lagar man köttbullar" },
+            { Language.NORWEGIAN_BOKMAL, "hvordan blir været i morgen" },
+            { Language.FINNISH, "mikä on suomen pääkaupunki" },
+            { Language.POLISH, "jak ugotować zupę pomidorową" },
+            { Language.TURKISH, "yarın hava nasıl olacak" },
+            { Language.RUSSIAN, "погода на завтра в москве" },
+            { Language.RUSSIAN, "как приготовить борщ" },
+            { Language.GREEK, "ο καιρός αύριο στην αθήνα" },
+            { Language.ARABIC, "كيف حال الطقس اليوم" },
+            { Language.HEBREW, "מזג האוויר מחר בתל אביב" },
+            { Language.HINDI, "कल मौसम कैसा रहेगा" },
+            { Language.KOREAN, "내일 날씨 어때요" },
+            { Language.JAPANESE, "明日の天気はどうですか" },
+            { Language.THAI, "พยากรณ์อากาศวันพรุ่งนี้" },
+    };
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void requireThatShortQueriesAreDetected() {
+        NGramDetector detector = new NGramDetector();
+        int correct = 0;
+        StringBuilder wrong = new StringBuilder();
+        for (Object[] query : queries) {
+            Language detected = detector.guessLanguage((String)query[1]);
+            if (detected == query[0])
+                correct++;
+            else
+                wrong.append("\n'").append(query[1]).append("' was ").append(detected).append(", expected ").append(query[0]);
+        }
+        assertTrue(correct + " of " + queries.length + " correct" + wrong, correct >= queries.length * 0.9);
+    }
+
+    @Test
+    public void requireThatTextsWithoutLettersAreUnknown() {
+        NGramDetector detector = new NGramDetector();
+        assertEquals(Language.UNKNOWN, detector.guessLanguage(""));
+        assertEquals(Language.UNKNOWN, detector.guessLanguage("1234 -- 5678!"));
+    }
+
+    @Test
+    public void requireThatPrecompiledProfilesAreTheCompiledBuiltInProfiles() throws IOException {
+        ByteArrayOutputStream precompiled = new ByteArrayOutputStream();
+        NGramProfiles.builtIn().writeTo(precompiled);
+        ByteArrayOutputStream compiled = new ByteArrayOutputStream();
+        NGramProfiles.compileBuiltIn().writeTo(compiled);
+        assertTrue("The " + NGramProfiles.BUILT_IN_RESOURCE + " resource built with this is the compiled built in profiles",
+                   Arrays.equals(compiled.toByteArray(), precompiled.toByteArray()));
+    }
+
+    @Test
+    public void requireThatDetectionIsAsAccurateAsOptimaize() {
+        int correct = correct(new NGramDetector()::guessLanguage);
+        int optimaizeCorrect = correct(new SimpleDetector()::guessLanguage);
+        assertTrue(correct + " correct, Optimaize had " + optimaizeCorrect, correct >= optimaizeCorrect);
+    }
+
+    @Test
+    public void requireThatDetectionIsFasterThanOptimaize() {
+        long nanos = nanosPerQuery(new NGramDetector()::guessLanguage);
+        long optimaizeNanos = nanosPerQuery(new SimpleDetector()::guessLanguage);
+        assertTrue(nanos + " ns per query, Optimaize used " + optimaizeNanos, nanos < optimaizeNanos);
+    }
+
+    @Test
+    public void requireThatProfilesCanBeWrittenAndMapped() throws IOException {
+        NGramProfiles profiles = NGramProfiles.builtIn();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        profiles.writeTo(bytes);
+        assertSameDetections(profiles, NGramProfiles.read(ByteBuffer.wrap(bytes.toByteArray())));
+
+        File file = tempFolder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            profiles.writeTo(out);
+        }
+        assertSameDetections(profiles, NGramProfiles.map(file.toPath()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void requireThatOtherBuffersAreRejected() {
+        NGramProfiles.read(ByteBuffer.wrap(Utf8.toBytes("not profiles at all")));
+    }
+
+    private static int correct(Function<String, Language> detector) {
+        int correct = 0;
+        for (Object[] query : queries) {
+            if (detector.apply((String)query[1]) == query[0])
+                correct++;
+        }
+        return correct;
+    }
+
+    /** Returns the least average time used to detect the language of the queries, out of a few rounds after warmup */
+    private static long nanosPerQuery(Function<String, Language> detector) {
+        for (int i = 0; i < 10000; i++) // warm up
+            detector.apply((String)queries[i % queries.length][1]);
+        int iterations = 10000;
+        long nanosPerQuery = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++)
+                detector.apply((String)queries[i % queries.length][1]);
+            nanosPerQuery = Math.min(nanosPerQuery, (System.nanoTime() - start) / iterations);
+        }
+        return nanosPerQuery;
+    }
+
+    private static void assertSameDetections(NGramProfiles expected, NGramProfiles actual) {
+        assertEquals(expected.languageCount(), actual.languageCount());
+        for (int i = 0; i < expected.languageCount(); i++)
+            assertEquals(expected.languageTag(i), actual.languageTag(i));
+        NGramDetector expectedDetector = new NGramDetector(expected);
+        NGramDetector actualDetector = new NGramDetector(actual);
+        for (Object[] query : queries)
+            assertEquals(expectedDetector.guessLanguage((String)query[1]), actualDetector.guessLanguage((String)query[1]));
+    }
+
+}
@@ -1,10 +1,17 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.language.simple;
 
+import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
 import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
 /**
  * @author <a href="mailto:steinar@yahoo-inc.com">Steinar Knutsen</a>
  * @author bratseth
@@ -33,4 +40,24 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
                             " ", "gods", ".", "running", ")");
     }
 
+    @Test
+    public void testAsciiTokensAreProcessedLikeOtherTokens() {
+        String input = "Running COMMUNICATIONS d\u00E9j\u00E0 vu, Kj\u00F8ret\u00F8yene i \uD800\uDFC8 a\u030a 42nd \uFB01nancial";
+        SimpleTokenizer tokenizer = new SimpleTokenizer();
+        // Subclasses of the default normalizer are not known to leave ascii unchanged, so all tokens are processed as strings
+        SimpleTokenizer stringTokenizer = new SimpleTokenizer(new SimpleNormalizer() {}, new SimpleTransformer());
+        for (StemMode stemMode : StemMode.values()) {
+            for (boolean removeAccents : new boolean[] { false, true }) {
+                List<Token> expected = new ArrayList<>();
+                stringTokenizer.tokenize(input, Language.ENGLISH, stemMode, removeAccents).forEach(expected::add);
+                List<Token> streamed = new ArrayList<>();
+                tokenizer.tokenize(input, Language.ENGLISH, stemMode, removeAccents,
+                                   token -> streamed.add(new SimpleToken(token.getOrig()).setOffset(token.getOffset())
+                                                                                         .setType(token.getType())
+                                                                                         .setTokenString(token.getTokenString())));
+                assertEquals(expected, streamed);
+            }
+        }
+    }
+
 }
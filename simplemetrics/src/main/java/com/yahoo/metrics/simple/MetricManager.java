@@ -44,6 +44,10 @@ public class MetricManager extends AbstractComponent implements Provider<MetricR
         // interval as possible
         executor.scheduleAtFixedRate(new MetricAggregator(metricsCollection, currentSnapshot, settings), 1, 1, TimeUnit.SECONDS);
         receiver = new MetricReceiver(metricsCollection, currentSnapshot);
+        MetricSettings histogramSettings = new MetricSettings.Builder().histogram(true).build();
+        for (String metricName : settings.histograms()) {
+            receiver.addMetricDefinition(metricName, histogramSettings);
+        }
     }
 
     static MetricManager constructWithCustomUpdater(ManagerConfig settings, Updater<Bucket, Sample> updater) {
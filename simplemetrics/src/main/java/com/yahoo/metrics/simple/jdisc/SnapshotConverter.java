@@ -75,9 +75,12 @@ class SnapshotConverter {
     }
 
     private static List<Tuple2<String, Double>> buildPercentileList(DoubleHistogram histogram) {
-        List<Tuple2<String, Double>> prefixAndValues = new ArrayList<>(2);
+        List<Tuple2<String, Double>> prefixAndValues = new ArrayList<>(5);
+        prefixAndValues.add(new Tuple2<>("50", histogram.getValueAtPercentile(50.0d)));
+        prefixAndValues.add(new Tuple2<>("90", histogram.getValueAtPercentile(90.0d)));
         prefixAndValues.add(new Tuple2<>("95", histogram.getValueAtPercentile(95.0d)));
         prefixAndValues.add(new Tuple2<>("99", histogram.getValueAtPercentile(99.0d)));
+        prefixAndValues.add(new Tuple2<>("999", histogram.getValueAtPercentile(99.9d)));
         return prefixAndValues;
     }
 
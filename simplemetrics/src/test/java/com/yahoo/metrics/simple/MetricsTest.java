@@ -58,4 +58,16 @@ public class MetricsTest extends UnitTestSetup {
         assertTrue(r.getMetricDefinition(metricName).isHistogram());
     }
 
+    @Test
+    public final void testConfiguredHistograms() {
+        MetricManager manager = new MetricManager(new ManagerConfig(new ManagerConfig.Builder().histograms("query_latency")));
+        try {
+            assertTrue(manager.get().getMetricDefinition("query_latency").isHistogram());
+            assertNull(manager.get().getMetricDefinition("other"));
+        }
+        finally {
+            manager.deconstruct();
+        }
+    }
+
 }
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.metrics.simple.jdisc;
 
+import com.yahoo.collections.Tuple2;
 import com.yahoo.container.jdisc.state.CountMetric;
 import com.yahoo.container.jdisc.state.GaugeMetric;
 import com.yahoo.container.jdisc.state.MetricDimensions;
@@ -8,15 +9,19 @@ import com.yahoo.container.jdisc.state.MetricSet;
 import com.yahoo.container.jdisc.state.MetricSnapshot;
 import com.yahoo.container.jdisc.state.MetricValue;
 import com.yahoo.metrics.simple.Bucket;
+import com.yahoo.metrics.simple.Gauge;
 import com.yahoo.metrics.simple.Identifier;
 import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.MetricSettings;
 import com.yahoo.metrics.simple.Point;
 import com.yahoo.metrics.simple.UntypedMetric;
 import org.junit.Test;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -74,4 +79,27 @@ public class SnapshotConverterTest {
         }
     }
 
+    @Test
+    public void testPercentiles() {
+        MetricReceiver mock = new MetricReceiver.MockReceiver();
+        Gauge latency = mock.declareGauge("latency", Optional.empty(), new MetricSettings.Builder().histogram(true).build());
+        for (int i = 1; i <= 1000; i++)
+            latency.sample(i);
+
+        MetricSnapshot snapshot = new SnapshotConverter(mock.getSnapshot()).convert();
+        GaugeMetric gauge = (GaugeMetric)snapshot.iterator().next().getValue().get("latency");
+        List<Tuple2<String, Double>> percentiles = gauge.getPercentiles().get();
+        assertEquals(5, percentiles.size());
+        assertPercentile("50", 500, percentiles.get(0));
+        assertPercentile("90", 900, percentiles.get(1));
+        assertPercentile("95", 950, percentiles.get(2));
+        assertPercentile("99", 990, percentiles.get(3));
+        assertPercentile("999", 999, percentiles.get(4));
+    }
+
+    private void assertPercentile(String prefix, double value, Tuple2<String, Double> percentile) {
+        assertEquals(prefix, percentile.first);
+        assertEquals(value, percentile.second, value / 100);
+    }
+
 }
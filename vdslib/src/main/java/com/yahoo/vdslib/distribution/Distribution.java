@@ -140,25 +140,35 @@ public class Distribution {
         return seed;
     }
 
-    private class ScoredGroup implements Comparable<ScoredGroup> {
-        Group group;
-        double score;
+    /**
+     * Inserts the given candidate into the given arrays of the best candidates so far, which are sorted by
+     * descending score, if its score is higher than the lowest score. The lowest scoring candidate is dropped.
+     * A candidate is placed after existing candidates with the same score.
+     */
+    private static <T> void insertIfBetter(double score, T candidate, double[] bestScores, T[] bestCandidates) {
+        int last = bestScores.length - 1;
+        if (last < 0 || score <= bestScores[last]) return;
+
+        int position = 0;
+        while (score <= bestScores[position]) ++position;
+        System.arraycopy(bestScores, position, bestScores, position + 1, last - position);
+        System.arraycopy(bestCandidates, position, bestCandidates, position + 1, last - position);
+        bestScores[position] = score;
+        bestCandidates[position] = candidate;
+    }
 
-        ScoredGroup(Group g, double score) { this.group = g; this.score = score; }
+    private static void insertIfBetter(double score, int candidate, double[] bestScores, int[] bestCandidates) {
+        int last = bestScores.length - 1;
+        if (last < 0 || score <= bestScores[last]) return;
 
-        @Override
-        public int compareTo(ScoredGroup o) {
-            // Sorts by highest first.
-            return Double.valueOf(o.score).compareTo(score);
-        }
+        int position = 0;
+        while (score <= bestScores[position]) ++position;
+        System.arraycopy(bestScores, position, bestScores, position + 1, last - position);
+        System.arraycopy(bestCandidates, position, bestCandidates, position + 1, last - position);
+        bestScores[position] = score;
+        bestCandidates[position] = candidate;
     }
-    private class ScoredNode {
-        int index;
-        int reliability;
-        double score;
 
-        ScoredNode(int index, int reliability, double score) { this.index = index; this.reliability = reliability; this.score = score; }
-    }
     private static boolean allDistributorsDown(Group g, ClusterState clusterState) {
         if (g.isLeafGroup()) {
             for (ConfiguredNode node : g.getNodes()) {
@@ -177,27 +187,36 @@ public class Distribution {
             return parent;
         }
         int[] redundancyArray = parent.getDistribution().getRedundancyArray(redundancy);
-        TreeSet<ScoredGroup> results = new TreeSet<>();
+        Collection<Group> subgroups = parent.getSubgroups().values();
+        Group[] groups = new Group[subgroups.size()];
+        double[] scores = new double[groups.length];
         int seed = getGroupSeed(bucket, clusterState, parent);
         RandomGen random = new RandomGen(seed);
         int currentIndex = 0;
-        for(Group g : parent.getSubgroups().values()) {
+        int i = 0;
+        for (Group g : subgroups) {
             while (g.getIndex() < currentIndex++) random.nextDouble();
             double score = random.nextDouble();
             if (Math.abs(g.getCapacity() - 1.0) > 0.0000001) {
                 score = Math.pow(score, 1.0 / g.getCapacity());
             }
-            results.add(new ScoredGroup(g, score));
-        }
-        if (distributorAutoOwnershipTransferOnWholeGroupDown) {
-            while (!results.isEmpty() && allDistributorsDown(results.first().group, clusterState)) {
-                results.remove(results.first());
+            groups[i] = g;
+            scores[i++] = score;
+        }
+        // Pick the highest scoring group, skipping groups without available distributors if so configured
+        while (true) {
+            int best = -1;
+            for (i = 0; i < groups.length; ++i) {
+                if (groups[i] != null && (best < 0 || scores[i] > scores[best])) best = i;
             }
+            if (best < 0) {
+                return null;
+            }
+            if ( ! distributorAutoOwnershipTransferOnWholeGroupDown || ! allDistributorsDown(groups[best], clusterState)) {
+                return getIdealDistributorGroup(bucket, clusterState, groups[best], redundancyArray[0]);
+            }
+            groups[best] = null;
         }
-        if (results.isEmpty()) {
-            return null;
-        }
-        return getIdealDistributorGroup(bucket, clusterState, results.first().group, redundancyArray[0]);
     }
     private class ResultGroup implements Comparable<ResultGroup> {
         Group group;
@@ -222,10 +241,8 @@ public class Distribution {
 
         int[] redundancyArray = parent.getDistribution().getRedundancyArray(redundancy);
 
-        List<ScoredGroup> tmpResults = new ArrayList<>();
-        for (int i = 0; i < redundancyArray.length; ++i) {
-            tmpResults.add(new ScoredGroup(null, 0.0));
-        }
+        Group[] bestGroups = new Group[redundancyArray.length];
+        double[] bestScores = new double[redundancyArray.length];
 
         int seed = getGroupSeed(bucketId, clusterState, parent);
 
@@ -245,15 +262,11 @@ public class Distribution {
                 score = Math.pow(score, 1.0 / group.getValue().getCapacity());
             }
 
-            if (score > tmpResults.get(tmpResults.size() - 1).score) {
-                tmpResults.add(new ScoredGroup(group.getValue(), score));
-                Collections.sort(tmpResults);
-                tmpResults.remove(tmpResults.size() - 1);
-            }
+            insertIfBetter(score, group.getValue(), bestScores, bestGroups);
         }
 
-        for (int i = 0; i < tmpResults.size(); ++i) {
-            Group group = tmpResults.get(i).group;
+        for (int i = 0; i < bestGroups.length; ++i) {
+            Group group = bestGroups[i];
 
             if (group != null) {
                 getIdealGroups(bucketId, clusterState, group, redundancyArray[i], results);
@@ -337,13 +350,10 @@ public class Distribution {
             int redundancy = group.redundancy;
             Collection<ConfiguredNode> nodes = group.group.getNodes();
 
-            // Create temporary place to hold results. Use double linked list
-            // for cheap access to back(). Stuff in redundancy fake entries to
-            // avoid needing to check size during iteration.
-            LinkedList<ScoredNode> tmpResults = new LinkedList<>();
-            for (int i = 0; i < redundancy; ++i) {
-                tmpResults.add(new ScoredNode(0, 0, 0.0));
-            }
+            // The best nodes so far, by descending score. Starts out with redundancy
+            // fake entries of score 0 to avoid needing to check size during iteration.
+            int[] bestNodes = new int[redundancy];
+            double[] bestScores = new double[redundancy];
 
             for (ConfiguredNode configuredNode : nodes) {
                 NodeState nodeState = clusterState.getNodeState(new Node(NodeType.STORAGE, configuredNode.index()));
@@ -379,19 +389,11 @@ public class Distribution {
                 if (nodeState.getCapacity() != 1.0) {
                     score = Math.pow(score, 1.0 / nodeState.getCapacity());
                 }
-                if (score > tmpResults.getLast().score) {
-                    for (int i = 0; i < tmpResults.size(); ++i) {
-                        if (score > tmpResults.get(i).score) {
-                            tmpResults.add(i, new ScoredNode(configuredNode.index(), nodeState.getReliability(), score));
-                            break;
-                        }
-                    }
-                    tmpResults.removeLast();
-                }
+                insertIfBetter(score, configuredNode.index(), bestScores, bestNodes);
             }
 
-            for (ScoredNode node : tmpResults) {
-                resultNodes.add(node.index);
+            for (int node : bestNodes) {
+                resultNodes.add(node);
             }
         }
 
@@ -422,7 +424,8 @@ public class Distribution {
         RandomGen random = new RandomGen(seed);
         int randomIndex = 0;
         List<ConfiguredNode> configuredNodes = idealGroup.getNodes();
-        ScoredNode node = new ScoredNode(0, 0, 0);
+        int bestNode = -1;
+        double bestScore = 0;
         for (ConfiguredNode configuredNode : configuredNodes) {
             NodeState nodeState = state.getNodeState(new Node(NodeType.DISTRIBUTOR, configuredNode.index()));
             if (!nodeState.getState().oneOf(upStates)) continue;
@@ -441,16 +444,17 @@ public class Distribution {
             if (Math.abs(nodeState.getCapacity() - 1.0) > 0.0000001) {
                 score = Math.pow(score, 1.0 / nodeState.getCapacity());
             }
-            if (score > node.score) {
-                node = new ScoredNode(configuredNode.index(), 1, score);
+            if (score > bestScore) {
+                bestNode = configuredNode.index();
+                bestScore = score;
             }
         }
-        if (node.reliability == 0) {
+        if (bestNode < 0) {
             throw new NoDistributorsAvailableException(
                     "No available distributors in any of the given upstates '"
                     + upStates + "'.");
         }
-        return node.index;
+        return bestNode;
     }
     private boolean visitGroups(GroupVisitor visitor, Map<Integer, Group> groups) {
         for (Group g : groups.values()) {
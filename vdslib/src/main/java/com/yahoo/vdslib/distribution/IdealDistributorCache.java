@@ -0,0 +1,83 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches the ideal distributor of buckets in a given cluster state, for callers which look up
+ * many buckets in the same state, like document routing.
+ * <p>
+ * The ideal distributor of a bucket only depends on the distribution bits of the bucket, so a state
+ * with the default 16 distribution bits has at most 65536 distinct answers, which all fit in the cache.
+ * Lookups are allocation free once the cache is populated. Each entry holds the distribution config it was
+ * computed with, and is only used while that is still the config of the distribution.
+ * A new cache must be created when the cluster state changes, and the cluster state must not be modified
+ * while a cache for it is in use.
+ * <p>
+ * This is thread safe.
+ *
+ * @author agent
+ */
+public class IdealDistributorCache {
+
+    /** The cache size is 2 to the power of this, or of the number of distribution bits if that is smaller */
+    private static final int MAX_SIZE_BITS = 16;
+
+    private final Distribution distribution;
+    private final ClusterState clusterState;
+    private final String upStates;
+    private final int seedMask;
+
+    private final AtomicReferenceArray<Entry> entries;
+
+    public IdealDistributorCache(Distribution distribution, ClusterState clusterState, String upStates) {
+        this.distribution = distribution;
+        this.clusterState = clusterState;
+        this.upStates = upStates;
+        int distributionBits = clusterState.getDistributionBitCount();
+        this.seedMask = distributionBits >= 32 ? -1 : (1 << distributionBits) - 1;
+        this.entries = new AtomicReferenceArray<>(1 << Math.min(distributionBits, MAX_SIZE_BITS));
+    }
+
+    /** Returns the cluster state this caches the ideal distributors of */
+    public ClusterState getClusterState() { return clusterState; }
+
+    /** Returns the same as {@link Distribution#getIdealDistributorNode} for the cluster state and up states of this */
+    public int getIdealDistributorNode(BucketId bucket) throws Distribution.TooFewBucketBitsInUseException,
+                                                               Distribution.NoDistributorsAvailableException {
+        if (bucket.getUsedBits() < clusterState.getDistributionBitCount()) // let the distribution throw
+            return distribution.getIdealDistributorNode(clusterState, bucket, upStates);
+
+        Group rootGroup = distribution.getRootGroup();
+        int seed = (int) bucket.getRawId() & seedMask;
+        int slot = seed & (entries.length() - 1);
+        Entry entry = entries.get(slot);
+        if (entry != null && entry.seed == seed && entry.rootGroup == rootGroup)
+            return entry.node;
+
+        int node = distribution.getIdealDistributorNode(clusterState, bucket, upStates);
+        if (rootGroup == distribution.getRootGroup()) // do not cache results computed with a newer config
+            entries.set(slot, new Entry(rootGroup, seed, node));
+        return node;
+    }
+
+    /** The ideal distributor of the buckets with a distributor seed, in a distribution config */
+    private static class Entry {
+
+        /** The root group of the distribution config this was computed with */
+        final Group rootGroup;
+        final int seed;
+        final int node;
+
+        Entry(Group rootGroup, int seed, int node) {
+            this.rootGroup = rootGroup;
+            this.seed = seed;
+            this.node = node;
+        }
+
+    }
+
+}
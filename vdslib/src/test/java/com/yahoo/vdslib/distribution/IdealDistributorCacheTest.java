@@ -0,0 +1,125 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vdslib.distribution;
+
+import com.yahoo.document.BucketId;
+import com.yahoo.vdslib.state.ClusterState;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author agent
+ */
+public class IdealDistributorCacheTest {
+
+    private static final String upStates = "uim";
+
+    /** Verifies that the cache returns the same as the distribution for many random buckets, looked up twice */
+    private static void assertSameAsDistribution(Distribution distribution, ClusterState state) throws Exception {
+        IdealDistributorCache cache = new IdealDistributorCache(distribution, state, upStates);
+        Random random = new Random(1234);
+        for (int pass = 0; pass < 2; pass++) {
+            random.setSeed(1234);
+            for (int i = 0; i < 100000; i++) {
+                BucketId bucket = new BucketId(state.getDistributionBitCount() + random.nextInt(58 - state.getDistributionBitCount()),
+                                               random.nextLong());
+                assertEquals(bucket.toString(),
+                             distribution.getIdealDistributorNode(state, bucket, upStates),
+                             cache.getIdealDistributorNode(bucket));
+            }
+        }
+    }
+
+    @Test
+    public void testFlatDistribution() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getDefaultDistributionConfig(2, 20));
+        try {
+            assertSameAsDistribution(distribution, new ClusterState("distributor:20 storage:20"));
+            assertSameAsDistribution(distribution, new ClusterState("distributor:20 .3.s:d .7.s:m .11.s:i storage:20"));
+        } finally {
+            distribution.close();
+        }
+    }
+
+    @Test
+    public void testGroupedDistributionWithMoreDistributionBitsThanCacheEntries() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getSimpleGroupConfig(2, 10));
+        try {
+            assertSameAsDistribution(distribution, new ClusterState("bits:20 distributor:10 .2.s:d storage:10"));
+            assertSameAsDistribution(distribution, new ClusterState("bits:8 distributor:10 .0.s:d .4.s:d storage:10"));
+        } finally {
+            distribution.close();
+        }
+    }
+
+    @Test
+    public void testEntriesComputedWithAnotherConfigAreNotUsed() throws Exception {
+        Distribution flat = new Distribution(Distribution.getDefaultDistributionConfig(2, 10));
+        Distribution grouped = new Distribution(Distribution.getSimpleGroupConfig(2, 10));
+        ReconfigurableDistribution distribution = new ReconfigurableDistribution(flat);
+        try {
+            ClusterState state = new ClusterState("distributor:10 storage:10");
+            IdealDistributorCache cache = new IdealDistributorCache(distribution, state, upStates);
+            int differences = 0;
+            for (int i = 0; i < 1000; i++) {
+                BucketId bucket = new BucketId(16, i);
+                distribution.current = flat;
+                assertEquals(flat.getIdealDistributorNode(state, bucket, upStates), cache.getIdealDistributorNode(bucket));
+                distribution.current = grouped;
+                assertEquals(grouped.getIdealDistributorNode(state, bucket, upStates), cache.getIdealDistributorNode(bucket));
+                if (flat.getIdealDistributorNode(state, bucket, upStates) != grouped.getIdealDistributorNode(state, bucket, upStates))
+                    differences++;
+            }
+            assertTrue("The configs have different ideal distributors", differences > 0);
+        } finally {
+            flat.close();
+            grouped.close();
+        }
+    }
+
+    @Test
+    public void testErrorsAreNotCached() throws Exception {
+        Distribution distribution = new Distribution(Distribution.getDefaultDistributionConfig(2, 4));
+        try {
+            IdealDistributorCache cache = new IdealDistributorCache(distribution, new ClusterState("distributor:4 .0.s:d .1.s:d .2.s:d .3.s:d"), upStates);
+            for (int i = 0; i < 2; i++) {
+                try {
+                    cache.getIdealDistributorNode(new BucketId(16, 1));
+                    fail("Expected exception");
+                } catch (Distribution.NoDistributorsAvailableException expected) { }
+            }
+            try {
+                cache.getIdealDistributorNode(new BucketId(8, 1));
+                fail("Expected exception");
+            } catch (Distribution.TooFewBucketBitsInUseException expected) { }
+        } finally {
+            distribution.close();
+        }
+    }
+
+    /** A distribution which delegates to another, which may be changed to simulate config changes */
+    private static class ReconfigurableDistribution extends Distribution {
+
+        volatile Distribution current;
+
+        ReconfigurableDistribution(Distribution current) {
+            super(Distribution.getDefaultDistributionConfig(1, 1));
+            this.current = current;
+        }
+
+        @Override
+        public Group getRootGroup() { return current.getRootGroup(); }
+
+        @Override
+        public int getIdealDistributorNode(ClusterState state, BucketId bucket, String upStates)
+                throws TooFewBucketBitsInUseException, NoDistributorsAvailableException {
+            return current.getIdealDistributorNode(state, bucket, upStates);
+        }
+
+    }
+
+}
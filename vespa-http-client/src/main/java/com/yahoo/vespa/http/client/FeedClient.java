@@ -42,6 +42,23 @@ public interface FeedClient extends AutoCloseable {
      */
     void stream(String documentId, CharSequence documentData, Object context);
 
+    /**
+     * Streams a document operation given as bytes to cluster(s). This is used with the
+     * {@link com.yahoo.vespa.http.client.config.FeedParams.DataFormat#VESPA_BINARY} format.
+     * If the pipeline and buffers are full, this call will be blocking.
+     * Documents might time out before they are sent. Failed documents are not retried.
+     * Don't call stream() after close is called.
+     *
+     * @param documentId Document id of the document.
+     * @param documentData The document operation data in the format specified when using the factory to create the API
+     * @param context Any context, will be accessible in the result of the callback.
+     * @throws IllegalStateException if the feed is not set up with the VESPA_BINARY format
+     * @throws UnsupportedOperationException if this client does not support streaming bytes
+     */
+    default void stream(String documentId, byte[] documentData, Object context) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support streaming document operations as bytes");
+    }
+
 
     /**
      * This callback is executed when new results are arriving or an error occur.
@@ -33,7 +33,15 @@ public final class FeedParams {
     public static enum DataFormat {
         /** UTF-8-encoded XML. Preamble is not necessary. */
         XML_UTF8,
-        JSON_UTF8
+        JSON_UTF8,
+        /**
+         * Single document operations in the Vespa binary document format, produced by
+         * com.yahoo.document.serialization.BinaryFeedFormat in the document module.
+         * The data of each operation must be given as bytes, and no start or end of feed is added.
+         * This is much cheaper for the container to read than JSON or XML, but requires that the
+         * client uses the same document type config as the container.
+         */
+        VESPA_BINARY
     }
     /**
      * Mutable class used to instantiate a {@link FeedParams}.
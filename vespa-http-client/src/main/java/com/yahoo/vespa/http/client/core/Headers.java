@@ -18,6 +18,9 @@ public final class Headers {
     public static final String SESSION_ID = "X-Yahoo-Feed-Session-Id";
     public static final String DENY_IF_BUSY = "X-Yahoo-Feed-Deny-If-Busy";
     public static final String DATA_FORMAT = "X-Yahoo-Feed-Data-Format";
+    // The data formats accepted by the server, sent in responses. Older servers do not send this,
+    // and accept only the XML and JSON formats.
+    public static final String DATA_FORMATS = "X-Yahoo-Feed-Data-Formats";
     // This value can be used to route the request to a specific server when using
     // several servers. It is a random value that is the same for the whole session.
     public static final String SHARDING_KEY = "X-Yahoo-Feed-Sharding-Key";
@@ -0,0 +1,130 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core;
+
+/**
+ * Finds the number of operations to have in flight from the round trip times of the operations,
+ * rather than from the throughput of fixed time phases as {@link ThrottlePolicy} does.
+ * <p>
+ * Each round lasts until as many operations as were in flight have completed, i.e one round trip.
+ * The throughput of a round is given by Little's law as the average number of operations in flight
+ * divided by the average round trip time. The round following a change of window size is skipped, as its
+ * operations were sent before the change. If the throughput of the next round is higher, the window keeps
+ * moving in the same direction, if it is lower it turns, and if it is unchanged the window is reduced,
+ * as operations in flight which do not increase throughput only add latency.
+ * When the gateway reports transient errors, the window is halved, at most once per round.
+ * <p>
+ * This is not thread safe.
+ *
+ * @author agent
+ */
+public class LatencyThrottlePolicy {
+
+    /** The fraction of the window to change it by in each step */
+    static final double STEP = 0.1;
+
+    /** Throughput changes less than this fraction are considered noise */
+    static final double TOLERANCE = 0.02;
+
+    /** The minimum number of completed operations to measure a round over */
+    static final int MIN_ROUND_SIZE = 20;
+
+    private final int minInFlight;
+    private final int maxInFlight;
+
+    private double window;
+    private int direction = 1;
+    private double previousThroughput = 0;
+    private boolean skipRound = true;
+
+    private int roundSize = MIN_ROUND_SIZE;
+    private int samples = 0;
+    private double inFlightSum = 0;
+    private double latencySum = 0;
+    private boolean overloadedThisRound = false;
+
+    /**
+     * Creates a policy
+     *
+     * @param minInFlight the window is never smaller than this
+     * @param maxInFlight the window is never larger than this
+     * @param initialInFlight the window to start from
+     */
+    public LatencyThrottlePolicy(int minInFlight, int maxInFlight, int initialInFlight) {
+        this.minInFlight = Math.max(1, minInFlight);
+        this.maxInFlight = Math.max(this.minInFlight, maxInFlight);
+        this.window = Math.max(this.minInFlight, Math.min(this.maxInFlight, initialInFlight));
+    }
+
+    /** Returns the number of operations to allow in flight */
+    public int maxInFlight() {
+        return (int)Math.round(window);
+    }
+
+    /**
+     * Registers that an operation has completed
+     *
+     * @param latencyMs the round trip time of the operation
+     * @param inFlight the number of operations in flight when it completed, including itself
+     * @return the number of operations to allow in flight
+     */
+    public int resultReady(long latencyMs, int inFlight) {
+        samples++;
+        latencySum += Math.max(1, latencyMs);
+        inFlightSum += inFlight;
+        if (samples < roundSize) return maxInFlight();
+
+        double throughput = inFlightSum / latencySum; // average in flight / average latency
+        roundSize = Math.max(MIN_ROUND_SIZE, (int)(inFlightSum / samples));
+        samples = 0;
+        inFlightSum = 0;
+        latencySum = 0;
+        overloadedThisRound = false;
+
+        if (skipRound) {
+            skipRound = false;
+            return maxInFlight();
+        }
+
+        if (previousThroughput > 0) {
+            if (throughput < previousThroughput * (1 - TOLERANCE))
+                direction = -direction;
+            else if (throughput < previousThroughput * (1 + TOLERANCE))
+                direction = -1;
+        }
+        previousThroughput = throughput;
+        setWindow(window + direction * Math.max(1, window * STEP));
+        return maxInFlight();
+    }
+
+    /**
+     * Registers that the gateway reported a transient error, which means it is overloaded
+     *
+     * @return the number of operations to allow in flight
+     */
+    public int overloaded() {
+        if (overloadedThisRound) return maxInFlight();
+
+        overloadedThisRound = true;
+        previousThroughput = 0; // a measurement at the halved window is not comparable to the last
+        direction = 1;
+        setWindow(window / 2);
+        return maxInFlight();
+    }
+
+    private void setWindow(double newWindow) {
+        // Probe away from a bound next
+        if (newWindow <= minInFlight)
+            direction = 1;
+        else if (newWindow >= maxInFlight)
+            direction = -1;
+        window = Math.max(minInFlight, Math.min(maxInFlight, newWindow));
+        skipRound = true;
+    }
+
+    @Override
+    public String toString() {
+        return "max in flight " + maxInFlight() + ", moving " + (direction > 0 ? "up" : "down") +
+               ", previous throughput " + String.format("%.3f", previousThroughput) + " operations/ms";
+    }
+
+}
@@ -2,9 +2,9 @@
 package com.yahoo.vespa.http.client.core.api;
 
 import com.yahoo.vespa.http.client.FeedClient;
+import com.yahoo.vespa.http.client.config.FeedParams;
 import com.yahoo.vespa.http.client.config.SessionParams;
 import com.yahoo.vespa.http.client.core.Document;
-import com.yahoo.vespa.http.client.core.ThrottlePolicy;
 import com.yahoo.vespa.http.client.core.operationProcessor.IncompleteResultsThrottler;
 import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 
@@ -23,6 +23,7 @@ import java.util.concurrent.TimeUnit;
 public class FeedClientImpl implements FeedClient {
 
     private final OperationProcessor operationProcessor;
+    private final FeedParams.DataFormat dataFormat;
     private final long closeTimeoutMs;
     private final long sleepTimeMs = 500;
 
@@ -31,12 +32,11 @@ public class FeedClientImpl implements FeedClient {
         this.closeTimeoutMs = (1 + sessionParams.getConnectionParams().getMaxRetries()) * (
                 sessionParams.getFeedParams().getServerTimeout(TimeUnit.MILLISECONDS) +
                 sessionParams.getFeedParams().getClientTimeout(TimeUnit.MILLISECONDS));
+        this.dataFormat = sessionParams.getFeedParams().getDataFormat();
         this.operationProcessor = new OperationProcessor(
                 new IncompleteResultsThrottler(
                         sessionParams.getThrottlerMinSize(),
-                        sessionParams.getClientQueueSize(),
-                        ()->System.currentTimeMillis(),
-                        new ThrottlePolicy()),
+                        sessionParams.getClientQueueSize()),
                 resultCallback,
                 sessionParams,
                 timeoutExecutor);
@@ -57,6 +57,14 @@ public class FeedClientImpl implements FeedClient {
         operationProcessor.sendDocument(document);
     }
 
+    @Override
+    public void stream(String documentId, byte[] documentData, Object context) {
+        if (dataFormat != FeedParams.DataFormat.VESPA_BINARY)
+            throw new IllegalStateException("Document operations can only be streamed as bytes in the " +
+                                            FeedParams.DataFormat.VESPA_BINARY + " format, but this feed uses " + dataFormat);
+        operationProcessor.sendDocument(new Document(documentId, documentData, context));
+    }
+
     @Override
     public void close() {
         Instant lastResultReceived = Instant.now();
@@ -5,7 +5,6 @@ import com.yahoo.vespa.http.client.FeedClient;
 import com.yahoo.vespa.http.client.Result;
 import com.yahoo.vespa.http.client.Session;
 import com.yahoo.vespa.http.client.config.SessionParams;
-import com.yahoo.vespa.http.client.core.ThrottlePolicy;
 import com.yahoo.vespa.http.client.core.operationProcessor.IncompleteResultsThrottler;
 import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 
@@ -27,9 +26,7 @@ public class SessionImpl implements Session {
         this.operationProcessor = new OperationProcessor(
                 new IncompleteResultsThrottler(
                         sessionParams.getThrottlerMinSize(),
-                        sessionParams.getClientQueueSize(),
-                        ()->System.currentTimeMillis(),
-                        new ThrottlePolicy()),
+                        sessionParams.getClientQueueSize()),
                 new FeedClient.ResultCallback() {
                     @Override
                     public void onCompletion(String docId, Result documentResult) {
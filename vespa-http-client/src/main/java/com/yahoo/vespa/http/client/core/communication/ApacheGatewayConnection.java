@@ -85,13 +85,18 @@ class ApacheGatewayConnection implements GatewayConnection {
         this.httpClientFactory = httpClientFactory;
         this.connectionParams = connectionParams;
         this.httpClient = null;
-        boolean isJson = feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8;
-        if (isJson) {
-            startOfFeed = START_OF_FEED_JSON;
-            endOfFeed = END_OF_FEED_JSON;
-        } else {
-            startOfFeed = START_OF_FEED_XML;
-            endOfFeed = END_OF_FEED_XML;
+        switch (feedParams.getDataFormat()) {
+            case JSON_UTF8:
+                startOfFeed = START_OF_FEED_JSON;
+                endOfFeed = END_OF_FEED_JSON;
+                break;
+            case VESPA_BINARY:
+                startOfFeed = new byte[0];
+                endOfFeed = new byte[0];
+                break;
+            default:
+                startOfFeed = START_OF_FEED_XML;
+                endOfFeed = END_OF_FEED_XML;
         }
         this.clientId = clientId;
         if (connectionParams.isEnableV3Protocol()) {
@@ -156,7 +161,7 @@ class ApacheGatewayConnection implements GatewayConnection {
         }
         reqEntity.setChunked(true);
         httpPost.setEntity(reqEntity);
-        return executePost(httpPost);
+        return executePost(httpPost, false /* this is not handshake */);
     }
 
     private ByteBuffer[] getDataWithStartAndEndOfFeed(List<Document> docs, int version) {
@@ -206,11 +211,7 @@ class ApacheGatewayConnection implements GatewayConnection {
             }
         }
         if (!isHandshake) {
-            if (feedParams.getDataFormat() == FeedParams.DataFormat.JSON_UTF8) {
-                httpPost.setHeader(Headers.DATA_FORMAT, FeedParams.DataFormat.JSON_UTF8.name());
-            } else {
-                httpPost.setHeader(Headers.DATA_FORMAT, FeedParams.DataFormat.XML_UTF8.name());
-            }
+            httpPost.setHeader(Headers.DATA_FORMAT, feedParams.getDataFormat().name());
             if (feedParams.getPriority() != null) {
                 httpPost.setHeader(Headers.PRIORITY, feedParams.getPriority());
             }
@@ -242,7 +243,7 @@ class ApacheGatewayConnection implements GatewayConnection {
         return httpPost;
     }
 
-    private InputStream executePost(HttpPost httpPost) throws ServerResponseException, IOException {
+    private InputStream executePost(HttpPost httpPost, boolean isHandshake) throws ServerResponseException, IOException {
         HttpResponse response;
         try {
             if (httpClient == null) {
@@ -260,6 +261,9 @@ class ApacheGatewayConnection implements GatewayConnection {
             verifyServerResponseCode(response);
             verifyServerVersion(response.getFirstHeader(Headers.VERSION));
             verifySessionHeader(response.getFirstHeader(Headers.SESSION_ID));
+            if (isHandshake) {
+                verifyDataFormat(response.getFirstHeader(Headers.DATA_FORMATS));
+            }
         } catch (ServerResponseException e) {
             httpPost.abort();
             throw e;
@@ -325,6 +329,28 @@ class ApacheGatewayConnection implements GatewayConnection {
         }
     }
 
+    /**
+     * Verifies that the server accepts the data format of this feed before any data is sent in it.
+     * Older servers do not list the formats they accept, and fail requests with formats unknown to them,
+     * so binary data is only sent to servers which list it.
+     */
+    private void verifyDataFormat(Header serverHeader) throws ServerResponseException {
+        FeedParams.DataFormat dataFormat = feedParams.getDataFormat();
+        if (dataFormat != FeedParams.DataFormat.VESPA_BINARY) {
+            return; // Accepted by all servers
+        }
+        if (serverHeader != null) {
+            for (String serverDataFormat : serverHeader.getValue().split(",")) {
+                if (serverDataFormat.trim().equals(dataFormat.name())) {
+                    return;
+                }
+            }
+        }
+        throw new ServerResponseException(Headers.HTTP_NOT_ACCEPTABLE, "Server does not accept data format " + dataFormat
+                + (serverHeader == null ? "" : ", only " + serverHeader.getValue())
+                + ". Upgrade the server, or feed in another format.");
+    }
+
     private void verifyServerVersion(Header serverHeader) throws ServerResponseException {
         if (serverHeader == null) {
             throw new ServerResponseException("Got bad protocol version from server.");
@@ -375,7 +401,7 @@ class ApacheGatewayConnection implements GatewayConnection {
 
         final String oldSessionID = sessionId;
         sessionId = null;
-        try (InputStream stream = executePost(httpPost)) {
+        try (InputStream stream = executePost(httpPost, handshake)) {
             if (oldSessionID != null && !oldSessionID.equals(sessionId)) {
                 throw new ServerResponseException(
                         "Session ID changed after new handshake, some documents might not be acked to correct thread. "
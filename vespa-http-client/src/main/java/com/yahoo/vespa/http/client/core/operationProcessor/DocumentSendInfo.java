@@ -18,6 +18,7 @@ class DocumentSendInfo {
     // This is lazily populated as normal cases does not require retries.
     private Map<Integer, Integer> attemptedRetriesByClusterId = null;
     private final StringBuilder localTrace;
+    private final long sendTimeMillis = System.currentTimeMillis();
 
     DocumentSendInfo(Document document, boolean traceThisDoc) {
         this.document = document;
@@ -70,4 +71,9 @@ class DocumentSendInfo {
         return document;
     }
 
+    /** Returns the time since this operation was first sent to the clusters, including any retries */
+    long millisSinceSent() {
+        return System.currentTimeMillis() - sendTimeMillis;
+    }
+
 }
@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.http.client.core.operationProcessor;
 
+import com.yahoo.vespa.http.client.core.LatencyThrottlePolicy;
 import com.yahoo.vespa.http.client.core.ThrottlePolicy;
 
 import java.util.Random;
@@ -9,6 +10,10 @@ import java.util.Random;
  * Adjusts in-flight operations based on throughput. It will walk the graph and try to find
  * local optimum.
  *
+ * If created with a {@link LatencyThrottlePolicy}, the throughput is estimated from the round trip time of each
+ * operation, and the window is adjusted once per round trip and halved when the gateway is overloaded.
+ * The rest of this comment describes the phase based adjustment done with a {@link ThrottlePolicy}.
+ *
  * It looks at the throughput, adjust max in-flight based on the previous throughput and settings.
  *
  * In the beginning it moves faster, and then stabilizes.
@@ -36,6 +41,7 @@ public class IncompleteResultsThrottler {
     private final int minInFlightValue;
     private final Random random = new Random();
     private final ThrottlePolicy policy;
+    private final LatencyThrottlePolicy latencyPolicy;
 
     // 9-11 seconds with some randomness to avoid fully synchronous feeders.
     public final long phaseSizeMs = 9000 + (random.nextInt() % 2000);
@@ -64,11 +70,29 @@ public class IncompleteResultsThrottler {
      * @param policy is the algorithm for finding next value of the number of in-flight documents operations.
      */
     public IncompleteResultsThrottler(int minInFlightValue, int maxInFlightValue, Clock clock, ThrottlePolicy policy) {
+        this(minInFlightValue, maxInFlightValue, clock, policy, null);
+    }
+
+    /**
+     * Creates a throttler which adjusts in-flight operations from their round trip times.
+     * @param minInFlightValue the throttler will never throttle beyond this limit.
+     * @param maxInFlightValue the throttler will never throttle above this limit. If zero, no limit.
+     */
+    public IncompleteResultsThrottler(int minInFlightValue, int maxInFlightValue) {
+        this(minInFlightValue, maxInFlightValue, null, null,
+             new LatencyThrottlePolicy(minInFlightValue == 0 ? maxInFlightValue : minInFlightValue,
+                                       maxInFlightValue == 0 ? Integer.MAX_VALUE : maxInFlightValue,
+                                       INITIAL_MAX_IN_FLIGHT_VALUE));
+    }
+
+    private IncompleteResultsThrottler(int minInFlightValue, int maxInFlightValue, Clock clock, ThrottlePolicy policy,
+                                       LatencyThrottlePolicy latencyPolicy) {
         this.maxInFlightValue = maxInFlightValue == 0 ? Integer.MAX_VALUE : maxInFlightValue;
         this.minInFlightValue = minInFlightValue == 0 ? this.maxInFlightValue : minInFlightValue;
         this.policy = policy;
+        this.latencyPolicy = latencyPolicy;
         this.clock = clock;
-        if (minInFlightValue != maxInFlightValue) {
+        if (minInFlightValue != maxInFlightValue && clock != null) {
             this.sampleStartTimeMs = clock.getTimeMillis();
         }
         setNewSemaphoreSize(INITIAL_MAX_IN_FLIGHT_VALUE);
@@ -84,7 +108,7 @@ public class IncompleteResultsThrottler {
         } catch (InterruptedException e) {
             // Ignore
         }
-        if (maxInFlightValue != minInFlightValue) {
+        if (maxInFlightValue != minInFlightValue && latencyPolicy == null) {
             synchronized (monitor) {
                 adjustThrottling();
             }
@@ -101,6 +125,36 @@ public class IncompleteResultsThrottler {
         long getTimeMillis();
     }
 
+    /**
+     * Registers that an operation is done
+     * @param success whether the operation was successful
+     * @param latencyMs the time from the operation was sent until it was done
+     */
+    public void resultReady(boolean success, long latencyMs) {
+        if (latencyPolicy != null && maxInFlightValue != minInFlightValue) {
+            synchronized (monitor) {
+                int inFlight = maxInFlightNow - blocker.availablePermits();
+                setLatencyWindow(latencyPolicy.resultReady(latencyMs, inFlight));
+            }
+        }
+        resultReady(success);
+    }
+
+    /** Registers that the gateway has reported a transient error for an operation, which means it is overloaded */
+    public void overloaded() {
+        if (latencyPolicy == null || maxInFlightValue == minInFlightValue) return;
+        synchronized (monitor) {
+            setLatencyWindow(latencyPolicy.overloaded());
+        }
+    }
+
+    private void setLatencyWindow(int size) {
+        if (size == maxInFlightNow) return;
+        maxInFlightNow = size;
+        blocker.setMaxConcurrency(size);
+        debugMessage = new StringBuilder(latencyPolicy.toString());
+    }
+
     public void resultReady(boolean success) {
         blocker.operationDone();
         if (!success) {
@@ -158,6 +158,10 @@ public class OperationProcessor {
             }
             DocumentSendInfo documentSendInfo = docSendInfoByOperationId.get(endpointResult.getOperationId());
 
+            if (endpointResult.getDetail().getResultType() == Result.ResultType.TRANSITIVE_ERROR) {
+                incompleteResultsThrottler.overloaded();
+            }
+
             if (retriedThis(endpointResult, documentSendInfo, clusterId)) {
                 return null;
             }
@@ -174,6 +178,7 @@ public class OperationProcessor {
 
             Result result = documentSendInfo.createResult();
             docSendInfoByOperationId.remove(endpointResult.getOperationId());
+            incompleteResultsThrottler.resultReady(result.isSuccess(), documentSendInfo.millisSinceSent());
 
             String documentId = documentSendInfo.getDocument().getDocumentId();
             /**
@@ -194,7 +199,6 @@ public class OperationProcessor {
         final Result result = process(endpointResult, clusterId);
 
         if (result != null) {
-            incompleteResultsThrottler.resultReady(result.isSuccess());
             resultCallback.onCompletion(result.getDocumentId(), result);
             if (traceToStderr && result.hasLocalTrace()) {
                 System.err.println(result.toString());
@@ -0,0 +1,61 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.client.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author agent
+ */
+public class LatencyThrottlePolicyTest {
+
+    /** Completes rounds at the window of the policy with the given latency, and returns the resulting window */
+    private static int completeRounds(LatencyThrottlePolicy policy, int rounds, long latencyMs) {
+        for (int round = 0; round < rounds; round++) {
+            int window = policy.maxInFlight();
+            for (int i = 0; i < Math.max(LatencyThrottlePolicy.MIN_ROUND_SIZE, window); i++)
+                policy.resultReady(latencyMs, window);
+        }
+        return policy.maxInFlight();
+    }
+
+    @Test
+    public void windowGrowsWhileLatencyIsConstant() {
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(1, 1000, 100);
+        int window = completeRounds(policy, 10, 50);
+        assertTrue("Window grew: " + policy, window > 100);
+    }
+
+    @Test
+    public void windowShrinksWhenLatencyGrowsWithIt() {
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(1, 1000, 100);
+        for (int round = 0; round < 20; round++) {
+            int window = policy.maxInFlight();
+            completeRounds(policy, 1, window); // throughput is constant, one operation per ms
+        }
+        assertTrue("Window shrank: " + policy, policy.maxInFlight() < 100);
+    }
+
+    @Test
+    public void windowIsHalvedOncePerRoundWhenOverloaded() {
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(1, 1000, 100);
+        assertEquals(50, policy.overloaded());
+        assertEquals(50, policy.overloaded());
+        completeRounds(policy, 1, 50);
+        assertEquals(25, policy.overloaded());
+    }
+
+    @Test
+    public void windowStaysWithinBounds() {
+        LatencyThrottlePolicy policy = new LatencyThrottlePolicy(10, 200, 100);
+        assertEquals(200, completeRounds(policy, 100, 50));
+        for (int i = 0; i < 10; i++) {
+            policy.overloaded();
+            completeRounds(policy, 1, 50);
+        }
+        assertEquals(10, policy.maxInFlight());
+    }
+
+}
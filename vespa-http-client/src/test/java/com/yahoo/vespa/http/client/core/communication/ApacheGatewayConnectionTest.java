@@ -24,6 +24,7 @@ import org.junit.rules.ExpectedException;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -34,8 +35,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.stub;
@@ -175,6 +179,66 @@ public class ApacheGatewayConnectionTest {
         apacheGatewayConnection.writeOperations(documents);
     }
 
+    @Test
+    public void testBinaryDocumentIsSentWithoutStartAndEndOfFeed() throws Exception {
+        final Endpoint endpoint = Endpoint.create("hostname", 666, false);
+        final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.VESPA_BINARY).build();
+        final ConnectionParams connectionParams = new ConnectionParams.Builder().build();
+        final byte[] operation = new byte[] { 1, 1, 0, 0, 0, 0, (byte)0xff, '\n' };
+        final Document document = new Document("42", operation, null /* context */);
+
+        final AtomicInteger requestsReceived = new AtomicInteger(0);
+        final ByteArrayOutputStream sent = new ByteArrayOutputStream();
+
+        // This is the fake server, records the data it receives.
+        ApacheGatewayConnection.HttpClientFactory mockFactory = mockHttpClientFactory(post -> {
+            if (requestsReceived.incrementAndGet() > 1) {
+                assertThat(post.getFirstHeader(Headers.DATA_FORMAT).getValue(), is(FeedParams.DataFormat.VESPA_BINARY.name()));
+                post.getEntity().writeTo(sent);
+            }
+            return httpResponse("clientId", "3", "XML_UTF8,JSON_UTF8,VESPA_BINARY");
+        });
+
+        ApacheGatewayConnection apacheGatewayConnection =
+                new ApacheGatewayConnection(endpoint, feedParams, "", connectionParams, mockFactory, "clientId");
+        apacheGatewayConnection.connect();
+        apacheGatewayConnection.handshake();
+        apacheGatewayConnection.writeOperations(Collections.singletonList(document));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write((document.getOperationId() + " 8\n").getBytes(StandardCharsets.US_ASCII));
+        expected.write(operation);
+        assertArrayEquals(expected.toByteArray(), sent.toByteArray());
+    }
+
+    @Test
+    public void testBinaryDocumentsAreNotSentToServersWhichDoNotAcceptThem() throws Exception {
+        final FeedParams feedParams = new FeedParams.Builder().setDataFormat(FeedParams.DataFormat.VESPA_BINARY).build();
+        final AtomicInteger requestsReceived = new AtomicInteger(0);
+
+        // This is the fake server, which is too old to list the data formats it accepts.
+        ApacheGatewayConnection.HttpClientFactory mockFactory = mockHttpClientFactory(post -> {
+            requestsReceived.incrementAndGet();
+            assertNull(post.getFirstHeader(Headers.DATA_FORMAT));
+            return httpResponse("clientId", "3");
+        });
+
+        ApacheGatewayConnection apacheGatewayConnection =
+                new ApacheGatewayConnection(Endpoint.create("hostname", 666, false), feedParams, "",
+                                            new ConnectionParams.Builder().build(), mockFactory, "clientId");
+        apacheGatewayConnection.connect();
+        try {
+            apacheGatewayConnection.handshake();
+            fail("Expected the handshake to fail");
+        }
+        catch (ServerResponseException e) {
+            assertEquals(Headers.HTTP_NOT_ACCEPTABLE, e.getResponseCode());
+            assertEquals("Server does not accept data format VESPA_BINARY. Upgrade the server, or feed in another format.",
+                         e.getResponseString());
+        }
+        assertEquals(1, requestsReceived.get());
+    }
+
     @Test
     public void testZipAndCreateEntity() throws IOException {
         final String testString = "Hello world";
@@ -348,6 +412,10 @@ public class ApacheGatewayConnectionTest {
     }
 
     private HttpResponse httpResponse(String sessionIdInResult, String version) throws IOException {
+        return httpResponse(sessionIdInResult, version, null);
+    }
+
+    private HttpResponse httpResponse(String sessionIdInResult, String version, String dataFormats) throws IOException {
         final HttpResponse httpResponseMock = mock(HttpResponse.class);
 
         StatusLine statusLineMock = mock(StatusLine.class);
@@ -356,6 +424,9 @@ public class ApacheGatewayConnectionTest {
 
         addMockedHeader(httpResponseMock, Headers.SESSION_ID, sessionIdInResult, null);
         addMockedHeader(httpResponseMock, Headers.VERSION, version, null);
+        if (dataFormats != null) {
+            addMockedHeader(httpResponseMock, Headers.DATA_FORMATS, dataFormats, null);
+        }
         HeaderElement[] headerElements = new HeaderElement[1];
         headerElements[0] = mock(HeaderElement.class);
 
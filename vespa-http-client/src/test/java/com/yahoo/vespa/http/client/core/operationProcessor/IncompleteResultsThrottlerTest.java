@@ -8,8 +8,10 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -261,6 +263,102 @@ public class IncompleteResultsThrottlerTest {
                 is(MAX_SIZE));
     }
 
+    /**
+     * A mock gateway where latency grows slowly with the number of operations in flight up to its capacity,
+     * and steeply above it. Above twice its capacity it is overloaded and fails operations with transient errors.
+     */
+    class MockGateway {
+
+        final PriorityQueue<MockOperation> inFlight = new PriorityQueue<>(Comparator.comparingLong(o -> o.doneTime));
+        final int capacity;
+        final Random random = new Random(1);
+        long completed = 0;
+        long failed = 0;
+
+        MockGateway(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void send(IncompleteResultsThrottler throttler, long now) {
+            int n = inFlight.size();
+            boolean overloaded = n > 2 * capacity;
+            long latency = overloaded ? 5 : 20 + n / 10 + Math.max(0, n - capacity) / 2 + random.nextInt(4);
+            inFlight.add(new MockOperation(throttler, now, now + latency, overloaded));
+        }
+
+        void moveTime(long now) {
+            while ( ! inFlight.isEmpty() && inFlight.peek().doneTime <= now) {
+                MockOperation operation = inFlight.poll();
+                if (operation.overloaded) {
+                    failed++;
+                    operation.throttler.overloaded();
+                } else {
+                    completed++;
+                }
+                operation.throttler.resultReady( ! operation.overloaded, operation.doneTime - operation.sendTime);
+            }
+        }
+
+    }
+
+    static class MockOperation {
+
+        final IncompleteResultsThrottler throttler;
+        final long sendTime;
+        final long doneTime;
+        final boolean overloaded;
+
+        MockOperation(IncompleteResultsThrottler throttler, long sendTime, long doneTime, boolean overloaded) {
+            this.throttler = throttler;
+            this.sendTime = sendTime;
+            this.doneTime = doneTime;
+            this.overloaded = overloaded;
+        }
+
+    }
+
+    private void assertLatencyThrottlingConverges(int clientCount, int capacity) {
+        MockGateway gateway = new MockGateway(capacity);
+        List<IncompleteResultsThrottler> throttlers = new ArrayList<>();
+        for (int i = 0; i < clientCount; i++)
+            throttlers.add(new IncompleteResultsThrottler(1, 50000));
+
+        long warmupMs = 30_000;
+        long simulationMs = 120_000;
+        long inFlightSum = 0;
+        long completedAfterWarmup = 0;
+        for (long time = 0; time < simulationMs; time++) {
+            gateway.moveTime(time);
+            for (IncompleteResultsThrottler throttler : throttlers) {
+                while (throttler.availableCapacity() > 0) {
+                    throttler.operationStart();
+                    gateway.send(throttler, time);
+                }
+            }
+            if (time == warmupMs)
+                completedAfterWarmup = gateway.completed;
+            if (time > warmupMs)
+                inFlightSum += gateway.inFlight.size();
+        }
+        double averageInFlight = (double)inFlightSum / (simulationMs - warmupMs);
+        double throughput = (double)(gateway.completed - completedAfterWarmup) / (simulationMs - warmupMs);
+        double maxThroughput = capacity / (20 + capacity / 10 + 1.5);
+        String message = clientCount + " clients, capacity " + capacity + ": average in flight " + averageInFlight +
+                         ", throughput " + throughput + " of max " + maxThroughput + ", failed " + gateway.failed;
+        assertTrue(message, averageInFlight > capacity / 2.0);
+        assertTrue(message, averageInFlight < capacity * 1.5);
+        assertTrue(message, throughput > 0.8 * maxThroughput);
+        assertTrue(message, gateway.failed < 0.001 * gateway.completed);
+    }
+
+    @Test
+    public void testLatencyThrottlingConvergesToGatewayCapacity() {
+        assertLatencyThrottlingConverges(1, 200);
+        assertLatencyThrottlingConverges(1, 1000);
+        assertLatencyThrottlingConverges(3, 200);
+        assertLatencyThrottlingConverges(3, 1000);
+    }
+
     private long inversesU(int size, int sweetSpot) {
         // Peak performance at sweetSPot.
         int distance = Math.abs(sweetSpot - size);
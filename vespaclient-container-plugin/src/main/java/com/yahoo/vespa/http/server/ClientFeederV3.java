@@ -110,7 +110,12 @@ class ClientFeederV3 {
         threadsAvailableForFeeding.decrementAndGet();
         ongoingRequests.incrementAndGet();
         try {
-            FeederSettings feederSettings = new FeederSettings(request);
+            FeederSettings feederSettings;
+            try {
+                feederSettings = new FeederSettings(request);
+            } catch (IllegalArgumentException e) {
+                return new ErrorHttpResponse(Headers.HTTP_NOT_ACCEPTABLE, Exceptions.toMessageString(e));
+            }
             /*
              * The gateway handle overload from clients in different ways.
              *
@@ -2,6 +2,7 @@
 package com.yahoo.vespa.http.server;
 
 import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.vespa.http.client.config.FeedParams.DataFormat;
 import com.yahoo.vespa.http.client.core.Headers;
 import com.yahoo.vespa.http.client.core.ErrorCode;
 import com.yahoo.vespa.http.client.core.OperationStatus;
@@ -9,7 +10,9 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
 
 /**
  * Reads feed responses from a queue and renders them continuously to the
@@ -20,6 +23,9 @@ import java.util.concurrent.BlockingQueue;
  */
 public class FeedResponse extends HttpResponse {
 
+    /** The data formats accepted, which clients check before sending data in formats older servers do not accept */
+    static final String DATA_FORMATS = Arrays.stream(DataFormat.values()).map(DataFormat::name).collect(Collectors.joining(","));
+
     BlockingQueue<OperationStatus> operations;
 
     public FeedResponse(
@@ -31,6 +37,7 @@ public class FeedResponse extends HttpResponse {
         this.operations = operations;
         headers().add(Headers.SESSION_ID, sessionId);
         headers().add(Headers.VERSION, Integer.toString(protocolVersion));
+        headers().add(Headers.DATA_FORMATS, DATA_FORMATS);
     }
 
     // This is used by the V3 protocol.
@@ -47,6 +54,7 @@ public class FeedResponse extends HttpResponse {
         headers().add(Headers.VERSION, Integer.toString(protocolVersion));
         headers().add(Headers.OUTSTANDING_REQUESTS, Integer.toString(outstandingClientOperations));
         headers().add(Headers.HOSTNAME, hostName);
+        headers().add(Headers.DATA_FORMATS, DATA_FORMATS);
     }
 
     @Override
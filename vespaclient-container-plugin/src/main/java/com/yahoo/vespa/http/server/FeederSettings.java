@@ -6,6 +6,8 @@ import com.yahoo.messagebus.routing.Route;
 import com.yahoo.vespa.http.client.config.FeedParams.DataFormat;
 import com.yahoo.vespa.http.client.core.Headers;
 
+import java.util.Arrays;
+
 /**
  * Wrapper for the feed feederSettings read from HTTP request.
  *
@@ -49,7 +51,7 @@ public class FeederSettings {
         {
             String tmpDataFormat = request.getHeader(Headers.DATA_FORMAT);
             if (tmpDataFormat != null) {
-                dataFormat = DataFormat.valueOf(tmpDataFormat);
+                dataFormat = parseDataFormat(tmpDataFormat);
             } else {
                 dataFormat = DataFormat.XML_UTF8;
             }
@@ -72,4 +74,13 @@ public class FeederSettings {
         }
     }
 
+    private static DataFormat parseDataFormat(String dataFormat) {
+        try {
+            return DataFormat.valueOf(dataFormat);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown data format '" + dataFormat + "', accepted formats are " +
+                                               Arrays.toString(DataFormat.values()));
+        }
+    }
+
 }
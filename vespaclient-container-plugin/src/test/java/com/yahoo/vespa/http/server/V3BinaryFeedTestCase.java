@@ -0,0 +1,133 @@
+// Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.http.server;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.container.jdisc.HttpResponse;
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.serialization.BinaryFeedFormat;
+import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
+import com.yahoo.documentapi.messagebus.protocol.RemoveDocumentMessage;
+import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.ReferencedResource;
+import com.yahoo.jdisc.References;
+import com.yahoo.messagebus.Message;
+import com.yahoo.messagebus.MessageBus;
+import com.yahoo.messagebus.MessageBusParams;
+import com.yahoo.messagebus.Result;
+import com.yahoo.messagebus.SourceSessionParams;
+import com.yahoo.messagebus.shared.SharedMessageBus;
+import com.yahoo.messagebus.shared.SharedSourceSession;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.vespa.http.client.core.Headers;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests feeding operations in the binary format through the V3 protocol.
+ *
+ * @author agent
+ */
+public class V3BinaryFeedTestCase {
+
+    private final DocumentTypeManager manager = new DocumentTypeManager();
+    private final DocumentType type = new DocumentType("music");
+    private final List<Message> sent = new ArrayList<>();
+    private final ClientFeederV3 feeder;
+
+    public V3BinaryFeedTestCase() {
+        type.addField("title", DataType.STRING);
+        manager.registerDocumentType(type);
+        feeder = new ClientFeederV3(retainMockSession(),
+                                    new FeedReaderFactory(),
+                                    manager,
+                                    "clientId",
+                                    new DummyMetric(),
+                                    new FeedReplyReader(null, new DocumentApiMetrics(MetricReceiver.nullImplementation, "tester")),
+                                    new AtomicInteger(10));
+    }
+
+    @Test
+    public void binaryOperationsAreFed() throws IOException {
+        Document document = new Document(type, "id:ns:music::1");
+        document.setFieldValue("title", new StringFieldValue("Blåmann"));
+        DocumentId removed = new DocumentId("id:ns:music::2");
+
+        ByteArrayOutputStream feed = new ByteArrayOutputStream();
+        writeOperation("put", BinaryFeedFormat.serialize(new DocumentPut(document)), feed);
+        writeOperation("remove", BinaryFeedFormat.serialize(new DocumentRemove(removed)), feed);
+
+        HttpResponse response = feeder.handleRequest(createRequest(feed.toByteArray(), "VESPA_BINARY"));
+        assertEquals(200, response.getStatus());
+        assertEquals(2, sent.size());
+        assertEquals(document, ((PutDocumentMessage) sent.get(0)).getDocumentPut().getDocument());
+        assertEquals(removed, ((RemoveDocumentMessage) sent.get(1)).getDocumentId());
+    }
+
+    @Test
+    public void responsesListTheAcceptedDataFormats() throws IOException {
+        HttpResponse response = feeder.handleRequest(createRequest(new byte[0], null));
+        assertEquals("XML_UTF8,JSON_UTF8,VESPA_BINARY", response.headers().getFirst(Headers.DATA_FORMATS));
+    }
+
+    @Test
+    public void unknownDataFormatIsNotAccepted() throws IOException {
+        HttpResponse response = feeder.handleRequest(createRequest(new byte[0], "VESPA_TEXT"));
+        assertEquals(Headers.HTTP_NOT_ACCEPTABLE, response.getStatus());
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        response.render(message);
+        assertTrue(message.toString("UTF-8").startsWith("Unknown data format 'VESPA_TEXT'"));
+        assertTrue(sent.isEmpty());
+    }
+
+    private static void writeOperation(String operationId, byte[] operation, ByteArrayOutputStream feed) throws IOException {
+        feed.write((operationId + " " + Integer.toHexString(operation.length) + "\n").getBytes(StandardCharsets.US_ASCII));
+        feed.write(operation);
+    }
+
+    private static HttpRequest createRequest(byte[] data, String dataFormat) {
+        HttpRequest request = HttpRequest.createTestRequest("http://foo.bar:19020/reserved-for-internal-use/feedapi",
+                                                            com.yahoo.jdisc.http.HttpRequest.Method.POST,
+                                                            new ByteArrayInputStream(data));
+        request.getJDiscRequest().headers().add(Headers.VERSION, "3");
+        request.getJDiscRequest().headers().add(Headers.CLIENT_ID, "clientId");
+        if (dataFormat != null)
+            request.getJDiscRequest().headers().add(Headers.DATA_FORMAT, dataFormat);
+        return request;
+    }
+
+    private ReferencedResource<SharedSourceSession> retainMockSession() {
+        SharedSourceSession session = new SharedSourceSession(new SharedMessageBus(new MessageBus(new MockNetwork(),
+                                                                                                  new MessageBusParams())),
+                                                              new SourceSessionParams()) {
+            @Override
+            public Result sendMessageBlocking(Message message) {
+                return sendMessage(message);
+            }
+
+            @Override
+            public Result sendMessage(Message message) {
+                sent.add(message);
+                return Result.ACCEPTED;
+            }
+        };
+        return new ReferencedResource<>(session, References.fromResource(session));
+    }
+
+}